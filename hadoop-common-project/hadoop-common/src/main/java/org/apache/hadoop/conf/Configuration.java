@@ -69,6 +69,7 @@
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -349,6 +350,12 @@ private static boolean getRestrictParserDefault(Object resource) {
    */
   private volatile Map<String, String[]> updatingResource;
 
+  /**
+   * The part of updatingResource shared with copies of this configuration,
+   * never modified; null if nothing is shared.
+   */
+  private volatile Map<String, String[]> sharedUpdatingResource;
+
   /**
    * Specify exact input factory to avoid time finding correct one.
    * Factory is reusable across un-synchronized threads once initialized
@@ -699,6 +706,7 @@ public void setDeprecatedProperties() {
         }
       }
     }
+    updateSnapshot();
   }
 
   /**
@@ -801,8 +809,10 @@ private void handleDeprecation() {
     }
   }
 
-  private Properties properties;
-  private Properties overlay;
+  private CopyOnWriteProperties properties;
+  private CopyOnWriteProperties overlay;
+  // resolved values of a frozen configuration, null unless frozen.
+  private volatile Snapshot snapshot;
   private ClassLoader classLoader;
   {
     classLoader = Thread.currentThread().getContextClassLoader();
@@ -833,6 +843,11 @@ public Configuration(boolean loadDefaults) {
   
   /** 
    * A new configuration with the same settings cloned from another.
+   *
+   * The copy shares the loaded properties with the other configuration and
+   * only keeps its own modifications, so copying does not duplicate all of
+   * the properties. Modifications of either configuration are not visible
+   * to the other one.
    * 
    * @param other the configuration from which to clone settings.
    */
@@ -844,14 +859,16 @@ public Configuration(Configuration other) {
       other.getProps();
       this.resources = (ArrayList<Resource>) other.resources.clone();
       if (other.properties != null) {
-        this.properties = (Properties)other.properties.clone();
+        this.properties = other.properties.copy();
       }
 
       if (other.overlay!=null) {
-        this.overlay = (Properties)other.overlay.clone();
+        this.overlay = other.overlay.copy();
       }
 
       this.restrictSystemProps = other.restrictSystemProps;
+      other.shareUpdatingResource();
+      this.sharedUpdatingResource = other.sharedUpdatingResource;
       if (other.updatingResource != null) {
         this.updatingResource = new ConcurrentHashMap<String, String[]>(
            other.updatingResource);
@@ -1025,6 +1042,97 @@ public void addResource(Configuration conf) {
   public synchronized void reloadConfiguration() {
     properties = null;                            // trigger reload
     finalParameters.clear();                      // clear site-limits
+    updateSnapshot();
+  }
+
+  /**
+   * Values of a frozen configuration, resolved on first access. A snapshot
+   * is never modified other than by caching values, a modification of the
+   * configuration publishes a new snapshot instead.
+   */
+  private static final class Snapshot {
+    /** Stands for null, which a ConcurrentHashMap can not hold. */
+    private static final Object NULL = new Object();
+
+    private final DeprecationContext deprecations;
+    private final ConcurrentHashMap<String, Object> values =
+        new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> ints =
+        new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> longs =
+        new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> booleans =
+        new ConcurrentHashMap<>();
+
+    Snapshot(DeprecationContext deprecations) {
+      this.deprecations = deprecations;
+    }
+
+    /**
+     * Get a value from the cache, resolving it on a miss. Values which fail
+     * to resolve are not cached.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T lookup(ConcurrentHashMap<String, Object> cache, String name,
+        Function<String, T> resolver) {
+      Object value = cache.get(name);
+      if (value == null) {
+        // not computeIfAbsent, which must not be called recursively.
+        final T resolved = resolver.apply(name);
+        value = resolved == null ? NULL : resolved;
+        cache.putIfAbsent(name, value);
+      }
+      return value == NULL ? null : (T) value;
+    }
+  }
+
+  /**
+   * Freeze the resolution of this configuration. {@link #get(String)},
+   * {@link #get(String, String)}, {@link #getTrimmed(String)},
+   * {@link #getInt(String, int)}, {@link #getLong(String, long)} and
+   * {@link #getBoolean(String, boolean)} then resolve every name only once,
+   * including deprecation handling, variable expansion and parsing, and
+   * serve later reads from a snapshot without taking any lock.
+   *
+   * The configuration can still be modified, every modification publishes
+   * a new snapshot. Freezing therefore pays off for configurations which
+   * are read far more often than they are modified, e.g. the configuration
+   * of a running task. Variables referring to system properties or to the
+   * environment are expanded once per snapshot, and modifications made
+   * directly to the properties returned by {@link #getProps()} are not seen
+   * by the snapshot. Copies of a frozen configuration are not frozen.
+   */
+  @InterfaceStability.Unstable
+  public void freeze() {
+    snapshot = new Snapshot(deprecationContext.get());
+  }
+
+  /**
+   * @return whether this configuration is frozen, see {@link #freeze()}.
+   */
+  @InterfaceStability.Unstable
+  public boolean isFrozen() {
+    return snapshot != null;
+  }
+
+  /**
+   * Publish a new snapshot if the configuration is frozen, after it has
+   * been modified.
+   */
+  private void updateSnapshot() {
+    if (snapshot != null) {
+      snapshot = new Snapshot(deprecationContext.get());
+    }
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot s = snapshot;
+    if (s != null && s.deprecations != deprecationContext.get()) {
+      // new deprecations may change the resolved values.
+      updateSnapshot();
+      s = snapshot;
+    }
+    return s;
   }
   
   private synchronized void addResourceObject(Resource resource) {
@@ -1218,6 +1326,17 @@ String getProperty(String key) {
    *         or null if no such property exists.
    */
   public String get(String name) {
+    final Snapshot s = getSnapshot();
+    if (s != null) {
+      return s.lookup(s.values, name, this::resolve);
+    }
+    return resolve(name);
+  }
+
+  /**
+   * Resolve the value of a property, see {@link #get(String)}.
+   */
+  private String resolve(String name) {
     String[] names = handleDeprecation(deprecationContext.get(), name);
     String result = null;
     for(String n : names) {
@@ -1239,6 +1358,7 @@ public void setAllowNullValueProperties( boolean val ) {
 
   public void setRestrictSystemProps(boolean val) {
     this.restrictSystemProps = val;
+    updateSnapshot();
   }
 
   /**
@@ -1412,6 +1532,7 @@ public void set(String name, String value, String source) {
         putIntoUpdatingResource(n, new String[] {altSource});
       }
     }
+    updateSnapshot();
   }
 
   @VisibleForTesting
@@ -1446,6 +1567,7 @@ public synchronized void unset(String name) {
       getOverlay().remove(n);
       getProps().remove(n);
     }
+    updateSnapshot();
   }
 
   /**
@@ -1461,7 +1583,7 @@ public synchronized void setIfUnset(String name, String value) {
   
   private synchronized Properties getOverlay() {
     if (overlay==null){
-      overlay=new Properties();
+      overlay=new CopyOnWriteProperties();
     }
     return overlay;
   }
@@ -1479,6 +1601,12 @@ private synchronized Properties getOverlay() {
    *         doesn't exist.                    
    */
   public String get(String name, String defaultValue) {
+    final Snapshot s = getSnapshot();
+    if (s != null) {
+      // the value of the last replacing name, as below.
+      String value = s.lookup(s.values, name, this::resolve);
+      return value != null ? value : substituteVars(defaultValue);
+    }
     String[] names = handleDeprecation(deprecationContext.get(), name);
     String result = null;
     for(String n : names) {
@@ -1501,9 +1629,16 @@ public String get(String name, String defaultValue) {
    *         or <code>defaultValue</code>. 
    */
   public int getInt(String name, int defaultValue) {
+    final Snapshot s = getSnapshot();
+    final Integer value = s != null
+        ? s.lookup(s.ints, name, this::getIntValue) : getIntValue(name);
+    return value == null ? defaultValue : value;
+  }
+
+  private Integer getIntValue(String name) {
     String valueString = getTrimmed(name);
     if (valueString == null)
-      return defaultValue;
+      return null;
     String hexString = getHexDigits(valueString);
     if (hexString != null) {
       return Integer.parseInt(hexString, 16);
@@ -1554,9 +1689,16 @@ public void setInt(String name, int value) {
    *         or <code>defaultValue</code>. 
    */
   public long getLong(String name, long defaultValue) {
+    final Snapshot s = getSnapshot();
+    final Long value = s != null
+        ? s.lookup(s.longs, name, this::getLongValue) : getLongValue(name);
+    return value == null ? defaultValue : value;
+  }
+
+  private Long getLongValue(String name) {
     String valueString = getTrimmed(name);
     if (valueString == null)
-      return defaultValue;
+      return null;
     String hexString = getHexDigits(valueString);
     if (hexString != null) {
       return Long.parseLong(hexString, 16);
@@ -1682,16 +1824,28 @@ public void setDouble(String name, double value) {
    *         or <code>defaultValue</code>. 
    */
   public boolean getBoolean(String name, boolean defaultValue) {
+    final Snapshot s = getSnapshot();
+    final Boolean value = s != null
+        ? s.lookup(s.booleans, name, this::getBooleanValue)
+        : getBooleanValue(name);
+    return value == null ? defaultValue : value;
+  }
+
+  /**
+   * @return the boolean value of the property, or null if it is not set or
+   *         not a valid boolean.
+   */
+  private Boolean getBooleanValue(String name) {
     String valueString = getTrimmed(name);
     if (null == valueString || valueString.isEmpty()) {
-      return defaultValue;
+      return null;
     }
 
     if (StringUtils.equalsIgnoreCase("true", valueString))
       return true;
     else if (StringUtils.equalsIgnoreCase("false", valueString))
       return false;
-    else return defaultValue;
+    else return null;
   }
 
   /** 
@@ -2007,10 +2161,10 @@ public synchronized String[] getPropertySources(String name) {
     }
     // Return a null right away if our properties still
     // haven't loaded or the resource mapping isn't defined
-    if (properties == null || updatingResource == null) {
+    if (properties == null) {
       return null;
     } else {
-      String[] source = updatingResource.get(name);
+      String[] source = getUpdatingResource(name);
       if(source == null) {
         return null;
       } else {
@@ -2830,9 +2984,18 @@ public Set<String> getFinalParameters() {
 
   protected synchronized Properties getProps() {
     if (properties == null) {
-      properties = new Properties();
-      Map<String, String[]> backup = updatingResource != null ?
-          new ConcurrentHashMap<String, String[]>(updatingResource) : null;
+      properties = new CopyOnWriteProperties();
+      Map<String, String[]> backup = null;
+      if (sharedUpdatingResource != null) {
+        backup = new ConcurrentHashMap<>(sharedUpdatingResource);
+      }
+      if (updatingResource != null) {
+        if (backup == null) {
+          backup = new ConcurrentHashMap<>(updatingResource);
+        } else {
+          backup.putAll(updatingResource);
+        }
+      }
       loadResources(properties, resources, quietmode);
 
       if (overlay != null) {
@@ -2842,7 +3005,7 @@ protected synchronized Properties getProps() {
             String key = (String) item.getKey();
             String[] source = backup.get(key);
             if (source != null) {
-              updatingResource.put(key, source);
+              putIntoUpdatingResource(key, source);
             }
           }
         }
@@ -2866,6 +3029,7 @@ public int size() {
   public void clear() {
     getProps().clear();
     getOverlay().clear();
+    updateSnapshot();
   }
 
   /**
@@ -3540,14 +3704,12 @@ private synchronized void appendXMLProperty(Document doc, Element conf,
             String.valueOf(finalParameters.contains(propertyName))));
         propNode.appendChild(finalNode);
 
-        if (updatingResource != null) {
-          String[] sources = updatingResource.get(propertyName);
-          if(sources != null) {
-            for(String s : sources) {
-              Element sourceNode = doc.createElement("source");
-              sourceNode.appendChild(doc.createTextNode(s));
-              propNode.appendChild(sourceNode);
-            }
+        String[] sources = getUpdatingResource(propertyName);
+        if(sources != null) {
+          for(String s : sources) {
+            Element sourceNode = doc.createElement("source");
+            sourceNode.appendChild(doc.createTextNode(s));
+            propNode.appendChild(sourceNode);
           }
         }
       }
@@ -3691,8 +3853,7 @@ private static void appendJSONProperty(JsonGenerator jsonGen,
           redactor.redact(name, config.get(name)));
       jsonGen.writeBooleanField("isFinal",
           config.finalParameters.contains(name));
-      String[] resources = config.updatingResource != null ?
-          config.updatingResource.get(name) : null;
+      String[] resources = config.getUpdatingResource(name);
       String resource = UNKNOWN_RESOURCE;
       if (resources != null && resources.length > 0) {
         resource = resources[0];
@@ -3788,8 +3949,8 @@ public void write(DataOutput out) throws IOException {
     for(Map.Entry<Object, Object> item: props.entrySet()) {
       org.apache.hadoop.io.Text.writeString(out, (String) item.getKey());
       org.apache.hadoop.io.Text.writeString(out, (String) item.getValue());
-      WritableUtils.writeCompressedStringArray(out, updatingResource != null ?
-          updatingResource.get(item.getKey()) : null);
+      WritableUtils.writeCompressedStringArray(out,
+          getUpdatingResource((String) item.getKey()));
     }
   }
   
@@ -3898,4 +4059,37 @@ private void putIntoUpdatingResource(String key, String[] value) {
     }
     localUR.put(key, value);
   }
+
+  private String[] getUpdatingResource(String key) {
+    Map<String, String[]> localUR = updatingResource;
+    String[] source = localUR != null ? localUR.get(key) : null;
+    if (source == null) {
+      Map<String, String[]> sharedUR = sharedUpdatingResource;
+      source = sharedUR != null ? sharedUR.get(key) : null;
+    }
+    return source;
+  }
+
+  /**
+   * Move the resources recorded so far to sharedUpdatingResource, so that
+   * copies of this configuration can share them.
+   */
+  private synchronized void shareUpdatingResource() {
+    Map<String, String[]> localUR = updatingResource;
+    if (localUR == null || localUR.isEmpty()) {
+      return;
+    }
+    Map<String, String[]> sharedUR = sharedUpdatingResource;
+    if (sharedUR == null) {
+      sharedUpdatingResource = localUR;
+    } else if (localUR.size() > sharedUR.size() / 2) {
+      // too many local entries, merge them into a new shared map.
+      Map<String, String[]> merged = new HashMap<>(sharedUR);
+      merged.putAll(localUR);
+      sharedUpdatingResource = merged;
+    } else {
+      return;
+    }
+    updatingResource = null;
+  }
 }
@@ -0,0 +1,369 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.conf;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+/**
+ * {@link Properties} which share their entries with their copies.
+ *
+ * A copy made by {@link #copy()} shares an immutable base with the original
+ * and only keeps its own modifications: the entries it added or replaced and
+ * the keys of the base it removed. Copying the properties of a configuration
+ * therefore does not copy all of its entries.
+ *
+ * Lookups and modifications of single entries work on these layers and do
+ * not take a lock for reading. While entries are shared, the collection views
+ * such as {@link #entrySet()} are read-only snapshots; the other bulk
+ * modifications stop the sharing first.
+ */
+@InterfaceAudience.Private
+final class CopyOnWriteProperties extends Properties {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The layers of the properties. The fields are replaced as a whole, so that
+   * readers always see a consistent set; local and removed are modified in
+   * place while holding the lock of the properties.
+   */
+  private static final class Layers {
+    /** Entries shared with copies, never modified. Null if not shared. */
+    private final Properties base;
+    /** Entries added or replaced locally. */
+    private final Properties local;
+    /** Keys of the base which were removed locally. */
+    private final Set<Object> removed;
+
+    Layers(Properties base, Properties local, Set<Object> removed) {
+      this.base = base;
+      this.local = local;
+      this.removed = removed;
+    }
+  }
+
+  private transient volatile Layers layers;
+
+  CopyOnWriteProperties() {
+    this(null, new Properties());
+  }
+
+  private CopyOnWriteProperties(Properties base, Properties local) {
+    layers = new Layers(base, local, ConcurrentHashMap.newKeySet());
+  }
+
+  /**
+   * @return a copy of these properties which shares the entries with them.
+   */
+  synchronized CopyOnWriteProperties copy() {
+    Layers l = layers;
+    if (l.base != null &&
+        l.local.size() + l.removed.size() > l.base.size() / 2) {
+      // too many local modifications, merge them into a new base.
+      l = new Layers(null, merged(l), l.removed);
+    }
+    if (l.base == null) {
+      // share all entries from now on.
+      l = new Layers(l.local, new Properties(),
+          ConcurrentHashMap.newKeySet());
+    }
+    layers = l;
+
+    CopyOnWriteProperties copy = new CopyOnWriteProperties(l.base,
+        new Properties());
+    copy.layers.local.putAll(l.local);
+    copy.layers.removed.addAll(l.removed);
+    return copy;
+  }
+
+  private static Properties merged(Layers l) {
+    if (l.base == null) {
+      return l.local;
+    }
+    Properties merged = new Properties();
+    merged.putAll(l.base);
+    for (Object key : l.removed) {
+      merged.remove(key);
+    }
+    merged.putAll(l.local);
+    return merged;
+  }
+
+  /**
+   * Stop sharing entries with copies.
+   * @return the properties holding all entries.
+   */
+  private synchronized Properties unshare() {
+    Layers l = layers;
+    if (l.base != null) {
+      l = new Layers(null, merged(l), ConcurrentHashMap.newKeySet());
+      layers = l;
+    }
+    return l.local;
+  }
+
+  /**
+   * @return all entries, which must not be modified if they are shared.
+   */
+  private Properties view() {
+    return merged(layers);
+  }
+
+  @Override
+  public Object get(Object key) {
+    final Layers l = layers;
+    Object value = l.local.get(key);
+    if (value == null && l.base != null && !l.removed.contains(key)) {
+      value = l.base.get(key);
+    }
+    return value;
+  }
+
+  @Override
+  public String getProperty(String key) {
+    Object value = get(key);
+    return value instanceof String ? (String) value : null;
+  }
+
+  @Override
+  public String getProperty(String key, String defaultValue) {
+    String value = getProperty(key);
+    return value == null ? defaultValue : value;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public synchronized Object put(Object key, Object value) {
+    final Layers l = layers;
+    Object old = get(key);
+    // add before un-removing, so readers never see the base value.
+    l.local.put(key, value);
+    l.removed.remove(key);
+    return old;
+  }
+
+  @Override
+  public synchronized Object setProperty(String key, String value) {
+    return put(key, value);
+  }
+
+  @Override
+  public synchronized Object remove(Object key) {
+    final Layers l = layers;
+    Object old = get(key);
+    if (l.base != null && l.base.containsKey(key)) {
+      l.removed.add(key);
+    }
+    l.local.remove(key);
+    return old;
+  }
+
+  @Override
+  public synchronized void putAll(Map<?, ?> t) {
+    for (Map.Entry<?, ?> e : t.entrySet()) {
+      put(e.getKey(), e.getValue());
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    layers = new Layers(null, new Properties(),
+        ConcurrentHashMap.newKeySet());
+  }
+
+  @Override
+  public synchronized int size() {
+    final Layers l = layers;
+    if (l.base == null) {
+      return l.local.size();
+    }
+    int size = l.base.size() - l.removed.size();
+    for (Object key : l.local.keySet()) {
+      // local keys are never removed ones.
+      if (!l.base.containsKey(key)) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public synchronized Object clone() {
+    return copy();
+  }
+
+  @Override
+  public Set<Object> keySet() {
+    final Layers l = layers;
+    return l.base != null
+        ? Collections.unmodifiableSet(merged(l).keySet()) : l.local.keySet();
+  }
+
+  @Override
+  public Set<Map.Entry<Object, Object>> entrySet() {
+    final Layers l = layers;
+    return l.base != null
+        ? Collections.unmodifiableSet(merged(l).entrySet())
+        : l.local.entrySet();
+  }
+
+  @Override
+  public Collection<Object> values() {
+    final Layers l = layers;
+    return l.base != null
+        ? Collections.unmodifiableCollection(merged(l).values())
+        : l.local.values();
+  }
+
+  @Override
+  public Enumeration<Object> keys() {
+    return view().keys();
+  }
+
+  @Override
+  public Enumeration<Object> elements() {
+    return view().elements();
+  }
+
+  @Override
+  public Enumeration<?> propertyNames() {
+    return view().propertyNames();
+  }
+
+  @Override
+  public Set<String> stringPropertyNames() {
+    return view().stringPropertyNames();
+  }
+
+  @Override
+  public boolean contains(Object value) {
+    return view().contains(value);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    return view().containsValue(value);
+  }
+
+  @Override
+  public Object getOrDefault(Object key, Object defaultValue) {
+    Object value = get(key);
+    return value == null ? defaultValue : value;
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super Object, ? super Object> action) {
+    view().forEach(action);
+  }
+
+  @Override
+  public synchronized void replaceAll(
+      BiFunction<? super Object, ? super Object, ?> function) {
+    unshare().replaceAll(function);
+  }
+
+  @Override
+  public synchronized Object putIfAbsent(Object key, Object value) {
+    Object old = get(key);
+    if (old == null) {
+      put(key, value);
+    }
+    return old;
+  }
+
+  @Override
+  public synchronized boolean remove(Object key, Object value) {
+    return unshare().remove(key, value);
+  }
+
+  @Override
+  public synchronized boolean replace(Object key, Object oldValue,
+      Object newValue) {
+    return unshare().replace(key, oldValue, newValue);
+  }
+
+  @Override
+  public synchronized Object replace(Object key, Object value) {
+    return unshare().replace(key, value);
+  }
+
+  @Override
+  public synchronized Object computeIfAbsent(Object key,
+      Function<? super Object, ?> mappingFunction) {
+    return unshare().computeIfAbsent(key, mappingFunction);
+  }
+
+  @Override
+  public synchronized Object computeIfPresent(Object key,
+      BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+    return unshare().computeIfPresent(key, remappingFunction);
+  }
+
+  @Override
+  public synchronized Object compute(Object key,
+      BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+    return unshare().compute(key, remappingFunction);
+  }
+
+  @Override
+  public synchronized Object merge(Object key, Object value,
+      BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+    return unshare().merge(key, value, remappingFunction);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o == this || view().equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return view().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return view().toString();
+  }
+
+  /** Serialize as plain {@link Properties}. */
+  private Object writeReplace() {
+    Properties properties = new Properties();
+    properties.putAll(view());
+    return properties;
+  }
+}
@@ -144,7 +144,8 @@ public ChecksumFSInputChecker(ChecksumFs fs, Path file, int bufferSize)
           throw new IOException("Not a checksum file: "+sumFile);
         }
         this.bytesPerSum = sums.readInt();
-        set(fs.verifyChecksum, DataChecksum.newCrc32(), bytesPerSum, 4);
+        set(fs.verifyChecksum, DataChecksum.newDataChecksum(
+            DataChecksum.Type.CRC32, bytesPerSum), bytesPerSum, 4);
       } catch (FileNotFoundException e) {         // quietly ignore
         set(fs.verifyChecksum, null, 1, 0);
       } catch (IOException e) {                   // loudly ignore
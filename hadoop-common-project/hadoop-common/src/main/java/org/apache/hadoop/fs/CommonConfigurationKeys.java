@@ -68,6 +68,28 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
     "ipc.server.read.threadpool.size";
   /** Default value for IPC_SERVER_RPC_READ_THREADS_KEY */
   public static final int     IPC_SERVER_RPC_READ_THREADS_DEFAULT = 1;
+
+  /** Number of threads in RPC server writing deferred responses */
+  public static final String  IPC_SERVER_RPC_RESPONDER_THREADS_KEY =
+    "ipc.server.responder.threadpool.size";
+  /** Default value for IPC_SERVER_RPC_RESPONDER_THREADS_KEY */
+  public static final int     IPC_SERVER_RPC_RESPONDER_THREADS_DEFAULT = 1;
+  /** Whether the RPC server reuses its request and response buffers */
+  public static final String  IPC_SERVER_BUFFER_POOL_ENABLED_KEY =
+    "ipc.server.buffer.pool.enabled";
+  /** Default value for IPC_SERVER_BUFFER_POOL_ENABLED_KEY */
+  public static final boolean IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT = true;
+  /** Number of RPC server buffers of one size kept for reuse */
+  public static final String  IPC_SERVER_BUFFER_POOL_MAX_BUFFERS_KEY =
+    "ipc.server.buffer.pool.max-buffers-per-size";
+  /** Default value for IPC_SERVER_BUFFER_POOL_MAX_BUFFERS_KEY */
+  public static final int     IPC_SERVER_BUFFER_POOL_MAX_BUFFERS_DEFAULT = 64;
+  /** Total bytes of RPC server buffers kept for reuse */
+  public static final String  IPC_SERVER_BUFFER_POOL_MAX_BYTES_KEY =
+    "ipc.server.buffer.pool.max-bytes";
+  /** Default value for IPC_SERVER_BUFFER_POOL_MAX_BYTES_KEY */
+  public static final long    IPC_SERVER_BUFFER_POOL_MAX_BYTES_DEFAULT =
+    32 * 1024 * 1024;
   
   /** Number of pending connections that may be queued per socket reader */
   public static final String IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_KEY =
@@ -345,6 +367,14 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
       + ".bind.wildcard.addr";
   public static final boolean IPC_CLIENT_BIND_WILDCARD_ADDR_DEFAULT = false;
 
+  /**
+   * Whether an ipc.Client reads the responses of all its connections on one
+   * thread with a selector, rather than on a thread per connection.
+   */
+  public static final String  IPC_CLIENT_SELECTOR_ENABLED_KEY =
+      "ipc.client.selector.enabled";
+  public static final boolean IPC_CLIENT_SELECTOR_ENABLED_DEFAULT = false;
+
   public static final String IPC_CLIENT_CONNECT_MAX_RETRIES_ON_SASL_KEY =
     "ipc.client.connect.max.retries.on.sasl";
   public static final int    IPC_CLIENT_CONNECT_MAX_RETRIES_ON_SASL_DEFAULT = 5;
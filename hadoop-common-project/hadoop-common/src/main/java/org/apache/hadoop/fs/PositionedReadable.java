@@ -18,6 +18,9 @@
 package org.apache.hadoop.fs;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -85,4 +88,55 @@ void readFully(long position, byte[] buffer, int offset, int length)
    * the read operation completed
    */
   void readFully(long position, byte[] buffer) throws IOException;
+
+  /**
+   * What is the smallest reasonable seek?
+   * Ranges of a vectored read which are closer than this may be merged
+   * into a single read.
+   * @return the minimum number of bytes
+   */
+  default int minSeekForVectorReads() {
+    return 4 * 1024;
+  }
+
+  /**
+   * What is the largest size that we should merge ranges together as?
+   * @return the number of bytes to read at once
+   */
+  default int maxReadSizeForVectorReads() {
+    return 1024 * 1024;
+  }
+
+  /**
+   * Read fully a list of file ranges asynchronously from this file.
+   * The default iterates through the ranges to read each synchronously, but
+   * the intent is that FSDataInputStream subclasses can make more efficient
+   * readers.
+   * As a result of the call, each range will have FileRange.setData(
+   * CompletableFuture) called with a future that when complete will have a
+   * ByteBuffer with the data from the file's range. A range which could not
+   * be read completes exceptionally, for example with an EOFException if it
+   * extends past the end of the file.
+   * <p>
+   * The position returned by getPos() after readVectored() is undefined.
+   * </p>
+   * <p>
+   * If a file is changed while the readVectored() operation is in progress,
+   * the output is undefined. Some ranges may have old data, some may have
+   * new and some may have both.
+   * </p>
+   * <p>
+   * While a readVectored() operation is in progress, normal read api calls
+   * may block.
+   * </p>
+   * @param ranges the byte ranges to read; they must not overlap
+   * @param allocate the function to allocate ByteBuffer
+   * @throws IOException any IOE.
+   * @throws IllegalArgumentException if a range is invalid or ranges overlap
+   */
+  default void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    VectoredReadUtils.readVectored(this,
+        VectoredReadUtils.validateAndSortRanges(ranges), allocate);
+  }
 }
@@ -33,15 +33,21 @@
 import java.io.FileDescriptor;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -105,10 +111,12 @@ public void initialize(URI uri, Configuration conf) throws IOException {
    *******************************************************/
   class LocalFSFileInputStream extends FSInputStream implements HasFileDescriptor {
     private FileInputStream fis;
+    private final File file;
     private long position;
 
     public LocalFSFileInputStream(Path f) throws IOException {
-      fis = new FileInputStream(pathToFile(f));
+      file = pathToFile(f);
+      fis = new FileInputStream(file);
     }
     
     @Override
@@ -205,6 +213,91 @@ public long skip(long n) throws IOException {
     public FileDescriptor getFileDescriptor() throws IOException {
       return fis.getFD();
     }
+
+    /**
+     * Read the ranges with asynchronous NIO; the reads of all ranges are
+     * issued at once and the channel is closed when all of them completed.
+     */
+    @Override
+    public void readVectored(List<? extends FileRange> ranges,
+        IntFunction<ByteBuffer> allocate) throws IOException {
+      List<? extends FileRange> sorted =
+          VectoredReadUtils.validateAndSortRanges(ranges);
+      if (sorted.isEmpty()) {
+        return;
+      }
+      ByteBuffer[] buffers = new ByteBuffer[sorted.size()];
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = allocate.apply(sorted.get(i).getLength());
+        buffers[i].limit(buffers[i].position() + sorted.get(i).getLength());
+      }
+      final AsynchronousFileChannel channel = AsynchronousFileChannel.open(
+          file.toPath(), StandardOpenOption.READ);
+      CompletableFuture<?>[] results = new CompletableFuture<?>[buffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        FileRange range = sorted.get(i);
+        CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+        range.setData(result);
+        results[i] = result;
+        new AsyncRangeReader(channel, range.getOffset(), buffers[i], result)
+            .readNext();
+      }
+      CompletableFuture.allOf(results).whenComplete(
+          (v, t) -> IOUtils.cleanup(LOG, channel));
+    }
+  }
+
+  /**
+   * Keeps reading a range from an asynchronous channel until the buffer
+   * is full, then completes the future with the flipped buffer.
+   */
+  private final class AsyncRangeReader
+      implements CompletionHandler<Integer, Void> {
+    private final AsynchronousFileChannel channel;
+    private final long offset;
+    private final int start;
+    private final ByteBuffer buffer;
+    private final CompletableFuture<ByteBuffer> result;
+
+    private AsyncRangeReader(AsynchronousFileChannel channel, long offset,
+        ByteBuffer buffer, CompletableFuture<ByteBuffer> result) {
+      this.channel = channel;
+      this.offset = offset;
+      this.start = buffer.position();
+      this.buffer = buffer;
+      this.result = result;
+    }
+
+    private void readNext() {
+      if (!buffer.hasRemaining()) {
+        buffer.flip();
+        buffer.position(start);
+        result.complete(buffer);
+        return;
+      }
+      try {
+        channel.read(buffer, offset + buffer.position() - start, null, this);
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    }
+
+    @Override
+    public void completed(Integer bytesRead, Void attachment) {
+      if (bytesRead < 0) {
+        result.completeExceptionally(new EOFException(
+            FSExceptionMessages.EOF_IN_READ_FULLY + " at offset "
+                + (offset + buffer.position() - start)));
+        return;
+      }
+      statistics.incrementBytesRead(bytesRead);
+      readNext();
+    }
+
+    @Override
+    public void failed(Throwable exc, Void attachment) {
+      result.completeExceptionally(exc);
+    }
   }
   
   @Override
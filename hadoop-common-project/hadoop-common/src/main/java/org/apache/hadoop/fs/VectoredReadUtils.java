@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+import com.google.common.base.Preconditions;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Utility class which implements helper methods used
+ * in vectored IO implementation.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public final class VectoredReadUtils {
+
+  private static final int TMP_BUFFER_MAX_SIZE = 64 * 1024;
+
+  private VectoredReadUtils() {
+  }
+
+  /**
+   * Validate a list of ranges and return them sorted by offset.
+   * @param input input list of ranges
+   * @return a new list of the ranges, sorted by offset
+   * @throws IllegalArgumentException if a range is invalid or ranges overlap
+   */
+  public static List<? extends FileRange> validateAndSortRanges(
+      List<? extends FileRange> input) {
+    Preconditions.checkNotNull(input, "Null input list");
+    for (FileRange range : input) {
+      Preconditions.checkArgument(range.getOffset() >= 0,
+          "Invalid offset in %s", range);
+      Preconditions.checkArgument(range.getLength() >= 0,
+          "Invalid length in %s", range);
+    }
+    FileRange[] sorted = input.toArray(new FileRange[0]);
+    Arrays.sort(sorted, Comparator.comparingLong(FileRange::getOffset));
+    for (int i = 1; i < sorted.length; i++) {
+      FileRange prev = sorted[i - 1];
+      Preconditions.checkArgument(
+          prev.getOffset() + prev.getLength() <= sorted[i].getOffset(),
+          "Overlapping ranges %s and %s", prev, sorted[i]);
+    }
+    return Arrays.asList(sorted);
+  }
+
+  /**
+   * This is the default implementation which iterates through the ranges
+   * to read each synchronously, but the intent is that subclasses
+   * can make more efficient readers.
+   * The data or exceptions are pushed into {@link FileRange#getData()}.
+   * @param stream the stream to read the data from
+   * @param ranges the byte ranges to read
+   * @param allocate the byte buffer allocation
+   */
+  public static void readVectored(PositionedReadable stream,
+      List<? extends FileRange> ranges, IntFunction<ByteBuffer> allocate) {
+    for (FileRange range : ranges) {
+      range.setData(readRangeFrom(stream, range, allocate));
+    }
+  }
+
+  /**
+   * Synchronously reads a range from the stream dealing with the combinations
+   * of ByteBuffers buffers and PositionedReadable streams.
+   * @param stream the stream to read from
+   * @param range the range to read
+   * @param allocate the function to allocate ByteBuffers
+   * @return the CompletableFuture that contains the read data
+   */
+  public static CompletableFuture<ByteBuffer> readRangeFrom(
+      PositionedReadable stream, FileRange range,
+      IntFunction<ByteBuffer> allocate) {
+    CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+    try {
+      ByteBuffer buffer = allocate.apply(range.getLength());
+      readInto(stream, range.getOffset(), buffer, range.getLength());
+      result.complete(buffer);
+    } catch (IOException ioe) {
+      result.completeExceptionally(ioe);
+    }
+    return result;
+  }
+
+  /**
+   * Read exactly length bytes at the given offset of the stream into the
+   * buffer, which is flipped afterwards.
+   */
+  private static void readInto(PositionedReadable stream, long offset,
+      ByteBuffer buffer, int length) throws IOException {
+    if (buffer.hasArray()) {
+      stream.readFully(offset, buffer.array(),
+          buffer.arrayOffset() + buffer.position(), length);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] tmp = new byte[Math.min(length, TMP_BUFFER_MAX_SIZE)];
+      int done = 0;
+      while (done < length) {
+        int chunk = Math.min(tmp.length, length - done);
+        stream.readFully(offset + done, tmp, 0, chunk);
+        buffer.put(tmp, 0, chunk);
+        done += chunk;
+      }
+    }
+    buffer.flip();
+  }
+
+  /**
+   * Merge sorted ranges to optimize the access from the underlying file
+   * system. The minimumSeek allows ranges to be merged if they are
+   * separated by a small gap, and ranges are never merged across a multiple
+   * of chunkSize, so that a merged range stays within one block of the
+   * underlying file system.
+   * @param sortedRanges already sorted, disjoint ranges
+   * @param chunkSize the boundary a merged range must not cross
+   * @param minimumSeek the smallest gap that we should seek over in bytes
+   * @param maxSize the largest combined file range in bytes
+   * @return the list of sorted CombinedFileRanges that cover the input
+   */
+  public static List<CombinedFileRange> mergeSortedRanges(
+      List<? extends FileRange> sortedRanges, long chunkSize, int minimumSeek,
+      int maxSize) {
+    Preconditions.checkArgument(chunkSize > 0, "Invalid chunk size");
+    CombinedFileRange current = null;
+    List<CombinedFileRange> result = new ArrayList<>(sortedRanges.size());
+    for (FileRange range : sortedRanges) {
+      long start = range.getOffset();
+      long end = range.getOffset() + range.getLength();
+      if (current == null
+          || current.getOffset() / chunkSize != Math.max(start, end - 1)
+              / chunkSize
+          || !current.merge(start, end, range, minimumSeek, maxSize)) {
+        current = new CombinedFileRange(start, end, range);
+        result.add(current);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Slice the data that was read to the user's request.
+   * This function assumes that the user's request is completely subsumed by
+   * the read data.
+   * @param readData the buffer with the readData
+   * @param readOffset the offset in the file for the readData
+   * @param request the user's request
+   * @return the readData buffer that is sliced to the user's request
+   */
+  public static ByteBuffer sliceTo(ByteBuffer readData, long readOffset,
+      FileRange request) {
+    int offsetChange = (int) (request.getOffset() - readOffset);
+    int requestLength = request.getLength();
+    readData = readData.duplicate();
+    readData.position(offsetChange);
+    readData.limit(offsetChange + requestLength);
+    return readData.slice();
+  }
+
+  /**
+   * Read a combined range asynchronously on the given executor and complete
+   * the futures of all the ranges it was merged from. Each of those ranges
+   * gets its own buffer from the allocator.
+   * @param stream the stream to read the combined range from
+   * @param combined the combined range
+   * @param allocate the function to allocate the buffers handed to the caller
+   * @param executor the executor to run the read on
+   */
+  public static void readCombinedRangeAsync(PositionedReadable stream,
+      CombinedFileRange combined, IntFunction<ByteBuffer> allocate,
+      Executor executor) {
+    CompletableFuture<ByteBuffer> data = CompletableFuture.supplyAsync(() -> {
+      try {
+        ByteBuffer buffer = ByteBuffer.allocate(combined.getLength());
+        readInto(stream, combined.getOffset(), buffer, combined.getLength());
+        return buffer;
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }, executor);
+    completeUnderlying(combined, data, allocate);
+  }
+
+  /**
+   * Set the futures of the ranges a combined range was merged from, each
+   * completing with a copy of its slice of the combined data.
+   * An {@link UncheckedIOException} raised while reading the combined data
+   * is unwrapped, so the futures fail with the original IOException.
+   * @param combined the combined range
+   * @param data the future of the data of the combined range
+   * @param allocate the function to allocate the buffers handed to the caller
+   */
+  public static void completeUnderlying(CombinedFileRange combined,
+      CompletableFuture<ByteBuffer> data, IntFunction<ByteBuffer> allocate) {
+    for (FileRange child : combined.getUnderlying()) {
+      CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+      data.whenComplete((buffer, t) -> {
+        if (t != null) {
+          result.completeExceptionally(unwrap(t));
+          return;
+        }
+        try {
+          ByteBuffer slice = sliceTo(buffer, combined.getOffset(), child);
+          ByteBuffer copy = allocate.apply(child.getLength());
+          copy.put(slice);
+          copy.flip();
+          result.complete(copy);
+        } catch (RuntimeException e) {
+          result.completeExceptionally(e);
+        }
+      });
+      child.setData(result);
+    }
+  }
+
+  private static Throwable unwrap(Throwable t) {
+    while ((t instanceof CompletionException
+        || t instanceof UncheckedIOException) && t.getCause() != null) {
+      t = t.getCause();
+    }
+    return t;
+  }
+
+  /**
+   * Check that a range lies within a file of the given length.
+   * @param range the range to check
+   * @param fileLength the length of the file
+   * @throws EOFException if the range extends past the end of the file
+   */
+  public static void checkRangeInFile(FileRange range, long fileLength)
+      throws EOFException {
+    if (range.getOffset() + range.getLength() > fileLength) {
+      throw new EOFException("Requested " + range + " is beyond the end of"
+          + " the file of length " + fileLength);
+    }
+  }
+}
@@ -104,7 +104,8 @@ public String toString() {
   /** 
    * A Comparator optimized for BooleanWritable. 
    */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(BooleanWritable.class);
     }
@@ -114,6 +115,11 @@ public int compare(byte[] b1, int s1, int l1,
                        byte[] b2, int s2, int l2) {
       return compareBytes(b1, s1, l1, b2, s2, l2);
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      return readNormalizedKeyPrefix(b, s, l);
+    }
   }
 
 
@@ -78,7 +78,8 @@ public String toString() {
   }
 
   /** A Comparator optimized for ByteWritable. */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(ByteWritable.class);
     }
@@ -90,6 +91,12 @@ public int compare(byte[] b1, int s1, int l1,
       byte thatValue = b2[s2];
       return (thisValue < thatValue ? -1 : (thisValue == thatValue ? 0 : 1));
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      // flip the sign to order negative values first
+      return (long) ((b[s] & 0xFF) ^ 0x80) << 56;
+    }
   }
 
   static {                                        // register this comparator
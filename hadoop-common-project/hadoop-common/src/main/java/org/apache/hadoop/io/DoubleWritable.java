@@ -84,7 +84,8 @@ public String toString() {
   }
 
   /** A Comparator optimized for DoubleWritable. */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(DoubleWritable.class);
     }
@@ -96,6 +97,13 @@ public int compare(byte[] b1, int s1, int l1,
       double thatValue = readDouble(b2, s2);
       return Double.compare(thisValue, thatValue);
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      // the order of Double.compare: negative values have all bits flipped
+      long bits = Double.doubleToLongBits(readDouble(b, s));
+      return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
   }
 
   static {                                        // register this comparator
@@ -18,6 +18,8 @@
 package org.apache.hadoop.io;
 
 import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -45,7 +47,21 @@ public static int compareTo(byte[] b1, int s1, int l1, byte[] b2, int s2,
         b1, s1, l1, b2, s2, l2);
   }
 
-  
+  /**
+   * Lexicographically compare the bytes of two buffers at the given absolute
+   * positions, without changing the positions of the buffers. Direct buffers
+   * are compared in place, a long word at a time.
+   */
+  public static int compareTo(ByteBuffer b1, int s1, int l1, ByteBuffer b2,
+      int s2, int l2) {
+    if (b1.hasArray() && b2.hasArray()) {
+      return compareTo(b1.array(), b1.arrayOffset() + s1, l1,
+          b2.array(), b2.arrayOffset() + s2, l2);
+    }
+    return ByteBufferComparerHolder.BEST_COMPARER.compareTo(
+        b1, s1, l1, b2, s2, l2);
+  }
+
   private interface Comparer<T> {
     abstract public int compareTo(T buffer1, int offset1, int length1,
         T buffer2, int offset2, int length2);
@@ -194,11 +210,21 @@ public int compareTo(byte[] buffer1, int offset1, int length1,
             length1 == length2) {
           return 0;
         }
+        return compareTo(buffer1, BYTE_ARRAY_BASE_OFFSET + (long) offset1,
+            length1, buffer2, BYTE_ARRAY_BASE_OFFSET + (long) offset2,
+            length2);
+      }
+
+      /**
+       * Lexicographically compare two memory regions, which are either
+       * inside the given objects or, if an object is null, at an absolute
+       * address.
+       */
+      static int compareTo(Object base1, long address1, int length1,
+          Object base2, long address2, int length2) {
         final int stride = 8;
         int minLength = Math.min(length1, length2);
         int strideLimit = minLength & ~(stride - 1);
-        int offset1Adj = offset1 + BYTE_ARRAY_BASE_OFFSET;
-        int offset2Adj = offset2 + BYTE_ARRAY_BASE_OFFSET;
         int i;
 
         /*
@@ -207,8 +233,8 @@ public int compareTo(byte[] buffer1, int offset1, int length1,
          * On the other hand, it is substantially faster on 64-bit.
          */
         for (i = 0; i < strideLimit; i += stride) {
-          long lw = theUnsafe.getLong(buffer1, offset1Adj + (long) i);
-          long rw = theUnsafe.getLong(buffer2, offset2Adj + (long) i);
+          long lw = theUnsafe.getLong(base1, address1 + i);
+          long rw = theUnsafe.getLong(base2, address2 + i);
 
           if (lw != rw) {
             if (!littleEndian) {
@@ -232,8 +258,74 @@ public int compareTo(byte[] buffer1, int offset1, int length1,
         // The epilogue to cover the last (minLength % 8) elements.
         for (; i < minLength; i++) {
           int result = UnsignedBytes.compare(
-              buffer1[offset1 + i],
-              buffer2[offset2 + i]);
+              theUnsafe.getByte(base1, address1 + i),
+              theUnsafe.getByte(base2, address2 + i));
+          if (result != 0) {
+            return result;
+          }
+        }
+        return length1 - length2;
+      }
+    }
+  }
+
+  /**
+   * Provides a lexicographical comparer for buffers; one reading the memory
+   * of direct buffers with {@link Unsafe}, or a java implementation reading
+   * long words through the {@link ByteBuffer} methods.
+   */
+  private static class ByteBufferComparerHolder {
+    static final Comparer<ByteBuffer> BEST_COMPARER = getBestComparer();
+
+    static Comparer<ByteBuffer> getBestComparer() {
+      if (LexicographicalComparerHolder.BEST_COMPARER
+          instanceof LexicographicalComparerHolder.UnsafeComparer) {
+        try {
+          return new UnsafeByteBufferComparer();
+        } catch (Throwable t) {
+          if (LOG.isTraceEnabled()) {
+            LOG.trace(t.getMessage());
+            LOG.trace("Java buffer comparer selected");
+          }
+        }
+      }
+      return PureJavaByteBufferComparer.INSTANCE;
+    }
+
+    private enum PureJavaByteBufferComparer implements Comparer<ByteBuffer> {
+      INSTANCE;
+
+      @Override
+      public int compareTo(ByteBuffer buffer1, int offset1, int length1,
+          ByteBuffer buffer2, int offset2, int length2) {
+        if (buffer1 == buffer2 &&
+            offset1 == offset2 &&
+            length1 == length2) {
+          return 0;
+        }
+        final boolean bigEndian1 = buffer1.order() == ByteOrder.BIG_ENDIAN;
+        final boolean bigEndian2 = buffer2.order() == ByteOrder.BIG_ENDIAN;
+        int minLength = Math.min(length1, length2);
+        int strideLimit = minLength & ~7;
+        int i;
+        for (i = 0; i < strideLimit; i += 8) {
+          long lw = buffer1.getLong(offset1 + i);
+          long rw = buffer2.getLong(offset2 + i);
+          if (!bigEndian1) {
+            lw = Long.reverseBytes(lw);
+          }
+          if (!bigEndian2) {
+            rw = Long.reverseBytes(rw);
+          }
+          if (lw != rw) {
+            // big-endian words compare like their bytes when unsigned
+            return (lw + Long.MIN_VALUE) < (rw + Long.MIN_VALUE) ? -1 : 1;
+          }
+        }
+        for (; i < minLength; i++) {
+          int result = UnsignedBytes.compare(
+              buffer1.get(offset1 + i),
+              buffer2.get(offset2 + i));
           if (result != 0) {
             return result;
           }
@@ -241,5 +333,57 @@ public int compareTo(byte[] buffer1, int offset1, int length1,
         return length1 - length2;
       }
     }
+
+    /**
+     * Compares the memory of direct buffers, and of heap buffers through
+     * their arrays, with the unsafe array comparer.
+     */
+    private static final class UnsafeByteBufferComparer
+        implements Comparer<ByteBuffer> {
+      /** The offset of the native address field of direct buffers. */
+      private final long addressOffset;
+
+      UnsafeByteBufferComparer() throws NoSuchFieldException {
+        addressOffset = LexicographicalComparerHolder.UnsafeComparer.theUnsafe
+            .objectFieldOffset(Buffer.class.getDeclaredField("address"));
+      }
+
+      @Override
+      public int compareTo(ByteBuffer buffer1, int offset1, int length1,
+          ByteBuffer buffer2, int offset2, int length2) {
+        if (!(buffer1.isDirect() || buffer1.hasArray()) ||
+            !(buffer2.isDirect() || buffer2.hasArray())) {
+          // read-only heap buffers do not expose their arrays
+          return PureJavaByteBufferComparer.INSTANCE.compareTo(
+              buffer1, offset1, length1, buffer2, offset2, length2);
+        }
+        checkBounds(buffer1, offset1, length1);
+        checkBounds(buffer2, offset2, length2);
+        return LexicographicalComparerHolder.UnsafeComparer.compareTo(
+            base(buffer1), address(buffer1) + offset1, length1,
+            base(buffer2), address(buffer2) + offset2, length2);
+      }
+
+      private static void checkBounds(ByteBuffer buffer, int offset,
+          int length) {
+        if (offset < 0 || length < 0 || offset > buffer.limit() - length) {
+          throw new IndexOutOfBoundsException("offset " + offset +
+              ", length " + length + ", limit " + buffer.limit());
+        }
+      }
+
+      private static Object base(ByteBuffer buffer) {
+        return buffer.isDirect() ? null : buffer.array();
+      }
+
+      private long address(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+          return LexicographicalComparerHolder.UnsafeComparer.theUnsafe
+              .getLong(buffer, addressOffset);
+        }
+        return LexicographicalComparerHolder.UnsafeComparer
+            .BYTE_ARRAY_BASE_OFFSET + buffer.arrayOffset();
+      }
+    }
   }
 }
@@ -75,7 +75,8 @@ public String toString() {
   }
 
   /** A Comparator optimized for FloatWritable. */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(FloatWritable.class);
     }
@@ -86,6 +87,14 @@ public int compare(byte[] b1, int s1, int l1,
       float thatValue = readFloat(b2, s2);
       return Float.compare(thisValue, thatValue);
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      // the order of Float.compare: negative values have all bits flipped
+      int bits = Float.floatToIntBits(readFloat(b, s));
+      bits ^= (bits >> 31) | Integer.MIN_VALUE;
+      return (long) bits << 32;
+    }
   }
 
   static {                                        // register this comparator
@@ -80,7 +80,8 @@ public String toString() {
   }
 
   /** A Comparator optimized for IntWritable. */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(IntWritable.class);
     }
@@ -92,6 +93,12 @@ public int compare(byte[] b1, int s1, int l1,
       int thatValue = readInt(b2, s2);
       return (thisValue<thatValue ? -1 : (thisValue==thatValue ? 0 : 1));
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      // flip the sign to order negative values first
+      return (long) (readInt(b, s) ^ Integer.MIN_VALUE) << 32;
+    }
   }
 
   static {                                        // register this comparator
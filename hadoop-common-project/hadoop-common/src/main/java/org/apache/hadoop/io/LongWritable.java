@@ -80,7 +80,8 @@ public String toString() {
   }
 
   /** A Comparator optimized for LongWritable. */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(LongWritable.class);
     }
@@ -92,6 +93,12 @@ public int compare(byte[] b1, int s1, int l1,
       long thatValue = readLong(b2, s2);
       return (thisValue<thatValue ? -1 : (thisValue==thatValue ? 0 : 1));
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      // flip the sign to order negative values first
+      return readLong(b, s) ^ Long.MIN_VALUE;
+    }
   }
 
   /** A decreasing Comparator optimized for LongWritable. */ 
@@ -105,6 +112,11 @@ public int compare(WritableComparable a, WritableComparable b) {
     public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
       return super.compare(b2, s2, l2, b1, s1, l1);
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      return ~super.normalizedKeyPrefix(b, s, l);
+    }
   }
 
   static {                                       // register default comparator
@@ -195,7 +195,8 @@ public int compareTo(MD5Hash that) {
   }
 
   /** A WritableComparator optimized for MD5Hash keys. */
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(MD5Hash.class);
     }
@@ -205,6 +206,11 @@ public int compare(byte[] b1, int s1, int l1,
                        byte[] b2, int s2, int l2) {
       return compareBytes(b1, s1, MD5_LEN, b2, s2, MD5_LEN);
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      return readLong(b, s);
+    }
   }
 
   static {                                        // register this comparator
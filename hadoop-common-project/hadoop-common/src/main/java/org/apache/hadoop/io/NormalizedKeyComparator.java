@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io;
+
+import java.lang.reflect.Method;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A {@link RawComparator} which can map serialized keys to a normalized
+ * 8 byte prefix. A sorter can compare the prefixes first and only has to
+ * call {@link RawComparator#compare(byte[], int, int, byte[], int, int)}
+ * when they are equal.
+ *
+ * If the prefixes of two keys differ when compared as unsigned longs, the
+ * keys compare in the same order. Equal prefixes say nothing about the order
+ * of the keys.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface NormalizedKeyComparator {
+
+  /**
+   * Compute the normalized prefix of a serialized key.
+   *
+   * @param b the byte array holding the key
+   * @param s the start of the key in b
+   * @param l the length of the key
+   * @return the normalized prefix, to be compared as an unsigned long.
+   */
+  long normalizedKeyPrefix(byte[] b, int s, int l);
+
+  /**
+   * Get the normalized key comparator of a raw comparator. A subclass of a
+   * normalized key comparator which overrides its raw comparison but not its
+   * prefix is not one, since the inherited prefix does not necessarily
+   * follow the new order.
+   *
+   * @param comparator the raw comparator
+   * @return the comparator as a normalized key comparator, or null if it is
+   *         not one.
+   */
+  static NormalizedKeyComparator get(RawComparator<?> comparator) {
+    if (!(comparator instanceof NormalizedKeyComparator)) {
+      return null;
+    }
+    try {
+      Class<?> c = comparator.getClass();
+      Method compare = c.getMethod("compare", byte[].class, int.class,
+          int.class, byte[].class, int.class, int.class);
+      Method prefix = c.getMethod("normalizedKeyPrefix", byte[].class,
+          int.class, int.class);
+      if (!compare.getDeclaringClass().isAssignableFrom(
+          prefix.getDeclaringClass())) {
+        return null;
+      }
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    return (NormalizedKeyComparator) comparator;
+  }
+}
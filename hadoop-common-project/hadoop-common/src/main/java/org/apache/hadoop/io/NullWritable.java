@@ -55,7 +55,8 @@ public void readFields(DataInput in) throws IOException {}
   public void write(DataOutput out) throws IOException {}
 
   /** A Comparator &quot;optimized&quot; for NullWritable. */
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(NullWritable.class);
     }
@@ -70,6 +71,11 @@ public int compare(byte[] b1, int s1, int l1,
       assert 0 == l2;
       return 0;
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      return 0;
+    }
   }
 
   static {                                        // register this comparator
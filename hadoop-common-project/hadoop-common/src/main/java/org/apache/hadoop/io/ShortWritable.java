@@ -90,7 +90,8 @@ public String toString() {
   }
 
   /** A Comparator optimized for ShortWritable. */
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
 
     public Comparator() {
       super(ShortWritable.class);
@@ -102,6 +103,12 @@ public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
       short thatValue = (short) readUnsignedShort(b2, s2);
       return (thisValue < thatValue ? -1 : (thisValue == thatValue ? 0 : 1));
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      // flip the sign to order negative values first
+      return (long) (readUnsignedShort(b, s) ^ 0x8000) << 48;
+    }
   }
 
   static { // register this comparator
@@ -29,6 +29,7 @@
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.Arrays;
@@ -355,7 +356,8 @@ public int hashCode() {
   }
 
   /** A WritableComparator optimized for Text keys. */
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(Text.class);
     }
@@ -367,6 +369,12 @@ public int compare(byte[] b1, int s1, int l1,
       int n2 = WritableUtils.decodeVIntSize(b2[s2]);
       return compareBytes(b1, s1+n1, l1-n1, b2, s2+n2, l2-n2);
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      int n = WritableUtils.decodeVIntSize(b[s]);
+      return readNormalizedKeyPrefix(b, s + n, l - n);
+    }
   }
 
   static {
@@ -381,12 +389,12 @@ public int compare(byte[] b1, int s1, int l1,
    * replace by a default value.
    */
   public static String decode(byte[] utf8) throws CharacterCodingException {
-    return decode(ByteBuffer.wrap(utf8), true);
+    return decode(utf8, 0, utf8.length, true);
   }
   
   public static String decode(byte[] utf8, int start, int length) 
     throws CharacterCodingException {
-    return decode(ByteBuffer.wrap(utf8, start, length), true);
+    return decode(utf8, start, length, true);
   }
   
   /**
@@ -398,8 +406,29 @@ public static String decode(byte[] utf8, int start, int length)
    */
   public static String decode(byte[] utf8, int start, int length, boolean replace) 
     throws CharacterCodingException {
+    if (isAscii(utf8, start, length)) {
+      // ASCII is valid UTF-8 and maps byte by byte, skip the decoder
+      return new String(utf8, start, length, StandardCharsets.ISO_8859_1);
+    }
     return decode(ByteBuffer.wrap(utf8, start, length), replace);
   }
+
+  private static boolean isAscii(byte[] utf8, int start, int length) {
+    int end = start + length;
+    int i = start;
+    // check 8 bytes at a time for a set high bit
+    for (; i + 8 <= end; i += 8) {
+      if ((WritableComparator.readLong(utf8, i) & 0x8080808080808080L) != 0) {
+        return false;
+      }
+    }
+    for (; i < end; i++) {
+      if (utf8[i] < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
   
   private static String decode(ByteBuffer utf8, boolean replace) 
     throws CharacterCodingException {
@@ -192,7 +192,8 @@ public int hashCode() {
   }
 
   /** A WritableComparator optimized for UTF8 keys. */
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
     public Comparator() {
       super(UTF8.class);
     }
@@ -204,6 +205,11 @@ public int compare(byte[] b1, int s1, int l1,
       int n2 = readUnsignedShort(b2, s2);
       return compareBytes(b1, s1+2, n1, b2, s2+2, n2);
     }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      return readNormalizedKeyPrefix(b, s + 2, readUnsignedShort(b, s));
+    }
   }
 
   static {                                        // register this comparator
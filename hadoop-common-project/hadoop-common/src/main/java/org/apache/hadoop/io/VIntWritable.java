@@ -80,5 +80,37 @@ public String toString() {
     return Integer.toString(value);
   }
 
-}
+  /** A Comparator optimized for VIntWritable. */
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
+    public Comparator() {
+      super(VIntWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1,
+                       byte[] b2, int s2, int l2) {
+      int thisValue = readValue(b1, s1);
+      int thatValue = readValue(b2, s2);
+      return (thisValue < thatValue ? -1 : (thisValue == thatValue ? 0 : 1));
+    }
 
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      // flip the sign to order negative values first
+      return (long) (readValue(b, s) ^ Integer.MIN_VALUE) << 32;
+    }
+
+    private static int readValue(byte[] b, int s) {
+      try {
+        return readVInt(b, s);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  static {                                        // register this comparator
+    WritableComparator.define(VIntWritable.class, new Comparator());
+  }
+}
@@ -80,5 +80,37 @@ public String toString() {
     return Long.toString(value);
   }
 
-}
+  /** A Comparator optimized for VLongWritable. */
+  public static class Comparator extends WritableComparator
+      implements NormalizedKeyComparator {
+    public Comparator() {
+      super(VLongWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1,
+                       byte[] b2, int s2, int l2) {
+      long thisValue = readValue(b1, s1);
+      long thatValue = readValue(b2, s2);
+      return (thisValue < thatValue ? -1 : (thisValue == thatValue ? 0 : 1));
+    }
+
+    @Override
+    public long normalizedKeyPrefix(byte[] b, int s, int l) {
+      // flip the sign to order negative values first
+      return readValue(b, s) ^ Long.MIN_VALUE;
+    }
+
+    private static long readValue(byte[] b, int s) {
+      try {
+        return readVLong(b, s);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
 
+  static {                                        // register this comparator
+    WritableComparator.define(VLongWritable.class, new Comparator());
+  }
+}
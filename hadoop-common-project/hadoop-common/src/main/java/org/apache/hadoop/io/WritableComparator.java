@@ -20,6 +20,7 @@
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -188,6 +189,37 @@ public static int compareBytes(byte[] b1, int s1, int l1,
     return FastByteComparisons.compareTo(b1, s1, l1, b2, s2, l2);
   }
 
+  /**
+   * Lexicographic order of binary data in buffers, at the given absolute
+   * positions. The positions of the buffers are not changed.
+   */
+  public static int compareBytes(ByteBuffer b1, int s1, int l1,
+                                 ByteBuffer b2, int s2, int l2) {
+    return FastByteComparisons.compareTo(b1, s1, l1, b2, s2, l2);
+  }
+
+  /**
+   * Read the first 8 bytes of binary data as a big-endian long, padded with
+   * zeros if the data is shorter. These compare as unsigned longs like the
+   * data compares with {@link #compareBytes(byte[], int, int, byte[], int,
+   * int)}, unless they are equal.
+   * @see NormalizedKeyComparator
+   */
+  public static long readNormalizedKeyPrefix(byte[] bytes, int start,
+                                             int length) {
+    if (length >= 8) {
+      return readLong(bytes, start);
+    }
+    long prefix = 0;
+    for (int i = 0; i < 8; i++) {
+      prefix <<= 8;
+      if (i < length) {
+        prefix |= bytes[start + i] & 0xFF;
+      }
+    }
+    return prefix;
+  }
+
   /** Compute hash for binary data. */
   public static int hashBytes(byte[] bytes, int offset, int length) {
     int hash = 1;
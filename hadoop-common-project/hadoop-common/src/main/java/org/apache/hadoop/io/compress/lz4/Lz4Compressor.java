@@ -50,18 +50,25 @@ public class Lz4Compressor implements Compressor {
 
   private final boolean useLz4HC;
 
+  /** The java implementation used without the native hadoop library. */
+  private final PureJavaLz4 javaLz4;
+
+  private static boolean nativeLz4Loaded = false;
+
   static {
     if (NativeCodeLoader.isNativeCodeLoaded()) {
       // Initialize the native library
       try {
         initIDs();
+        nativeLz4Loaded = true;
       } catch (Throwable t) {
         // Ignore failure to load/initialize lz4
         LOG.warn(t.toString());
       }
-    } else {
-      LOG.error("Cannot load " + Lz4Compressor.class.getName() +
-          " without native hadoop library!");
+    }
+    if (!nativeLz4Loaded) {
+      LOG.info("Using the java implementation of " +
+          Lz4Compressor.class.getName() + " without native hadoop library");
     }
   }
 
@@ -75,6 +82,7 @@ public class Lz4Compressor implements Compressor {
   public Lz4Compressor(int directBufferSize, boolean useLz4HC) {
     this.useLz4HC = useLz4HC;
     this.directBufferSize = directBufferSize;
+    this.javaLz4 = nativeLz4Loaded ? null : new PureJavaLz4();
 
     uncompressedDirectBuf = ByteBuffer.allocateDirect(directBufferSize);
     compressedDirectBuf = ByteBuffer.allocateDirect(directBufferSize);
@@ -236,7 +244,7 @@ public synchronized int compress(byte[] b, int off, int len)
     }
 
     // Compress data
-    n = useLz4HC ? compressBytesDirectHC() : compressBytesDirect();
+    n = compressBytes();
     compressedDirectBuf.limit(n);
     uncompressedDirectBuf.clear(); // lz4 consumes all buffer input
 
@@ -302,6 +310,22 @@ public synchronized long getBytesWritten() {
   public synchronized void end() {
   }
 
+  /**
+   * Compress the uncompressed direct buffer into the compressed one, with
+   * the java implementation if the native one is not available.
+   */
+  private int compressBytes() {
+    if (javaLz4 == null) {
+      return useLz4HC ? compressBytesDirectHC() : compressBytesDirect();
+    }
+    // lz4hc is only available natively, fall back to the fast compressor
+    compressedDirectBuf.limit(directBufferSize);
+    int n = javaLz4.compress((ByteBuffer) uncompressedDirectBuf, 0,
+        uncompressedDirectBufLen, (ByteBuffer) compressedDirectBuf, 0);
+    uncompressedDirectBufLen = 0;
+    return n;
+  }
+
   private native static void initIDs();
 
   private native int compressBytesDirect();
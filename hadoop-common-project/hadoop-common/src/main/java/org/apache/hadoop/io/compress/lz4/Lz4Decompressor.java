@@ -23,6 +23,7 @@
 import java.nio.ByteBuffer;
 
 import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.DirectDecompressor;
 import org.apache.hadoop.util.NativeCodeLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,18 +45,22 @@ public class Lz4Decompressor implements Decompressor {
   private int userBufOff = 0, userBufLen = 0;
   private boolean finished;
 
+  private static boolean nativeLz4Loaded = false;
+
   static {
     if (NativeCodeLoader.isNativeCodeLoaded()) {
       // Initialize the native library
       try {
         initIDs();
+        nativeLz4Loaded = true;
       } catch (Throwable t) {
         // Ignore failure to load/initialize lz4
         LOG.warn(t.toString());
       }
-    } else {
-      LOG.error("Cannot load " + Lz4Compressor.class.getName() +
-          " without native hadoop library!");
+    }
+    if (!nativeLz4Loaded) {
+      LOG.info("Using the java implementation of " +
+          Lz4Decompressor.class.getName() + " without native hadoop library");
     }
   }
 
@@ -228,7 +233,7 @@ public synchronized int decompress(byte[] b, int off, int len)
       uncompressedDirectBuf.limit(directBufferSize);
 
       // Decompress data
-      n = decompressBytesDirect();
+      n = decompressBytes();
       uncompressedDirectBuf.limit(n);
 
       if (userBufLen <= 0) {
@@ -272,7 +277,97 @@ public synchronized void end() {
     // do nothing
   }
 
+  /**
+   * Decompress the compressed direct buffer into the uncompressed one, with
+   * the java implementation if the native one is not available.
+   */
+  private int decompressBytes() throws IOException {
+    if (nativeLz4Loaded) {
+      return decompressBytesDirect();
+    }
+    int n = PureJavaLz4.decompress((ByteBuffer) compressedDirectBuf, 0,
+        compressedDirectBufLen, (ByteBuffer) uncompressedDirectBuf, 0,
+        directBufferSize);
+    compressedDirectBufLen = 0;
+    return n;
+  }
+
   private native static void initIDs();
 
   private native int decompressBytesDirect();
+
+  int decompressDirect(ByteBuffer src, ByteBuffer dst) throws IOException {
+    assert (this instanceof Lz4DirectDecompressor);
+
+    ByteBuffer presliced = dst;
+    if (dst.position() > 0) {
+      presliced = dst;
+      dst = dst.slice();
+    }
+
+    Buffer originalCompressed = compressedDirectBuf;
+    Buffer originalUncompressed = uncompressedDirectBuf;
+    int originalBufferSize = directBufferSize;
+    compressedDirectBuf = src.slice();
+    compressedDirectBufLen = src.remaining();
+    uncompressedDirectBuf = dst;
+    directBufferSize = dst.remaining();
+    int n = 0;
+    try {
+      n = decompressBytes();
+      presliced.position(presliced.position() + n);
+      // LZ4 always consumes the whole buffer or throws an exception
+      src.position(src.limit());
+      finished = true;
+    } finally {
+      compressedDirectBuf = originalCompressed;
+      uncompressedDirectBuf = originalUncompressed;
+      compressedDirectBufLen = 0;
+      directBufferSize = originalBufferSize;
+    }
+    return n;
+  }
+
+  /**
+   * A {@link DirectDecompressor} for lz4 blocks, which decompresses a whole
+   * block from one direct buffer into another without copying.
+   */
+  public static class Lz4DirectDecompressor extends Lz4Decompressor
+      implements DirectDecompressor {
+
+    private boolean endOfInput;
+
+    @Override
+    public synchronized boolean finished() {
+      return (endOfInput && super.finished());
+    }
+
+    @Override
+    public synchronized void reset() {
+      super.reset();
+      endOfInput = true;
+    }
+
+    @Override
+    public synchronized void decompress(ByteBuffer src, ByteBuffer dst)
+        throws IOException {
+      assert dst.isDirect() : "dst.isDirect()";
+      assert src.isDirect() : "src.isDirect()";
+      assert dst.remaining() > 0 : "dst.remaining() > 0";
+      this.decompressDirect(src, dst);
+      endOfInput = !src.hasRemaining();
+    }
+
+    @Override
+    public synchronized void setDictionary(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectDecompressor");
+    }
+
+    @Override
+    public synchronized int decompress(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectDecompressor");
+    }
+  }
 }
@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.compress.lz4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A pure-java implementation of the LZ4 block format, used by
+ * {@link Lz4Compressor} and {@link Lz4Decompressor} when the native hadoop
+ * library is not available. The output is compatible with the native
+ * library, but is not compressed as well as with LZ4HC.
+ *
+ * Both directions work on absolute positions of the given buffers, so that
+ * the direct buffers of the compressor and decompressor are used in place.
+ */
+final class PureJavaLz4 {
+  private static final int MIN_MATCH = 4;
+  /** The last literals of a block which can not be part of a match. */
+  private static final int LAST_LITERALS = 5;
+  /** The last bytes of a block at which no match may start. */
+  private static final int MF_LIMIT = 12;
+  private static final int MAX_DISTANCE = 65535;
+  private static final int RUN_MASK = 15;
+  private static final int ML_MASK = 15;
+  private static final int HASH_LOG = 12;
+  /** Misses after which the search step grows, to skip incompressible data. */
+  private static final int SKIP_TRIGGER = 6;
+
+  /** Positions of recently seen 4 byte sequences, by hash. */
+  private final int[] table = new int[1 << HASH_LOG];
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  /**
+   * @return the largest compressed size of the given number of bytes.
+   */
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * Compress a block.
+   *
+   * @param src the buffer to compress from
+   * @param srcOff the position of the bytes to compress in src
+   * @param srcLen the number of bytes to compress
+   * @param dst the buffer to compress to, with room for
+   *            {@link #maxCompressedLength(int)} bytes
+   * @param dstOff the position to compress to in dst
+   * @return the compressed size.
+   */
+  int compress(ByteBuffer src, int srcOff, int srcLen, ByteBuffer dst,
+      int dstOff) {
+    final int srcEnd = srcOff + srcLen;
+    final int matchLimit = srcEnd - LAST_LITERALS;
+    final int mfLimit = srcEnd - MF_LIMIT;
+    int anchor = srcOff;
+    int d = dstOff;
+
+    if (srcLen > MF_LIMIT) {
+      Arrays.fill(table, -1);
+      int s = srcOff;
+      int misses = 0;
+      while (s < mfLimit) {
+        final int sequence = src.getInt(s);
+        final int h = hash(sequence);
+        int ref = table[h];
+        table[h] = s;
+        if (ref < 0 || s - ref > MAX_DISTANCE ||
+            src.getInt(ref) != sequence) {
+          s += 1 + (misses++ >>> SKIP_TRIGGER);
+          continue;
+        }
+        misses = 0;
+
+        // extend the match backwards into the pending literals
+        while (s > anchor && ref > srcOff &&
+            src.get(s - 1) == src.get(ref - 1)) {
+          s--;
+          ref--;
+        }
+        int matchLen = MIN_MATCH;
+        while (s + matchLen < matchLimit &&
+            src.get(s + matchLen) == src.get(ref + matchLen)) {
+          matchLen++;
+        }
+
+        d = writeSequence(src, anchor, s - anchor, dst, d, s - ref,
+            matchLen);
+        s += matchLen;
+        anchor = s;
+      }
+    }
+
+    // the remaining bytes are literals
+    final int literals = srcEnd - anchor;
+    int token = d++;
+    d = writeLength(dst, d, literals, token, 4);
+    copy(src, anchor, dst, d, literals);
+    return d + literals - dstOff;
+  }
+
+  private static int writeSequence(ByteBuffer src, int literalOff,
+      int literals, ByteBuffer dst, int d, int offset, int matchLen) {
+    final int token = d++;
+    d = writeLength(dst, d, literals, token, 4);
+    copy(src, literalOff, dst, d, literals);
+    d += literals;
+    dst.put(d++, (byte) offset);
+    dst.put(d++, (byte) (offset >>> 8));
+    return writeLength(dst, d, matchLen - MIN_MATCH, token, 0);
+  }
+
+  /**
+   * Write a length into the token at the given shift, followed by the bytes
+   * of the length which do not fit into the token.
+   * @return the position after the written bytes.
+   */
+  private static int writeLength(ByteBuffer dst, int d, int length,
+      int token, int shift) {
+    final byte old = shift == 0 ? dst.get(token) : 0;
+    if (length < RUN_MASK) {
+      dst.put(token, (byte) (old | (length << shift)));
+      return d;
+    }
+    dst.put(token, (byte) (old | (RUN_MASK << shift)));
+    length -= RUN_MASK;
+    for (; length >= 255; length -= 255) {
+      dst.put(d++, (byte) 255);
+    }
+    dst.put(d++, (byte) length);
+    return d;
+  }
+
+  private static void copy(ByteBuffer src, int srcOff, ByteBuffer dst,
+      int dstOff, int length) {
+    if (length < 16) {
+      for (int i = 0; i < length; i++) {
+        dst.put(dstOff + i, src.get(srcOff + i));
+      }
+      return;
+    }
+    ByteBuffer from = src.duplicate();
+    from.limit(srcOff + length).position(srcOff);
+    ByteBuffer to = dst.duplicate();
+    to.position(dstOff);
+    to.put(from);
+  }
+
+  /**
+   * Decompress a block.
+   *
+   * @param src the buffer to decompress from
+   * @param srcOff the position of the compressed block in src
+   * @param srcLen the size of the compressed block
+   * @param dst the buffer to decompress to
+   * @param dstOff the position to decompress to in dst
+   * @param dstLen the room for decompressed bytes in dst
+   * @return the decompressed size.
+   * @throws IOException if the block is corrupt or does not fit into dst.
+   */
+  static int decompress(ByteBuffer src, int srcOff, int srcLen,
+      ByteBuffer dst, int dstOff, int dstLen) throws IOException {
+    final int srcEnd = srcOff + srcLen;
+    final int dstEnd = dstOff + dstLen;
+    int s = srcOff;
+    int d = dstOff;
+    try {
+      while (s < srcEnd) {
+        final int token = src.get(s++) & 0xFF;
+        int literals = token >>> 4;
+        if (literals == RUN_MASK) {
+          int b;
+          do {
+            b = src.get(s++) & 0xFF;
+            literals += b;
+          } while (b == 255);
+        }
+        if (literals > srcEnd - s || literals > dstEnd - d) {
+          throw new IOException("Corrupt LZ4 block: literals out of bounds");
+        }
+        copy(src, s, dst, d, literals);
+        s += literals;
+        d += literals;
+        if (s == srcEnd) {
+          // the last sequence has no match
+          break;
+        }
+
+        final int offset =
+            (src.get(s) & 0xFF) | ((src.get(s + 1) & 0xFF) << 8);
+        s += 2;
+        if (offset == 0 || offset > d - dstOff) {
+          throw new IOException("Corrupt LZ4 block: bad offset " + offset);
+        }
+        int matchLen = token & ML_MASK;
+        if (matchLen == ML_MASK) {
+          int b;
+          do {
+            b = src.get(s++) & 0xFF;
+            matchLen += b;
+          } while (b == 255);
+        }
+        matchLen += MIN_MATCH;
+        if (matchLen > dstEnd - d) {
+          throw new IOException("Corrupt LZ4 block: match out of bounds");
+        }
+        if (offset >= matchLen) {
+          copy(dst, d - offset, dst, d, matchLen);
+        } else {
+          // overlapping match, repeats the last offset bytes
+          for (int i = 0; i < matchLen; i++) {
+            dst.put(d + i, dst.get(d - offset + i));
+          }
+        }
+        d += matchLen;
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Corrupt LZ4 block: truncated", e);
+    }
+    return d - dstOff;
+  }
+}
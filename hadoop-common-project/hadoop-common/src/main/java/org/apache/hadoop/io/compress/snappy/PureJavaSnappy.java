@@ -0,0 +1,286 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.compress.snappy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A pure-java implementation of the snappy raw format, used by
+ * {@link SnappyCompressor} and {@link SnappyDecompressor} when the native
+ * hadoop library is not available. The output can be read by the native
+ * library and the other way round.
+ *
+ * Both directions work on absolute positions of the given buffers, so that
+ * the direct buffers of the compressor and decompressor are used in place.
+ */
+final class PureJavaSnappy {
+  private static final int TAG_LITERAL = 0;
+  private static final int TAG_COPY_1 = 1;
+  private static final int TAG_COPY_2 = 2;
+
+  private static final int MIN_MATCH = 4;
+  /** The longest copy which can be encoded with a 2 byte offset. */
+  private static final int MAX_COPY = 64;
+  private static final int MAX_DISTANCE = 65535;
+  /** The last bytes of a block at which no match may start. */
+  private static final int INPUT_MARGIN = 15;
+  private static final int HASH_LOG = 14;
+  /** Misses after which the search step grows, to skip incompressible data. */
+  private static final int SKIP_TRIGGER = 5;
+
+  /** Positions of recently seen 4 byte sequences, by hash. */
+  private final int[] table = new int[1 << HASH_LOG];
+
+  private static int hash(int sequence) {
+    return (sequence * 0x1e35a7bd) >>> (32 - HASH_LOG);
+  }
+
+  /**
+   * @return the largest compressed size of the given number of bytes.
+   */
+  static int maxCompressedLength(int length) {
+    return 32 + length + length / 6;
+  }
+
+  /**
+   * Compress a block.
+   *
+   * @param src the buffer to compress from
+   * @param srcOff the position of the bytes to compress in src
+   * @param srcLen the number of bytes to compress
+   * @param dst the buffer to compress to, with room for
+   *            {@link #maxCompressedLength(int)} bytes
+   * @param dstOff the position to compress to in dst
+   * @return the compressed size.
+   */
+  int compress(ByteBuffer src, int srcOff, int srcLen, ByteBuffer dst,
+      int dstOff) {
+    int d = writeVarint(dst, dstOff, srcLen);
+    final int srcEnd = srcOff + srcLen;
+    final int mfLimit = srcEnd - INPUT_MARGIN;
+    int anchor = srcOff;
+
+    if (srcLen > INPUT_MARGIN) {
+      Arrays.fill(table, -1);
+      int s = srcOff;
+      int misses = 0;
+      while (s < mfLimit) {
+        final int sequence = src.getInt(s);
+        final int h = hash(sequence);
+        final int ref = table[h];
+        table[h] = s;
+        if (ref < 0 || s - ref > MAX_DISTANCE ||
+            src.getInt(ref) != sequence) {
+          s += 1 + (misses++ >>> SKIP_TRIGGER);
+          continue;
+        }
+        misses = 0;
+
+        int matchLen = MIN_MATCH;
+        while (s + matchLen < srcEnd &&
+            src.get(s + matchLen) == src.get(ref + matchLen)) {
+          matchLen++;
+        }
+        d = writeLiteral(src, anchor, s - anchor, dst, d);
+        d = writeCopies(dst, d, s - ref, matchLen);
+        s += matchLen;
+        anchor = s;
+      }
+    }
+
+    d = writeLiteral(src, anchor, srcEnd - anchor, dst, d);
+    return d - dstOff;
+  }
+
+  private static int writeVarint(ByteBuffer dst, int d, int value) {
+    while ((value & ~0x7F) != 0) {
+      dst.put(d++, (byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    dst.put(d++, (byte) value);
+    return d;
+  }
+
+  private static int writeLiteral(ByteBuffer src, int srcOff, int length,
+      ByteBuffer dst, int d) {
+    if (length == 0) {
+      return d;
+    }
+    final int n = length - 1;
+    if (n < 60) {
+      dst.put(d++, (byte) (TAG_LITERAL | (n << 2)));
+    } else {
+      final int bytes = n < (1 << 8) ? 1 : n < (1 << 16) ? 2
+          : n < (1 << 24) ? 3 : 4;
+      dst.put(d++, (byte) (TAG_LITERAL | ((59 + bytes) << 2)));
+      for (int i = 0; i < bytes; i++) {
+        dst.put(d++, (byte) (n >>> (8 * i)));
+      }
+    }
+    copy(src, srcOff, dst, d, length);
+    return d + length;
+  }
+
+  private static int writeCopies(ByteBuffer dst, int d, int offset,
+      int length) {
+    // keep at least MIN_MATCH bytes for the last copy
+    while (length >= MAX_COPY + MIN_MATCH) {
+      d = writeCopy(dst, d, offset, MAX_COPY);
+      length -= MAX_COPY;
+    }
+    if (length > MAX_COPY) {
+      d = writeCopy(dst, d, offset, MAX_COPY - MIN_MATCH);
+      length -= MAX_COPY - MIN_MATCH;
+    }
+    return writeCopy(dst, d, offset, length);
+  }
+
+  private static int writeCopy(ByteBuffer dst, int d, int offset,
+      int length) {
+    if (length < 12 && offset < 2048) {
+      dst.put(d++, (byte) (TAG_COPY_1 | ((length - 4) << 2) |
+          ((offset >>> 8) << 5)));
+      dst.put(d++, (byte) offset);
+    } else {
+      dst.put(d++, (byte) (TAG_COPY_2 | ((length - 1) << 2)));
+      dst.put(d++, (byte) offset);
+      dst.put(d++, (byte) (offset >>> 8));
+    }
+    return d;
+  }
+
+  private static void copy(ByteBuffer src, int srcOff, ByteBuffer dst,
+      int dstOff, int length) {
+    if (length < 16) {
+      for (int i = 0; i < length; i++) {
+        dst.put(dstOff + i, src.get(srcOff + i));
+      }
+      return;
+    }
+    ByteBuffer from = src.duplicate();
+    from.limit(srcOff + length).position(srcOff);
+    ByteBuffer to = dst.duplicate();
+    to.position(dstOff);
+    to.put(from);
+  }
+
+  /**
+   * Decompress a block.
+   *
+   * @param src the buffer to decompress from
+   * @param srcOff the position of the compressed block in src
+   * @param srcLen the size of the compressed block
+   * @param dst the buffer to decompress to
+   * @param dstOff the position to decompress to in dst
+   * @param dstLen the room for decompressed bytes in dst
+   * @return the decompressed size.
+   * @throws IOException if the block is corrupt or does not fit into dst.
+   */
+  static int decompress(ByteBuffer src, int srcOff, int srcLen,
+      ByteBuffer dst, int dstOff, int dstLen) throws IOException {
+    final int srcEnd = srcOff + srcLen;
+    int s = srcOff;
+    try {
+      // the uncompressed length as a varint
+      long length = 0;
+      for (int shift = 0;; shift += 7) {
+        final int b = src.get(s++) & 0xFF;
+        length |= (long) (b & 0x7F) << shift;
+        if (b < 0x80) {
+          break;
+        }
+        if (shift >= 28) {
+          throw new IOException("Corrupt snappy block: bad length");
+        }
+      }
+      if (length > dstLen) {
+        throw new IOException("Could not decompress data. " +
+            "Buffer length is too small.");
+      }
+      final int dstEnd = dstOff + (int) length;
+
+      int d = dstOff;
+      while (s < srcEnd) {
+        final int tag = src.get(s++) & 0xFF;
+        int len;
+        int offset;
+        switch (tag & 3) {
+        case TAG_LITERAL:
+          len = tag >>> 2;
+          if (len >= 60) {
+            final int bytes = len - 59;
+            len = 0;
+            for (int i = 0; i < bytes; i++) {
+              len |= (src.get(s++) & 0xFF) << (8 * i);
+            }
+          }
+          len++;
+          if (len <= 0 || len > srcEnd - s || len > dstEnd - d) {
+            throw new IOException(
+                "Corrupt snappy block: literal out of bounds");
+          }
+          copy(src, s, dst, d, len);
+          s += len;
+          d += len;
+          continue;
+        case TAG_COPY_1:
+          len = 4 + ((tag >>> 2) & 7);
+          offset = ((tag >>> 5) << 8) | (src.get(s++) & 0xFF);
+          break;
+        case TAG_COPY_2:
+          len = 1 + (tag >>> 2);
+          offset = (src.get(s) & 0xFF) | ((src.get(s + 1) & 0xFF) << 8);
+          s += 2;
+          break;
+        default:
+          // copy with a 4 byte offset
+          len = 1 + (tag >>> 2);
+          offset = (src.get(s) & 0xFF) | ((src.get(s + 1) & 0xFF) << 8) |
+              ((src.get(s + 2) & 0xFF) << 16) |
+              ((src.get(s + 3) & 0xFF) << 24);
+          s += 4;
+          break;
+        }
+        if (s > srcEnd) {
+          throw new IOException("Corrupt snappy block: truncated");
+        }
+        if (offset <= 0 || offset > d - dstOff || len > dstEnd - d) {
+          throw new IOException("Corrupt snappy block: copy out of bounds");
+        }
+        if (offset >= len) {
+          copy(dst, d - offset, dst, d, len);
+        } else {
+          // overlapping copy, repeats the last offset bytes
+          for (int i = 0; i < len; i++) {
+            dst.put(d + i, dst.get(d - offset + i));
+          }
+        }
+        d += len;
+      }
+      if (d != dstEnd) {
+        throw new IOException("Corrupt snappy block: expected " + length +
+            " bytes but got " + (d - dstOff));
+      }
+      return d - dstOff;
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Corrupt snappy block: truncated", e);
+    }
+  }
+}
@@ -48,6 +48,9 @@ public class SnappyCompressor implements Compressor {
   private long bytesRead = 0L;
   private long bytesWritten = 0L;
 
+  /** The java implementation used without the native hadoop library. */
+  private final PureJavaSnappy javaSnappy;
+
   private static boolean nativeSnappyLoaded = false;
   
   static {
@@ -73,6 +76,7 @@ public static boolean isNativeCodeLoaded() {
    */
   public SnappyCompressor(int directBufferSize) {
     this.directBufferSize = directBufferSize;
+    this.javaSnappy = nativeSnappyLoaded ? null : new PureJavaSnappy();
 
     uncompressedDirectBuf = ByteBuffer.allocateDirect(directBufferSize);
     compressedDirectBuf = ByteBuffer.allocateDirect(directBufferSize);
@@ -225,7 +229,7 @@ public int compress(byte[] b, int off, int len)
     }
 
     // Compress data
-    n = compressBytesDirect();
+    n = compressBytes();
     compressedDirectBuf.limit(n);
     uncompressedDirectBuf.clear(); // snappy consumes all buffer input
 
@@ -291,6 +295,21 @@ public long getBytesWritten() {
   public void end() {
   }
 
+  /**
+   * Compress the uncompressed direct buffer into the compressed one, with
+   * the java implementation if the native one is not available.
+   */
+  private int compressBytes() {
+    if (javaSnappy == null) {
+      return compressBytesDirect();
+    }
+    compressedDirectBuf.limit(directBufferSize);
+    int n = javaSnappy.compress((ByteBuffer) uncompressedDirectBuf, 0,
+        uncompressedDirectBufLen, (ByteBuffer) compressedDirectBuf, 0);
+    uncompressedDirectBufLen = 0;
+    return n;
+  }
+
   private native static void initIDs();
 
   private native int compressBytesDirect();
@@ -232,7 +232,7 @@ public int decompress(byte[] b, int off, int len)
       uncompressedDirectBuf.limit(directBufferSize);
 
       // Decompress data
-      n = decompressBytesDirect();
+      n = decompressBytes();
       uncompressedDirectBuf.limit(n);
 
       if (userBufLen <= 0) {
@@ -276,6 +276,21 @@ public void end() {
     // do nothing
   }
 
+  /**
+   * Decompress the compressed direct buffer into the uncompressed one, with
+   * the java implementation if the native one is not available.
+   */
+  private int decompressBytes() throws IOException {
+    if (nativeSnappyLoaded) {
+      return decompressBytesDirect();
+    }
+    int n = PureJavaSnappy.decompress((ByteBuffer) compressedDirectBuf, 0,
+        compressedDirectBufLen, (ByteBuffer) uncompressedDirectBuf, 0,
+        directBufferSize);
+    compressedDirectBufLen = 0;
+    return n;
+  }
+
   private native static void initIDs();
 
   private native int decompressBytesDirect();
@@ -298,7 +313,7 @@ int decompressDirect(ByteBuffer src, ByteBuffer dst) throws IOException {
     directBufferSize = dst.remaining();
     int n = 0;
     try {
-      n = decompressBytesDirect();
+      n = decompressBytes();
       presliced.position(presliced.position() + n);
       // SNAPPY always consumes the whole buffer or throws an exception
       src.position(src.limit());
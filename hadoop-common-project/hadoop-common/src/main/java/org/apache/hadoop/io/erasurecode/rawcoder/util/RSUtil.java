@@ -30,6 +30,13 @@ public final class RSUtil {
 
   private RSUtil(){}
 
+  /**
+   * Number of bytes of every input and output processed together by the
+   * blocked kernels, chosen so that one block of all the units fits in the
+   * L1 data cache.
+   */
+  public static final int ENCODE_BLOCK_SIZE = 4096;
+
   // We always use the byte system (with symbol size 8, field size 256,
   // primitive polynomial 285, and primitive root 2).
   public static GaloisField GF = GaloisField.getInstance();
@@ -184,4 +191,97 @@ public static void encodeData(byte[] gfTables, ByteBuffer[] inputs,
     }
   }
 
+  /**
+   * Same as {@link #encodeData(byte[], int, byte[][], int[], byte[][], int[])}
+   * but cache blocked: the units are walked in blocks of
+   * {@link #ENCODE_BLOCK_SIZE} bytes, and every output block is computed
+   * from all the inputs before moving on. The first input assigns the output,
+   * so the outputs do not need to be zeroed, and each output block stays in
+   * the cache while it is accumulated.
+   */
+  public static void encodeDataBlocked(byte[] gfTables, int dataLen,
+      byte[][] inputs, int[] inputOffsets, byte[][] outputs,
+      int[] outputOffsets) {
+    final int numInputs = inputs.length;
+    final int numOutputs = outputs.length;
+    final byte[][] tableLines = getTableLines(gfTables, numInputs, numOutputs);
+
+    for (int start = 0; start < dataLen; start += ENCODE_BLOCK_SIZE) {
+      final int len = Math.min(ENCODE_BLOCK_SIZE, dataLen - start);
+      for (int l = 0; l < numOutputs; l++) {
+        final byte[] output = outputs[l];
+        final int oStart = outputOffsets[l] + start;
+        final int oEnd = oStart + len;
+
+        byte[] tableLine = tableLines[l * numInputs];
+        byte[] input = inputs[0];
+        int iPos = inputOffsets[0] + start;
+        for (int oPos = oStart; oPos < oEnd; oPos++, iPos++) {
+          output[oPos] = tableLine[0xff & input[iPos]];
+        }
+
+        for (int j = 1; j < numInputs; j++) {
+          tableLine = tableLines[l * numInputs + j];
+          input = inputs[j];
+          iPos = inputOffsets[j] + start;
+          for (int oPos = oStart; oPos < oEnd; oPos++, iPos++) {
+            output[oPos] ^= tableLine[0xff & input[iPos]];
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * See above. Try to use the byte[] version when possible.
+   */
+  public static void encodeDataBlocked(byte[] gfTables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    final int numInputs = inputs.length;
+    final int numOutputs = outputs.length;
+    final int dataLen = inputs[0].remaining();
+    final byte[][] tableLines = getTableLines(gfTables, numInputs, numOutputs);
+
+    for (int start = 0; start < dataLen; start += ENCODE_BLOCK_SIZE) {
+      final int len = Math.min(ENCODE_BLOCK_SIZE, dataLen - start);
+      for (int l = 0; l < numOutputs; l++) {
+        final ByteBuffer output = outputs[l];
+        final int oStart = output.position() + start;
+        final int oEnd = oStart + len;
+
+        byte[] tableLine = tableLines[l * numInputs];
+        ByteBuffer input = inputs[0];
+        int iPos = input.position() + start;
+        for (int oPos = oStart; oPos < oEnd; oPos++, iPos++) {
+          output.put(oPos, tableLine[0xff & input.get(iPos)]);
+        }
+
+        for (int j = 1; j < numInputs; j++) {
+          tableLine = tableLines[l * numInputs + j];
+          input = inputs[j];
+          iPos = input.position() + start;
+          for (int oPos = oStart; oPos < oEnd; oPos++, iPos++) {
+            output.put(oPos, (byte) (output.get(oPos) ^
+                tableLine[0xff & input.get(iPos)]));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the multiplication table line of every coding coefficient,
+   *         indexed by output * numInputs + input.
+   */
+  private static byte[][] getTableLines(byte[] gfTables, int numInputs,
+      int numOutputs) {
+    final byte[][] tableLines = new byte[numInputs * numOutputs][];
+    for (int l = 0; l < numOutputs; l++) {
+      for (int j = 0; j < numInputs; j++) {
+        byte s = gfTables[j * 32 + l * numInputs * 32 + 1];
+        tableLines[l * numInputs + j] = GF256.gfMulTab()[s & 0xff];
+      }
+    }
+    return tableLines;
+  }
 }
@@ -29,9 +29,12 @@
 import org.slf4j.LoggerFactory;
 
 import java.io.InterruptedIOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -48,6 +51,8 @@ public class AsyncCallHandler {
       LOWER_LAYER_ASYNC_RETURN = new ThreadLocal<>();
   private static final ThreadLocal<AsyncGet<Object, Throwable>>
       ASYNC_RETURN = new ThreadLocal<>();
+  private static final ThreadLocal<CompletableFuture<Object>>
+      ASYNC_RETURN_FUTURE = new ThreadLocal<>();
 
   /** @return the async return value from {@link AsyncCallHandler}. */
   @InterfaceStability.Unstable
@@ -56,12 +61,47 @@ public static <R, T extends  Throwable> AsyncGet<R, T> getAsyncReturn() {
     final AsyncGet<R, T> asyncGet = (AsyncGet<R, T>)ASYNC_RETURN.get();
     if (asyncGet != null) {
       ASYNC_RETURN.set(null);
+      ASYNC_RETURN_FUTURE.set(null);
       return asyncGet;
     } else {
       return (AsyncGet<R, T>) getLowerLayerAsyncReturn();
     }
   }
 
+  /**
+   * Get the async return value from {@link AsyncCallHandler} as a
+   * {@link CompletableFuture}. The future is completed by the thread
+   * processing the async calls, so no thread is blocked while the call is in
+   * progress. Dependent actions which may block should therefore be run with
+   * an executor.
+   *
+   * This is only available for calls made through a retry proxy.
+   *
+   * @return the future of the async call made last by the current thread.
+   */
+  @InterfaceStability.Unstable
+  @SuppressWarnings("unchecked")
+  public static <R> CompletableFuture<R> getAsyncReturnFuture() {
+    final CompletableFuture<Object> future = ASYNC_RETURN_FUTURE.get();
+    Preconditions.checkState(future != null,
+        "No async call was made through a retry proxy");
+    ASYNC_RETURN_FUTURE.set(null);
+    ASYNC_RETURN.set(null);
+    return (CompletableFuture<R>) future;
+  }
+
+  /**
+   * @return the value returned by a method which has been invoked
+   *         asynchronously: null, or the default value for primitive types.
+   */
+  static Object getAsyncInvokedReturnValue(Method method) {
+    final Class<?> type = method.getReturnType();
+    if (!type.isPrimitive() || type == void.class) {
+      return null;
+    }
+    return Array.get(Array.newInstance(type, 1), 0);
+  }
+
   /** For the lower rpc layers to set the async return value. */
   @InterfaceStability.Unstable
   public static void setLowerLayerAsyncReturn(
@@ -226,6 +266,9 @@ static class AsyncCall extends RetryInvocationHandler.Call {
     private final AsyncCallHandler asyncCallHandler;
 
     private final AsyncValue<CallReturn> asyncCallReturn = new AsyncValue<>();
+    private final CompletableFuture<Object> future = new CompletableFuture<>();
+    private final Object asyncInvokedReturnValue;
+    private boolean initialized = false;
     private AsyncGet<?, Exception> lowerLayerAsyncGet;
 
     AsyncCall(Method method, Object[] args, boolean isRpc, int callId,
@@ -234,6 +277,7 @@ static class AsyncCall extends RetryInvocationHandler.Call {
       super(method, args, isRpc, callId, retryInvocationHandler);
 
       this.asyncCallHandler = asyncCallHandler;
+      this.asyncInvokedReturnValue = getAsyncInvokedReturnValue(method);
     }
 
     /** @return true if the call is done; otherwise, return false. */
@@ -244,6 +288,7 @@ boolean isDone() {
         case RETURNED:
         case EXCEPTION:
           asyncCallReturn.set(r); // the async call is done
+          complete(r);
           return true;
         case RETRY:
           invokeOnce();
@@ -259,6 +304,18 @@ boolean isDone() {
       return false;
     }
 
+    private void complete(CallReturn r) {
+      final Object value;
+      try {
+        value = r.getReturnValue();
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+        return;
+      }
+      asyncCallHandler.hasSuccessfulCall = true;
+      future.complete(value);
+    }
+
     @Override
     CallReturn processWaitTimeAndRetryInfo() {
       final Long waitTime = getWaitTime(Time.monotonicNow());
@@ -294,14 +351,17 @@ CallReturn invoke() throws Throwable {
       try {
         Client.setAsynchronousMode(true);
         final Object r = invokeMethod();
-        // invokeMethod should set LOWER_LAYER_ASYNC_RETURN and return null.
-        Preconditions.checkState(r == null);
+        // invokeMethod should set LOWER_LAYER_ASYNC_RETURN and return null,
+        // or the default value for methods returning a primitive.
+        Preconditions.checkState(Objects.equals(r, asyncInvokedReturnValue));
         lowerLayerAsyncGet = getLowerLayerAsyncReturn();
 
-        if (getCounters().isZeros()) {
-          // first async attempt, initialize
+        if (!initialized) {
+          // first successfully submitted async attempt, initialize; earlier
+          // attempts may have failed and been retried in the caller thread.
+          initialized = true;
           LOG.trace("#{} invoke: initAsyncCall", getCallId());
-          asyncCallHandler.initAsyncCall(this, asyncCallReturn);
+          asyncCallHandler.initAsyncCall(this, asyncCallReturn, future);
         }
         return CallReturn.ASYNC_INVOKED;
       } finally {
@@ -325,7 +385,8 @@ boolean hasSuccessfulCall() {
   }
 
   private void initAsyncCall(final AsyncCall asyncCall,
-                             final AsyncValue<CallReturn> asyncCallReturn) {
+                             final AsyncValue<CallReturn> asyncCallReturn,
+                             final CompletableFuture<Object> future) {
     asyncCalls.addCall(asyncCall);
 
     final AsyncGet<Object, Throwable> asyncGet
@@ -344,6 +405,7 @@ public boolean isDone() {
       }
     };
     ASYNC_RETURN.set(asyncGet);
+    ASYNC_RETURN_FUTURE.set(future);
   }
 
   @VisibleForTesting
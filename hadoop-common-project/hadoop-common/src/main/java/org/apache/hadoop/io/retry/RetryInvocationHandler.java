@@ -359,7 +359,8 @@ public Object invoke(Object proxy, Method method, Object[] args)
       final CallReturn c = call.invokeOnce();
       final CallReturn.State state = c.getState();
       if (state == CallReturn.State.ASYNC_INVOKED) {
-        return null; // return null for async calls
+        // return null, or the default value of primitives, for async calls
+        return AsyncCallHandler.getAsyncInvokedReturnValue(method);
       } else if (c.getState() != CallReturn.State.RETRY) {
         return c.getReturnValue();
       }
@@ -63,6 +63,9 @@
 import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.security.PrivilegedExceptionAction;
 import java.util.*;
 import java.util.Map.Entry;
@@ -111,6 +114,34 @@ protected Boolean initialValue() {
     return (AsyncGet<T, IOException>) ASYNC_RPC_RESPONSE.get();
   }
 
+  /**
+   * Get the response of the last asynchronous call made by the current
+   * thread as a {@link CompletableFuture}. The future is completed by the
+   * connection thread receiving the response, so no thread is blocked while
+   * the call is outstanding. Dependent actions which may block should be run
+   * with an executor. The call no longer counts against the limit of
+   * asynchronous calls once the future is done.
+   *
+   * @return the future of the response.
+   */
+  @Unstable
+  public static CompletableFuture<Writable> getAsyncRpcResponseFuture() {
+    return toCompletableFuture(ASYNC_RPC_RESPONSE.get());
+  }
+
+  /**
+   * @param asyncGet an async response returned by
+   *                 {@link #getAsyncRpcResponse()}.
+   * @return the future of the response.
+   */
+  @Unstable
+  public static CompletableFuture<Writable> toCompletableFuture(
+      AsyncGet<? extends Writable, IOException> asyncGet) {
+    Preconditions.checkArgument(asyncGet instanceof AsyncRpcResponse,
+        "Not an asynchronous RPC response: %s", asyncGet);
+    return ((AsyncRpcResponse) asyncGet).toCompletableFuture();
+  }
+
   /** Set call id and retry count for the next call. */
   public static void setCallIdAndRetryCount(int cid, int rc,
                                             Object externalHandler) {
@@ -151,6 +182,9 @@ public static void setCallIdAndRetryCount(int cid, int rc,
   private final static ClientExecutorServiceFactory clientExcecutorFactory =
       new ClientExecutorServiceFactory();
 
+  /** Reads the responses of the connections, null if they read them. */
+  private final ResponseSelector responseSelector;
+
   private static class ClientExecutorServiceFactory {
     private int executorRefCount = 0;
     private ExecutorService clientExecutor = null;
@@ -339,6 +373,7 @@ static class Call {
     final RPC.RpcKind rpcKind;      // Rpc EngineKind
     boolean done;               // true when call is done
     private final Object externalHandler;
+    private Runnable doneCallback; // run once when the call is done
 
     private Call(RPC.RpcKind rpcKind, Writable param) {
       this.rpcKind = rpcKind;
@@ -385,9 +420,12 @@ protected synchronized void callComplete() {
      * 
      * @param error exception thrown by the call; either local or remote
      */
-    public synchronized void setException(IOException error) {
-      this.error = error;
-      callComplete();
+    public void setException(IOException error) {
+      synchronized (this) {
+        this.error = error;
+        callComplete();
+      }
+      runDoneCallback();
     }
     
     /** Set the return value when there is no error. 
@@ -395,19 +433,59 @@ public synchronized void setException(IOException error) {
      * 
      * @param rpcResponse return value of the rpc call.
      */
-    public synchronized void setRpcResponse(Writable rpcResponse) {
-      this.rpcResponse = rpcResponse;
-      callComplete();
+    public void setRpcResponse(Writable rpcResponse) {
+      synchronized (this) {
+        this.rpcResponse = rpcResponse;
+        callComplete();
+      }
+      runDoneCallback();
     }
     
     public synchronized Writable getRpcResponse() {
       return rpcResponse;
     }
+
+    /**
+     * Run the callback once the call is done, right away if it is done
+     * already. The callback is run without holding the lock of the call.
+     */
+    void whenDone(Runnable callback) {
+      synchronized (this) {
+        Preconditions.checkState(doneCallback == null,
+            "%s already has a callback", this);
+        doneCallback = callback;
+        if (!done) {
+          return;
+        }
+      }
+      runDoneCallback();
+    }
+
+    private void runDoneCallback() {
+      final Runnable callback;
+      synchronized (this) {
+        callback = doneCallback;
+        doneCallback = null;
+      }
+      if (callback != null) {
+        callback.run();
+      }
+    }
   }
 
   /** Thread that reads responses and notifies callers.  Each connection owns a
    * socket connected to a remote address.  Calls are multiplexed through this
-   * socket: responses may be delivered out of order. */
+   * socket: responses may be delivered out of order.
+   *
+   * Sends are pipelined: callers queue their requests on the connection and
+   * do not wait for them to be written. A sender task on the shared
+   * sendParamsExecutor writes the queued requests, and only runs while there
+   * are any, so a connection has no sender thread of its own. Responses are
+   * read by the thread of the connection, or, if
+   * {@link CommonConfigurationKeys#IPC_CLIENT_SELECTOR_ENABLED_KEY} is set,
+   * by the {@link ResponseSelector} of the client, which reads the responses
+   * of all its connections on one thread; the thread of the connection is
+   * not started then. */
   private class Connection extends Thread {
     private InetSocketAddress server;             // server ip:port
     private final ConnectionId remoteId;                // connection id
@@ -439,9 +517,24 @@ private class Connection extends Thread {
     private IOException closeException; // close reason
     
     private final Object sendRpcRequestLock = new Object();
+    // pipelined requests waiting to be written by the sender task, guarded
+    // by sendRpcRequestLock.
+    private final Queue<PendingRequest> pendingRequests = new ArrayDeque<>();
+    // whether a sender task is queued or running on the sendParamsExecutor.
+    private boolean senderScheduled = false;
 
     private AtomicReference<Thread> connectingThread = new AtomicReference<>();
 
+    // the response being read by the responseSelector, only accessed by it.
+    private final ByteBuffer responseLength = ByteBuffer.allocate(4);
+    private ByteBuffer responseData;
+    // the exception of a pre-rpcv9 server, which closes the connection after
+    // it, being read by the responseSelector.
+    private ByteArrayOutputStream preRpcv9Response;
+    // the time bytes of a response were last read, or the calls started to
+    // wait for a response, for the timeouts of the responseSelector.
+    private volatile long lastResponse;
+
     public Connection(ConnectionId remoteId, int serviceClass) throws IOException {
       this.remoteId = remoteId;
       this.server = remoteId.getAddress();
@@ -515,6 +608,9 @@ private void touch() {
     private synchronized boolean addCall(Call call) {
       if (shouldCloseConnection.get())
         return false;
+      if (calls.isEmpty()) {
+        lastResponse = Time.now();
+      }
       calls.put(call.id, call);
       notify();
       return true;
@@ -855,8 +951,10 @@ public AuthMethod run()
           }
 
           // start the receiver thread after the socket connection has been set
-          // up
-          start();
+          // up, unless the responseSelector reads the responses
+          if (responseSelector == null || !responseSelector.register(this)) {
+            start();
+          }
           return;
         }
       } catch (Throwable t) {
@@ -1085,7 +1183,10 @@ public void run() {
 
     /** Initiates a rpc call by sending the rpc request to the remote server.
      * Note: this is not called from the Connection thread, but by other
-     * threads.
+     * threads. The request is queued and written by a sender task on the
+     * sendParamsExecutor without waiting for it, so that sends are
+     * pipelined; a failure to send closes the connection, which fails all
+     * of its calls.
      * @param call - the rpc request
      */
     public void sendRpcRequest(final Call call)
@@ -1115,46 +1216,67 @@ public void sendRpcRequest(final Call call)
       RpcWritable.wrap(call.rpcRequest).writeTo(buf);
 
       synchronized (sendRpcRequestLock) {
-        Future<?> senderFuture = sendParamsExecutor.submit(new Runnable() {
-          @Override
-          public void run() {
-            try {
-              synchronized (ipcStreams.out) {
-                if (shouldCloseConnection.get()) {
-                  return;
-                }
-                if (LOG.isDebugEnabled()) {
-                  LOG.debug(getName() + " sending #" + call.id
-                      + " " + call.rpcRequest);
-                }
-                // RpcRequestHeader + RpcRequest
-                ipcStreams.sendRequest(buf.toByteArray());
-                ipcStreams.flush();
-              }
-            } catch (IOException e) {
-              // exception at this point would leave the connection in an
-              // unrecoverable state (eg half a call left on the wire).
-              // So, close the connection, killing any outstanding calls
-              markClosed(e);
-            } finally {
-              //the buffer is just an in-memory buffer, but it is still polite to
-              // close early
-              IOUtils.closeStream(buf);
+        pendingRequests.add(new PendingRequest(call, buf));
+        if (senderScheduled) {
+          return; // the running sender picks the request up.
+        }
+        try {
+          sendParamsExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+              sendPendingRequests();
             }
+          });
+        } catch (RejectedExecutionException e) {
+          pendingRequests.clear();
+          throw e;
+        }
+        senderScheduled = true;
+      }
+    }
+
+    /**
+     * Write all queued requests, flushing the stream once per batch rather
+     * than once per request, until no request is left.
+     */
+    private void sendPendingRequests() {
+      while (true) {
+        final List<PendingRequest> batch;
+        synchronized (sendRpcRequestLock) {
+          if (pendingRequests.isEmpty()) {
+            senderScheduled = false;
+            return;
           }
-        });
-      
+          batch = new ArrayList<>(pendingRequests);
+          pendingRequests.clear();
+        }
         try {
-          senderFuture.get();
-        } catch (ExecutionException e) {
-          Throwable cause = e.getCause();
-          
-          // cause should only be a RuntimeException as the Runnable above
-          // catches IOException
-          if (cause instanceof RuntimeException) {
-            throw (RuntimeException) cause;
-          } else {
-            throw new RuntimeException("unexpected checked exception", cause);
+          synchronized (ipcStreams.out) {
+            if (shouldCloseConnection.get()) {
+              continue;
+            }
+            for (PendingRequest request : batch) {
+              if (LOG.isDebugEnabled()) {
+                LOG.debug(getName() + " sending #" + request.call.id
+                    + " " + request.call.rpcRequest);
+              }
+              // RpcRequestHeader + RpcRequest
+              request.buf.writeTo(ipcStreams.out);
+            }
+            ipcStreams.flush();
+          }
+        } catch (IOException e) {
+          // exception at this point would leave the connection in an
+          // unrecoverable state (eg half a call left on the wire).
+          // So, close the connection, killing any outstanding calls
+          markClosed(e);
+        } catch (RuntimeException e) {
+          markClosed(new IOException("Failed to send RPC requests", e));
+        } finally {
+          //the buffers are just in-memory buffers, but it is still polite to
+          // close early
+          for (PendingRequest request : batch) {
+            IOUtils.closeStream(request.buf);
           }
         }
       }
@@ -1169,8 +1291,176 @@ private void receiveRpcResponse() {
       }
       touch();
       
+      ByteBuffer bb;
+      try {
+        bb = ipcStreams.readResponse();
+      } catch (IOException e) {
+        markClosed(e);
+        return;
+      }
+      processResponse(bb);
+    }
+
+    /**
+     * @return whether the responseSelector can read the responses: the
+     * socket has a channel, and the input is neither SASL wrapped nor has
+     * bytes buffered during the connection setup.
+     */
+    private boolean canMultiplex() throws IOException {
+      return socket.getChannel() != null && !ipcStreams.saslWrapped &&
+          ipcStreams.in.available() == 0;
+    }
+
+    /**
+     * Read the available bytes of the responses from the channel without
+     * blocking, and process the complete responses. This is how the
+     * responseSelector receives the responses of the connection.
+     */
+    private void readResponses(SocketChannel channel) {
+      try {
+        while (!shouldCloseConnection.get()) {
+          if (preRpcv9Response != null) {
+            readPreRpcv9Response(channel);
+            return;
+          }
+          if (responseData == null) {
+            readFrom(channel, responseLength);
+            if (responseLength.hasRemaining()) {
+              return;
+            }
+            responseData = ipcStreams.allocateResponse(
+                responseLength.getInt(0));
+            responseLength.clear();
+            if (responseData == null) {
+              preRpcv9Response = new ByteArrayOutputStream();
+              continue;
+            }
+          }
+          readFrom(channel, responseData);
+          if (responseData.hasRemaining()) {
+            return;
+          }
+          ByteBuffer bb = responseData;
+          responseData = null;
+          bb.flip();
+          processResponse(bb);
+        }
+      } catch (IOException e) {
+        markClosed(e);
+      } catch (RuntimeException e) {
+        LOG.warn("Unexpected error reading responses on connection " + this,
+            e);
+        markClosed(new IOException("Error reading responses", e));
+      }
+    }
+
+    /**
+     * Read the exception of a pre-rpcv9 server until the server closes the
+     * connection.
+     */
+    private void readPreRpcv9Response(SocketChannel channel)
+        throws IOException {
+      ByteBuffer buf = ByteBuffer.allocate(1024);
+      int n;
+      while ((n = channel.read(buf)) > 0) {
+        preRpcv9Response.write(buf.array(), 0, n);
+        buf.clear();
+      }
+      if (n < 0) {
+        throw IpcStreams.readPreRpcv9Exception(new DataInputStream(
+            new ByteArrayInputStream(preRpcv9Response.toByteArray())));
+      }
+    }
+
+    private void readFrom(SocketChannel channel, ByteBuffer buf)
+        throws IOException {
+      int n = channel.read(buf);
+      if (n < 0) {
+        throw new EOFException("Connection to " + server +
+            " closed by the server");
+      } else if (n > 0) {
+        long now = Time.now();
+        lastResponse = now;
+        lastActivity.set(now);
+      }
+    }
+
+    /**
+     * Close the connection if it has been idle for too long or the rpc
+     * timeout expired, and send a ping if no response has been read for the
+     * ping interval, like the thread of the connection does in waitForWork
+     * and PingInputStream. Called by the responseSelector.
+     * @param now the current time.
+     * @return the time to check again.
+     */
+    private synchronized long checkTimeouts(long now) {
+      if (shouldCloseConnection.get()) {
+        return now;
+      }
+      if (!running.get()) {
+        // the client is stopped
+        markClosed(calls.isEmpty() ? null : (IOException)new IOException()
+            .initCause(new InterruptedException()));
+        return now;
+      }
+      if (calls.isEmpty()) {
+        long idleTimeout = lastActivity.get() + maxIdleTime;
+        if (idleTimeout <= now) {
+          markClosed(null);
+        }
+        return idleTimeout;
+      }
+      long waiting = now - lastResponse;
+      if ((0 < rpcTimeout && rpcTimeout <= waiting) ||
+          (!doPing && soTimeout <= waiting)) {
+        markClosed(new SocketTimeoutException(waiting +
+            " millis timeout while waiting for a response from " + server));
+        return now;
+      }
+      long next = 0 < rpcTimeout ? lastResponse + rpcTimeout : Long.MAX_VALUE;
+      if (waiting < soTimeout) {
+        return Math.min(next, lastResponse + soTimeout);
+      }
+      // a blocking read would have timed out, send a ping
+      long ping = lastActivity.get() + pingInterval;
+      if (ping <= now) {
+        lastActivity.set(now);
+        sendPingAsync();
+        ping = now + pingInterval;
+      }
+      return Math.min(next, ping);
+    }
+
+    /**
+     * Send a ping on the sendParamsExecutor, so that the responseSelector
+     * does not wait for the requests being written.
+     */
+    private void sendPingAsync() {
+      try {
+        sendParamsExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              synchronized (ipcStreams.out) {
+                ipcStreams.sendRequest(pingRequest);
+                ipcStreams.flush();
+              }
+            } catch (IOException e) {
+              markClosed(e);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        markClosed(new IOException("Failed to send a ping", e));
+      }
+    }
+
+    /**
+     * Process a response: complete its call, or close the connection on a
+     * fatal error.
+     */
+    private void processResponse(ByteBuffer bb) {
       try {
-        ByteBuffer bb = ipcStreams.readResponse();
         RpcWritable.Buffer packet = RpcWritable.Buffer.wrap(bb);
         RpcResponseHeaderProto header =
             packet.getValue(RpcResponseHeaderProto.getDefaultInstance());
@@ -1219,6 +1509,9 @@ private synchronized void markClosed(IOException e) {
       if (shouldCloseConnection.compareAndSet(false, true)) {
         closeException = e;
         notifyAll();
+        if (responseSelector != null) {
+          responseSelector.wakeup();
+        }
       }
     }
 
@@ -1281,6 +1574,206 @@ private void cleanupCalls() {
     }
   }
 
+  /**
+   * Reads the responses of the connections of the client on one thread.
+   * The channels of the connections are read without blocking, and each
+   * response is processed once it is complete. The thread also sends the
+   * pings and closes the connections that are idle or whose rpc timeout
+   * expired, as the threads of the connections do otherwise.
+   */
+  private class ResponseSelector implements Runnable {
+    private final Queue<Connection> pendingConnections =
+        new ConcurrentLinkedQueue<>();
+    private volatile Selector selector;
+    // guarded by this
+    private Thread thread;
+    private boolean stopped = false;
+
+    /**
+     * Read the responses of a connection which has been set up, starting
+     * the thread with the first connection.
+     * @return false if the connection has to read its responses itself.
+     */
+    synchronized boolean register(Connection conn) throws IOException {
+      if (stopped || !running.get() || !conn.canMultiplex()) {
+        return false;
+      }
+      if (thread == null) {
+        selector = Selector.open();
+        thread = new Thread(this, "IPC Client (" + socketFactory.hashCode() +
+            ") response selector");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      pendingConnections.add(conn);
+      selector.wakeup();
+      return true;
+    }
+
+    void wakeup() {
+      Selector s = selector;
+      if (s != null) {
+        s.wakeup();
+      }
+    }
+
+    @Override
+    public void run() {
+      LOG.debug("{}: starting", thread.getName());
+      try {
+        while (true) {
+          Connection conn;
+          while ((conn = pendingConnections.poll()) != null) {
+            try {
+              SocketChannel channel = conn.socket.getChannel();
+              channel.configureBlocking(false);
+              channel.register(selector, SelectionKey.OP_READ, conn);
+            } catch (IOException e) {
+              conn.markClosed(e);
+              conn.close();
+            }
+          }
+
+          long now = Time.now();
+          long timeout = Long.MAX_VALUE;
+          int registered = 0;
+          for (SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+              conn = (Connection) key.attachment();
+              long next = conn.checkTimeouts(now);
+              if (!closeIfMarked(key, conn)) {
+                timeout = Math.min(timeout, Math.max(1, next - now));
+                registered++;
+              }
+            }
+          }
+          synchronized (this) {
+            if (registered == 0 && pendingConnections.isEmpty() &&
+                !running.get()) {
+              stopped = true;
+              break;
+            }
+          }
+
+          selector.select(timeout == Long.MAX_VALUE ? 0 : timeout);
+          Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+          while (iter.hasNext()) {
+            SelectionKey key = iter.next();
+            iter.remove();
+            conn = (Connection) key.attachment();
+            if (key.isValid() && key.isReadable()) {
+              conn.readResponses((SocketChannel) key.channel());
+            }
+            closeIfMarked(key, conn);
+          }
+        }
+      } catch (Throwable t) {
+        LOG.warn("Unexpected error reading responses", t);
+        stop(new IOException("Error reading responses", t));
+      } finally {
+        IOUtils.cleanupWithLogger(LOG, selector);
+      }
+      LOG.debug("{}: stopped", thread.getName());
+    }
+
+    private boolean closeIfMarked(SelectionKey key, Connection conn) {
+      if (!conn.shouldCloseConnection.get()) {
+        return false;
+      }
+      key.cancel();
+      conn.close();
+      return true;
+    }
+
+    /** Close all connections after an unexpected error. */
+    private void stop(IOException e) {
+      synchronized (this) {
+        stopped = true;
+      }
+      List<Connection> conns = new ArrayList<>(pendingConnections);
+      for (SelectionKey key : selector.keys()) {
+        conns.add((Connection) key.attachment());
+      }
+      for (Connection conn : conns) {
+        conn.markClosed(e);
+        conn.close();
+      }
+    }
+  }
+
+  /** A serialized request waiting to be written. */
+  private static class PendingRequest {
+    private final Call call;
+    private final ResponseBuffer buf;
+
+    PendingRequest(Call call, ResponseBuffer buf) {
+      this.call = call;
+      this.buf = buf;
+    }
+  }
+
+  /** The response of an asynchronous call. */
+  private final class AsyncRpcResponse
+      implements AsyncGet<Writable, IOException> {
+    private final Call call;
+    private final Connection connection;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    AsyncRpcResponse(Call call, Connection connection) {
+      this.call = call;
+      this.connection = connection;
+    }
+
+    @Override
+    public Writable get(long timeout, TimeUnit unit)
+        throws IOException, TimeoutException {
+      boolean done = true;
+      try {
+        final Writable w = getRpcResponse(call, connection, timeout, unit);
+        if (w == null) {
+          done = false;
+          throw new TimeoutException(call + " timed out "
+              + timeout + " " + unit);
+        }
+        return w;
+      } finally {
+        if (done) {
+          release();
+        }
+      }
+    }
+
+    @Override
+    public boolean isDone() {
+      synchronized (call) {
+        return call.done;
+      }
+    }
+
+    CompletableFuture<Writable> toCompletableFuture() {
+      final CompletableFuture<Writable> future = new CompletableFuture<>();
+      call.whenDone(new Runnable() {
+        @Override
+        public void run() {
+          release();
+          try {
+            // the call is done, so this does not wait.
+            future.complete(getRpcResponse(call, connection, -1, null));
+          } catch (Throwable t) {
+            future.completeExceptionally(t);
+          }
+        }
+      });
+      return future;
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        releaseAsyncCall();
+      }
+    }
+  }
+
   /** Construct an IPC client whose values are of the given {@link Writable}
    * class. */
   public Client(Class<? extends Writable> valueClass, Configuration conf, 
@@ -1301,6 +1794,10 @@ public Client(Class<? extends Writable> valueClass, Configuration conf,
     this.maxAsyncCalls = conf.getInt(
         CommonConfigurationKeys.IPC_CLIENT_ASYNC_CALLS_MAX_KEY,
         CommonConfigurationKeys.IPC_CLIENT_ASYNC_CALLS_MAX_DEFAULT);
+    this.responseSelector = conf.getBoolean(
+        CommonConfigurationKeys.IPC_CLIENT_SELECTOR_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_CLIENT_SELECTOR_ENABLED_DEFAULT) ?
+        new ResponseSelector() : null;
   }
 
   /**
@@ -1336,6 +1833,9 @@ public void stop() {
       conn.interrupt();
       conn.interruptConnectingThread();
     }
+    if (responseSelector != null) {
+      responseSelector.wakeup();
+    }
     
     // wait until all connections are closed
     while (!connections.isEmpty()) {
@@ -1422,36 +1922,7 @@ Writable call(RPC.RpcKind rpcKind, Writable rpcRequest,
     }
 
     if (isAsynchronousMode()) {
-      final AsyncGet<Writable, IOException> asyncGet
-          = new AsyncGet<Writable, IOException>() {
-        @Override
-        public Writable get(long timeout, TimeUnit unit)
-            throws IOException, TimeoutException{
-          boolean done = true;
-          try {
-            final Writable w = getRpcResponse(call, connection, timeout, unit);
-            if (w == null) {
-              done = false;
-              throw new TimeoutException(call + " timed out "
-                  + timeout + " " + unit);
-            }
-            return w;
-          } finally {
-            if (done) {
-              releaseAsyncCall();
-            }
-          }
-        }
-
-        @Override
-        public boolean isDone() {
-          synchronized (call) {
-            return call.done;
-          }
-        }
-      };
-
-      ASYNC_RPC_RESPONSE.set(asyncGet);
+      ASYNC_RPC_RESPONSE.set(new AsyncRpcResponse(call, connection));
       return null;
     } else {
       return getRpcResponse(call, connection, -1, null);
@@ -1787,6 +2258,7 @@ public static class IpcStreams implements Closeable, Flushable {
     public DataOutputStream out;
     private int maxResponseLength;
     private boolean firstResponse = true;
+    private boolean saslWrapped = false;
 
     IpcStreams(Socket socket, int maxResponseLength) throws IOException {
       this.maxResponseLength = maxResponseLength;
@@ -1799,7 +2271,9 @@ public static class IpcStreams implements Closeable, Flushable {
     void setSaslClient(SaslRpcClient client) throws IOException {
       // Wrap the input stream in a BufferedInputStream to fill the buffer
       // before reading its length (HADOOP-14062).
-      setInputStream(new BufferedInputStream(client.getInputStream(in)));
+      InputStream saslIn = client.getInputStream(in);
+      saslWrapped = saslIn != in;
+      setInputStream(new BufferedInputStream(saslIn));
       setOutputStream(client.getOutputStream(out));
     }
 
@@ -1819,20 +2293,47 @@ public ByteBuffer readResponse() throws IOException {
         firstResponse = false;
         // pre-rpcv9 exception, almost certainly a version mismatch.
         if (length == -1) {
-          in.readInt(); // ignore fatal/error status, it's fatal for us.
-          throw new RemoteException(WritableUtils.readString(in),
-                                    WritableUtils.readString(in));
+          throw readPreRpcv9Exception(in);
         }
       }
+      checkResponseLength(length);
+      ByteBuffer bb = ByteBuffer.allocate(length);
+      in.readFully(bb.array());
+      return bb;
+    }
+
+    /**
+     * Allocate the buffer of a response whose length was read from the
+     * channel of the socket, rather than with {@link #readResponse()}.
+     * @return null if the length starts the exception of a pre-rpcv9
+     *         server, which is read with {@link #readPreRpcv9Exception}.
+     */
+    ByteBuffer allocateResponse(int length) throws IOException {
+      if (firstResponse) {
+        firstResponse = false;
+        if (length == -1) {
+          return null;
+        }
+      }
+      checkResponseLength(length);
+      return ByteBuffer.allocate(length);
+    }
+
+    /** Read the exception a pre-rpcv9 server sends after a length of -1. */
+    static RemoteException readPreRpcv9Exception(DataInput in)
+        throws IOException {
+      in.readInt(); // ignore fatal/error status, it's fatal for us.
+      return new RemoteException(WritableUtils.readString(in),
+          WritableUtils.readString(in));
+    }
+
+    private void checkResponseLength(int length) throws RpcException {
       if (length <= 0) {
         throw new RpcException("RPC response has invalid length");
       }
       if (maxResponseLength > 0 && length > maxResponseLength) {
         throw new RpcException("RPC response exceeds maximum data length");
       }
-      ByteBuffer bb = ByteBuffer.allocate(length);
-      in.readFully(bb.array());
-      return bb;
     }
 
     public void sendRequest(byte[] buf) throws IOException {
@@ -19,6 +19,7 @@
 package org.apache.hadoop.ipc;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.protobuf.*;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -46,6 +47,8 @@
 import java.lang.reflect.Proxy;
 import java.net.InetSocketAddress;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -73,6 +76,21 @@ public static AsyncGet<Message, Exception> getAsyncReturnMessage() {
     return ASYNC_RETURN_MESSAGE.get();
   }
 
+  /**
+   * Get the return message of the last asynchronous call made by the current
+   * thread as a {@link CompletableFuture}, which is completed without
+   * blocking any thread; see {@link Client#getAsyncRpcResponseFuture()}.
+   *
+   * @return the future of the return message.
+   */
+  @Unstable
+  public static CompletableFuture<Message> getAsyncReturnMessageFuture() {
+    final AsyncGet<Message, Exception> asyncGet = ASYNC_RETURN_MESSAGE.get();
+    Preconditions.checkState(asyncGet instanceof Invoker.AsyncReturnMessage,
+        "No asynchronous call was made");
+    return ((Invoker.AsyncReturnMessage) asyncGet).toCompletableFuture();
+  }
+
   public <T> ProtocolProxy<T> getProxy(Class<T> protocol, long clientVersion,
       InetSocketAddress addr, UserGroupInformation ticket, Configuration conf,
       SocketFactory factory, int rpcTimeout) throws IOException {
@@ -252,25 +270,45 @@ public Message invoke(Object proxy, final Method method, Object[] args)
       if (Client.isAsynchronousMode()) {
         final AsyncGet<RpcWritable.Buffer, IOException> arr
             = Client.getAsyncRpcResponse();
-        final AsyncGet<Message, Exception> asyncGet
-            = new AsyncGet<Message, Exception>() {
-          @Override
-          public Message get(long timeout, TimeUnit unit) throws Exception {
-            return getReturnMessage(method, arr.get(timeout, unit));
-          }
-
-          @Override
-          public boolean isDone() {
-            return arr.isDone();
-          }
-        };
-        ASYNC_RETURN_MESSAGE.set(asyncGet);
+        ASYNC_RETURN_MESSAGE.set(new AsyncReturnMessage(method, arr));
         return null;
       } else {
         return getReturnMessage(method, val);
       }
     }
 
+    /** The return message of an asynchronous call. */
+    private class AsyncReturnMessage implements AsyncGet<Message, Exception> {
+      private final Method method;
+      private final AsyncGet<RpcWritable.Buffer, IOException> arr;
+
+      AsyncReturnMessage(Method method,
+          AsyncGet<RpcWritable.Buffer, IOException> arr) {
+        this.method = method;
+        this.arr = arr;
+      }
+
+      @Override
+      public Message get(long timeout, TimeUnit unit) throws Exception {
+        return getReturnMessage(method, arr.get(timeout, unit));
+      }
+
+      @Override
+      public boolean isDone() {
+        return arr.isDone();
+      }
+
+      CompletableFuture<Message> toCompletableFuture() {
+        return Client.toCompletableFuture(arr).thenApply(value -> {
+          try {
+            return getReturnMessage(method, (RpcWritable.Buffer) value);
+          } catch (ServiceException e) {
+            throw new CompletionException(e);
+          }
+        });
+      }
+    }
+
     private Message getReturnMessage(final Method method,
         final RpcWritable.Buffer buf) throws ServiceException {
       Message prototype = null;
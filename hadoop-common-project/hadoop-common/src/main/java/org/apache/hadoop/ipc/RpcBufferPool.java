@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.io.ByteBufferPool;
+
+/**
+ * A bounded pool of heap buffers for the RPC server.
+ *
+ * Buffers are kept in one lock-free queue per capacity and are only handed
+ * out for an exact capacity, so callers should round their lengths to a
+ * few size classes. Each size class holds at most maxBuffersPerSize
+ * buffers and all size classes together hold at most maxBytes; a buffer
+ * which is returned beyond either limit is left to the garbage collector,
+ * so the pool gives memory back after a burst of large calls.
+ */
+@InterfaceAudience.Private
+class RpcBufferPool implements ByteBufferPool {
+
+  private static final class SizeClass {
+    private final Queue<ByteBuffer> buffers =
+        new ConcurrentLinkedQueue<ByteBuffer>();
+    /** Number of buffers in, or being added to, the queue. */
+    private final AtomicInteger count = new AtomicInteger();
+  }
+
+  private final ConcurrentMap<Integer, SizeClass> sizeClasses =
+      new ConcurrentHashMap<Integer, SizeClass>();
+  private final AtomicLong pooledBytes = new AtomicLong();
+  private final int maxBuffersPerSize;
+  private final long maxBytes;
+
+  RpcBufferPool(int maxBuffersPerSize, long maxBytes) {
+    Preconditions.checkArgument(maxBuffersPerSize >= 0,
+        "maxBuffersPerSize must not be negative");
+    Preconditions.checkArgument(maxBytes >= 0,
+        "maxBytes must not be negative");
+    this.maxBuffersPerSize = maxBuffersPerSize;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Get a heap buffer of exactly the given capacity.
+   */
+  @Override
+  public ByteBuffer getBuffer(boolean direct, int length) {
+    Preconditions.checkArgument(!direct, "Only heap buffers are pooled");
+    SizeClass sizeClass = sizeClasses.get(length);
+    ByteBuffer buf = sizeClass == null ? null : sizeClass.buffers.poll();
+    if (buf == null) {
+      return ByteBuffer.allocate(length);
+    }
+    sizeClass.count.decrementAndGet();
+    pooledBytes.addAndGet(-length);
+    buf.clear();
+    return buf;
+  }
+
+  @Override
+  public void putBuffer(ByteBuffer buf) {
+    if (buf.isDirect()) {
+      return;
+    }
+    int capacity = buf.capacity();
+    SizeClass sizeClass = sizeClasses.get(capacity);
+    if (sizeClass == null) {
+      SizeClass newSizeClass = new SizeClass();
+      sizeClass = sizeClasses.putIfAbsent(capacity, newSizeClass);
+      if (sizeClass == null) {
+        sizeClass = newSizeClass;
+      }
+    }
+    // reserve the space first, so that concurrent returns cannot overshoot.
+    if (sizeClass.count.incrementAndGet() > maxBuffersPerSize) {
+      sizeClass.count.decrementAndGet();
+      return;
+    }
+    if (pooledBytes.addAndGet(capacity) > maxBytes) {
+      pooledBytes.addAndGet(-capacity);
+      sizeClass.count.decrementAndGet();
+      return;
+    }
+    sizeClass.buffers.offer(buf);
+  }
+
+  @VisibleForTesting
+  long getPooledBytes() {
+    return pooledBytes.get();
+  }
+
+  @VisibleForTesting
+  int getPooledBuffers(int capacity) {
+    SizeClass sizeClass = sizeClasses.get(capacity);
+    return sizeClass == null ? 0 : sizeClass.count.get();
+  }
+}
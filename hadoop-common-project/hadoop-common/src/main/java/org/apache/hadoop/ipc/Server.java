@@ -48,13 +48,13 @@
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -78,6 +78,7 @@
 import org.apache.hadoop.conf.Configuration.IntegerRanges;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.io.ByteBufferPool;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableUtils;
@@ -435,6 +436,8 @@ protected ResponseBuffer initialValue() {
           return new ResponseBuffer(INITIAL_RESP_BUF_SIZE);
         }
   };
+  // request and response buffers, null if pooling is disabled.
+  private final ByteBufferPool bufferPool;
   private int socketSendBufferSize;
   private final int maxDataLength;
   private final boolean tcpNoDelay; // if T then disable Nagle's Algorithm
@@ -445,7 +448,8 @@ protected ResponseBuffer initialValue() {
   // maintains the set of client connections and handles idle timeouts
   private ConnectionManager connectionManager;
   private Listener listener = null;
-  private Responder responder = null;
+  private Responder[] responders = null;
+  private int currentResponder = 0;
   private Handler[] handlers = null;
 
   private boolean logSlowRPC = false;
@@ -823,6 +827,10 @@ private class RpcCall extends Call {
     final Connection connection;  // connection to client
     final Writable rpcRequest;    // Serialized Rpc request from client
     ByteBuffer rpcResponse;       // the response for this call
+    // whether rpcResponse may be returned to the pool once it was sent.
+    private boolean rpcResponsePooled;
+    // pooled buffer backing rpcRequest, released once the call was run.
+    private ByteBuffer rpcRequestBuffer;
 
     RpcCall(RpcCall call) {
       super(call);
@@ -865,30 +873,40 @@ public InetAddress getHostInetAddress() {
 
     @Override
     public Void run() throws Exception {
-      if (!connection.channel.isOpen()) {
-        Server.LOG.info(Thread.currentThread().getName() + ": skipped " + this);
-        return null;
-      }
-      Writable value = null;
-      ResponseParams responseParams = new ResponseParams();
-
       try {
-        value = call(
-            rpcKind, connection.protocolName, rpcRequest, timestamp);
-      } catch (Throwable e) {
-        populateResponseParamsOnError(e, responseParams);
-      }
-      if (!isResponseDeferred()) {
-        setupResponse(this, responseParams.returnStatus,
-            responseParams.detailedErr,
-            value, responseParams.errorClass, responseParams.error);
-        sendResponse();
-      } else {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Deferring response for callId: " + this.callId);
+        if (!connection.channel.isOpen()) {
+          Server.LOG.info(
+              Thread.currentThread().getName() + ": skipped " + this);
+          return null;
+        }
+        Writable value = null;
+        ResponseParams responseParams = new ResponseParams();
+
+        try {
+          value = call(
+              rpcKind, connection.protocolName, rpcRequest, timestamp);
+        } catch (Throwable e) {
+          populateResponseParamsOnError(e, responseParams);
+        }
+        if (!isResponseDeferred()) {
+          setupResponse(this, responseParams.returnStatus,
+              responseParams.detailedErr,
+              value, responseParams.errorClass, responseParams.error);
+          sendResponse();
+        } else {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Deferring response for callId: " + this.callId);
+          }
+        }
+        return null;
+      } finally {
+        // the request was deserialized by now, even if the response is
+        // deferred.
+        if (rpcRequestBuffer != null) {
+          returnBuffer(rpcRequestBuffer);
+          rpcRequestBuffer = null;
         }
       }
-      return null;
     }
 
     /**
@@ -922,7 +940,28 @@ private void populateResponseParamsOnError(Throwable t,
     }
 
     void setResponse(ByteBuffer response) throws IOException {
+      setResponse(response, false);
+    }
+
+    /**
+     * @param response the serialized response
+     * @param pooled whether nothing but this call references the response,
+     *        so that it can be returned to the pool once it was sent.
+     */
+    void setResponse(ByteBuffer response, boolean pooled) {
       this.rpcResponse = response;
+      this.rpcResponsePooled = pooled;
+    }
+
+    /**
+     * Clear out the response, returning it to the pool if possible.
+     */
+    void releaseResponse() {
+      if (rpcResponsePooled) {
+        returnBuffer(rpcResponse);
+        rpcResponsePooled = false;
+      }
+      rpcResponse = null;
     }
 
     @Override
@@ -1295,15 +1334,23 @@ Reader getReader() {
     }
   }
 
-  // Sends responses of RPC back to clients.
+  // Connections are created by the listener only, so there is no need to
+  // synchronize.
+  private Responder getResponder() {
+    currentResponder = (currentResponder + 1) % responders.length;
+    return responders[currentResponder];
+  }
+
+  // Sends responses of RPC back to clients. Each connection is served by one
+  // of the responders, so the responses of a connection stay in order.
   private class Responder extends Thread {
     private final Selector writeSelector;
     private int pending;         // connections waiting to register
     
     final static int PURGE_INTERVAL = 900000; // 15mins
 
-    Responder() throws IOException {
-      this.setName("IPC Server Responder");
+    Responder(String name) throws IOException {
+      this.setName(name);
       this.setDaemon(true);
       writeSelector = Selector.open(); // create a selector
       pending = 0;
@@ -1427,9 +1474,9 @@ private void doAsyncWrite(SelectionKey key) throws IOException {
     // for a long time.
     //
     private void doPurge(RpcCall call, long now) {
-      LinkedList<RpcCall> responseQueue = call.connection.responseQueue;
+      ArrayDeque<RpcCall> responseQueue = call.connection.responseQueue;
       synchronized (responseQueue) {
-        Iterator<RpcCall> iter = responseQueue.listIterator(0);
+        Iterator<RpcCall> iter = responseQueue.iterator();
         while (iter.hasNext()) {
           call = iter.next();
           if (now > call.timestamp + PURGE_INTERVAL) {
@@ -1443,7 +1490,7 @@ private void doPurge(RpcCall call, long now) {
     // Processes one response. Returns true if there are no more pending
     // data for this channel.
     //
-    private boolean processResponse(LinkedList<RpcCall> responseQueue,
+    private boolean processResponse(ArrayDeque<RpcCall> responseQueue,
                                     boolean inHandler) throws IOException {
       boolean error = true;
       boolean done = false;       // there is more data for this channel.
@@ -1475,8 +1522,8 @@ private boolean processResponse(LinkedList<RpcCall> responseQueue,
             return true;
           }
           if (!call.rpcResponse.hasRemaining()) {
-            //Clear out the response buffer so it can be collected
-            call.rpcResponse = null;
+            //Clear out the response buffer so it can be reused
+            call.releaseResponse();
             call.connection.decRpcCount();
             if (numElements == 1) {    // last call fully processes.
               done = true;             // no more data for this channel.
@@ -1620,7 +1667,8 @@ public class Connection {
     private SocketChannel channel;
     private ByteBuffer data;
     private ByteBuffer dataLengthBuffer;
-    private LinkedList<RpcCall> responseQueue;
+    private ArrayDeque<RpcCall> responseQueue;
+    private final Responder responder;
     // number of outstanding rpcs
     private AtomicInteger rpcCount = new AtomicInteger();
     private long lastContact;
@@ -1672,7 +1720,8 @@ public Connection(SocketChannel channel, long lastContact) {
         this.hostAddress = addr.getHostAddress();
       }
       this.remotePort = socket.getPort();
-      this.responseQueue = new LinkedList<RpcCall>();
+      this.responseQueue = new ArrayDeque<RpcCall>();
+      this.responder = getResponder();
       if (socketSendBufferSize != 0) {
         try {
           socket.setSendBufferSize(socketSendBufferSize);
@@ -2095,7 +2144,7 @@ public int readAndProcess() throws IOException, InterruptedException {
           dataLength = dataLengthBuffer.getInt();
           checkDataLength(dataLength);
           // Set buffer for reading EXACTLY the RPC-packet length and no more.
-          data = ByteBuffer.allocate(dataLength);
+          data = getBuffer(dataLength);
         }
         // Now read the RPC packet
         count = channelRead(channel, data);
@@ -2305,7 +2354,7 @@ private void unwrapPacketAndProcessRpcs(byte[] inBuf)
         if (unwrappedData == null) {
           unwrappedDataLengthBuffer.flip();
           int unwrappedDataLength = unwrappedDataLengthBuffer.getInt();
-          unwrappedData = ByteBuffer.allocate(unwrappedDataLength);
+          unwrappedData = getBuffer(unwrappedDataLength);
         }
 
         count = channelRead(ch, unwrappedData);
@@ -2333,7 +2382,8 @@ private void unwrapPacketAndProcessRpcs(byte[] inBuf)
      * if SASL then SASL has been established and the buf we are passed
      * has been unwrapped from SASL.
      * 
-     * @param bb - contains the RPC request header and the rpc request
+     * @param bb - contains the RPC request header and the rpc request, it is
+     *        returned to the pool unless a queued call took it over
      * @throws IOException - internal error that should not be returned to
      *         client, typically failure to respond to client
      * @throws InterruptedException
@@ -2345,6 +2395,7 @@ private void processOneRpc(ByteBuffer bb)
       // should be closed.
       int callId = -1;
       int retry = RpcConstants.INVALID_RETRY_COUNT;
+      boolean queued = false;
       try {
         final RpcWritable.Buffer buffer = RpcWritable.Buffer.wrap(bb);
         final RpcRequestHeaderProto header =
@@ -2364,6 +2415,7 @@ private void processOneRpc(ByteBuffer bb)
               "Connection context not established");
         } else {
           processRpcRequest(header, buffer);
+          queued = true;
         }
       } catch (RpcServerException rse) {
         // inform client of error, but do not rethrow else non-fatal
@@ -2380,6 +2432,11 @@ private void processOneRpc(ByteBuffer bb)
             rse.getRpcStatusProto(), rse.getRpcErrorCodeProto(), null,
             t.getClass().getName(), t.getMessage());
         sendResponse(call);
+      } finally {
+        // out of band requests are fully deserialized by now.
+        if (!queued) {
+          returnBuffer(bb);
+        }
       }
     }
 
@@ -2485,12 +2542,16 @@ private void processRpcRequest(RpcRequestHeaderProto header,
 
       // Save the priority level assignment by the scheduler
       call.setPriorityLevel(callQueue.getPriorityLevel(call));
+      // the rpcRequest may still refer to the buffer until the call is run.
+      call.rpcRequestBuffer = buffer.getByteBuffer();
 
       try {
         internalQueueCall(call);
       } catch (RpcServerException rse) {
+        call.rpcRequestBuffer = null;
         throw rse;
       } catch (IOException ioe) {
+        call.rpcRequestBuffer = null;
         throw new FatalRpcServerException(
             RpcErrorCodeProto.ERROR_RPC_SERVER, ioe);
       }
@@ -2785,6 +2846,21 @@ protected Server(String bindAddress, int port,
     this.maxRespSize = conf.getInt(
         CommonConfigurationKeys.IPC_SERVER_RPC_MAX_RESPONSE_SIZE_KEY,
         CommonConfigurationKeys.IPC_SERVER_RPC_MAX_RESPONSE_SIZE_DEFAULT);
+    if (conf.getBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT)) {
+      this.bufferPool = new RpcBufferPool(
+          conf.getInt(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFERS_KEY,
+              CommonConfigurationKeys
+                  .IPC_SERVER_BUFFER_POOL_MAX_BUFFERS_DEFAULT),
+          conf.getLong(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BYTES_KEY,
+              CommonConfigurationKeys
+                  .IPC_SERVER_BUFFER_POOL_MAX_BYTES_DEFAULT));
+    } else {
+      this.bufferPool = null;
+    }
     if (numReaders != -1) {
       this.readThreads = numReaders;
     } else {
@@ -2825,8 +2901,21 @@ protected Server(String bindAddress, int port,
         CommonConfigurationKeysPublic.IPC_SERVER_LOG_SLOW_RPC,
         CommonConfigurationKeysPublic.IPC_SERVER_LOG_SLOW_RPC_DEFAULT));
 
-    // Create the responder here
-    responder = new Responder();
+    // Create the responders here
+    int responderThreads = conf.getInt(
+        CommonConfigurationKeys.IPC_SERVER_RPC_RESPONDER_THREADS_KEY,
+        CommonConfigurationKeys.IPC_SERVER_RPC_RESPONDER_THREADS_DEFAULT);
+    if (responderThreads < 1) {
+      throw new IllegalArgumentException(
+          CommonConfigurationKeys.IPC_SERVER_RPC_RESPONDER_THREADS_KEY
+          + " must be positive, but is " + responderThreads);
+    }
+    responders = new Responder[responderThreads];
+    for (int i = 0; i < responderThreads; i++) {
+      responders[i] = new Responder(responderThreads == 1 ?
+          "IPC Server Responder" :
+          "IPC Server Responder #" + (i + 1) + " for port " + port);
+    }
     
     if (secretManager != null || UserGroupInformation.isSecurityEnabled()) {
       SaslRpcServer.init(conf);
@@ -2940,17 +3029,17 @@ private void setupResponse(
 
   private void setupResponse(RpcCall call,
       RpcResponseHeaderProto header, Writable rv) throws IOException {
-    final byte[] response;
+    final ByteBuffer response;
     if (rv == null || (rv instanceof RpcWritable.ProtobufWrapper)) {
       response = setupResponseForProtobuf(header, rv);
     } else {
-      response = setupResponseForWritable(header, rv);
+      response = ByteBuffer.wrap(setupResponseForWritable(header, rv));
     }
-    if (response.length > maxRespSize) {
-      LOG.warn("Large response size " + response.length + " for call "
+    if (response.remaining() > maxRespSize) {
+      LOG.warn("Large response size " + response.remaining() + " for call "
           + call.toString());
     }
-    call.setResponse(ByteBuffer.wrap(response));
+    call.setResponse(response, true);
   }
 
   private byte[] setupResponseForWritable(
@@ -2972,9 +3061,9 @@ private byte[] setupResponseForWritable(
   }
 
 
-  // writing to a pre-allocated array is the most efficient way to construct
-  // a protobuf response.
-  private byte[] setupResponseForProtobuf(
+  // writing to a pre-allocated, pooled array is the most efficient way to
+  // construct a protobuf response.
+  private ByteBuffer setupResponseForProtobuf(
       RpcResponseHeaderProto header, Writable rv) throws IOException {
     Message payload = (rv != null)
         ? ((RpcWritable.ProtobufWrapper)rv).getMessage() : null;
@@ -2982,18 +3071,24 @@ private byte[] setupResponseForProtobuf(
     if (payload != null) {
       length += getDelimitedLength(payload);
     }
-    byte[] buf = new byte[length + 4];
-    CodedOutputStream cos = CodedOutputStream.newInstance(buf);
-    // the stream only supports little endian ints
-    cos.writeRawByte((byte)((length >>> 24) & 0xFF));
-    cos.writeRawByte((byte)((length >>> 16) & 0xFF));
-    cos.writeRawByte((byte)((length >>>  8) & 0xFF));
-    cos.writeRawByte((byte)((length >>>  0) & 0xFF));
-    cos.writeRawVarint32(header.getSerializedSize());
-    header.writeTo(cos);
-    if (payload != null) {
-      cos.writeRawVarint32(payload.getSerializedSize());
-      payload.writeTo(cos);
+    ByteBuffer buf = getBuffer(length + 4);
+    try {
+      CodedOutputStream cos = CodedOutputStream.newInstance(
+          buf.array(), buf.arrayOffset(), length + 4);
+      // the stream only supports little endian ints
+      cos.writeRawByte((byte)((length >>> 24) & 0xFF));
+      cos.writeRawByte((byte)((length >>> 16) & 0xFF));
+      cos.writeRawByte((byte)((length >>>  8) & 0xFF));
+      cos.writeRawByte((byte)((length >>>  0) & 0xFF));
+      cos.writeRawVarint32(header.getSerializedSize());
+      header.writeTo(cos);
+      if (payload != null) {
+        cos.writeRawVarint32(payload.getSerializedSize());
+        payload.writeTo(cos);
+      }
+    } catch (IOException | RuntimeException e) {
+      returnBuffer(buf);
+      throw e;
     }
     return buf;
   }
@@ -3032,12 +3127,16 @@ private void setupResponseOldVersionFatal(ByteArrayOutputStream response,
 
   private void wrapWithSasl(RpcCall call) throws IOException {
     if (call.connection.saslServer != null) {
-      byte[] token = call.rpcResponse.array();
+      ByteBuffer response = call.rpcResponse;
+      byte[] token;
       // synchronization may be needed since there can be multiple Handler
       // threads using saslServer to wrap responses.
       synchronized (call.connection.saslServer) {
-        token = call.connection.saslServer.wrap(token, 0, token.length);
+        token = call.connection.saslServer.wrap(response.array(),
+            response.arrayOffset() + response.position(),
+            response.remaining());
       }
+      call.releaseResponse();
       if (LOG.isDebugEnabled())
         LOG.debug("Adding saslServer wrapped token of size " + token.length
             + " as call response.");
@@ -3067,7 +3166,9 @@ public void setTracer(Tracer t) {
 
   /** Starts the service.  Must be called before any calls will be handled. */
   public synchronized void start() {
-    responder.start();
+    for (Responder responder : responders) {
+      responder.start();
+    }
     listener.start();
     handlers = new Handler[handlerCount];
     
@@ -3090,7 +3191,9 @@ public synchronized void stop() {
     }
     listener.interrupt();
     listener.doStop();
-    responder.interrupt();
+    for (Responder responder : responders) {
+      responder.interrupt();
+    }
     notifyAll();
     this.rpcMetrics.shutdown();
     this.rpcDetailedMetrics.shutdown();
@@ -3232,6 +3335,39 @@ public int getNumReaders() {
    * be smaller.
    */
   private static int NIO_BUFFER_LIMIT = 8*1024; //should not be more than 64KB.
+
+  /** Smallest buffer taken from the pool. */
+  private static final int MIN_POOLED_BUFFER_SIZE = 512;
+
+  /**
+   * Get a heap buffer for an RPC request or response of the given length.
+   * It is taken from the pool unless pooling is disabled or the buffer is
+   * larger than the maximum response size.
+   *
+   * @return a buffer of at least the given capacity, with its limit set to
+   *         the given length.
+   */
+  private ByteBuffer getBuffer(int length) {
+    if (bufferPool == null || length > maxRespSize) {
+      return ByteBuffer.allocate(length);
+    }
+    // round up to limit the number of distinct capacities in the pool.
+    long capacity = Math.max(MIN_POOLED_BUFFER_SIZE,
+        Long.highestOneBit(length - 1L) << 1);
+    ByteBuffer buf = bufferPool.getBuffer(false,
+        (int) Math.min(capacity, maxRespSize));
+    buf.limit(length);
+    return buf;
+  }
+
+  /**
+   * Return a buffer which nothing references anymore to the pool.
+   */
+  private void returnBuffer(ByteBuffer buf) {
+    if (bufferPool != null && buf.capacity() <= maxRespSize) {
+      bufferPool.putBuffer(buf);
+    }
+  }
   
   /**
    * This is a wrapper around {@link WritableByteChannel#write(ByteBuffer)}.
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.util;
+
+import java.lang.reflect.Field;
+import java.nio.ByteOrder;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sun.misc.Unsafe;
+
+/**
+ * Searches byte arrays for delimiters a long word at a time.
+ *
+ * Each word is read with {@link Unsafe} and tested for the wanted bytes
+ * with a "has zero byte" bit trick, so that the bytes of a word without a
+ * delimiter are skipped with a few arithmetic operations. If {@link Unsafe}
+ * is not available, or the architecture does not allow unaligned reads, the
+ * bytes are compared one at a time.
+ */
+final class ByteScanner {
+  private static final Logger LOG = LoggerFactory.getLogger(ByteScanner.class);
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+  private static final long CRS = ONES * '\r';
+  private static final long LFS = ONES * '\n';
+
+  private static final Unsafe UNSAFE = getUnsafe();
+  private static final long BYTE_ARRAY_BASE_OFFSET =
+      UNSAFE == null ? 0 : UNSAFE.arrayBaseOffset(byte[].class);
+  private static final boolean LITTLE_ENDIAN =
+      ByteOrder.nativeOrder().equals(ByteOrder.LITTLE_ENDIAN);
+
+  private ByteScanner() {
+    // prevent instantiation
+  }
+
+  private static Unsafe getUnsafe() {
+    if (System.getProperty("os.arch").toLowerCase().startsWith("sparc")) {
+      return null;
+    }
+    try {
+      Unsafe unsafe = AccessController.doPrivileged(
+          new PrivilegedAction<Unsafe>() {
+            @Override
+            public Unsafe run() {
+              try {
+                Field f = Unsafe.class.getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                return (Unsafe) f.get(null);
+              } catch (NoSuchFieldException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+              }
+            }
+          });
+      if (unsafe.arrayIndexScale(byte[].class) != 1) {
+        return null;
+      }
+      return unsafe;
+    } catch (Throwable t) {
+      LOG.trace("Unsafe is not available, searching a byte at a time", t);
+      return null;
+    }
+  }
+
+  /**
+   * @return true if the searches read a long word at a time.
+   */
+  static boolean isWordAtATime() {
+    return UNSAFE != null;
+  }
+
+  /**
+   * @return a word with the high bit set in exactly the bytes of x which
+   * are zero. No carry crosses a byte, so every flagged byte is a match
+   * whatever the byte order.
+   */
+  private static long zeroBytes(long x) {
+    return ~(((x & LOWS) + LOWS) | x | LOWS);
+  }
+
+  /**
+   * @return the index of the first flagged byte in memory order.
+   */
+  private static int firstByte(long flags) {
+    return (LITTLE_ENDIAN ? Long.numberOfTrailingZeros(flags)
+        : Long.numberOfLeadingZeros(flags)) >>> 3;
+  }
+
+  private static long getLong(byte[] b, int i) {
+    return UNSAFE.getLong(b, BYTE_ARRAY_BASE_OFFSET + i);
+  }
+
+  /**
+   * Find the first CR or LF.
+   *
+   * @param b the bytes to search
+   * @param from the index to start at
+   * @param to the index to stop at, exclusive
+   * @return the index of the first CR or LF, or to if there is none.
+   */
+  static int indexOfLineEnd(byte[] b, int from, int to) {
+    int i = from;
+    if (UNSAFE != null) {
+      for (; i <= to - 8; i += 8) {
+        long word = getLong(b, i);
+        long flags = zeroBytes(word ^ CRS) | zeroBytes(word ^ LFS);
+        if (flags != 0) {
+          return i + firstByte(flags);
+        }
+      }
+    }
+    for (; i < to; i++) {
+      if (b[i] == '\r' || b[i] == '\n') {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Find the first occurrence of a byte.
+   *
+   * @param b the bytes to search
+   * @param from the index to start at
+   * @param to the index to stop at, exclusive
+   * @param value the byte to find
+   * @return the index of the first occurrence, or to if there is none.
+   */
+  static int indexOf(byte[] b, int from, int to, byte value) {
+    int i = from;
+    if (UNSAFE != null) {
+      long values = ONES * (value & 0xff);
+      for (; i <= to - 8; i += 8) {
+        long flags = zeroBytes(getLong(b, i) ^ values);
+        if (flags != 0) {
+          return i + firstByte(flags);
+        }
+      }
+    }
+    for (; i < to; i++) {
+      if (b[i] == value) {
+        return i;
+      }
+    }
+    return to;
+  }
+}
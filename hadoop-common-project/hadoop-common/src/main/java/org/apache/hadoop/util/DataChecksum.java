@@ -342,18 +342,9 @@ public void verifyChunkedSums(ByteBuffer data, ByteBuffer checksums,
     if (type.size == 0) return;
 
     if (data.hasArray() && checksums.hasArray()) {
-      final int dataOffset = data.arrayOffset() + data.position();
-      final int crcsOffset = checksums.arrayOffset() + checksums.position();
-
-      if (NativeCrc32.isAvailable()) {
-        NativeCrc32.verifyChunkedSumsByteArray(bytesPerChecksum, type.id,
-                checksums.array(), crcsOffset, data.array(), dataOffset,
-                data.remaining(), fileName, basePos);
-      } else {
-        verifyChunked(type, summer, data.array(), dataOffset, data.remaining(),
-                bytesPerChecksum, checksums.array(), crcsOffset, fileName,
-                basePos);
-      }
+      verifyChunkedSums(data.array(), data.arrayOffset() + data.position(),
+          data.remaining(), checksums.array(),
+          checksums.arrayOffset() + checksums.position(), fileName, basePos);
       return;
     }
     if (NativeCrc32.isAvailable() && data.isDirect()) {
@@ -365,10 +356,75 @@ public void verifyChunkedSums(ByteBuffer data, ByteBuffer checksums,
     }
   }
 
+  /**
+   * Implementation of chunked verification specifically on byte arrays.
+   *
+   * @param data the data to verify
+   * @param dataOffset the offset of the data in data
+   * @param dataLength the length of the data to verify
+   * @param checksums the stored checksums of the chunks of the data
+   * @param checksumsOffset the offset of the first checksum in checksums
+   * @param fileName the name of the file being read, for error-reporting
+   * @param basePos the file position to which the start of data corresponds
+   * @throws ChecksumException if the checksums do not match
+   */
+  public void verifyChunkedSums(byte[] data, int dataOffset, int dataLength,
+      byte[] checksums, int checksumsOffset, String fileName, long basePos)
+      throws ChecksumException {
+    if (type.size == 0) return;
+
+    if (NativeCrc32.isAvailable()) {
+      NativeCrc32.verifyChunkedSumsByteArray(bytesPerChecksum, type.id,
+          checksums, checksumsOffset, data, dataOffset, dataLength, fileName,
+          basePos);
+    } else {
+      verifyChunked(type, summer, data, dataOffset, dataLength,
+          bytesPerChecksum, checksums, checksumsOffset, fileName, basePos);
+    }
+  }
+
+  /**
+   * @return whether the checksum can be computed on a buffer without copying
+   *         the bytes of direct buffers to an array.
+   */
+  private static boolean canUpdateBuffer(Checksum algorithm) {
+    return algorithm instanceof CRC32 ||
+        (useJava9Crc32C && Java9Crc32CFactory.isCrc32C(algorithm));
+  }
+
+  /**
+   * Update the checksum with the next length bytes of data and advance the
+   * position of data past them.
+   *
+   * @param scratch array to copy the bytes to, if the checksum can not be
+   *                computed on the buffer; see {@link #canUpdateBuffer}.
+   */
+  private static void update(Checksum algorithm, ByteBuffer data, int length,
+      byte[] scratch) {
+    if (scratch != null) {
+      data.get(scratch, 0, length);
+      algorithm.update(scratch, 0, length);
+      return;
+    }
+    final int limit = data.limit();
+    data.limit(data.position() + length);
+    try {
+      if (algorithm instanceof CRC32) {
+        ((CRC32) algorithm).update(data);
+      } else {
+        Java9Crc32CFactory.update(algorithm, data);
+      }
+    } finally {
+      data.limit(limit);
+    }
+  }
+
   static void verifyChunked(final Type type, final Checksum algorithm,
       final ByteBuffer data, final int bytesPerCrc, final ByteBuffer crcs,
       final String filename, final long basePos) throws ChecksumException {
-    final byte[] bytes = new byte[bytesPerCrc];
+    // JDK checksums read direct buffers in place, using intrinsics.
+    final byte[] bytes = canUpdateBuffer(algorithm) ? null
+        : new byte[bytesPerCrc];
     final int dataOffset = data.position();
     final int dataLength = data.remaining();
     data.mark();
@@ -377,9 +433,8 @@ static void verifyChunked(final Type type, final Checksum algorithm,
     try {
       int i = 0;
       for(final int n = dataLength - bytesPerCrc + 1; i < n; i += bytesPerCrc) {
-        data.get(bytes);
         algorithm.reset();
-        algorithm.update(bytes, 0, bytesPerCrc);
+        update(algorithm, data, bytesPerCrc, bytes);
         final int computed = (int)algorithm.getValue();
         final int expected = crcs.getInt();
 
@@ -392,9 +447,8 @@ static void verifyChunked(final Type type, final Checksum algorithm,
 
       final int remainder = dataLength - i;
       if (remainder > 0) {
-        data.get(bytes, 0, remainder);
         algorithm.reset();
-        algorithm.update(bytes, 0, remainder);
+        update(algorithm, data, remainder, bytes);
         final int computed = (int)algorithm.getValue();
         final int expected = crcs.getInt();
 
@@ -488,12 +542,12 @@ public void calculateChunkedSums(ByteBuffer data, ByteBuffer checksums) {
     data.mark();
     checksums.mark();
     try {
-      byte[] buf = new byte[bytesPerChecksum];
+      byte[] buf = canUpdateBuffer(summer) ? null
+          : new byte[bytesPerChecksum];
       while (data.remaining() > 0) {
         int n = Math.min(data.remaining(), bytesPerChecksum);
-        data.get(buf, 0, n);
         summer.reset();
-        summer.update(buf, 0, n);
+        update(summer, data, n, buf);
         checksums.putInt((int)summer.getValue());
       }
     } finally {
@@ -577,21 +631,47 @@ public void update(int b) {}
    * Holds constructor handle to let it be initialized on demand.
    */
   private static class Java9Crc32CFactory {
+    private static final Class<?> CRC32C_CLASS;
     private static final MethodHandle NEW_CRC32C_MH;
+    private static final MethodHandle UPDATE_BUFFER_MH;
 
     static {
+      Class<?> crc32C = null;
       MethodHandle newCRC32C = null;
+      MethodHandle updateBuffer = null;
       try {
+        crc32C = Class.forName("java.util.zip.CRC32C");
         newCRC32C = MethodHandles.publicLookup()
             .findConstructor(
-                Class.forName("java.util.zip.CRC32C"),
+                crc32C,
                 MethodType.methodType(void.class)
             );
+        updateBuffer = MethodHandles.publicLookup()
+            .findVirtual(
+                Checksum.class, "update",
+                MethodType.methodType(void.class, ByteBuffer.class)
+            );
       } catch (ReflectiveOperationException e) {
         // Should not reach here.
         throw new RuntimeException(e);
       }
+      CRC32C_CLASS = crc32C;
       NEW_CRC32C_MH = newCRC32C;
+      UPDATE_BUFFER_MH = updateBuffer;
+    }
+
+    static boolean isCrc32C(Checksum checksum) {
+      return CRC32C_CLASS.isInstance(checksum);
+    }
+
+    static void update(Checksum checksum, ByteBuffer buffer) {
+      try {
+        // Should throw nothing
+        UPDATE_BUFFER_MH.invokeExact(checksum, buffer);
+      } catch (Throwable t) {
+        throw (t instanceof RuntimeException) ? (RuntimeException) t
+            : new RuntimeException(t);
+      }
     }
 
     public static Checksum createChecksum() {
@@ -217,17 +217,28 @@ private int readDefaultLine(Text str, int maxLineLength, int maxBytesToConsume)
           break; // EOF
         }
       }
-      for (; bufferPosn < bufferLength; ++bufferPosn) { //search for newline
+      if (prevCharCR) { //CR at the end of the previous buffer
         if (buffer[bufferPosn] == LF) {
-          newlineLength = (prevCharCR) ? 2 : 1;
+          newlineLength = 2;
           ++bufferPosn; // at next invocation proceed from following byte
-          break;
-        }
-        if (prevCharCR) { //CR + notLF, we are at notLF
+        } else { //CR + notLF, we are at notLF
           newlineLength = 1;
-          break;
         }
-        prevCharCR = (buffer[bufferPosn] == CR);
+      } else { //search for newline a word at a time
+        bufferPosn =
+            ByteScanner.indexOfLineEnd(buffer, bufferPosn, bufferLength);
+        if (bufferPosn < bufferLength) {
+          if (buffer[bufferPosn] == LF) {
+            newlineLength = 1;
+            ++bufferPosn;
+          } else if (bufferPosn + 1 < bufferLength) {
+            newlineLength = (buffer[bufferPosn + 1] == LF) ? 2 : 1;
+            bufferPosn += newlineLength;
+          } else {
+            prevCharCR = true;
+            ++bufferPosn;
+          }
+        }
       }
       int readLength = bufferPosn - startPosn;
       if (prevCharCR && newlineLength == 0) {
@@ -310,6 +321,14 @@ private int readCustomLine(Text str, int maxLineLength, int maxBytesToConsume)
         }
       }
       for (; bufferPosn < bufferLength; ++bufferPosn) {
+        if (delPosn == 0) {
+          // skip to the next byte which can start the delimiter
+          bufferPosn = ByteScanner.indexOf(buffer, bufferPosn, bufferLength,
+              recordDelimiterBytes[0]);
+          if (bufferPosn >= bufferLength) {
+            break;
+          }
+        }
         if (buffer[bufferPosn] == recordDelimiterBytes[delPosn]) {
           delPosn++;
           if (delPosn >= recordDelimiterBytes.length) {
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.conf;
+
+import com.google.common.base.Preconditions;
+
+import org.apache.hadoop.util.StopWatch;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark tool to test the performance of concurrent reads from a
+ * {@link Configuration}. The tool launches multiple threads which share one
+ * configuration and call get, getInt and getTrimmed on it, and measures the
+ * total number of reads per second. The configuration can be frozen, see
+ * {@link Configuration#freeze()}, to compare the lock-free snapshot reads
+ * with the regular ones.
+ */
+public final class ConfigurationBenchmark {
+
+  private ConfigurationBenchmark() {
+    // prevent instantiation
+  }
+
+  private static final int NUM_KEYS = 64;
+
+  private static final String KEY_PREFIX = "benchmark.key.";
+
+  private static final String[] KEYS = new String[NUM_KEYS];
+
+  static {
+    for (int i = 0; i < NUM_KEYS; i++) {
+      KEYS[i] = KEY_PREFIX + i;
+    }
+  }
+
+  enum OP {
+    GET, GET_INT, GET_TRIMMED
+  }
+
+  private static void usage(String message) {
+    if (message != null) {
+      System.out.println(message);
+    }
+    System.out.println(
+        "Usage: ConfigurationBenchmark <get/getInt/getTrimmed> " +
+            "<frozen/unfrozen> [numThreads] [numReads-in-millions]");
+    System.exit(1);
+  }
+
+  public static void main(String[] args) throws Exception {
+    OP op = null;
+    boolean frozen = false;
+    // default values
+    int numThreads = 1;
+    int numReadsM = 100;
+
+    if (args.length > 1) {
+      if ("get".equals(args[0])) {
+        op = OP.GET;
+      } else if ("getInt".equals(args[0])) {
+        op = OP.GET_INT;
+      } else if ("getTrimmed".equals(args[0])) {
+        op = OP.GET_TRIMMED;
+      } else {
+        usage("Invalid operation: " + args[0]);
+      }
+      if (!"frozen".equals(args[1]) && !"unfrozen".equals(args[1])) {
+        usage("Invalid mode: should be either 'frozen' or 'unfrozen'");
+      }
+      frozen = "frozen".equals(args[1]);
+    } else {
+      usage(null);
+    }
+
+    try {
+      if (args.length > 2) {
+        numThreads = Integer.parseInt(args[2]);
+        if (numThreads <= 0) {
+          usage("Invalid number of threads.");
+        }
+      }
+      if (args.length > 3) {
+        numReadsM = Integer.parseInt(args[3]);
+        if (numReadsM <= 0) {
+          usage("Invalid number of reads.");
+        }
+      }
+    } catch (NumberFormatException e) {
+      usage("Malformed argument, " + e.getMessage());
+    }
+
+    performBench(op, frozen, numThreads, numReadsM * 1000000L);
+  }
+
+  /**
+   * Performs benchmark.
+   *
+   * @param op          The operation to perform
+   * @param frozen      Whether to freeze the configuration
+   * @param numThreads  Number of threads to launch concurrently
+   * @param numReads    Total number of reads over all the threads
+   */
+  public static void performBench(OP op, boolean frozen, int numThreads,
+      long numReads) throws Exception {
+    Preconditions.checkArgument(numThreads > 0);
+    Preconditions.checkArgument(numReads > 0);
+
+    final Configuration conf = new Configuration(false);
+    for (String key : KEYS) {
+      conf.set(key, " ${" + KEY_PREFIX + "base} ");
+    }
+    conf.set(KEY_PREFIX + "base", "4096");
+    if (frozen) {
+      conf.freeze();
+    }
+
+    final long readsPerThread = numReads / numThreads;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<Long>> futures = new ArrayList<>(numThreads);
+    StopWatch sw = new StopWatch().start();
+    for (int i = 0; i < numThreads; i++) {
+      futures.add(executor.submit(
+          new BenchmarkCallable(conf, op, readsPerThread)));
+    }
+    long checksum = 0;
+    for (Future<Long> future : futures) {
+      checksum += future.get();
+    }
+    long durationMs = sw.now(TimeUnit.MILLISECONDS);
+    executor.shutdown();
+    if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+      executor.shutdownNow();
+    }
+
+    long totalReads = readsPerThread * numThreads;
+    DecimalFormat df = new DecimalFormat("#.##");
+    System.out.println(op + " on " + (frozen ? "frozen" : "unfrozen") +
+        " configuration with " + numThreads + " thread(s), " + totalReads +
+        " reads, " + durationMs + "ms, " +
+        df.format(totalReads * 1000.0 / Math.max(durationMs, 1)) +
+        " reads/s (checksum " + checksum + ")");
+  }
+
+  private static class BenchmarkCallable implements Callable<Long> {
+    private final Configuration conf;
+    private final OP op;
+    private final long numReads;
+
+    BenchmarkCallable(Configuration conf, OP op, long numReads) {
+      this.conf = conf;
+      this.op = op;
+      this.numReads = numReads;
+    }
+
+    @Override
+    public Long call() {
+      // the sum keeps the reads from being optimized away.
+      long sum = 0;
+      for (long i = 0; i < numReads; i++) {
+        String key = KEYS[(int) (i % NUM_KEYS)];
+        switch (op) {
+        case GET:
+          sum += conf.get(key).length();
+          break;
+        case GET_INT:
+          sum += conf.getInt(key, 0);
+          break;
+        case GET_TRIMMED:
+          sum += conf.getTrimmed(key).length();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown operation " + op);
+        }
+      }
+      return sum;
+    }
+  }
+}
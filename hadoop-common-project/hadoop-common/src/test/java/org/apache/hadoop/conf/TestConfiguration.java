@@ -66,6 +66,8 @@
 import org.apache.hadoop.conf.Configuration.IntegerRanges;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.security.alias.CredentialProvider;
 import org.apache.hadoop.security.alias.CredentialProviderFactory;
@@ -2444,4 +2446,129 @@ public void testResourceRace() {
     // Thread 1
     config.get("secondParse");
   }
+
+  @Test
+  public void testFrozenConfiguration() {
+    Configuration config = new Configuration(false);
+    config.set("frozen.base", "7");
+    config.set("frozen.int", " ${frozen.base} ");
+    config.set("frozen.bool", "true");
+    config.set("frozen.bad", "notanumber");
+    assertFalse(config.isFrozen());
+    config.freeze();
+    assertTrue(config.isFrozen());
+
+    assertEquals(" 7 ", config.get("frozen.int"));
+    assertEquals("7", config.getTrimmed("frozen.int"));
+    assertEquals(7, config.getInt("frozen.int", 0));
+    assertEquals(7L, config.getLong("frozen.int", 0L));
+    assertTrue(config.getBoolean("frozen.bool", false));
+    assertFalse(config.getBoolean("frozen.int", false));
+    assertNull(config.get("frozen.unset"));
+    assertEquals("x7", config.get("frozen.unset", "x${frozen.base}"));
+    assertEquals(3, config.getInt("frozen.unset", 3));
+    // parse failures are not cached
+    for (int i = 0; i < 2; i++) {
+      try {
+        config.getInt("frozen.bad", 0);
+        fail("Expected NumberFormatException");
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+
+    // modifications publish a new snapshot
+    config.set("frozen.base", "8");
+    config.set("frozen.unset", "9");
+    assertEquals(8, config.getInt("frozen.int", 0));
+    assertEquals(9, config.getInt("frozen.unset", 3));
+    config.unset("frozen.bool");
+    assertFalse(config.getBoolean("frozen.bool", false));
+    config.setBoolean("frozen.bool", true);
+    assertTrue(config.getBoolean("frozen.bool", false));
+
+    // deprecations added after freezing are honoured
+    Configuration.addDeprecation("frozen.old", "frozen.base");
+    assertEquals("8", config.get("frozen.old"));
+    config.set("frozen.old", "10");
+    assertEquals(10, config.getInt("frozen.base", 0));
+    assertEquals(10, config.getInt("frozen.int", 0));
+
+    // copies are not frozen
+    Configuration copy = new Configuration(config);
+    assertFalse(copy.isFrozen());
+    assertEquals(10, copy.getInt("frozen.int", 0));
+    config.clear();
+    assertNull(config.get("frozen.int"));
+    assertEquals(10, copy.getInt("frozen.int", 0));
+  }
+
+  @Test
+  public void testCopyOnWriteCopies() throws IOException {
+    Configuration parent = new Configuration(false);
+    for (int i = 0; i < 100; i++) {
+      parent.set("cow." + i, "v" + i, "source" + i);
+    }
+    Configuration child = new Configuration(parent);
+    Configuration grandChild = new Configuration(child);
+
+    // modifications are only visible to the modified configuration
+    child.set("cow.0", "child");
+    child.set("cow.new", "new");
+    child.unset("cow.1");
+    parent.set("cow.2", "parent");
+    parent.unset("cow.3");
+    assertEquals("child", child.get("cow.0"));
+    assertEquals("new", child.get("cow.new"));
+    assertNull(child.get("cow.1"));
+    assertEquals("v2", child.get("cow.2"));
+    assertEquals("v3", child.get("cow.3"));
+    assertEquals("v0", parent.get("cow.0"));
+    assertNull(parent.get("cow.new"));
+    assertEquals("v1", parent.get("cow.1"));
+    assertEquals("parent", parent.get("cow.2"));
+    assertNull(parent.get("cow.3"));
+    assertEquals("v0", grandChild.get("cow.0"));
+    assertEquals("v1", grandChild.get("cow.1"));
+    assertEquals("v2", grandChild.get("cow.2"));
+    assertEquals(100, parent.size() + 1);
+    assertEquals(100, child.size());
+    assertEquals(100, grandChild.size());
+    assertArrayEquals(new String[] {"source4"},
+        child.getPropertySources("cow.4"));
+
+    // iteration sees the merged properties
+    Map<String, String> entries = new HashMap<>();
+    for (Map.Entry<String, String> e : child) {
+      entries.put(e.getKey(), e.getValue());
+    }
+    assertEquals(100, entries.size());
+    assertEquals("child", entries.get("cow.0"));
+    assertFalse(entries.containsKey("cow.1"));
+
+    // write and readFields round trip the merged properties
+    DataOutputBuffer out = new DataOutputBuffer();
+    child.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    Configuration read = new Configuration(false);
+    read.readFields(in);
+    assertEquals(100, read.size());
+    assertEquals("child", read.get("cow.0"));
+    assertNull(read.get("cow.1"));
+    assertEquals("v99", read.get("cow.99"));
+    assertArrayEquals(new String[] {"source4"},
+        read.getPropertySources("cow.4"));
+
+    // copies of copies with many modifications stay independent
+    for (int i = 0; i < 100; i++) {
+      child.set("cow." + i, "c" + i);
+    }
+    Configuration copy = new Configuration(child);
+    child.clear();
+    assertEquals(0, child.size());
+    assertEquals("c5", copy.get("cow.5"));
+    assertEquals("v5", grandChild.get("cow.5"));
+    assertEquals("v5", parent.get("cow.5"));
+  }
 }
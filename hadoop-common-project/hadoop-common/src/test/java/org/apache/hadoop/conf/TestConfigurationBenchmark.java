@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.conf;
+
+import org.junit.Test;
+
+/**
+ * Tests for the configuration benchmark tool.
+ */
+public class TestConfigurationBenchmark {
+
+  @Test
+  public void testUnfrozen() throws Exception {
+    ConfigurationBenchmark.performBench(
+        ConfigurationBenchmark.OP.GET, false, 2, 10000);
+    ConfigurationBenchmark.performBench(
+        ConfigurationBenchmark.OP.GET_INT, false, 3, 10000);
+    ConfigurationBenchmark.performBench(
+        ConfigurationBenchmark.OP.GET_TRIMMED, false, 1, 10000);
+  }
+
+  @Test
+  public void testFrozen() throws Exception {
+    ConfigurationBenchmark.performBench(
+        ConfigurationBenchmark.OP.GET, true, 2, 10000);
+    ConfigurationBenchmark.performBench(
+        ConfigurationBenchmark.OP.GET_INT, true, 3, 10000);
+    ConfigurationBenchmark.performBench(
+        ConfigurationBenchmark.OP.GET_TRIMMED, true, 1, 10000);
+  }
+}
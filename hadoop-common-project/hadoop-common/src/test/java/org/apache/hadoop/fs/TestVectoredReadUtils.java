@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the vectored read API and its helpers in {@link VectoredReadUtils}.
+ */
+public class TestVectoredReadUtils {
+  private static final int FILE_LENGTH = 100 * 1024;
+  private static final File TEST_DIR =
+      GenericTestUtils.getTestDir("TestVectoredReadUtils");
+  private static final IntFunction<ByteBuffer> HEAP = ByteBuffer::allocate;
+  private static final IntFunction<ByteBuffer> DIRECT =
+      ByteBuffer::allocateDirect;
+
+  private static byte[] data;
+  private static Path testFile;
+
+  @BeforeClass
+  public static void createTestFile() throws Exception {
+    data = new byte[FILE_LENGTH];
+    for (int i = 0; i < FILE_LENGTH; i++) {
+      data[i] = (byte) (i % 251);
+    }
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    testFile = new Path(TEST_DIR.getAbsolutePath(), "vectored");
+    try (FSDataOutputStream out = fs.create(testFile, true)) {
+      out.write(data);
+    }
+  }
+
+  @AfterClass
+  public static void cleanup() throws Exception {
+    FileSystem.getLocal(new Configuration()).delete(
+        new Path(TEST_DIR.getAbsolutePath()), true);
+  }
+
+  private static List<FileRange> ranges(long... offsetsAndLengths) {
+    List<FileRange> result = new ArrayList<>();
+    for (int i = 0; i < offsetsAndLengths.length; i += 2) {
+      result.add(FileRange.createFileRange(offsetsAndLengths[i],
+          (int) offsetsAndLengths[i + 1]));
+    }
+    return result;
+  }
+
+  private static void validate(List<FileRange> ranges) throws Exception {
+    for (FileRange range : ranges) {
+      ByteBuffer buffer = range.getData().get(30, TimeUnit.SECONDS);
+      assertEquals("length of " + range, range.getLength(),
+          buffer.remaining());
+      byte[] actual = new byte[range.getLength()];
+      buffer.get(actual);
+      byte[] expected = Arrays.copyOfRange(data, (int) range.getOffset(),
+          (int) range.getOffset() + range.getLength());
+      assertArrayEquals("data of " + range, expected, actual);
+    }
+  }
+
+  @Test
+  public void testSortAndValidate() {
+    List<FileRange> input = ranges(1000, 100, 0, 10, 500, 50);
+    List<? extends FileRange> sorted =
+        VectoredReadUtils.validateAndSortRanges(input);
+    assertEquals(0, sorted.get(0).getOffset());
+    assertEquals(500, sorted.get(1).getOffset());
+    assertEquals(1000, sorted.get(2).getOffset());
+    try {
+      VectoredReadUtils.validateAndSortRanges(ranges(0, 100, 50, 10));
+      fail("Overlapping ranges were accepted");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      VectoredReadUtils.validateAndSortRanges(ranges(-1, 100));
+      fail("Negative offset was accepted");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testMerge() {
+    List<? extends FileRange> sorted = VectoredReadUtils.validateAndSortRanges(
+        ranges(0, 100, 110, 100, 5000, 100, 5150, 100));
+    // close enough ranges are merged, distant ones are not
+    List<CombinedFileRange> merged =
+        VectoredReadUtils.mergeSortedRanges(sorted, Long.MAX_VALUE, 100, 1024);
+    assertEquals(2, merged.size());
+    assertEquals(0, merged.get(0).getOffset());
+    assertEquals(210, merged.get(0).getLength());
+    assertEquals(2, merged.get(0).getUnderlying().size());
+    assertEquals(5000, merged.get(1).getOffset());
+    assertEquals(250, merged.get(1).getLength());
+
+    // the maximum size limits merging
+    merged = VectoredReadUtils.mergeSortedRanges(sorted, Long.MAX_VALUE, 100,
+        200);
+    assertEquals(4, merged.size());
+
+    // ranges are not merged across a chunk boundary
+    merged = VectoredReadUtils.mergeSortedRanges(sorted, 5100, 100, 1024);
+    assertEquals(3, merged.size());
+    assertEquals(5000, merged.get(1).getOffset());
+    assertEquals(5150, merged.get(2).getOffset());
+  }
+
+  @Test
+  public void testSliceTo() {
+    ByteBuffer buffer = ByteBuffer.wrap(data, 0, 1000);
+    ByteBuffer slice = VectoredReadUtils.sliceTo(buffer, 100,
+        FileRange.createFileRange(150, 20));
+    assertEquals(20, slice.remaining());
+    assertEquals(data[50], slice.get(0));
+  }
+
+  private void runVectoredRead(FileSystem fs, IntFunction<ByteBuffer> allocate)
+      throws Exception {
+    List<FileRange> input = ranges(0, 100, 4000, 4096, 4097 + 4096, 10,
+        FILE_LENGTH - 1000, 1000, 50000, 0);
+    try (FSDataInputStream in = fs.open(testFile)) {
+      in.readVectored(input, allocate);
+      validate(input);
+    }
+  }
+
+  @Test
+  public void testChecksumLocalFileSystem() throws Exception {
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    runVectoredRead(fs, HEAP);
+    runVectoredRead(fs, DIRECT);
+  }
+
+  @Test
+  public void testRawLocalFileSystem() throws Exception {
+    FileSystem fs = FileSystem.getLocal(new Configuration()).getRaw();
+    runVectoredRead(fs, HEAP);
+    runVectoredRead(fs, DIRECT);
+  }
+
+  @Test
+  public void testReadPastEOF() throws Exception {
+    for (FileSystem fs : new FileSystem[] {
+        FileSystem.getLocal(new Configuration()),
+        FileSystem.getLocal(new Configuration()).getRaw()}) {
+      List<FileRange> input = ranges(0, 100, FILE_LENGTH - 10, 100);
+      try (FSDataInputStream in = fs.open(testFile)) {
+        in.readVectored(input, HEAP);
+        validate(input.subList(0, 1));
+        ExecutionException e = LambdaTestUtils.intercept(
+            ExecutionException.class,
+            () -> input.get(1).getData().get(30, TimeUnit.SECONDS));
+        assertTrue("Unexpected cause " + e.getCause(),
+            e.getCause() instanceof EOFException);
+      }
+    }
+  }
+
+  @Test
+  public void testReadCombinedRangeAsync() throws Exception {
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    List<? extends FileRange> sorted = VectoredReadUtils.validateAndSortRanges(
+        ranges(0, 100, 200, 100, 60000, 100));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (FSDataInputStream in = fs.open(testFile)) {
+      for (CombinedFileRange combined : VectoredReadUtils.mergeSortedRanges(
+          sorted, Long.MAX_VALUE, 4096, 1024 * 1024)) {
+        VectoredReadUtils.readCombinedRangeAsync(in, combined, DIRECT,
+            executor);
+      }
+      List<FileRange> result = new ArrayList<>(sorted);
+      validate(result);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
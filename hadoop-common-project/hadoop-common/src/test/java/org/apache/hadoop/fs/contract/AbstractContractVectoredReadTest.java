@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.contract;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.junit.Test;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileRange;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.test.LambdaTestUtils;
+
+import static org.apache.hadoop.fs.contract.ContractTestUtils.createFile;
+import static org.apache.hadoop.fs.contract.ContractTestUtils.dataset;
+
+/**
+ * Test the vectored read API of input streams.
+ */
+public abstract class AbstractContractVectoredReadTest
+    extends AbstractFSContractTestBase {
+
+  public static final int DATASET_LEN = 64 * 1024;
+  private static final byte[] DATASET = dataset(DATASET_LEN, 'a', 32);
+  private static final String VECTORED_READ_FILE_NAME = "vectored_file.txt";
+  private static final long TIMEOUT_SECONDS = 300;
+
+  private static final IntFunction<ByteBuffer> HEAP = ByteBuffer::allocate;
+  private static final IntFunction<ByteBuffer> DIRECT =
+      ByteBuffer::allocateDirect;
+
+  private Path testFile;
+
+  @Override
+  public void setup() throws Exception {
+    super.setup();
+    FileSystem fs = getFileSystem();
+    testFile = path(VECTORED_READ_FILE_NAME);
+    createFile(fs, testFile, true, DATASET);
+  }
+
+  private static List<FileRange> ranges(int... offsetsAndLengths) {
+    List<FileRange> result = new ArrayList<>();
+    for (int i = 0; i < offsetsAndLengths.length; i += 2) {
+      result.add(FileRange.createFileRange(offsetsAndLengths[i],
+          offsetsAndLengths[i + 1]));
+    }
+    return result;
+  }
+
+  private void readAndValidate(List<FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws Exception {
+    try (FSDataInputStream in = getFileSystem().open(testFile)) {
+      in.readVectored(ranges, allocate);
+      for (FileRange range : ranges) {
+        ByteBuffer data = range.getData().get(TIMEOUT_SECONDS,
+            TimeUnit.SECONDS);
+        assertEquals("Length of " + range, range.getLength(),
+            data.remaining());
+        for (int i = 0; i < range.getLength(); i++) {
+          assertEquals("Byte " + i + " of " + range,
+              DATASET[(int) range.getOffset() + i], data.get());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDisjointRanges() throws Exception {
+    readAndValidate(ranges(0, 100, 4 * 1024 + 101, 100, 16 * 1024 + 101, 100),
+        HEAP);
+    readAndValidate(ranges(0, 100, 4 * 1024 + 101, 100, 16 * 1024 + 101, 100),
+        DIRECT);
+  }
+
+  @Test
+  public void testAllRangesMergedIntoOne() throws Exception {
+    readAndValidate(ranges(0, 100, 4 * 1024 - 101, 100, 8 * 1024 - 101, 100),
+        HEAP);
+  }
+
+  @Test
+  public void testUnsortedRanges() throws Exception {
+    readAndValidate(ranges(40 * 1024, 1024, 1000, 100, 20 * 1024, 7000,
+        DATASET_LEN - 1, 1), DIRECT);
+  }
+
+  @Test
+  public void testWholeFileAndEmptyRange() throws Exception {
+    readAndValidate(ranges(0, DATASET_LEN), HEAP);
+    readAndValidate(ranges(100, 0, 200, 10), HEAP);
+  }
+
+  @Test
+  public void testOverlappingRanges() throws Exception {
+    try (FSDataInputStream in = getFileSystem().open(testFile)) {
+      LambdaTestUtils.intercept(IllegalArgumentException.class,
+          () -> {
+            in.readVectored(ranges(0, 100, 50, 100), HEAP);
+            return "overlapping ranges were accepted";
+          });
+    }
+  }
+
+  @Test
+  public void testNegativeOffset() throws Exception {
+    try (FSDataInputStream in = getFileSystem().open(testFile)) {
+      LambdaTestUtils.intercept(IllegalArgumentException.class,
+          () -> {
+            in.readVectored(ranges(-1, 100), HEAP);
+            return "a negative offset was accepted";
+          });
+    }
+  }
+
+  @Test
+  public void testEOFRanges() throws Exception {
+    List<FileRange> eofRange = ranges(DATASET_LEN - 100, 200);
+    try (FSDataInputStream in = getFileSystem().open(testFile)) {
+      in.readVectored(eofRange, HEAP);
+      ExecutionException ex = LambdaTestUtils.intercept(
+          ExecutionException.class,
+          () -> eofRange.get(0).getData().get(TIMEOUT_SECONDS,
+              TimeUnit.SECONDS));
+      assertTrue("Expected an EOFException but got " + ex.getCause(),
+          ex.getCause() instanceof EOFException);
+    }
+  }
+
+  @Test
+  public void testNormalReadAfterVectoredRead() throws Exception {
+    List<FileRange> ranges = ranges(1000, 100, 30000, 100);
+    try (FSDataInputStream in = getFileSystem().open(testFile)) {
+      in.readVectored(ranges, HEAP);
+      for (FileRange range : ranges) {
+        range.getData().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      }
+      byte[] buffer = new byte[200];
+      in.seek(500);
+      in.readFully(buffer);
+      for (int i = 0; i < buffer.length; i++) {
+        assertEquals("Byte " + (500 + i), DATASET[500 + i], buffer[i]);
+      }
+    }
+  }
+}
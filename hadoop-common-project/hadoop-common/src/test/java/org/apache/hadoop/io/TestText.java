@@ -447,4 +447,26 @@ public void testUtf8Length() {
             2, Text.utf8Length(new String(new char[]{(char)254})));
   }
 
+  @Test
+  public void testDecodeAscii() throws CharacterCodingException {
+    byte[] ascii = "0123456789 ascii only text".getBytes(Charsets.UTF_8);
+    assertEquals("ascii only", Text.decode(ascii, 11, 10));
+    assertEquals("0123456789 ascii only text", new Text(ascii).toString());
+
+    // a non-ASCII byte in the last word or the tail still uses UTF-8
+    for (int pos : new int[] {3, 20}) {
+      byte[] utf8 = "0123456789 \u00e9 ascii only".getBytes(Charsets.UTF_8);
+      String decoded = Text.decode(utf8, 0, utf8.length);
+      assertEquals("0123456789 \u00e9 ascii only", decoded);
+      byte[] malformed = ascii.clone();
+      malformed[pos] = (byte) 0xff;
+      assertEquals('\ufffd', Text.decode(malformed).charAt(pos));
+      try {
+        Text.decode(malformed, 0, malformed.length, false);
+        fail("Malformed input should not be decoded");
+      } catch (CharacterCodingException e) {
+        // expected
+      }
+    }
+  }
 }
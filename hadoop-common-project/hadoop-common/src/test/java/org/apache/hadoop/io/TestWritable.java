@@ -21,7 +21,13 @@
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.function.Function;
 
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
@@ -32,6 +38,7 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /** Unit tests for Writable. */
@@ -222,4 +229,162 @@ public void testConfigurableWritableComparator() throws Exception {
     assertNotNull(key.getConf());
     assertEquals(key.getConf().get(TEST_WRITABLE_CONFIG_PARAM), TEST_WRITABLE_CONFIG_VALUE);
   }
+
+  /**
+   * Test that the raw comparators of the core writables follow their natural
+   * order, and that their normalized prefixes do not contradict it.
+   */
+  @Test
+  public void testNormalizedKeyComparators() throws Exception {
+    Random r = new Random(42);
+    checkNormalizedKeys(r, LongWritable.class,
+        rnd -> new LongWritable(rnd.nextInt(3) == 0
+            ? rnd.nextInt(5) - 2 : rnd.nextLong()));
+    checkNormalizedKeys(r, IntWritable.class,
+        rnd -> new IntWritable(rnd.nextInt(3) == 0
+            ? rnd.nextInt(5) - 2 : rnd.nextInt()));
+    checkNormalizedKeys(r, ShortWritable.class,
+        rnd -> new ShortWritable((short) rnd.nextInt()));
+    checkNormalizedKeys(r, ByteWritable.class,
+        rnd -> new ByteWritable((byte) rnd.nextInt()));
+    checkNormalizedKeys(r, BooleanWritable.class,
+        rnd -> new BooleanWritable(rnd.nextBoolean()));
+    checkNormalizedKeys(r, VIntWritable.class,
+        rnd -> new VIntWritable(rnd.nextInt() >> rnd.nextInt(32)));
+    checkNormalizedKeys(r, VLongWritable.class,
+        rnd -> new VLongWritable(rnd.nextLong() >> rnd.nextInt(64)));
+    final float[] floats = {Float.NaN, Float.NEGATIVE_INFINITY,
+        Float.POSITIVE_INFINITY, 0.0f, -0.0f, Float.MIN_VALUE, 1.5f, -1.5f};
+    checkNormalizedKeys(r, FloatWritable.class,
+        rnd -> new FloatWritable(rnd.nextBoolean()
+            ? floats[rnd.nextInt(floats.length)]
+            : (float) rnd.nextGaussian()));
+    final double[] doubles = {Double.NaN, Double.NEGATIVE_INFINITY,
+        Double.POSITIVE_INFINITY, 0.0, -0.0, Double.MIN_VALUE, 1.5, -1.5};
+    checkNormalizedKeys(r, DoubleWritable.class,
+        rnd -> new DoubleWritable(rnd.nextBoolean()
+            ? doubles[rnd.nextInt(doubles.length)] : rnd.nextGaussian()));
+    checkNormalizedKeys(r, Text.class,
+        rnd -> new Text(randomBytes(rnd, 12)));
+    checkNormalizedKeys(r, BytesWritable.class,
+        rnd -> new BytesWritable(randomBytes(rnd, 12)));
+    checkNormalizedKeys(r, MD5Hash.class,
+        rnd -> MD5Hash.digest(randomBytes(rnd, 4)));
+  }
+
+  /** Random bytes of a random length, from a small alphabet for ties. */
+  private static byte[] randomBytes(Random r, int maxLength) {
+    byte[] bytes = new byte[r.nextInt(maxLength)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (r.nextInt(3) * 0x7F);
+    }
+    return bytes;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends WritableComparable> void checkNormalizedKeys(
+      Random r, Class<T> keyClass, Function<Random, T> generator)
+      throws IOException {
+    RawComparator<T> comparator = WritableComparator.get(keyClass);
+    NormalizedKeyComparator normalized =
+        NormalizedKeyComparator.get(comparator);
+    assertNotNull(keyClass.getName(), normalized);
+
+    List<T> keys = new ArrayList<>();
+    List<byte[]> serialized = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      T key = generator.apply(r);
+      DataOutputBuffer out = new DataOutputBuffer();
+      key.write(out);
+      keys.add(key);
+      serialized.add(Arrays.copyOf(out.getData(), out.getLength()));
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      byte[] b1 = serialized.get(i);
+      long p1 = normalized.normalizedKeyPrefix(b1, 0, b1.length);
+      for (int j = 0; j < keys.size(); j++) {
+        byte[] b2 = serialized.get(j);
+        long p2 = normalized.normalizedKeyPrefix(b2, 0, b2.length);
+        int expected = Integer.signum(keys.get(i).compareTo(keys.get(j)));
+        String msg = keyClass.getSimpleName() + " " + keys.get(i) + " vs " +
+            keys.get(j);
+        assertEquals(msg, expected, Integer.signum(
+            comparator.compare(b1, 0, b1.length, b2, 0, b2.length)));
+        int prefixOrder = Integer.signum(Long.compareUnsigned(p1, p2));
+        assertTrue(msg, prefixOrder == 0 || prefixOrder == expected);
+      }
+    }
+  }
+
+  /**
+   * Test that subclasses which change the raw order do not inherit the
+   * normalized prefix of their parent.
+   */
+  @Test
+  public void testNormalizedKeyComparatorSubclass() throws Exception {
+    IntWritable.Comparator comparator = new IntWritable.Comparator();
+    assertSame(comparator, NormalizedKeyComparator.get(comparator));
+    assertNull(NormalizedKeyComparator.get(new IntWritable.Comparator() {
+      @Override
+      public int compare(byte[] b1, int s1, int l1,
+          byte[] b2, int s2, int l2) {
+        return -super.compare(b1, s1, l1, b2, s2, l2);
+      }
+    }));
+    assertNull(NormalizedKeyComparator.get(
+        WritableComparator.get(SimpleWritableComparable.class)));
+
+    LongWritable.DecreasingComparator decreasing =
+        new LongWritable.DecreasingComparator();
+    assertSame(decreasing, NormalizedKeyComparator.get(decreasing));
+    byte[] small = new byte[8];
+    byte[] large = new byte[8];
+    large[7] = 1;
+    assertTrue(decreasing.compare(small, 0, 8, large, 0, 8) > 0);
+    assertTrue(Long.compareUnsigned(
+        decreasing.normalizedKeyPrefix(small, 0, 8),
+        decreasing.normalizedKeyPrefix(large, 0, 8)) > 0);
+  }
+
+  /**
+   * Test the comparison of heap, direct and read-only buffers against the
+   * comparison of arrays.
+   */
+  @Test
+  public void testCompareByteBuffers() throws Exception {
+    Random r = new Random(7);
+    for (int i = 0; i < 1000; i++) {
+      byte[] b1 = randomBytes(r, 40);
+      byte[] b2 = randomBytes(r, 40);
+      int s1 = b1.length == 0 ? 0 : r.nextInt(b1.length);
+      int s2 = b2.length == 0 ? 0 : r.nextInt(b2.length);
+      int l1 = b1.length - s1;
+      int l2 = b2.length - s2;
+      int expected = Integer.signum(
+          WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2));
+
+      ByteBuffer heap1 = ByteBuffer.wrap(b1);
+      ByteBuffer direct2 = ByteBuffer.allocateDirect(b2.length);
+      direct2.put(b2);
+      ByteBuffer readOnly2 = ByteBuffer.wrap(b2).asReadOnlyBuffer()
+          .order(ByteOrder.LITTLE_ENDIAN);
+      ByteBuffer direct1 = ByteBuffer.allocateDirect(b1.length + 3)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      direct1.position(3);
+      direct1 = direct1.slice();
+      direct1.put(b1);
+
+      assertEquals(expected, Integer.signum(WritableComparator.compareBytes(
+          heap1, s1, l1, direct2, s2, l2)));
+      assertEquals(expected, Integer.signum(WritableComparator.compareBytes(
+          direct1, s1, l1, direct2, s2, l2)));
+      assertEquals(expected, Integer.signum(WritableComparator.compareBytes(
+          direct1, s1, l1, readOnly2, s2, l2)));
+      assertEquals(expected, Integer.signum(WritableComparator.compareBytes(
+          heap1, s1, l1, ByteBuffer.wrap(b2), s2, l2)));
+      // the positions are not changed
+      assertEquals(b1.length, direct1.position());
+      assertEquals(b2.length, direct2.position());
+    }
+  }
 }
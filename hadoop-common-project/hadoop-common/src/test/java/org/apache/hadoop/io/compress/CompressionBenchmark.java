@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.compress;
+
+import com.google.common.base.Preconditions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.zlib.ZlibCompressor.CompressionLevel;
+import org.apache.hadoop.io.compress.zlib.ZlibFactory;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StopWatch;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark tool to compare the codecs on block compressed
+ * {@link SequenceFile}s, the format used for intermediate data. For every
+ * combination of codec, compression level and block size a file of text
+ * records is written and read back, and the write and read throughput as
+ * well as the compression ratio are reported.
+ *
+ * The level is the zlib level for the default and gzip codecs, the zstd
+ * level, and for lz4 any level above 0 selects lz4hc. It is ignored by the
+ * other codecs. The block size is used both for the SequenceFile blocks and
+ * the buffers of the codec.
+ */
+public final class CompressionBenchmark {
+
+  private CompressionBenchmark() {
+    // prevent instantiation
+  }
+
+  enum CODEC {
+    DEFAULT(DefaultCodec.class),
+    GZIP(GzipCodec.class),
+    BZIP2(BZip2Codec.class),
+    LZ4(Lz4Codec.class),
+    SNAPPY(SnappyCodec.class),
+    ZSTD(ZStandardCodec.class);
+
+    private final Class<? extends CompressionCodec> codecClass;
+
+    CODEC(Class<? extends CompressionCodec> codecClass) {
+      this.codecClass = codecClass;
+    }
+
+    boolean isAvailable() {
+      return this != ZSTD || ZStandardCodec.isNativeCodeLoaded();
+    }
+  }
+
+  private static final int[] DEFAULT_LEVELS = {1, 6};
+
+  private static final int[] DEFAULT_BLOCK_SIZES = {64 * 1024, 1024 * 1024};
+
+  private static final String[] WORDS = {
+      "hadoop", "mapreduce", "shuffle", "sequence", "file", "codec", "block",
+      "record", "key", "value", "reducer", "mapper", "spill", "merge", "0",
+      "1", "2", "3", "4", "5", "6", "7", "8", "9"
+  };
+
+  private static void usage(String message) {
+    if (message != null) {
+      System.out.println(message);
+    }
+    System.out.println(
+        "Usage: CompressionBenchmark <all/default/gzip/bzip2/lz4/snappy/zstd>" +
+            " [level] [blockSize-in-KB] [dataSize-in-MB]");
+    System.exit(1);
+  }
+
+  public static void main(String[] args) throws Exception {
+    CODEC[] codecs = null;
+    int[] levels = DEFAULT_LEVELS;
+    int[] blockSizes = DEFAULT_BLOCK_SIZES;
+    // default values
+    int dataSizeMB = 64;
+
+    if (args.length > 0) {
+      if ("all".equals(args[0])) {
+        codecs = CODEC.values();
+      } else {
+        try {
+          codecs = new CODEC[] {CODEC.valueOf(args[0].toUpperCase())};
+        } catch (IllegalArgumentException e) {
+          usage("Invalid codec: " + args[0]);
+        }
+      }
+    } else {
+      usage(null);
+    }
+
+    try {
+      if (args.length > 1) {
+        levels = new int[] {Integer.parseInt(args[1])};
+      }
+      if (args.length > 2) {
+        int blockSizeKB = Integer.parseInt(args[2]);
+        if (blockSizeKB <= 0) {
+          usage("Invalid block size.");
+        }
+        blockSizes = new int[] {blockSizeKB * 1024};
+      }
+      if (args.length > 3) {
+        dataSizeMB = Integer.parseInt(args[3]);
+        if (dataSizeMB <= 0) {
+          usage("Invalid data size.");
+        }
+      }
+    } catch (NumberFormatException e) {
+      usage("Malformed argument, " + e.getMessage());
+    }
+
+    for (CODEC codec : codecs) {
+      if (!codec.isAvailable()) {
+        System.out.println("Skipping " + codec + ", native library missing");
+        continue;
+      }
+      for (int level : levels) {
+        for (int blockSize : blockSizes) {
+          performBench(codec, level, blockSize, dataSizeMB * 1024L * 1024L);
+        }
+      }
+    }
+  }
+
+  /**
+   * Performs benchmark.
+   *
+   * @param codec       The codec to benchmark
+   * @param level       The compression level, see the class comment
+   * @param blockSize   The size of the compressed blocks in bytes
+   * @param dataSize    The number of uncompressed bytes to write
+   */
+  public static void performBench(CODEC codec, int level, int blockSize,
+      long dataSize) throws Exception {
+    Preconditions.checkArgument(codec.isAvailable());
+    Preconditions.checkArgument(blockSize > 0);
+    Preconditions.checkArgument(dataSize > 0);
+
+    Configuration conf = new Configuration();
+    configure(conf, codec, level, blockSize);
+    CompressionCodec compressionCodec =
+        ReflectionUtils.newInstance(codec.codecClass, conf);
+    FileSystem fs = FileSystem.getLocal(conf);
+    Path file = new Path(GenericTestUtils.getTempPath(
+        "CompressionBenchmark-" + codec + "-" + level + "-" + blockSize));
+
+    try {
+      Text key = new Text();
+      Text value = new Text();
+      Random random = new Random(0);
+      long written = 0;
+      StopWatch sw = new StopWatch().start();
+      try (SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+          SequenceFile.Writer.file(file),
+          SequenceFile.Writer.keyClass(Text.class),
+          SequenceFile.Writer.valueClass(Text.class),
+          SequenceFile.Writer.compression(CompressionType.BLOCK,
+              compressionCodec))) {
+        while (written < dataSize) {
+          fill(key, random, 2);
+          fill(value, random, 12);
+          writer.append(key, value);
+          written += key.getLength() + value.getLength();
+        }
+      }
+      long writeMs = sw.now(TimeUnit.MILLISECONDS);
+      long fileSize = fs.getFileStatus(file).getLen();
+
+      long read = 0;
+      sw.reset().start();
+      try (SequenceFile.Reader reader = new SequenceFile.Reader(conf,
+          SequenceFile.Reader.file(file))) {
+        while (reader.next(key, value)) {
+          read += key.getLength() + value.getLength();
+        }
+      }
+      long readMs = sw.now(TimeUnit.MILLISECONDS);
+      Preconditions.checkState(read == written,
+          "Read " + read + " bytes but wrote " + written);
+
+      DecimalFormat df = new DecimalFormat("#.##");
+      System.out.println(codec + " level " + level + ", block size " +
+          blockSize + ": " + written + " bytes, ratio " +
+          df.format((double) written / fileSize) + ", write " +
+          df.format(throughputMBps(written, writeMs)) + " MB/s, read " +
+          df.format(throughputMBps(read, readMs)) + " MB/s");
+    } finally {
+      fs.delete(file, false);
+    }
+  }
+
+  private static void configure(Configuration conf, CODEC codec, int level,
+      int blockSize) {
+    conf.setInt(CommonConfigurationKeys.IO_SEQFILE_COMPRESS_BLOCKSIZE_KEY,
+        blockSize);
+    switch (codec) {
+    case DEFAULT:
+    case GZIP:
+      ZlibFactory.setCompressionLevel(conf, level >= 0 && level <= 9
+          ? CompressionLevel.values()[level]
+          : CompressionLevel.DEFAULT_COMPRESSION);
+      conf.setInt(CommonConfigurationKeys.IO_FILE_BUFFER_SIZE_KEY, blockSize);
+      break;
+    case LZ4:
+      conf.setBoolean(
+          CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_USELZ4HC_KEY,
+          level > 0);
+      conf.setInt(
+          CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_BUFFERSIZE_KEY,
+          blockSize);
+      break;
+    case SNAPPY:
+      conf.setInt(
+          CommonConfigurationKeys.IO_COMPRESSION_CODEC_SNAPPY_BUFFERSIZE_KEY,
+          blockSize);
+      break;
+    case ZSTD:
+      conf.setInt(CommonConfigurationKeys.IO_COMPRESSION_CODEC_ZSTD_LEVEL_KEY,
+          level);
+      conf.setInt(
+          CommonConfigurationKeys.IO_COMPRESSION_CODEC_ZSTD_BUFFER_SIZE_KEY,
+          blockSize);
+      break;
+    default:
+      break;
+    }
+  }
+
+  /** Fill the text with the given number of words, separated by spaces. */
+  private static void fill(Text text, Random random, int words) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < words; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    text.set(sb.toString());
+  }
+
+  private static double throughputMBps(long bytes, long ms) {
+    return bytes * 1000.0 / Math.max(ms, 1) / 1024 / 1024;
+  }
+}
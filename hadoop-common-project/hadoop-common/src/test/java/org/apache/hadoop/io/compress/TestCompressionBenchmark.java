@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.compress;
+
+import org.junit.Test;
+
+/**
+ * Tests for the compression benchmark tool.
+ */
+public class TestCompressionBenchmark {
+
+  @Test
+  public void testJavaCodecs() throws Exception {
+    CompressionBenchmark.performBench(
+        CompressionBenchmark.CODEC.DEFAULT, 1, 64 * 1024, 256 * 1024);
+    CompressionBenchmark.performBench(
+        CompressionBenchmark.CODEC.BZIP2, 9, 64 * 1024, 256 * 1024);
+  }
+
+  @Test
+  public void testBlockCodecs() throws Exception {
+    CompressionBenchmark.performBench(
+        CompressionBenchmark.CODEC.LZ4, 0, 64 * 1024, 256 * 1024);
+    CompressionBenchmark.performBench(
+        CompressionBenchmark.CODEC.LZ4, 1, 16 * 1024, 256 * 1024);
+    CompressionBenchmark.performBench(
+        CompressionBenchmark.CODEC.SNAPPY, 0, 32 * 1024, 256 * 1024);
+  }
+}
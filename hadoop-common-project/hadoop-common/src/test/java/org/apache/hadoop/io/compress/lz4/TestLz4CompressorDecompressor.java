@@ -25,6 +25,7 @@
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import org.apache.hadoop.io.DataInputBuffer;
@@ -33,23 +34,16 @@
 import org.apache.hadoop.io.compress.BlockDecompressorStream;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
-import org.apache.hadoop.io.compress.Lz4Codec;
 import org.apache.hadoop.io.compress.lz4.Lz4Compressor;
 import org.apache.hadoop.io.compress.lz4.Lz4Decompressor;
+import org.apache.hadoop.io.compress.lz4.Lz4Decompressor.Lz4DirectDecompressor;
 import org.apache.hadoop.test.MultithreadedTestUtil;
-import org.junit.Before;
 import org.junit.Test;
-import static org.junit.Assume.*;
 
 public class TestLz4CompressorDecompressor {
   
   private static final Random rnd = new Random(12345l);
 
-  @Before
-  public void before() {
-    assumeTrue(Lz4Codec.isNativeCodeLoaded());
-  }
-
   //test on NullPointerException in {@code compressor.setInput()} 
   @Test
   public void testCompressorSetInputNullPointerException() {
@@ -315,6 +309,41 @@ public static byte[] generate(int size) {
     return array;
   }
 
+  @Test
+  public void testLz4DirectBlockCompression() throws IOException {
+    int[] sizes = {4 * 1024, 64 * 1024, 128 * 1024};
+    for (int size : sizes) {
+      byte[] rawData = generate(size);
+      // long runs produce overlapping matches with long lengths
+      for (int i = size / 2; i < size / 2 + 1000; i++) {
+        rawData[i] = 7;
+      }
+      Lz4Compressor compressor = new Lz4Compressor(size * 2);
+      compressor.setInput(rawData, 0, size);
+      compressor.finish();
+      byte[] compressed = new byte[size * 2];
+      int compressedSize = compressor.compress(compressed, 0,
+          compressed.length);
+      assertTrue(compressedSize < size);
+
+      ByteBuffer inBuf = ByteBuffer.allocateDirect(compressedSize);
+      inBuf.put(compressed, 0, compressedSize);
+      inBuf.flip();
+      // decompress after some bytes to check the positions are respected
+      ByteBuffer outBuf = ByteBuffer.allocateDirect(size + 10);
+      outBuf.position(10);
+      Lz4DirectDecompressor decompressor = new Lz4DirectDecompressor();
+      decompressor.decompress(inBuf, outBuf);
+      assertTrue(decompressor.finished());
+      assertEquals(0, inBuf.remaining());
+      assertEquals(size + 10, outBuf.position());
+      outBuf.position(10);
+      byte[] result = new byte[size];
+      outBuf.get(result);
+      assertArrayEquals(rawData, result);
+    }
+  }
+
   @Test
   public void testLz4CompressDecompressInMultiThreads() throws Exception {
     MultithreadedTestUtil.TestContext ctx = new MultithreadedTestUtil.TestContext();
@@ -38,22 +38,14 @@
 import org.apache.hadoop.io.compress.BlockDecompressorStream;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
-import org.apache.hadoop.io.compress.SnappyCodec;
 import org.apache.hadoop.io.compress.snappy.SnappyDecompressor.SnappyDirectDecompressor;
 import org.apache.hadoop.test.MultithreadedTestUtil;
 import org.junit.Assert;
-import org.junit.Before;
 import org.junit.Test;
 
-import static org.junit.Assume.*;
 
 public class TestSnappyCompressorDecompressor {
 
-  @Before
-  public void before() {
-    assumeTrue(SnappyCodec.isNativeCodeLoaded());
-  }
-
   @Test
   public void testSnappyCompressorSetInputNullPointerException() {
     try {
@@ -319,7 +311,6 @@ private void compressDecompressLoop(int rawDataSize) throws IOException {
   @Test
   public void testSnappyDirectBlockCompression() {
     int[] size = { 4 * 1024, 64 * 1024, 128 * 1024, 1024 * 1024 };    
-    assumeTrue(SnappyCodec.isNativeCodeLoaded());
     try {
       for (int i = 0; i < size.length; i++) {
         compressDecompressLoop(size[i]);
@@ -45,6 +45,7 @@
 import java.net.InetSocketAddress;
 import java.security.PrivilegedExceptionAction;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Benchmark for protobuf RPC.
@@ -53,6 +54,11 @@
 public class RPCCallBenchmark extends TestRpcBase implements Tool {
   private Configuration conf;
   private AtomicLong callCount = new AtomicLong(0);
+  // Call latencies in microseconds. The last bucket counts all the calls
+  // taking longer.
+  private static final int MAX_LATENCY_US = 100000;
+  private final AtomicLongArray latencyHistogram =
+      new AtomicLongArray(MAX_LATENCY_US + 1);
   private static ThreadMXBean threadBean =
     ManagementFactory.getThreadMXBean();
   
@@ -60,6 +66,7 @@ private static class MyOptions {
     private boolean failed = false;
     private int serverThreads = 0;
     private int serverReaderThreads = 1;
+    private int serverResponderThreads = 1;
     private int clientThreads = 0;
     private String host = "0.0.0.0";
     private int port = 0;
@@ -101,6 +108,11 @@ private Options buildOptions() {
         .withArgName("threads")
         .withDescription("number of server reader threads to run")
         .create("r"));
+      opts.addOption(
+        OptionBuilder.withLongOpt("serverResponderThreads").hasArg(true)
+        .withArgName("threads")
+        .withDescription("number of server responder threads to run")
+        .create("w"));
 
       
       opts.addOption(
@@ -163,6 +175,9 @@ private void processOptions(CommandLine line, Options opts)
       if (line.hasOption('r')) {
         serverReaderThreads = Integer.parseInt(line.getOptionValue('r'));
       }
+      if (line.hasOption('w')) {
+        serverResponderThreads = Integer.parseInt(line.getOptionValue('w'));
+      }
       if (line.hasOption('c')) {
         clientThreads = Integer.parseInt(line.getOptionValue('c'));
       }
@@ -207,8 +222,9 @@ public int getPort() {
     @Override
     public String toString() {
       return "rpcEngine=" + rpcEngine + "\nserverThreads=" + serverThreads
-          + "\nserverReaderThreads=" + serverReaderThreads + "\nclientThreads="
-          + clientThreads + "\nhost=" + host + "\nport=" + getPort()
+          + "\nserverReaderThreads=" + serverReaderThreads
+          + "\nserverResponderThreads=" + serverResponderThreads
+          + "\nclientThreads=" + clientThreads + "\nhost=" + host + "\nport=" + getPort()
           + "\nsecondsToRun=" + secondsToRun + "\nmsgSize=" + msgSize;
     }
   }
@@ -221,6 +237,8 @@ private Server startServer(MyOptions opts) throws IOException {
     }
     conf.setInt(CommonConfigurationKeys.IPC_SERVER_RPC_READ_THREADS_KEY,
         opts.serverReaderThreads);
+    conf.setInt(CommonConfigurationKeys.IPC_SERVER_RPC_RESPONDER_THREADS_KEY,
+        opts.serverResponderThreads);
     
     RPC.Server server;
     // Get RPC server for server side implementation
@@ -294,6 +312,9 @@ public int run(String[] args) throws Exception {
           System.out.println("====== Results ======");
           System.out.println("Options:\n" + opts);
           System.out.println("Total calls per second: " + callsPerSec);
+          System.out.println("Call latency p50/p99/p99.9: " +
+              getLatencyPercentile(50) + "/" + getLatencyPercentile(99) +
+              "/" + getLatencyPercentile(99.9) + " us");
           System.out.println("CPU time per call on client: " +
               (cpuNanosClient / totalCalls) + " ns");
           if (server != null) {
@@ -356,7 +377,11 @@ public RpcServiceWrapper run() throws Exception {
       ctx.addThread(new MultithreadedTestUtil.RepeatingTestThread(ctx) {
         @Override
         public void doAnAction() throws Exception {
+          long start = System.nanoTime();
           proxy.doEcho(echoMessage);
+          long latencyUs = (System.nanoTime() - start) / 1000;
+          latencyHistogram.incrementAndGet(
+              (int) Math.min(latencyUs, MAX_LATENCY_US));
           callCount.incrementAndGet();
         }
       });
@@ -364,6 +389,27 @@ public void doAnAction() throws Exception {
     return ctx;
   }
 
+  /**
+   * @return the given percentile of the call latencies in microseconds.
+   *         Latencies of {@link #MAX_LATENCY_US} and more are reported as
+   *         {@link #MAX_LATENCY_US}.
+   */
+  private long getLatencyPercentile(double percentile) {
+    long total = 0;
+    for (int i = 0; i <= MAX_LATENCY_US; i++) {
+      total += latencyHistogram.get(i);
+    }
+    long target = (long) Math.ceil(percentile / 100 * total);
+    long count = 0;
+    for (int i = 0; i <= MAX_LATENCY_US; i++) {
+      count += latencyHistogram.get(i);
+      if (count >= target) {
+        return i;
+      }
+    }
+    return MAX_LATENCY_US;
+  }
+
   /**
    * Simple interface that can be implemented either by the
    * protobuf or writable implementations.
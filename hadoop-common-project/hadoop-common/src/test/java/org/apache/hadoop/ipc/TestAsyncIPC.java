@@ -38,6 +38,7 @@
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -312,6 +313,40 @@ public void testFutureGetWithTimeout() throws IOException,
   }
 
 
+  @Test(timeout = 60000)
+  public void testCompletableFutureResponses() throws Exception {
+    final Server server = new TestIPC.TestServer(10, false, conf);
+    final InetSocketAddress addr = NetUtils.getConnectAddress(server);
+    server.start();
+
+    final Client client = new Client(LongWritable.class, conf);
+    final int asyncCallCount = client.getAsyncCallCount();
+
+    try {
+      // the test runs in its own thread because of the timeout.
+      Client.setAsynchronousMode(true);
+      final int count = 200;
+      final List<CompletableFuture<Writable>> futures = new ArrayList<>();
+      final long[] expected = new long[count];
+      for (int i = 0; i < count; i++) {
+        expected[i] = TestIPC.RANDOM.nextLong();
+        TestIPC.call(client, expected[i], addr, conf);
+        futures.add(Client.getAsyncRpcResponseFuture());
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+          .get();
+      for (int i = 0; i < count; i++) {
+        assertEquals("call" + i + " failed.", expected[i],
+            ((LongWritable) futures.get(i).get()).get());
+      }
+      // completed futures no longer count as outstanding calls.
+      assertEquals(asyncCallCount, client.getAsyncCallCount());
+    } finally {
+      client.stop();
+      server.stop();
+    }
+  }
+
   public void internalTestAsyncCallLimit(int handlerCount, boolean handlerSleep,
       int clientCount, int callerCount, int callCount) throws IOException,
       InterruptedException, ExecutionException {
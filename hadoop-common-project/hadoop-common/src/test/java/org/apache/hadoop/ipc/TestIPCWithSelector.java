@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.net.NetUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Run the tests of {@link TestIPC} with clients that read the responses of
+ * their connections on one thread with a selector.
+ */
+public class TestIPCWithSelector extends TestIPC {
+
+  @Before
+  @Override
+  public void setupConf() {
+    super.setupConf();
+    conf.setBoolean(CommonConfigurationKeys.IPC_CLIENT_SELECTOR_ENABLED_KEY,
+        true);
+  }
+
+  /** The connections to several servers start no thread of their own. */
+  @Test(timeout=60000)
+  public void testResponsesOfConnectionsReadByOneThread() throws Exception {
+    Server[] servers = new Server[3];
+    InetSocketAddress[] addrs = new InetSocketAddress[servers.length];
+    for (int i = 0; i < servers.length; i++) {
+      servers[i] = new TestServer(2, false);
+      addrs[i] = NetUtils.getConnectAddress(servers[i]);
+      servers[i].start();
+    }
+    Client client = new Client(LongWritable.class, conf);
+    try {
+      for (int i = 0; i < 10; i++) {
+        for (InetSocketAddress addr : addrs) {
+          assertEquals(i, call(client, i, addr, conf).get());
+        }
+      }
+      int connectionThreads = 0;
+      int selectorThreads = 0;
+      for (Thread t : Thread.getAllStackTraces().keySet()) {
+        if (t.getName().startsWith("IPC Client (")) {
+          if (t.getName().endsWith("response selector")) {
+            selectorThreads++;
+          } else if (t.isAlive()) {
+            connectionThreads++;
+          }
+        }
+      }
+      assertEquals(1, selectorThreads);
+      assertEquals(0, connectionThreads);
+    } finally {
+      client.stop();
+      for (Server server : servers) {
+        server.stop();
+      }
+    }
+  }
+
+  /**
+   * A call waiting longer than the ping interval succeeds with pings, and
+   * times out without them.
+   */
+  @Test(timeout=60000)
+  public void testCallLongerThanPingInterval() throws Exception {
+    // the server sleeps longer than the ping interval before it responds
+    Server server = new TestServer(1, true);
+    InetSocketAddress addr = NetUtils.getConnectAddress(server);
+    server.start();
+    Client client = new Client(LongWritable.class, conf);
+    Configuration noPingConf = new Configuration(conf);
+    noPingConf.setBoolean(CommonConfigurationKeys.IPC_CLIENT_PING_KEY, false);
+    try {
+      assertEquals(1, call(client, 1, addr, conf).get());
+      try {
+        call(client, 1, addr, noPingConf);
+        fail("Expected a SocketTimeoutException");
+      } catch (SocketTimeoutException e) {
+        LOG.info("Got the expected timeout", e);
+      }
+    } finally {
+      client.stop();
+      server.stop();
+    }
+  }
+}
@@ -1438,6 +1438,50 @@ public boolean equals(Object t) {
     }
   }
 
+  /**
+   * Concurrent calls of various sizes must not see each other's data when
+   * the server reuses its request and response buffers.
+   */
+  @Test (timeout=60000)
+  public void testPooledBuffers() throws Exception {
+    Server server = null;
+    TestRpcService proxy = null;
+    // responses above this size are not pooled.
+    conf.setInt(
+        CommonConfigurationKeys.IPC_SERVER_RPC_MAX_RESPONSE_SIZE_KEY, 4096);
+    conf.setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY, true);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      server = setupTestServer(conf, 4);
+      proxy = getClient(addr, conf);
+      final TestRpcService client = proxy;
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < 200; i++) {
+              int length = ThreadLocalRandom.current().nextInt(8192);
+              char[] chars = new char[length];
+              Arrays.fill(chars, (char) ('a' + i % 26));
+              String msg = new String(chars);
+              assertEquals(msg,
+                  client.echo(null, newEchoRequest(msg)).getMessage());
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+      stop(server, proxy);
+    }
+  }
+
   @Test (timeout=30000)
   public void testReaderExceptions() throws Exception {
     Server server = null;
@@ -33,6 +33,7 @@ public void testBenchmarkWithProto() throws Exception {
       "--serverThreads", "30",
       "--time", "5",
       "--serverReaderThreads", "4",
+      "--serverResponderThreads", "2",
       "--messageSize", "1024",
       "--engine", "protobuf"});
     assertEquals(0, rc);
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class TestRpcBufferPool {
+
+  @Test
+  public void testReuse() {
+    RpcBufferPool pool = new RpcBufferPool(4, 1 << 20);
+    ByteBuffer buf = pool.getBuffer(false, 1024);
+    assertEquals(1024, buf.capacity());
+    buf.position(100);
+    pool.putBuffer(buf);
+    assertEquals(1024, pool.getPooledBytes());
+
+    // only buffers of exactly the requested capacity are reused.
+    assertNotSame(buf, pool.getBuffer(false, 512));
+    ByteBuffer reused = pool.getBuffer(false, 1024);
+    assertSame(buf, reused);
+    assertEquals(0, reused.position());
+    assertEquals(1024, reused.limit());
+    assertEquals(0, pool.getPooledBytes());
+  }
+
+  @Test
+  public void testMaxBuffersPerSize() {
+    RpcBufferPool pool = new RpcBufferPool(2, 1 << 20);
+    for (int i = 0; i < 5; i++) {
+      pool.putBuffer(ByteBuffer.allocate(512));
+      pool.putBuffer(ByteBuffer.allocate(1024));
+    }
+    assertEquals(2, pool.getPooledBuffers(512));
+    assertEquals(2, pool.getPooledBuffers(1024));
+    assertEquals(2 * 512 + 2 * 1024, pool.getPooledBytes());
+  }
+
+  @Test
+  public void testMaxBytes() {
+    RpcBufferPool pool = new RpcBufferPool(100, 4096);
+    for (int i = 0; i < 10; i++) {
+      pool.putBuffer(ByteBuffer.allocate(1024));
+    }
+    assertEquals(4, pool.getPooledBuffers(1024));
+    assertEquals(4096, pool.getPooledBytes());
+    // a full pool keeps no buffer which would exceed the limit.
+    pool.putBuffer(ByteBuffer.allocate(512));
+    assertEquals(0, pool.getPooledBuffers(512));
+
+    // taking buffers out makes room again.
+    pool.getBuffer(false, 1024);
+    pool.putBuffer(ByteBuffer.allocate(512));
+    assertEquals(1, pool.getPooledBuffers(512));
+    assertEquals(3 * 1024 + 512, pool.getPooledBytes());
+  }
+}
@@ -97,6 +97,22 @@ public DataChecksum.Type crcType() {
       }
     }
 
+    /** The bulk DataChecksum API, using the fastest CRC32C available. */
+    final class BulkC implements Crc32 {
+      @Override
+      public void verifyChunked(ByteBuffer data, int bytesPerCrc,
+          ByteBuffer sums, String fileName, long basePos)
+              throws ChecksumException {
+        DataChecksum.newDataChecksum(crcType(), bytesPerCrc)
+            .verifyChunkedSums(data, sums, fileName, basePos);
+      }
+
+      @Override
+      public DataChecksum.Type crcType() {
+        return DataChecksum.Type.CRC32C;
+      }
+    }
+
     abstract class AbstractCrc32<T extends Checksum> implements Crc32 {
       abstract T newAlgorithm();
 
@@ -186,6 +202,7 @@ public DataChecksum.Type crcType() {
     }
     crcs.add(Crc32.PureJava.class);
     crcs.add(Crc32.PureJavaC.class);
+    crcs.add(Crc32.BulkC.class);
 
     if (NativeCrc32.isAvailable()) {
       if (direct) {
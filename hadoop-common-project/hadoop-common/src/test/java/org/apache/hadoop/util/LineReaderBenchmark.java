@@ -0,0 +1,228 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.util;
+
+import com.google.common.base.Preconditions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark tool for {@link LineReader}. For every combination of input
+ * codec, average line length and delimiter, text of random lines is
+ * generated in memory, optionally compressed, and split into lines, and
+ * the throughput of the uncompressed bytes is reported.
+ *
+ * The lines are generated once per combination, so the time of the
+ * compression is not included, only the decompression and the search for
+ * the delimiters.
+ */
+public final class LineReaderBenchmark {
+
+  private LineReaderBenchmark() {
+    // prevent instantiation
+  }
+
+  enum CODEC {
+    NONE(null),
+    DEFAULT(DefaultCodec.class),
+    GZIP(GzipCodec.class),
+    BZIP2(BZip2Codec.class);
+
+    private final Class<? extends CompressionCodec> codecClass;
+
+    CODEC(Class<? extends CompressionCodec> codecClass) {
+      this.codecClass = codecClass;
+    }
+  }
+
+  private static final int[] DEFAULT_LINE_LENGTHS = {16, 128, 1024};
+
+  private static final String CUSTOM_DELIMITER = "\u0001\n";
+
+  private static final int ITERATIONS = 5;
+
+  private static void usage(String message) {
+    if (message != null) {
+      System.out.println(message);
+    }
+    System.out.println(
+        "Usage: LineReaderBenchmark <all/none/default/gzip/bzip2>" +
+            " [lineLength] [dataSize-in-MB]");
+    System.exit(1);
+  }
+
+  public static void main(String[] args) throws Exception {
+    CODEC[] codecs = null;
+    int[] lineLengths = DEFAULT_LINE_LENGTHS;
+    // default values
+    int dataSizeMB = 64;
+
+    if (args.length > 0) {
+      if ("all".equals(args[0])) {
+        codecs = CODEC.values();
+      } else {
+        try {
+          codecs = new CODEC[] {CODEC.valueOf(args[0].toUpperCase())};
+        } catch (IllegalArgumentException e) {
+          usage("Invalid codec: " + args[0]);
+        }
+      }
+    } else {
+      usage(null);
+    }
+
+    try {
+      if (args.length > 1) {
+        int lineLength = Integer.parseInt(args[1]);
+        if (lineLength <= 0) {
+          usage("Invalid line length.");
+        }
+        lineLengths = new int[] {lineLength};
+      }
+      if (args.length > 2) {
+        dataSizeMB = Integer.parseInt(args[2]);
+        if (dataSizeMB <= 0) {
+          usage("Invalid data size.");
+        }
+      }
+    } catch (NumberFormatException e) {
+      usage("Malformed argument, " + e.getMessage());
+    }
+
+    System.out.println("Searching " + (ByteScanner.isWordAtATime()
+        ? "a long word" : "a byte") + " at a time");
+    for (CODEC codec : codecs) {
+      for (int lineLength : lineLengths) {
+        for (boolean custom : new boolean[] {false, true}) {
+          performBench(codec, lineLength, custom,
+              dataSizeMB * 1024 * 1024);
+        }
+      }
+    }
+  }
+
+  /**
+   * Performs benchmark.
+   *
+   * @param codec       The codec of the input
+   * @param lineLength  The average length of the lines in bytes
+   * @param custom      Whether the lines end in a custom delimiter instead
+   *                    of LF and CR LF
+   * @param dataSize    The minimum number of uncompressed bytes to read
+   */
+  public static void performBench(CODEC codec, int lineLength,
+      boolean custom, int dataSize) throws Exception {
+    Preconditions.checkArgument(lineLength > 0);
+    Preconditions.checkArgument(dataSize > 0);
+
+    Configuration conf = new Configuration();
+    CompressionCodec compressionCodec = codec.codecClass == null ? null
+        : ReflectionUtils.newInstance(codec.codecClass, conf);
+    byte[] delimiter =
+        CUSTOM_DELIMITER.getBytes(StandardCharsets.ISO_8859_1);
+
+    ByteArrayOutputStream raw = new ByteArrayOutputStream(dataSize);
+    long lines = generate(raw, new Random(0), lineLength, custom, dataSize);
+    long length = raw.size();
+    byte[] data = raw.toByteArray();
+    if (compressionCodec != null) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (OutputStream out =
+          compressionCodec.createOutputStream(compressed)) {
+        out.write(data);
+      }
+      data = compressed.toByteArray();
+    }
+
+    Text line = new Text();
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ITERATIONS; i++) {
+      StopWatch sw = new StopWatch().start();
+      InputStream in = new ByteArrayInputStream(data);
+      if (compressionCodec != null) {
+        in = compressionCodec.createInputStream(in);
+      }
+      long read = 0;
+      long count = 0;
+      try (LineReader reader = custom ? new LineReader(in, conf, delimiter)
+          : new LineReader(in, conf)) {
+        for (int n; (n = reader.readLine(line)) > 0;) {
+          read += n;
+          count++;
+        }
+      }
+      best = Math.min(best, sw.now(TimeUnit.MILLISECONDS));
+      Preconditions.checkState(read == length && count == lines,
+          "Read " + count + " lines of " + read + " bytes but wrote " +
+              lines + " lines of " + length + " bytes");
+    }
+
+    DecimalFormat df = new DecimalFormat("#.##");
+    System.out.println(codec + ", line length " + lineLength + ", " +
+        (custom ? "custom" : "default") + " delimiter: " + lines +
+        " lines, ratio " + df.format((double) length / data.length) +
+        ", read " + df.format(throughputMBps(length, best)) + " MB/s");
+  }
+
+  /**
+   * Write random lines of printable characters, with lengths uniformly
+   * distributed around the given average, until at least dataSize bytes
+   * are written.
+   * @return the number of lines written
+   */
+  private static long generate(OutputStream out, Random random,
+      int lineLength, boolean custom, int dataSize) throws Exception {
+    byte[] buf = new byte[2 * lineLength + 2];
+    long lines = 0;
+    for (int written = 0; written < dataSize; lines++) {
+      int length = random.nextInt(2 * lineLength);
+      int n = 0;
+      for (; n < length; n++) {
+        buf[n] = (byte) (' ' + random.nextInt('~' - ' '));
+      }
+      // half of the default lines end in CR LF
+      if (custom) {
+        buf[n++] = 1;
+      } else if (random.nextBoolean()) {
+        buf[n++] = '\r';
+      }
+      buf[n++] = '\n';
+      out.write(buf, 0, n);
+      written += n;
+    }
+    return lines;
+  }
+
+  private static double throughputMBps(long bytes, long ms) {
+    return bytes * 1000.0 / Math.max(ms, 1) / 1024 / 1024;
+  }
+}
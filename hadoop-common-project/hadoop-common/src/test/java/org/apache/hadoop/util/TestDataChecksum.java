@@ -198,6 +198,39 @@ private static ByteBuffer directify(ByteBuffer dataBuf) {
     return newBuf;
   }
 
+  @Test
+  public void testChunkedSumsByteArray() throws Exception {
+    for (DataChecksum.Type type : CHECKSUM_TYPES) {
+      DataChecksum checksum = DataChecksum.newDataChecksum(
+          type, BYTES_PER_CHUNK);
+      byte[] data = new byte[3 * BYTES_PER_CHUNK + 100];
+      new Random().nextBytes(data);
+      int sumsLength = 4 * checksum.getChecksumSize();
+      byte[] sums = new byte[SUMS_OFFSET_IN_BUFFER + sumsLength];
+      checksum.calculateChunkedSums(data, 0, data.length, sums,
+          SUMS_OFFSET_IN_BUFFER);
+
+      // direct buffers give the same checksums
+      ByteBuffer directSums = ByteBuffer.allocateDirect(sumsLength);
+      checksum.calculateChunkedSums(directify(ByteBuffer.wrap(data)),
+          directSums);
+      for (int i = 0; i < sumsLength; i++) {
+        assertEquals(sums[SUMS_OFFSET_IN_BUFFER + i], directSums.get(i));
+      }
+
+      checksum.verifyChunkedSums(data, 0, data.length, sums,
+          SUMS_OFFSET_IN_BUFFER, "fake file", 100);
+      data[2 * BYTES_PER_CHUNK + 1]++;
+      try {
+        checksum.verifyChunkedSums(data, 0, data.length, sums,
+            SUMS_OFFSET_IN_BUFFER, "fake file", 100);
+        fail("Did not throw on bad data");
+      } catch (ChecksumException ce) {
+        assertEquals(100 + 2 * BYTES_PER_CHUNK, ce.getPos());
+      }
+    }
+  }
+
   @Test
   public void testCrc32() throws Exception {
     new Crc32PerformanceTest(8, 3, true).run();
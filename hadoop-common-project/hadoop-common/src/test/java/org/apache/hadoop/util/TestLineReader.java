@@ -19,6 +19,9 @@
 package org.apache.hadoop.util;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.util.LineReader;
@@ -153,4 +156,59 @@ public void testCustomDelimiter() throws Exception {
     lineReader.readLine(line);
     Assert.assertEquals("ccc", line.toString());
   }
+
+  /**
+   * Lines of random lengths and line endings are split the same way as one
+   * byte at a time, for delimiters at every position of a long word and
+   * across the buffer boundaries.
+   */
+  @Test
+  public void testWordAtATimeSearch() throws Exception {
+    Random random = new Random(1);
+    String[] newlines = {"\n", "\r", "\r\n"};
+    byte[] letters = "ab\tc\u00e4rx".getBytes("UTF-8");
+    for (int bufferSize : new int[] {1, 7, 8, 9, 64}) {
+      StringBuilder data = new StringBuilder();
+      List<String> expected = new ArrayList<String>();
+      List<Integer> lengths = new ArrayList<Integer>();
+      for (int i = 0; i < 200; i++) {
+        StringBuilder text = new StringBuilder();
+        // no empty lines, a CR followed by one would be a CR LF
+        int length = 1 + random.nextInt(i % 10 == 0 ? 100 : 20);
+        for (int j = 0; j < length; j++) {
+          text.append((char) (letters[random.nextInt(letters.length)] & 0xff));
+        }
+        String newline = newlines[random.nextInt(newlines.length)];
+        expected.add(text.toString());
+        lengths.add(text.length() + newline.length());
+        data.append(text).append(newline);
+      }
+      lineReader = new LineReader(
+          new ByteArrayInputStream(data.toString().getBytes("ISO-8859-1")),
+          bufferSize);
+      line = new Text();
+      for (int i = 0; i < expected.size(); i++) {
+        int consumed = lineReader.readLine(line);
+        Assert.assertEquals(expected.get(i), new String(line.getBytes(), 0,
+            line.getLength(), "ISO-8859-1"));
+        Assert.assertEquals((int) lengths.get(i), consumed);
+      }
+      Assert.assertEquals(0, lineReader.readLine(line));
+
+      // the same lines split by a custom delimiter
+      String delimiter = "rxr";
+      data.setLength(0);
+      for (String text : expected) {
+        data.append(text.replace("r", "")).append(delimiter);
+      }
+      lineReader = new LineReader(
+          new ByteArrayInputStream(data.toString().getBytes("ISO-8859-1")),
+          bufferSize, delimiter.getBytes("ISO-8859-1"));
+      for (String text : expected) {
+        lineReader.readLine(line);
+        Assert.assertEquals(text.replace("r", ""), new String(
+            line.getBytes(), 0, line.getLength(), "ISO-8859-1"));
+      }
+    }
+  }
 }
@@ -0,0 +1,432 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.ParentNotDirectoryException;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathIsNotEmptyDirectoryException;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSOpsCountStatistics.OpType;
+import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
+import org.apache.hadoop.hdfs.protocol.QuotaByStorageTypeExceededException;
+import org.apache.hadoop.hdfs.protocol.SnapshotAccessControlException;
+import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
+import org.apache.hadoop.hdfs.server.namenode.SafeModeException;
+import org.apache.hadoop.io.retry.AsyncCallHandler;
+import org.apache.hadoop.ipc.Client;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.security.AccessControlException;
+
+/**
+ * Implementation of the asynchronous distributed file system.
+ * This instance of this class is the way end-user code interacts
+ * with a Hadoop DistributedFileSystem in an asynchronous manner.
+ *
+ * The metadata operations are sent to the NameNode as asynchronous RPC calls,
+ * so no thread is blocked while they are in progress. Their futures are
+ * completed by the thread processing the asynchronous calls; dependent
+ * actions which may block should be run with an executor. The operations
+ * involving DataNodes, such as creating a file or reading data, are run by a
+ * bounded thread pool shared by the DFSClients of the JVM.
+ *
+ * At most {@code dfs.client.async.max.outstanding.calls} operations may be
+ * outstanding; callers issuing further operations block
+ * until one of them completes.
+ *
+ * Symbolic links are not resolved by the operations of this class.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class AsyncDistributedFileSystem {
+
+  /** An operation issuing an asynchronous RPC call. */
+  @FunctionalInterface
+  private interface AsyncRpc {
+    void call() throws IOException;
+  }
+
+  /** A conversion of the result of an operation, which may fail. */
+  @FunctionalInterface
+  private interface Converter<T, R> {
+    R apply(T value) throws IOException;
+  }
+
+  private final DistributedFileSystem dfs;
+  private final Semaphore outstandingCalls;
+
+  AsyncDistributedFileSystem(final DistributedFileSystem dfs) {
+    this.dfs = dfs;
+    this.outstandingCalls = new Semaphore(
+        dfs.getClient().getConf().getAsyncMaxOutstandingCalls());
+  }
+
+  private DFSClient getClient() {
+    return dfs.getClient();
+  }
+
+  private Executor getExecutor() {
+    return getClient().getAsyncThreadPool();
+  }
+
+  /**
+   * Wait until another operation may be issued.
+   */
+  private void acquire() throws IOException {
+    try {
+      outstandingCalls.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted waiting for an outstanding operation to complete");
+    }
+  }
+
+  private <T> CompletableFuture<T> releaseOnCompletion(
+      CompletableFuture<T> future) {
+    return future.whenComplete((value, thrown) -> outstandingCalls.release());
+  }
+
+  /**
+   * Issue the RPC call of the given operation in asynchronous mode.
+   *
+   * @return the future of the RPC call.
+   */
+  private static <T> CompletableFuture<T> callAsync(AsyncRpc rpc) {
+    final boolean isAsync = Client.isAsynchronousMode();
+    Client.setAsynchronousMode(true);
+    try {
+      rpc.call();
+      return AsyncCallHandler.getAsyncReturnFuture();
+    } catch (IOException | RuntimeException e) {
+      return failedFuture(e);
+    } finally {
+      Client.setAsynchronousMode(isAsync);
+    }
+  }
+
+  private static <T> CompletableFuture<T> failedFuture(Throwable t) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(t);
+    return future;
+  }
+
+  /**
+   * Convert the result of the given future, unwrapping remote exceptions of
+   * the given types.
+   */
+  private static <T, R> CompletableFuture<R> thenConvert(
+      CompletableFuture<T> future, Converter<T, R> converter,
+      Class<?>... lookupTypes) {
+    final CompletableFuture<R> result = new CompletableFuture<>();
+    future.whenComplete((value, thrown) -> {
+      try {
+        if (thrown != null) {
+          throw unwrap(thrown, lookupTypes);
+        }
+        result.complete(converter.apply(value));
+      } catch (Throwable t) {
+        result.completeExceptionally(t);
+      }
+    });
+    return result;
+  }
+
+  private static Throwable unwrap(Throwable thrown, Class<?>... lookupTypes) {
+    Throwable cause = thrown;
+    if (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof RemoteException) {
+      return ((RemoteException) cause).unwrapRemoteException(lookupTypes);
+    }
+    return cause;
+  }
+
+  /**
+   * Get the status of a file or directory.
+   *
+   * @param f the path
+   * @return a future of the file status. It fails with a
+   *         {@link FileNotFoundException} if the path does not exist.
+   * @throws IOException if the operation cannot be issued.
+   */
+  public CompletableFuture<FileStatus> getFileStatus(Path f)
+      throws IOException {
+    dfs.getFsStatistics().incrementReadOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.GET_FILE_STATUS);
+    final Path absF = dfs.fixRelativePart(f);
+    final String src = dfs.getPathName(absF);
+    final DFSClient client = getClient();
+    acquire();
+    final CompletableFuture<HdfsFileStatus> future =
+        callAsync(() -> client.getFileInfo(src));
+    return releaseOnCompletion(thenConvert(future, fi -> {
+      if (fi == null) {
+        throw new FileNotFoundException("File does not exist: " + f);
+      }
+      return fi.makeQualified(dfs.getUri(), absF);
+    }, AccessControlException.class,
+        FileNotFoundException.class,
+        UnresolvedPathException.class));
+  }
+
+  /**
+   * List the statuses of the files and directories in the given directory.
+   * Large directories are listed by a chain of asynchronous calls; like
+   * {@link DistributedFileSystem#listStatus(Path)} this is not atomic.
+   *
+   * @param p the directory
+   * @return a future of the statuses. It fails with a
+   *         {@link FileNotFoundException} if the directory does not exist.
+   * @throws IOException if the operation cannot be issued.
+   */
+  public CompletableFuture<FileStatus[]> listStatus(Path p)
+      throws IOException {
+    final Path absF = dfs.fixRelativePart(p);
+    final String src = dfs.getPathName(absF);
+    acquire();
+    return releaseOnCompletion(listPaths(src, absF, HdfsFileStatus.EMPTY_NAME,
+        new ArrayList<>()));
+  }
+
+  private CompletableFuture<FileStatus[]> listPaths(final String src,
+      final Path p, final byte[] startAfter, final List<FileStatus> listing) {
+    final DFSClient client = getClient();
+    final CompletableFuture<DirectoryListing> call =
+        callAsync(() -> client.listPaths(src, startAfter));
+    final CompletableFuture<DirectoryListing> future = thenConvert(call,
+        v -> v,
+        AccessControlException.class,
+        FileNotFoundException.class,
+        UnresolvedPathException.class);
+    return future.thenCompose(thisListing -> {
+      if (thisListing == null) { // the directory does not exist
+        return failedFuture(
+            new FileNotFoundException("File " + p + " does not exist."));
+      }
+      final boolean firstBatch = startAfter == HdfsFileStatus.EMPTY_NAME;
+      for (HdfsFileStatus fileStatus : thisListing.getPartialListing()) {
+        listing.add(fileStatus.makeQualified(dfs.getUri(), p));
+      }
+      if (firstBatch && !thisListing.hasMore()) {
+        dfs.getFsStatistics().incrementReadOps(1);
+      } else {
+        dfs.getFsStatistics().incrementLargeReadOps(1);
+      }
+      dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.LIST_STATUS);
+      if (!thisListing.hasMore()) {
+        return CompletableFuture.completedFuture(
+            listing.toArray(new FileStatus[listing.size()]));
+      }
+      // issue the next call from the pool, as setting up the call may block
+      final byte[] lastName = thisListing.getLastName();
+      return CompletableFuture.supplyAsync(
+          () -> listPaths(src, p, lastName, listing), getExecutor())
+          .thenCompose(Function.identity());
+    });
+  }
+
+  /**
+   * Rename a file or directory.
+   *
+   * @see DistributedFileSystem#rename(Path, Path, Options.Rename...)
+   * @return a future which completes once the rename is done.
+   * @throws IOException if the operation cannot be issued.
+   */
+  public CompletableFuture<Void> rename(Path src, Path dst,
+      final Options.Rename... options) throws IOException {
+    dfs.getFsStatistics().incrementWriteOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.RENAME);
+    final String srcPath = dfs.getPathName(dfs.fixRelativePart(src));
+    final String dstPath = dfs.getPathName(dfs.fixRelativePart(dst));
+    final DFSClient client = getClient();
+    acquire();
+    final CompletableFuture<Void> future =
+        callAsync(() -> client.rename(srcPath, dstPath, options));
+    return releaseOnCompletion(thenConvert(future, v -> v,
+        AccessControlException.class,
+        DSQuotaExceededException.class,
+        QuotaByStorageTypeExceededException.class,
+        FileAlreadyExistsException.class,
+        FileNotFoundException.class,
+        ParentNotDirectoryException.class,
+        SafeModeException.class,
+        NSQuotaExceededException.class,
+        UnresolvedPathException.class,
+        SnapshotAccessControlException.class));
+  }
+
+  /**
+   * Delete a file or directory.
+   *
+   * @param f the path to delete.
+   * @param recursive if the path is a non-empty directory, whether to delete
+   *                  its contents.
+   * @return a future of whether the delete was successful.
+   * @throws IOException if the operation cannot be issued.
+   */
+  public CompletableFuture<Boolean> delete(Path f, final boolean recursive)
+      throws IOException {
+    dfs.getFsStatistics().incrementWriteOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.DELETE);
+    final String src = dfs.getPathName(dfs.fixRelativePart(f));
+    final DFSClient client = getClient();
+    acquire();
+    final CompletableFuture<Boolean> future =
+        callAsync(() -> client.delete(src, recursive));
+    return releaseOnCompletion(thenConvert(future, v -> v,
+        AccessControlException.class,
+        FileNotFoundException.class,
+        SafeModeException.class,
+        UnresolvedPathException.class,
+        SnapshotAccessControlException.class,
+        PathIsNotEmptyDirectoryException.class));
+  }
+
+  /**
+   * Open a file for reading. The block locations are fetched with an
+   * asynchronous call; the stream is then set up by the thread pool.
+   *
+   * @param f the file to open.
+   * @return a future of the input stream.
+   * @throws IOException if the operation cannot be issued.
+   */
+  public CompletableFuture<FSDataInputStream> open(Path f)
+      throws IOException {
+    dfs.getFsStatistics().incrementReadOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.OPEN);
+    final String src = dfs.getPathName(dfs.fixRelativePart(f));
+    final boolean verifyChecksum = dfs.getVerifyChecksum();
+    final DFSClient client = getClient();
+    client.checkOpen();
+    acquire();
+    final CompletableFuture<LocatedBlocks> call =
+        callAsync(() -> client.getLocatedBlocks(src, 0));
+    final CompletableFuture<LocatedBlocks> future = thenConvert(call, v -> v,
+        AccessControlException.class,
+        FileNotFoundException.class,
+        UnresolvedPathException.class);
+    return releaseOnCompletion(future.thenApplyAsync(locatedBlocks -> {
+      try {
+        final DFSInputStream dfsis = client.openInternal(locatedBlocks, src,
+            verifyChecksum);
+        return client.createWrappedInputStream(dfsis);
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    }, getExecutor()));
+  }
+
+  /**
+   * Create a file with the default buffer size, replication and block size.
+   * The file is created by the thread pool, as setting up the output stream
+   * involves the DataNodes.
+   *
+   * @param f the file to create.
+   * @param permission the permission of the file.
+   * @param overwrite whether to overwrite an existing file.
+   * @return a future of the output stream.
+   * @throws IOException if the operation cannot be issued.
+   */
+  public CompletableFuture<FSDataOutputStream> create(final Path f,
+      final FsPermission permission, final boolean overwrite)
+      throws IOException {
+    final int bufferSize = dfs.getConf().getInt(
+        CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_KEY,
+        CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_DEFAULT);
+    final short replication = dfs.getDefaultReplication(f);
+    final long blockSize = dfs.getDefaultBlockSize(f);
+    acquire();
+    return releaseOnCompletion(CompletableFuture.supplyAsync(() -> {
+      try {
+        return dfs.create(f, permission, overwrite, bufferSize, replication,
+            blockSize, null);
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    }, getExecutor()));
+  }
+
+  /**
+   * Read bytes from the given position of a stream opened by this file
+   * system into the buffer. The read is run by the thread pool and does not
+   * change the position of the stream.
+   *
+   * @param in the stream to read from.
+   * @param position the position in the file to start reading from.
+   * @param buf the buffer to read into, up to its remaining bytes.
+   * @return a future of the number of bytes read, or -1 if the position is
+   *         at or beyond the end of the file.
+   * @throws IOException if the operation cannot be issued.
+   */
+  public CompletableFuture<Integer> read(final FSDataInputStream in,
+      final long position, final ByteBuffer buf) throws IOException {
+    acquire();
+    return releaseOnCompletion(CompletableFuture.supplyAsync(() -> {
+      try {
+        return pread(in, position, buf);
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    }, getExecutor()));
+  }
+
+  private static int pread(FSDataInputStream in, long position,
+      ByteBuffer buf) throws IOException {
+    final InputStream wrapped = in.getWrappedStream();
+    if (wrapped instanceof DFSInputStream) {
+      if (!buf.hasRemaining()) {
+        return 0;
+      }
+      return ((DFSInputStream) wrapped).pread(position, buf);
+    }
+    // e.g. encrypted files, which are decrypted by a wrapping stream
+    final byte[] bytes = new byte[buf.remaining()];
+    final int n = in.read(position, bytes, 0, bytes.length);
+    if (n > 0) {
+      buf.put(bytes, 0, n);
+    }
+    return n;
+  }
+}
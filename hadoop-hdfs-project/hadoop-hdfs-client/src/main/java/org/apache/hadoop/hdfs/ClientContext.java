@@ -109,6 +109,11 @@ public class ClientContext {
   /** Creating byte[] for {@link DFSOutputStream}. */
   private final ByteArrayManager byteArrayManager;
 
+  /**
+   * Read latencies and failed DataNodes, shared by all input streams.
+   */
+  private final DatanodeLatencyTracker datanodeLatencyTracker;
+
   /**
    * Whether or not we complained about a DFSClient fetching a CacheContext that
    * didn't match its config values yet.
@@ -134,6 +139,8 @@ private ClientContext(String name, DfsClientConf conf,
 
     this.byteArrayManager = ByteArrayManager.newInstance(
         conf.getWriteByteArrayManagerConf());
+    this.datanodeLatencyTracker = new DatanodeLatencyTracker(
+        conf.getSharedDeadNodesExpiryMs());
     initTopologyResolution(config);
   }
 
@@ -239,6 +246,10 @@ public ByteArrayManager getByteArrayManager() {
     return byteArrayManager;
   }
 
+  public DatanodeLatencyTracker getDatanodeLatencyTracker() {
+    return datanodeLatencyTracker;
+  }
+
   public int getNetworkDistance(DatanodeInfo datanodeInfo) throws IOException {
     // If applications disable the feature or the client machine can't
     // resolve its network location, clientNode will be set to null.
@@ -44,6 +44,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -239,6 +240,10 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
       new DFSHedgedReadMetrics();
   private static ThreadPoolExecutor HEDGED_READ_THREAD_POOL;
   private static volatile ThreadPoolExecutor STRIPED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor VECTORED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor STRIPED_ENCODE_THREAD_POOL;
+  private static volatile ThreadPoolExecutor STRIPED_READ_AHEAD_THREAD_POOL;
+  private static volatile ThreadPoolExecutor ASYNC_THREAD_POOL;
   private final int smallBufferSize;
   private final long serverDefaultsValidityPeriod;
 
@@ -1036,7 +1041,7 @@ public DFSInputStream open(HdfsPathHandle fd, int buffersize,
     }
   }
 
-  private DFSInputStream openInternal(LocatedBlocks locatedBlocks, String src,
+  DFSInputStream openInternal(LocatedBlocks locatedBlocks, String src,
       boolean verifyChecksum) throws IOException {
     if (locatedBlocks != null) {
       ErasureCodingPolicy ecPolicy = locatedBlocks.getErasureCodingPolicy();
@@ -3018,6 +3023,85 @@ private void initThreadsNumForStripedReads(int numThreads) {
     }
   }
 
+  /**
+   * Get the thread pool for the ranges of vectored reads, creating it on
+   * first use.
+   */
+  ThreadPoolExecutor getVectoredReadsThreadPool() {
+    if (VECTORED_READ_THREAD_POOL == null) {
+      synchronized (DFSClient.class) {
+        if (VECTORED_READ_THREAD_POOL == null) {
+          ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+              1, dfsClientConf.getVectoredReadThreadpoolSize(), 60,
+              "VectoredRead-", true);
+          threadPool.allowCoreThreadTimeOut(true);
+          VECTORED_READ_THREAD_POOL = threadPool;
+        }
+      }
+    }
+    return VECTORED_READ_THREAD_POOL;
+  }
+
+  /**
+   * Get the thread pool reading stripes ahead of stateful striped reads,
+   * creating it on first use. Tasks are rejected when all threads are busy.
+   */
+  ThreadPoolExecutor getStripedReadAheadThreadPool() {
+    if (STRIPED_READ_AHEAD_THREAD_POOL == null) {
+      synchronized (DFSClient.class) {
+        if (STRIPED_READ_AHEAD_THREAD_POOL == null) {
+          ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+              1, dfsClientConf.getStripedReadThreadpoolSize(), 60,
+              "StripedReadAhead-", false);
+          threadPool.allowCoreThreadTimeOut(true);
+          STRIPED_READ_AHEAD_THREAD_POOL = threadPool;
+        }
+      }
+    }
+    return STRIPED_READ_AHEAD_THREAD_POOL;
+  }
+
+  /**
+   * Get the thread pool encoding the parity cells of striped writes, creating
+   * it on first use. Tasks are run by the caller when all threads are busy.
+   */
+  ThreadPoolExecutor getStripedEncodeThreadPool() {
+    if (STRIPED_ENCODE_THREAD_POOL == null) {
+      synchronized (DFSClient.class) {
+        if (STRIPED_ENCODE_THREAD_POOL == null) {
+          ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+              1, dfsClientConf.getStripedWriteEncodeThreadpoolSize(), 60,
+              "StripedEncode-", true);
+          threadPool.allowCoreThreadTimeOut(true);
+          STRIPED_ENCODE_THREAD_POOL = threadPool;
+        }
+      }
+    }
+    return STRIPED_ENCODE_THREAD_POOL;
+  }
+
+  /**
+   * Get the thread pool for the blocking parts of asynchronous operations,
+   * creating it on first use.
+   */
+  ThreadPoolExecutor getAsyncThreadPool() {
+    if (ASYNC_THREAD_POOL == null) {
+      synchronized (DFSClient.class) {
+        if (ASYNC_THREAD_POOL == null) {
+          // Tasks are queued rather than run by the caller, which may be the
+          // thread completing the asynchronous RPC calls.
+          int numThreads = dfsClientConf.getAsyncThreadpoolSize();
+          ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+              numThreads, numThreads, 60, new LinkedBlockingQueue<>(),
+              "AsyncDFS-", false);
+          threadPool.allowCoreThreadTimeOut(true);
+          ASYNC_THREAD_POOL = threadPool;
+        }
+      }
+    }
+    return ASYNC_THREAD_POOL;
+  }
+
   ThreadPoolExecutor getHedgedReadsThreadPool() {
     return HEDGED_READ_THREAD_POOL;
   }
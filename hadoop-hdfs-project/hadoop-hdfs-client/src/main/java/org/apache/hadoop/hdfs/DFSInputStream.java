@@ -41,8 +41,10 @@
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -52,13 +54,17 @@
 import org.apache.hadoop.fs.CanSetReadahead;
 import org.apache.hadoop.fs.CanUnbuffer;
 import org.apache.hadoop.fs.ChecksumException;
+import org.apache.hadoop.fs.CombinedFileRange;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileEncryptionInfo;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.HasEnhancedByteBufferAccess;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.fs.StreamCapabilities;
+import org.apache.hadoop.fs.VectoredReadUtils;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.client.impl.BlockReaderFactory;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
 import org.apache.hadoop.hdfs.protocol.BlockType;
@@ -84,6 +90,7 @@
 import org.apache.hadoop.util.IdentityHashStore;
 import org.apache.hadoop.util.StopWatch;
 import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Time;
 import org.apache.htrace.core.SpanId;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -171,6 +178,11 @@ public class DFSInputStream extends FSInputStream
 
   void addToDeadNodes(DatanodeInfo dnInfo) {
     deadNodes.put(dnInfo, dnInfo);
+    getLatencyTracker().addDeadNode(dnInfo);
+  }
+
+  private DatanodeLatencyTracker getLatencyTracker() {
+    return dfsClient.getClientContext().getDatanodeLatencyTracker();
   }
 
   DFSInputStream(DFSClient dfsClient, String src, boolean verifyChecksum,
@@ -572,9 +584,12 @@ private synchronized DatanodeInfo blockSeekTo(long target)
       targetBlock = retval.block;
 
       try {
+        final long setupStart = Time.monotonicNow();
         blockReader = getBlockReader(targetBlock, offsetIntoBlock,
             targetBlock.getBlockSize() - offsetIntoBlock, targetAddr,
             storageType, chosenNode);
+        getLatencyTracker().addSetupLatency(chosenNode,
+            Time.monotonicNow() - setupStart);
         if(connectFailedOnce) {
           DFSClient.LOG.info("Successfully connected to " + targetAddr +
                              " for " + targetBlock.getBlock());
@@ -930,16 +945,13 @@ protected DNAddrPair getBestNodeDNAddrPair(LocatedBlock block,
     DatanodeInfo chosenNode = null;
     StorageType storageType = null;
     if (nodes != null) {
-      for (int i = 0; i < nodes.length; i++) {
-        if (!deadNodes.containsKey(nodes[i])
-            && (ignoredNodes == null || !ignoredNodes.contains(nodes[i]))) {
-          chosenNode = nodes[i];
-          // Storage types are ordered to correspond with nodes, so use the same
-          // index to get storage type.
-          if (storageTypes != null && i < storageTypes.length) {
-            storageType = storageTypes[i];
-          }
-          break;
+      int idx = chooseReplica(nodes, ignoredNodes);
+      if (idx >= 0) {
+        chosenNode = nodes[idx];
+        // Storage types are ordered to correspond with nodes, so use the same
+        // index to get storage type.
+        if (storageTypes != null && idx < storageTypes.length) {
+          storageType = storageTypes[idx];
         }
       }
     }
@@ -954,6 +966,38 @@ protected DNAddrPair getBestNodeDNAddrPair(LocatedBlock block,
     return new DNAddrPair(chosenNode, targetAddr, storageType, block);
   }
 
+  /**
+   * Choose a replica which is neither dead for this stream nor ignored.
+   * Replicas that recently failed for another stream of the same client
+   * context are only chosen if nothing else is left. If latency ranking is
+   * enabled, the replica with the lowest observed latency wins, otherwise
+   * the first one in NameNode order.
+   * @return the index of the chosen replica, or -1 if none can be chosen.
+   */
+  private int chooseReplica(DatanodeInfo[] nodes,
+      Collection<DatanodeInfo> ignoredNodes) {
+    final DatanodeLatencyTracker tracker = getLatencyTracker();
+    boolean[] eligible = new boolean[nodes.length];
+    boolean[] preferred = new boolean[nodes.length];
+    boolean anyPreferred = false;
+    for (int i = 0; i < nodes.length; i++) {
+      eligible[i] = !deadNodes.containsKey(nodes[i])
+          && (ignoredNodes == null || !ignoredNodes.contains(nodes[i]));
+      preferred[i] = eligible[i] && !tracker.isDeadNode(nodes[i]);
+      anyPreferred |= preferred[i];
+    }
+    final boolean[] candidates = anyPreferred ? preferred : eligible;
+    if (dfsClient.getConf().isReplicaLatencyRankingEnabled()) {
+      return tracker.chooseFastest(nodes, candidates);
+    }
+    for (int i = 0; i < nodes.length; i++) {
+      if (candidates[i]) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   /**
    * Warn the user of a lost block
    */
@@ -1041,13 +1085,18 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, final long startInBlk,
     int refetchToken = 1; // only need to get a new access token once
     int refetchEncryptionKey = 1; // only need to get a new encryption key once
     final int len = (int) (endInBlk - startInBlk + 1);
+    final DatanodeLatencyTracker tracker = getLatencyTracker();
+    final long readStart = Time.monotonicNow();
     LocatedBlock block = datanode.block;
     while (true) {
       BlockReader reader = null;
       try {
         DFSClientFaultInjector.get().fetchFromDatanodeException();
+        final long setupStart = Time.monotonicNow();
         reader = getBlockReader(block, startInBlk, len, datanode.addr,
             datanode.storageType, datanode.info);
+        tracker.addSetupLatency(datanode.info,
+            Time.monotonicNow() - setupStart);
 
         //Behave exactly as the readAll() call
         ByteBuffer tmp = buf.duplicate();
@@ -1075,6 +1124,7 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, final long startInBlk,
               "excpected " + len + ", got " + nread);
         }
         DFSClientFaultInjector.get().readFromDatanodeDelay();
+        tracker.addReadLatency(Time.monotonicNow() - readStart);
         return;
       } catch (ChecksumException e) {
         String msg = "fetchBlockByteRange(). Got a checksum exception for "
@@ -1138,7 +1188,7 @@ protected LocatedBlock refreshLocatedBlock(LocatedBlock block)
   private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
       long end, ByteBuffer buf, CorruptedBlocks corruptedBlocks)
       throws IOException {
-    final DfsClientConf conf = dfsClient.getConf();
+    final long thresholdMillis = getHedgedReadThresholdMillis();
     ArrayList<Future<ByteBuffer>> futures = new ArrayList<>();
     CompletionService<ByteBuffer> hedgedService =
         new ExecutorCompletionService<>(dfsClient.getHedgedReadsThreadPool());
@@ -1166,8 +1216,7 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
         futures.add(firstRequest);
         Future<ByteBuffer> future = null;
         try {
-          future = hedgedService.poll(
-              conf.getHedgedReadThresholdMillis(), TimeUnit.MILLISECONDS);
+          future = hedgedService.poll(thresholdMillis, TimeUnit.MILLISECONDS);
           if (future != null) {
             ByteBuffer result = future.get();
             result.flip();
@@ -1175,7 +1224,7 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
             return;
           }
           DFSClient.LOG.debug("Waited {}ms to read from {}; spawning hedged "
-              + "read", conf.getHedgedReadThresholdMillis(), chosenNode.info);
+              + "read", thresholdMillis, chosenNode.info);
           dfsClient.getHedgedReadMetrics().incHedgedReadOps();
           // continue; no need to refresh block locations
         } catch (ExecutionException e) {
@@ -1237,6 +1286,28 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
     }
   }
 
+  /**
+   * @return how long to wait for a positional read before starting a hedged
+   * read. With the adaptive threshold enabled this is the configured
+   * percentile of recent read latencies, bounded by the configured minimum
+   * and by {@link HdfsClientConfigKeys.HedgedRead#THRESHOLD_MILLIS_KEY}.
+   */
+  @VisibleForTesting
+  long getHedgedReadThresholdMillis() {
+    final DfsClientConf conf = dfsClient.getConf();
+    final long threshold = conf.getHedgedReadThresholdMillis();
+    if (!conf.isHedgedReadAdaptiveThresholdEnabled()) {
+      return threshold;
+    }
+    long observed = getLatencyTracker().getReadLatencyPercentile(
+        conf.getHedgedReadAdaptiveThresholdPercentile());
+    if (observed < 0) {
+      return threshold;
+    }
+    return Math.min(threshold,
+        Math.max(observed, conf.getHedgedReadAdaptiveThresholdMinMillis()));
+  }
+
   @VisibleForTesting
   public long getHedgedReadOpsLoopNumForTesting() {
     return hedgedReadOpsLoopNumForTesting;
@@ -1324,7 +1395,46 @@ public int read(long position, byte[] buffer, int offset, int length)
     return pread(position, bb);
   }
 
-  private int pread(long position, ByteBuffer buffer)
+  /**
+   * Read a list of ranges. Nearby ranges within the same block are merged
+   * into a single positional read, and the merged reads are issued in
+   * parallel on the vectored read thread pool of the client.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    dfsClient.checkOpen();
+    if (closed.get()) {
+      throw new IOException("Stream closed");
+    }
+    List<? extends FileRange> sorted =
+        VectoredReadUtils.validateAndSortRanges(ranges);
+    ThreadPoolExecutor pool = dfsClient.getVectoredReadsThreadPool();
+    for (CombinedFileRange combined : VectoredReadUtils.mergeSortedRanges(
+        sorted, getVectoredReadChunkSize(), minSeekForVectorReads(),
+        maxReadSizeForVectorReads())) {
+      VectoredReadUtils.readCombinedRangeAsync(this, combined, allocate, pool);
+    }
+  }
+
+  /**
+   * @return the block size of the file if it spans several blocks, so that
+   * merged vectored reads do not cross block boundaries.
+   */
+  private long getVectoredReadChunkSize() {
+    synchronized (infoLock) {
+      if (locatedBlocks != null && locatedBlocks.locatedBlockCount() > 0) {
+        LocatedBlock first = locatedBlocks.get(0);
+        long end = first.getStartOffset() + first.getBlockSize();
+        if (first.getBlockSize() > 0 && end < getFileLength()) {
+          return first.getBlockSize();
+        }
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  int pread(long position, ByteBuffer buffer)
       throws IOException {
     // sanity checks
     dfsClient.checkOpen();
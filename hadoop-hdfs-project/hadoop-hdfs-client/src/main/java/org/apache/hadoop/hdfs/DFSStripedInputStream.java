@@ -18,10 +18,12 @@
 package org.apache.hadoop.hdfs;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.hdfs.protocol.BlockType;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
@@ -31,6 +33,7 @@
 import org.apache.hadoop.hdfs.StripeReader.ReaderRetryPolicy;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.AlignedStripe;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil.BlockReadStats;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.StripeRange;
 import org.apache.hadoop.io.ByteBufferPool;
 
@@ -43,15 +46,22 @@
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.apache.hadoop.hdfs.util.IOUtilsClient.updateReadStatistics;
@@ -91,6 +101,45 @@ public class DFSStripedInputStream extends DFSInputStream {
   private final Set<String> warnedNodes =
       Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+  /**
+   * A stripe which was read and decoded in the background, ahead of the
+   * current position. The read statistics and corrupted blocks are kept
+   * until the stripe is consumed, so that they are accounted on the thread
+   * doing the read.
+   */
+  private static class ReadAheadStripe {
+    private final long start;
+    private final int length;
+    private final ByteBuffer buf;
+    private final List<BlockReadStats> readStats = new ArrayList<>();
+    private final CorruptedBlocks corruptedBlocks = new CorruptedBlocks();
+
+    ReadAheadStripe(long start, int length, ByteBuffer buf) {
+      this.start = start;
+      this.length = length;
+      this.buf = buf;
+    }
+
+    boolean include(long offsetInBlockGroup) {
+      return offsetInBlockGroup >= start &&
+          offsetInBlockGroup < start + length;
+    }
+  }
+
+  /** Maximum number of stripes read ahead of the current stripe. */
+  private final int maxReadAheadStripes;
+  /**
+   * Stripes read ahead, in file order. Also guards the other read-ahead
+   * fields and is notified whenever a stripe is added or the read-ahead task
+   * finishes.
+   */
+  private final Deque<ReadAheadStripe> readAheadStripes = new ArrayDeque<>();
+  private Future<?> readAheadFuture;
+  private boolean readAheadRunning = false;
+  private volatile boolean readAheadCancelled = false;
+  /** Whether the block readers were advanced by reading ahead. */
+  private boolean readAheadUsedReaders = false;
+
   DFSStripedInputStream(DFSClient dfsClient, String src,
       boolean verifyChecksum, ErasureCodingPolicy ecPolicy,
       LocatedBlocks locatedBlocks) throws IOException {
@@ -109,6 +158,7 @@ public class DFSStripedInputStream extends DFSInputStream {
         dataBlkNum, parityBlkNum);
     decoder = CodecUtil.createRawDecoder(dfsClient.getConfiguration(),
         ecPolicy.getCodecName(), coderOptions);
+    maxReadAheadStripes = dfsClient.getConf().getStripedReadAheadStripes();
     if (DFSClient.LOG.isDebugEnabled()) {
       DFSClient.LOG.debug("Creating an striped input stream for file " + src);
     }
@@ -161,6 +211,11 @@ protected ByteBufferPool getBufferPool() {
   protected ThreadPoolExecutor getStripedReadsThreadPool(){
     return dfsClient.getStripedReadsThreadPool();
   }
+
+  long getSpeculativeReadThresholdMs() {
+    return dfsClient.getConf().getStripedReadSpeculativeThresholdMs();
+  }
+
   /**
    * When seeking into a new block group, create blockReader for each internal
    * block in the group.
@@ -188,6 +243,8 @@ public synchronized void close() throws IOException {
     try {
       super.close();
     } finally {
+      // the read-ahead task must not use the buffers or the decoder anymore
+      stopReadAhead();
       if (curStripeBuf != null) {
         BUFFER_POOL.putBuffer(curStripeBuf);
         curStripeBuf = null;
@@ -210,6 +267,8 @@ public synchronized void close() throws IOException {
    */
   @Override
   protected void closeCurrentBlockReaders() {
+    stopReadAhead();
+    readAheadUsedReaders = false;
     resetCurStripeBuffer(false);
     if (blockReaders ==  null || blockReaders.length == 0) {
       return;
@@ -300,8 +359,6 @@ boolean createBlockReader(LocatedBlock block, long offsetInBlock,
    */
   private void readOneStripe(CorruptedBlocks corruptedBlocks)
       throws IOException {
-    resetCurStripeBuffer(true);
-
     // compute stripe range based on pos
     final long offsetInBlockGroup = getOffsetInBlockGroup();
     final long stripeLen = cellSize * dataBlkNum;
@@ -311,6 +368,34 @@ private void readOneStripe(CorruptedBlocks corruptedBlocks)
         - (stripeIndex * stripeLen), stripeLen);
     StripeRange stripeRange =
         new StripeRange(offsetInBlockGroup, stripeLimit - stripeBufOffset);
+    // only read ahead once the reads cross a stripe boundary sequentially,
+    // so that seeks do not wait for stripes which are never used
+    final boolean sequential = stripeBufOffset == 0 &&
+        curStripeRange.include(offsetInBlockGroup - 1);
+
+    final ReadAheadStripe readAhead = takeReadAheadStripe(offsetInBlockGroup);
+    if (readAhead != null) {
+      if (curStripeBuf != null) {
+        BUFFER_POOL.putBuffer(curStripeBuf);
+      }
+      curStripeBuf = readAhead.buf;
+      curStripeBuf.position(stripeBufOffset);
+      curStripeBuf.limit(stripeLimit);
+      curStripeRange = stripeRange;
+      accountReadAheadStripe(readAhead, corruptedBlocks);
+      scheduleReadAhead();
+      return;
+    }
+    stopReadAhead();
+    if (readAheadUsedReaders) {
+      // the block readers may have been positioned past this stripe
+      for (int i = 0; i < groupSize; i++) {
+        closeReader(blockReaders[i]);
+        blockReaders[i] = null;
+      }
+      readAheadUsedReaders = false;
+    }
+    resetCurStripeBuffer(true);
 
     LocatedStripedBlock blockGroup = (LocatedStripedBlock) currentLocatedBlock;
     AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
@@ -322,12 +407,206 @@ private void readOneStripe(CorruptedBlocks corruptedBlocks)
     for (AlignedStripe stripe : stripes) {
       // Parse group to get chosen DN location
       StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy, blks,
-          blockReaders, corruptedBlocks, decoder, this);
+          blockReaders, corruptedBlocks, decoder, this, curStripeBuf);
       sreader.readStripe();
     }
     curStripeBuf.position(stripeBufOffset);
     curStripeBuf.limit(stripeLimit);
     curStripeRange = stripeRange;
+    if (sequential) {
+      scheduleReadAhead();
+    }
+  }
+
+  /**
+   * Start reading the stripes following the current one in the background,
+   * unless enough of them are already read or being read. Read-ahead does
+   * not cross the current block group.
+   */
+  private void scheduleReadAhead() {
+    if (maxReadAheadStripes <= 0) {
+      return;
+    }
+    final LocatedStripedBlock blockGroup =
+        (LocatedStripedBlock) currentLocatedBlock;
+    final long stripeLen = cellSize * dataBlkNum;
+    synchronized (readAheadStripes) {
+      if (readAheadRunning ||
+          readAheadStripes.size() >= maxReadAheadStripes) {
+        return;
+      }
+      final long start = readAheadStripes.isEmpty() ?
+          (getOffsetInBlockGroup() / stripeLen + 1) * stripeLen :
+          readAheadStripes.peekLast().start + stripeLen;
+      if (start >= blockGroup.getBlockSize()) {
+        return;
+      }
+      final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
+          blockGroup, cellSize, dataBlkNum, parityBlkNum);
+      readAheadCancelled = false;
+      try {
+        readAheadFuture = dfsClient.getStripedReadAheadThreadPool().submit(
+            () -> readAhead(blockGroup, blks, start));
+        readAheadRunning = true;
+        readAheadUsedReaders = true;
+      } catch (RejectedExecutionException e) {
+        DFSClient.LOG.debug("No thread available to read ahead {}", src);
+      }
+    }
+  }
+
+  /**
+   * Read the stripes starting at the given offset of the block group until
+   * enough stripes are read ahead, the end of the block group is reached,
+   * a read fails or read-ahead is stopped.
+   */
+  private void readAhead(LocatedStripedBlock blockGroup, LocatedBlock[] blks,
+      long start) {
+    final long stripeLen = cellSize * dataBlkNum;
+    try {
+      while (!readAheadCancelled && start < blockGroup.getBlockSize()) {
+        final ReadAheadStripe stripe = readStripeAhead(blockGroup, blks,
+            start);
+        if (stripe == null) {
+          break;
+        }
+        synchronized (readAheadStripes) {
+          readAheadStripes.addLast(stripe);
+          readAheadStripes.notifyAll();
+          if (readAheadStripes.size() >= maxReadAheadStripes) {
+            break;
+          }
+        }
+        start += stripeLen;
+      }
+    } finally {
+      synchronized (readAheadStripes) {
+        readAheadRunning = false;
+        readAheadStripes.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Read and if necessary decode one whole stripe using the block readers of
+   * this stream.
+   *
+   * @return the stripe, or null if it could not be read.
+   */
+  private ReadAheadStripe readStripeAhead(LocatedStripedBlock blockGroup,
+      LocatedBlock[] blks, long start) {
+    final int stripeLen = cellSize * dataBlkNum;
+    final int length = (int) Math.min(blockGroup.getBlockSize() - start,
+        stripeLen);
+    final ByteBuffer buf = BUFFER_POOL.getBuffer(useDirectBuffer(),
+        stripeLen);
+    buf.clear();
+    final ReadAheadStripe stripe = new ReadAheadStripe(start, length, buf);
+    boolean success = false;
+    try {
+      AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
+          cellSize, blockGroup, start, start + length - 1, buf);
+      for (AlignedStripe alignedStripe : stripes) {
+        StripeReader sreader = new StatefulStripeReader(alignedStripe,
+            ecPolicy, blks, blockReaders, stripe.corruptedBlocks, decoder,
+            this, buf) {
+          @Override
+          void updateReadStats(BlockReadStats stats) {
+            if (stats != null) {
+              stripe.readStats.add(stats);
+            }
+          }
+        };
+        sreader.readStripe();
+      }
+      buf.position(0);
+      buf.limit(length);
+      success = true;
+      return stripe;
+    } catch (IOException e) {
+      DFSClient.LOG.debug("Failed to read ahead the stripe at offset {} of {}",
+          start, blockGroup, e);
+      return null;
+    } finally {
+      if (!success) {
+        BUFFER_POOL.putBuffer(buf);
+      }
+    }
+  }
+
+  /**
+   * Take the stripe including the given offset from the read-ahead stripes,
+   * waiting for the read-ahead task if it is still reading.
+   *
+   * @return the stripe, or null if it was not read ahead.
+   */
+  private ReadAheadStripe takeReadAheadStripe(long offsetInBlockGroup)
+      throws InterruptedIOException {
+    synchronized (readAheadStripes) {
+      while (readAheadStripes.isEmpty() && readAheadRunning) {
+        try {
+          readAheadStripes.wait();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException("Interrupted while waiting for "
+              + "the stripe at offset " + offsetInBlockGroup + " of " + src);
+        }
+      }
+      final ReadAheadStripe stripe = readAheadStripes.peekFirst();
+      if (stripe != null && stripe.include(offsetInBlockGroup)) {
+        return readAheadStripes.pollFirst();
+      }
+      return null;
+    }
+  }
+
+  private void accountReadAheadStripe(ReadAheadStripe stripe,
+      CorruptedBlocks corruptedBlocks) {
+    for (BlockReadStats stats : stripe.readStats) {
+      updateReadStats(stats);
+    }
+    final Map<ExtendedBlock, Set<DatanodeInfo>> corruptionMap =
+        stripe.corruptedBlocks.getCorruptionMap();
+    if (corruptionMap == null) {
+      return;
+    }
+    for (Map.Entry<ExtendedBlock, Set<DatanodeInfo>> entry :
+        corruptionMap.entrySet()) {
+      for (DatanodeInfo dn : entry.getValue()) {
+        corruptedBlocks.addCorruptedBlock(entry.getKey(), dn);
+      }
+    }
+  }
+
+  /**
+   * Stop reading ahead and drop the stripes which were read ahead. Their
+   * statistics and corrupted blocks are still accounted.
+   */
+  private void stopReadAhead() {
+    final Future<?> future;
+    synchronized (readAheadStripes) {
+      readAheadCancelled = true;
+      future = readAheadFuture;
+      readAheadFuture = null;
+    }
+    if (future != null) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        DFSClient.LOG.debug("Read-ahead of {} failed", src, e);
+      }
+    }
+    final CorruptedBlocks corruptedBlocks = new CorruptedBlocks();
+    synchronized (readAheadStripes) {
+      for (ReadAheadStripe stripe : readAheadStripes) {
+        accountReadAheadStripe(stripe, corruptedBlocks);
+        BUFFER_POOL.putBuffer(stripe.buf);
+      }
+      readAheadStripes.clear();
+    }
+    if (currentLocatedBlock != null) {
+      reportCheckSumFailure(corruptedBlocks,
+          getCurrentBlockLocationsLength(), true);
+    }
   }
 
   /**
@@ -70,6 +70,7 @@
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 
@@ -264,7 +265,18 @@ private void flipDataBuffers() {
   }
 
   private final Coordinator coordinator;
-  private final CellBuffers cellBuffers;
+  /** Buffers of the stripe being written. */
+  private CellBuffers cellBuffers;
+  /**
+   * Buffers of the previous stripe whose parity cells are being encoded by
+   * {@link #encodeExecutor}, or null.
+   */
+  private CellBuffers encodingCellBuffers;
+  private Future<Void> encodeFuture;
+  /** Buffers ready to be reused for the next stripe, or null. */
+  private CellBuffers spareCellBuffers;
+  /** Executor encoding parity cells, or null to encode synchronously. */
+  private final ThreadPoolExecutor encodeExecutor;
   private final ErasureCodingPolicy ecPolicy;
   private final RawErasureEncoder encoder;
   private final List<StripedDataStreamer> streamers;
@@ -311,6 +323,9 @@ private void flipDataBuffers() {
 
     coordinator = new Coordinator(numAllBlocks);
     cellBuffers = new CellBuffers(numParityBlocks);
+    encodeExecutor =
+        dfsClient.getConf().getStripedWriteEncodeThreadpoolSize() > 0 ?
+            dfsClient.getStripedEncodeThreadPool() : null;
 
     streamers = new ArrayList<>(numAllBlocks);
     for (short i = 0; i < numAllBlocks; i++) {
@@ -546,7 +561,7 @@ protected synchronized void writeChunk(byte[] bytes, int offset, int len,
       //converted to packets and put to their DataStreamer's queue.
       if (next == numDataBlocks) {
         cellBuffers.flipDataBuffers();
-        writeParityCells();
+        encodeParityCells();
         next = 0;
 
         // if this is the end of the block group, end each internal block
@@ -1064,7 +1079,73 @@ private boolean generateParityCellsForLastStripe() {
     return true;
   }
 
+  /**
+   * Encode the parity cells of the full stripe in {@link #cellBuffers}. When
+   * an encode executor is available the stripe is encoded in the background
+   * and its parity cells are written by {@link #writePendingParityCells()},
+   * so that the next stripe can be buffered in the meantime. Otherwise the
+   * parity cells are encoded and written right away.
+   */
+  private void encodeParityCells() throws IOException {
+    if (encodeExecutor == null) {
+      writeParityCells();
+      return;
+    }
+    // the parity cells of the previous stripe have to be queued first
+    writePendingParityCells();
+    if (!checkAnyParityStreamerIsHealthy()) {
+      return;
+    }
+    final CellBuffers toEncode = cellBuffers;
+    encodeFuture = encodeExecutor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        encode(encoder, numDataBlocks, toEncode.getBuffers());
+        return null;
+      }
+    });
+    encodingCellBuffers = toEncode;
+    if (spareCellBuffers != null) {
+      cellBuffers = spareCellBuffers;
+      spareCellBuffers = null;
+    } else {
+      cellBuffers = new CellBuffers(numAllBlocks - numDataBlocks);
+    }
+  }
+
+  /**
+   * Wait for the background encoding of the previous stripe, if any, and
+   * write its parity cells.
+   */
+  private void writePendingParityCells() throws IOException {
+    final CellBuffers encoded = encodingCellBuffers;
+    if (encoded == null) {
+      return;
+    }
+    encodingCellBuffers = null;
+    try {
+      encodeFuture.get();
+    } catch (InterruptedException ie) {
+      throw DFSUtilClient.toInterruptedIOException(
+          "Interrupted while encoding parity cells", ie);
+    } catch (ExecutionException ee) {
+      throw new IOException("Failed to encode parity cells", ee.getCause());
+    } finally {
+      encodeFuture = null;
+    }
+
+    final int current = getCurrentIndex();
+    final ByteBuffer[] buffers = encoded.getBuffers();
+    for (int i = numDataBlocks; i < numAllBlocks; i++) {
+      writeParity(i, buffers[i], encoded.getChecksumArray(i));
+    }
+    setCurrentStreamer(current);
+    encoded.clear();
+    spareCellBuffers = encoded;
+  }
+
   void writeParityCells() throws IOException {
+    writePendingParityCells();
     final ByteBuffer[] buffers = cellBuffers.getBuffers();
     // Skips encoding and writing parity cells if there are no healthy parity
     // data streamers
@@ -1131,6 +1212,12 @@ void setClosed() {
       getStripedDataStreamer(i).release();
     }
     cellBuffers.release();
+    if (spareCellBuffers != null) {
+      spareCellBuffers.release();
+    }
+    // buffers still being encoded are left to the garbage collector rather
+    // than returned to the shared pool
+    encodingCellBuffers = null;
   }
 
   @Override
@@ -1164,6 +1251,8 @@ protected synchronized void closeImpl() throws IOException {
       try {
         // flush from all upper layers
         flushBuffer();
+        // write the parity cells of the last full stripe
+        writePendingParityCells();
         // if the last stripe is incomplete, generate and write parity cells
         if (generateParityCellsForLastStripe()) {
           writeParityCells();
@@ -1211,6 +1300,13 @@ protected synchronized void closeImpl() throws IOException {
       setClosed();
       // shutdown executor of flushAll tasks
       flushAllExecutor.shutdownNow();
+      // the encoder must not be released while it is still in use
+      if (encodeFuture != null) {
+        try {
+          encodeFuture.get();
+        } catch (InterruptedException | ExecutionException ignored) {
+        }
+      }
       encoder.release();
     }
   }
@@ -1232,6 +1328,8 @@ void enqueueAllCurrentPackets() throws IOException {
   }
 
   void flushAllInternals() throws IOException {
+    // the parity cells of every full stripe are flushed as well
+    writePendingParityCells();
     Map<Future<Void>, Integer> flushAllFuturesMap = new HashMap<>();
     Future<Void> future = null;
     int current = getCurrentIndex();
@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.util.Time;
+
+/**
+ * Tracks read latencies observed by the DFSInputStreams of a
+ * {@link ClientContext}.
+ *
+ * For every DataNode an exponentially weighted moving average of the time it
+ * took to set up a block reader is kept, which is used to rank the replicas
+ * of a block. The latencies of recent positional reads are kept in a fixed
+ * size window so that the hedged read threshold can follow a percentile of
+ * the observed latency. DataNodes which failed a read are remembered for a
+ * while so that other streams of the same context can avoid them as well.
+ */
+@InterfaceStability.Unstable
+@InterfaceAudience.Private
+public class DatanodeLatencyTracker {
+  /** Weight given to the newest sample in the moving average. */
+  static final double EWMA_ALPHA = 0.3;
+
+  /** Number of recent read latencies kept for percentile computation. */
+  static final int WINDOW_SIZE = 256;
+
+  /** Minimum number of samples before a percentile is reported. */
+  static final int MIN_WINDOW_SAMPLES = 16;
+
+  private static class Ewma {
+    private double value;
+    private boolean initialized;
+
+    synchronized void update(long sample) {
+      if (!initialized) {
+        value = sample;
+        initialized = true;
+      } else {
+        value = EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * value;
+      }
+    }
+
+    synchronized double get() {
+      return value;
+    }
+  }
+
+  private final ConcurrentHashMap<DatanodeInfo, Ewma> setupLatencies =
+      new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<DatanodeInfo, Long> deadNodeExpiry =
+      new ConcurrentHashMap<>();
+
+  private final long deadNodeExpiryMs;
+
+  private final long[] window = new long[WINDOW_SIZE];
+  private int windowNext = 0;
+  private int windowCount = 0;
+
+  public DatanodeLatencyTracker(long deadNodeExpiryMs) {
+    Preconditions.checkArgument(deadNodeExpiryMs >= 0,
+        "deadNodeExpiryMs must be non-negative");
+    this.deadNodeExpiryMs = deadNodeExpiryMs;
+  }
+
+  /**
+   * Record the time taken to set up a block reader against a DataNode.
+   */
+  public void addSetupLatency(DatanodeInfo dn, long latencyMs) {
+    setupLatencies.computeIfAbsent(dn, k -> new Ewma()).update(latencyMs);
+  }
+
+  /**
+   * @return the moving average of the block reader set up latency of the
+   *         given DataNode in milliseconds, or -1 if nothing was recorded.
+   */
+  public double getSetupLatency(DatanodeInfo dn) {
+    Ewma ewma = setupLatencies.get(dn);
+    return ewma == null ? -1 : ewma.get();
+  }
+
+  /**
+   * Pick the replica to read from. Replicas are visited in the order given
+   * by the NameNode; a later replica only wins if its moving average is
+   * strictly lower. Replicas without any samples are treated as the fastest
+   * so that every replica gets probed once.
+   *
+   * @param nodes      the candidate replicas
+   * @param eligible   which of the candidates may be chosen
+   * @return the index of the chosen replica, or -1 if none is eligible.
+   */
+  int chooseFastest(DatanodeInfo[] nodes, boolean[] eligible) {
+    int chosen = -1;
+    double best = Double.MAX_VALUE;
+    for (int i = 0; i < nodes.length; i++) {
+      if (!eligible[i]) {
+        continue;
+      }
+      double latency = Math.max(0, getSetupLatency(nodes[i]));
+      if (chosen < 0 || latency < best) {
+        chosen = i;
+        best = latency;
+      }
+    }
+    return chosen;
+  }
+
+  /**
+   * Record the end-to-end latency of a positional read.
+   */
+  public synchronized void addReadLatency(long latencyMs) {
+    window[windowNext] = latencyMs;
+    windowNext = (windowNext + 1) % WINDOW_SIZE;
+    if (windowCount < WINDOW_SIZE) {
+      windowCount++;
+    }
+  }
+
+  /**
+   * @param percentile the percentile to compute, between 0 and 100.
+   * @return the given percentile of the recent read latencies in
+   *         milliseconds, or -1 if too few reads were recorded.
+   */
+  public long getReadLatencyPercentile(double percentile) {
+    long[] samples;
+    synchronized (this) {
+      if (windowCount < MIN_WINDOW_SAMPLES) {
+        return -1;
+      }
+      samples = Arrays.copyOf(window, windowCount);
+    }
+    Arrays.sort(samples);
+    int idx = (int) Math.ceil(percentile / 100 * samples.length) - 1;
+    return samples[Math.min(Math.max(idx, 0), samples.length - 1)];
+  }
+
+  /**
+   * @return whether dead nodes are shared between streams.
+   */
+  public boolean isDeadNodeSharingEnabled() {
+    return deadNodeExpiryMs > 0;
+  }
+
+  /**
+   * Remember that a read from the given DataNode failed.
+   */
+  public void addDeadNode(DatanodeInfo dn) {
+    if (isDeadNodeSharingEnabled()) {
+      deadNodeExpiry.put(dn, Time.monotonicNow() + deadNodeExpiryMs);
+    }
+  }
+
+  /**
+   * @return true if a read from the given DataNode failed recently.
+   */
+  public boolean isDeadNode(DatanodeInfo dn) {
+    Long expiry = deadNodeExpiry.get(dn);
+    if (expiry == null) {
+      return false;
+    }
+    if (expiry <= Time.monotonicNow()) {
+      deadNodeExpiry.remove(dn, expiry);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Forget about expired dead nodes.
+   */
+  @VisibleForTesting
+  void purgeExpiredDeadNodes() {
+    long now = Time.monotonicNow();
+    Iterator<Map.Entry<DatanodeInfo, Long>> iter =
+        deadNodeExpiry.entrySet().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().getValue() <= now) {
+        iter.remove();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int getDeadNodeCount() {
+    purgeExpiredDeadNodes();
+    return deadNodeExpiry.size();
+  }
+}
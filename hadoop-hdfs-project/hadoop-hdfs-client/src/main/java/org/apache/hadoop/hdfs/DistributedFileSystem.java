@@ -139,6 +139,7 @@ public class DistributedFileSystem extends FileSystem
   private boolean verifyChecksum = true;
 
   private DFSOpsCountStatistics storageStatistics;
+  private AsyncDistributedFileSystem adfs;
 
   static{
     HdfsConfiguration.init();
@@ -3128,6 +3129,25 @@ DFSOpsCountStatistics getDFSOpsCountStatistics() {
     return storageStatistics;
   }
 
+  boolean getVerifyChecksum() {
+    return verifyChecksum;
+  }
+
+  /**
+   * Get an {@link AsyncDistributedFileSystem} which issues the operations of
+   * this file system without blocking the caller.
+   *
+   * @return the AsyncDistributedFileSystem of this file system.
+   */
+  @InterfaceStability.Unstable
+  public synchronized AsyncDistributedFileSystem
+      getAsyncDistributedFileSystem() {
+    if (adfs == null) {
+      adfs = new AsyncDistributedFileSystem(this);
+    }
+    return adfs;
+  }
+
   /**
    * HdfsDataOutputStreamBuilder provides the HDFS-specific capabilities to
    * write file on HDFS.
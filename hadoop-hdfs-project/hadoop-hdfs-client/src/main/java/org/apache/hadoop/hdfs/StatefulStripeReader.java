@@ -36,21 +36,26 @@
  * Reading cross multiple strips is not supported in this reader.
  */
 class StatefulStripeReader extends StripeReader {
+  /** The buffer of the whole stripe, which the chunks are read into. */
+  private final ByteBuffer stripeBuf;
 
   StatefulStripeReader(AlignedStripe alignedStripe,
       ErasureCodingPolicy ecPolicy, LocatedBlock[] targetBlocks,
       BlockReaderInfo[] readerInfos, CorruptedBlocks corruptedBlocks,
-      RawErasureDecoder decoder, DFSStripedInputStream dfsStripedInputStream) {
+      RawErasureDecoder decoder, DFSStripedInputStream dfsStripedInputStream,
+      ByteBuffer stripeBuf) {
     super(alignedStripe, ecPolicy, targetBlocks, readerInfos,
         corruptedBlocks, decoder, dfsStripedInputStream);
+    this.stripeBuf = stripeBuf;
   }
 
   @Override
   void prepareDecodeInputs() {
-    final ByteBuffer cur;
-    synchronized (dfsStripedInputStream) {
-      cur = dfsStripedInputStream.getCurStripeBuf().duplicate();
+    if (decodeInputs != null) {
+      // already prepared for an earlier failure
+      return;
     }
+    final ByteBuffer cur = stripeBuf.duplicate();
 
     this.decodeInputs = new ECChunk[dataBlkNum + parityBlkNum];
     int bufLen = (int) alignedStripe.getSpanInBlock();
@@ -72,17 +77,18 @@ void prepareDecodeInputs() {
   boolean prepareParityChunk(int index) {
     Preconditions.checkState(index >= dataBlkNum
         && alignedStripe.chunks[index] == null);
-    if (readerInfos[index] != null && readerInfos[index].shouldSkip) {
-      alignedStripe.chunks[index] = new StripingChunk(StripingChunk.MISSING);
-      // we have failed the block reader before
-      return false;
-    }
     final int parityIndex = index - dataBlkNum;
     ByteBuffer buf = dfsStripedInputStream.getParityBuffer().duplicate();
     buf.position(cellSize * parityIndex);
     buf.limit(cellSize * parityIndex + (int) alignedStripe.range.spanInBlock);
+    // the decoder needs the buffer as output if the chunk is missing
     decodeInputs[index] =
         new ECChunk(buf.slice(), 0, (int) alignedStripe.range.spanInBlock);
+    if (readerInfos[index] != null && readerInfos[index].shouldSkip) {
+      alignedStripe.chunks[index] = new StripingChunk(StripingChunk.MISSING);
+      // we have failed the block reader before
+      return false;
+    }
     alignedStripe.chunks[index] =
         new StripingChunk(decodeInputs[index].getBuffer());
     return true;
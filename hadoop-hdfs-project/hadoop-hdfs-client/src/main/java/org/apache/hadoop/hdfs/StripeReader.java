@@ -23,6 +23,7 @@
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.util.IOUtilsClient;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.BlockReadStats;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.StripingChunk;
@@ -106,8 +107,63 @@ void skip() {
     }
   }
 
+  /**
+   * A read of a chunk into a private buffer, used when the read may be
+   * abandoned. The buffer is copied into the buffers of the chunk once the
+   * read succeeded. An abandoned read keeps its reader, and the reading task
+   * closes it when the read returns, so that the thread reading the stripe
+   * waits neither for the reader nor for the buffers.
+   */
+  private static class PrivateRead {
+    private final BlockReader reader;
+    private final ByteBuffer buffer;
+    private boolean finished = false;
+    private boolean abandoned = false;
+
+    PrivateRead(BlockReader reader, ByteBuffer buffer) {
+      this.reader = reader;
+      this.buffer = buffer;
+    }
+
+    /**
+     * Called by the reading task when the read returns.
+     */
+    void finish() {
+      synchronized (this) {
+        finished = true;
+        if (!abandoned) {
+          return;
+        }
+      }
+      closeReader();
+    }
+
+    /**
+     * Give up the read. The reader is closed once the read returns.
+     */
+    void abandon() {
+      synchronized (this) {
+        abandoned = true;
+        if (!finished) {
+          return;
+        }
+      }
+      closeReader();
+    }
+
+    private void closeReader() {
+      if (reader != null) {
+        IOUtilsClient.cleanupWithLogger(DFSClient.LOG, reader);
+      }
+    }
+  }
+
   private final Map<Future<BlockReadStats>, Integer> futures =
       new HashMap<>();
+  /** The pending reads into private buffers, by chunk index. */
+  private final Map<Integer, PrivateRead> privateReads = new HashMap<>();
+  /** Whether the chunks are read into private buffers. */
+  private boolean readPrivately = false;
   protected final AlignedStripe alignedStripe;
   private final CompletionService<BlockReadStats> service;
   protected final LocatedBlock[] targetBlocks;
@@ -164,6 +220,14 @@ void skip() {
   void close() {
   }
 
+  /**
+   * Account the statistics of a finished read of a chunk. This is called on
+   * the thread reading the stripe.
+   */
+  void updateReadStats(BlockReadStats stats) {
+    dfsStripedInputStream.updateReadStats(stats);
+  }
+
   void updateState4SuccessRead(StripingChunkReadResult result) {
     Preconditions.checkArgument(
         result.state == StripingChunkReadResult.SUCCESSFUL);
@@ -211,6 +275,73 @@ void readParityChunks(int num) throws IOException {
     checkMissingBlocks();
   }
 
+  /**
+   * Some data chunks are slow. Read as many parity chunks as there are
+   * pending data chunks, so that the stripe can be decoded if the parity
+   * chunks arrive first.
+   */
+  private void readParityChunksSpeculatively() throws IOException {
+    int pending = 0;
+    for (int i = 0; i < dataBlkNum; i++) {
+      if (alignedStripe.chunks[i] != null &&
+          alignedStripe.chunks[i].state == StripingChunk.PENDING) {
+        pending++;
+      }
+    }
+    if (pending == 0) {
+      return;
+    }
+    DFSClient.LOG.debug("{} data chunks are slow, reading parity chunks for"
+        + " stripe {}", pending, alignedStripe);
+    readDataForDecoding();
+    readParityChunks(pending);
+  }
+
+  /**
+   * Give up the reads which are still pending after enough chunks were
+   * fetched. The reads go into private buffers, so they are not waited for.
+   * Their readers are handed over to the reading tasks, which close them,
+   * and the DataNodes are skipped for the rest of the block group. The
+   * abandoned chunks are decoded instead.
+   */
+  private void abandonPendingReads() {
+    Preconditions.checkState(readPrivately);
+    for (Map.Entry<Future<BlockReadStats>, Integer> entry :
+        futures.entrySet()) {
+      final int index = entry.getValue();
+      entry.getKey().cancel(false);
+      privateReads.remove(index).abandon();
+      final BlockReaderInfo readerInfo = readerInfos[index];
+      readerInfos[index] = new BlockReaderInfo(null, readerInfo.datanode,
+          readerInfo.blockReaderOffset);
+      readerInfos[index].skip();
+      alignedStripe.chunks[index].state = StripingChunk.MISSING;
+      if (index < dataBlkNum) {
+        alignedStripe.missingChunksNum++;
+      }
+    }
+    futures.clear();
+  }
+
+  /**
+   * Copy the private buffer of a successful read into the buffers of the
+   * chunk.
+   */
+  private void copyPrivateRead(int index) {
+    final PrivateRead read = privateReads.remove(index);
+    if (read == null) {
+      return;
+    }
+    final StripingChunk chunk = alignedStripe.chunks[index];
+    read.buffer.flip();
+    if (chunk.useByteBuffer()) {
+      chunk.getByteBuffer().put(read.buffer);
+    } else {
+      chunk.getChunkBuffer().copyFrom(read.buffer);
+    }
+    dfsStripedInputStream.getBufferPool().putBuffer(read.buffer);
+  }
+
   private ByteBufferStrategy[] getReadStrategies(StripingChunk chunk) {
     if (chunk.useByteBuffer()) {
       ByteBufferStrategy strategy = new ByteBufferStrategy(
@@ -308,12 +439,40 @@ boolean readChunk(final LocatedBlock block, int chunkIndex)
     }
 
     chunk.state = StripingChunk.PENDING;
-    Callable<BlockReadStats> readCallable =
-        readCells(readerInfos[chunkIndex].reader,
-        readerInfos[chunkIndex].datanode,
-        readerInfos[chunkIndex].blockReaderOffset,
-        alignedStripe.getOffsetInBlock(), getReadStrategies(chunk),
-        block.getBlock());
+    final BlockReaderInfo readerInfo = readerInfos[chunkIndex];
+    ByteBufferStrategy[] strategies = getReadStrategies(chunk);
+    PrivateRead privateRead = null;
+    if (readPrivately) {
+      int length = 0;
+      for (ByteBufferStrategy strategy : strategies) {
+        length += strategy.getTargetLength();
+      }
+      ByteBuffer buffer = dfsStripedInputStream.getBufferPool()
+          .getBuffer(useDirectBuffer(), length);
+      buffer.clear();
+      buffer.limit(length);
+      privateRead = new PrivateRead(readerInfo.reader, buffer);
+      strategies = new ByteBufferStrategy[] {new ByteBufferStrategy(buffer,
+          dfsStripedInputStream.getReadStatistics(),
+          dfsStripedInputStream.getDFSClient())};
+    }
+    final Callable<BlockReadStats> readCells = readCells(readerInfo.reader,
+        readerInfo.datanode, readerInfo.blockReaderOffset,
+        alignedStripe.getOffsetInBlock(), strategies, block.getBlock());
+    final PrivateRead read = privateRead;
+    Callable<BlockReadStats> readCallable = () -> {
+      try {
+        DFSClientFaultInjector.get().readStripedChunk(chunkIndex);
+        return readCells.call();
+      } finally {
+        if (read != null) {
+          read.finish();
+        }
+      }
+    };
+    if (read != null) {
+      privateReads.put(chunkIndex, read);
+    }
 
     Future<BlockReadStats> request = service.submit(readCallable);
     futures.put(request, chunkIndex);
@@ -324,6 +483,8 @@ boolean readChunk(final LocatedBlock block, int chunkIndex)
    * read the whole stripe. do decoding if necessary
    */
   void readStripe() throws IOException {
+    // The reads may be abandoned if parity chunks are read speculatively
+    readPrivately = dfsStripedInputStream.getSpeculativeReadThresholdMs() > 0;
     for (int i = 0; i < dataBlkNum; i++) {
       if (alignedStripe.chunks[i] != null &&
           alignedStripe.chunks[i].state != StripingChunk.ALLZERO) {
@@ -342,13 +503,26 @@ void readStripe() throws IOException {
     }
     // TODO: for a full stripe we can start reading (dataBlkNum + 1) chunks
 
+    // Parity chunks are read speculatively at most once, if the data chunks
+    // of a healthy stripe take too long
+    long speculativeThreshold = alignedStripe.missingChunksNum == 0 ?
+        dfsStripedInputStream.getSpeculativeReadThresholdMs() : 0;
+    boolean speculated = false;
+
     // Input buffers for potential decode operation, which remains null until
     // first read failure
     while (!futures.isEmpty()) {
       try {
         StripingChunkReadResult r = StripedBlockUtil
-            .getNextCompletedStripedRead(service, futures, 0);
-        dfsStripedInputStream.updateReadStats(r.getReadStats());
+            .getNextCompletedStripedRead(service, futures,
+                speculativeThreshold);
+        if (r.state == StripingChunkReadResult.TIMEOUT) {
+          speculativeThreshold = 0;
+          speculated = true;
+          readParityChunksSpeculatively();
+          continue;
+        }
+        updateReadStats(r.getReadStats());
         if (DFSClient.LOG.isDebugEnabled()) {
           DFSClient.LOG.debug("Read task returned: " + r + ", for stripe "
               + alignedStripe);
@@ -358,14 +532,20 @@ void readStripe() throws IOException {
         Preconditions.checkState(returnedChunk.state == StripingChunk.PENDING);
 
         if (r.state == StripingChunkReadResult.SUCCESSFUL) {
+          copyPrivateRead(r.index);
           returnedChunk.state = StripingChunk.FETCHED;
           alignedStripe.fetchedChunksNum++;
           updateState4SuccessRead(r);
           if (alignedStripe.fetchedChunksNum == dataBlkNum) {
-            clearFutures();
+            if (speculated) {
+              abandonPendingReads();
+            } else {
+              clearFutures();
+            }
             break;
           }
         } else {
+          privateReads.remove(r.index);
           returnedChunk.state = StripingChunk.MISSING;
           // close the corresponding reader
           dfsStripedInputStream.closeReader(readerInfos[r.index]);
@@ -471,6 +651,7 @@ void clearFutures() {
       future.cancel(false);
     }
     futures.clear();
+    privateReads.clear();
   }
 
   boolean useDirectBuffer() {
@@ -346,6 +346,15 @@ interface Read {
 
     String  PREFETCH_SIZE_KEY = PREFIX + "prefetch.size";
 
+    String  REPLICA_LATENCY_RANKING_ENABLED_KEY =
+        PREFIX + "replica.latency.ranking.enabled";
+    boolean REPLICA_LATENCY_RANKING_ENABLED_DEFAULT = false;
+    String  SHARED_DEAD_NODES_EXPIRY_MS_KEY =
+        PREFIX + "shared.dead.nodes.expiry.ms";
+    long    SHARED_DEAD_NODES_EXPIRY_MS_DEFAULT = 0;
+    String  VECTORED_THREADPOOL_SIZE_KEY = PREFIX + "vectored.threadpool.size";
+    int     VECTORED_THREADPOOL_SIZE_DEFAULT = 8;
+
     interface ShortCircuit {
       String PREFIX = Read.PREFIX + "shortcircuit.";
 
@@ -364,6 +373,9 @@ interface ShortCircuit {
       String  METRICS_SAMPLING_PERCENTAGE_KEY =
           PREFIX + "metrics.sampling.percentage";
       int     METRICS_SAMPLING_PERCENTAGE_DEFAULT = 0;
+
+      String  BROKER_PATH_KEY = PREFIX + "broker.path";
+      String  BROKER_PATH_DEFAULT = "";
     }
   }
 
@@ -398,6 +410,15 @@ interface HedgedRead {
     long    THRESHOLD_MILLIS_DEFAULT = 500;
     String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
     int     THREADPOOL_SIZE_DEFAULT = 0;
+    String  ADAPTIVE_THRESHOLD_ENABLED_KEY =
+        PREFIX + "adaptive.threshold.enabled";
+    boolean ADAPTIVE_THRESHOLD_ENABLED_DEFAULT = false;
+    String  ADAPTIVE_THRESHOLD_MIN_MILLIS_KEY =
+        PREFIX + "adaptive.threshold.min.millis";
+    long    ADAPTIVE_THRESHOLD_MIN_MILLIS_DEFAULT = 10;
+    String  ADAPTIVE_THRESHOLD_PERCENTILE_KEY =
+        PREFIX + "adaptive.threshold.percentile";
+    double  ADAPTIVE_THRESHOLD_PERCENTILE_DEFAULT = 95;
   }
 
   /** dfs.client.read.striped configuration properties */
@@ -410,6 +431,42 @@ interface StripedRead {
      * span 6 DNs, so this default value accommodates 3 read streams
      */
     int     THREADPOOL_SIZE_DEFAULT = 18;
+    /**
+     * Number of stripes a stateful read fetches and decodes in the
+     * background ahead of the current position. Zero disables read-ahead.
+     */
+    String  READAHEAD_STRIPES_KEY = PREFIX + "readahead.stripes";
+    int     READAHEAD_STRIPES_DEFAULT = 1;
+    /**
+     * Time after which parity cells are fetched for a stripe whose data cells
+     * have not all arrived yet, so that slow cells can be decoded instead.
+     * Zero disables speculative parity reads.
+     */
+    String  SPECULATIVE_THRESHOLD_MS_KEY =
+        PREFIX + "speculative.threshold.millis";
+    long    SPECULATIVE_THRESHOLD_MS_DEFAULT = 0;
+  }
+
+  /** dfs.client.write.striped configuration properties */
+  interface StripedWrite {
+    String PREFIX = Write.PREFIX + "striped.";
+
+    /**
+     * Maximum number of threads encoding the parity cells of striped writes.
+     * Zero encodes each stripe synchronously on the writer thread.
+     */
+    String  ENCODE_THREADPOOL_SIZE_KEY = PREFIX + "encode.threadpool.size";
+    int     ENCODE_THREADPOOL_SIZE_DEFAULT = 8;
+  }
+
+  /** dfs.client.async configuration properties */
+  interface Async {
+    String PREFIX = HdfsClientConfigKeys.PREFIX + "async.";
+
+    String  MAX_OUTSTANDING_CALLS_KEY = PREFIX + "max.outstanding.calls";
+    int     MAX_OUTSTANDING_CALLS_DEFAULT = 100;
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 16;
   }
 
   /** dfs.http.client configuration properties */
@@ -59,6 +59,7 @@
 import org.apache.hadoop.hdfs.shortcircuit.DomainSocketFactory;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitCache;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitCache.ShortCircuitReplicaCreator;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitFdBrokerClient;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitReplica;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitReplicaInfo;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.Slot;
@@ -518,6 +519,7 @@ public ShortCircuitReplicaInfo createShortCircuitReplicaInfo() {
       if (info != null) return info;
     }
     LOG.trace("{}: trying to create ShortCircuitReplicaInfo.", this);
+    String brokerPath = getBrokerPath();
     BlockReaderPeer curPeer;
     while (true) {
       curPeer = nextDomainPeer();
@@ -538,7 +540,24 @@ public ShortCircuitReplicaInfo createShortCircuitReplicaInfo() {
           if (curPeer == null) break;
           peer = (DomainPeer)curPeer.peer;
         }
-        ShortCircuitReplicaInfo info = requestFileDescriptors(peer, slot);
+        ShortCircuitReplicaInfo info = null;
+        if (brokerPath != null) {
+          MutableBoolean brokerFailed = new MutableBoolean(false);
+          info = fetchFromBroker(brokerPath, slot, brokerFailed);
+          if (brokerFailed.booleanValue()) {
+            // The broker may have registered the slot, so try again with a
+            // new one.
+            brokerPath = null;
+            if (slot != null) {
+              cache.freeSlot(slot);
+            }
+            clientContext.getPeerCache().put(datanode, peer);
+            continue;
+          }
+        }
+        if (info == null) {
+          info = requestFileDescriptors(peer, slot);
+        }
         clientContext.getPeerCache().put(datanode, peer);
         return info;
       } catch (IOException e) {
@@ -566,6 +585,82 @@ public ShortCircuitReplicaInfo createShortCircuitReplicaInfo() {
     return null;
   }
 
+  /**
+   * @return  The path of the short-circuit descriptor broker of the DataNode,
+   *          or null if no broker is configured or it was disabled recently.
+   */
+  private String getBrokerPath() {
+    String brokerPath =
+        conf.getShortCircuitConf().getShortCircuitBrokerPath();
+    if (brokerPath.isEmpty() ||
+        DomainSocket.getLoadingFailureReason() != null) {
+      return null;
+    }
+    brokerPath = DomainSocket.getEffectivePath(brokerPath,
+        inetSocketAddress.getPort());
+    if (clientContext.getDomainSocketFactory().isPathDisabled(brokerPath)) {
+      return null;
+    }
+    return brokerPath;
+  }
+
+  /**
+   * Try to get the file descriptors of the replica from the short-circuit
+   * descriptor broker of the DataNode. The broker registers the slot for
+   * the replica as the DataNode does for requestShortCircuitFds, so that
+   * the DataNode can invalidate and anchor the replica.
+   *
+   * @param brokerPath  The path of the broker.
+   * @param slot        If non-null, the shared memory slot to associate
+   *                    with the new ShortCircuitReplica.
+   * @param failed      Set to true if the exchange with the broker failed.
+   *                    The broker is then disabled for a while, and the slot
+   *                    must not be passed to the DataNode again.
+   *
+   * @return  A ShortCircuitReplicaInfo if the broker passed the file
+   *          descriptors; null, otherwise.
+   */
+  private ShortCircuitReplicaInfo fetchFromBroker(String brokerPath,
+      Slot slot, MutableBoolean failed) {
+    ExtendedBlockId key =
+        new ExtendedBlockId(block.getBlockId(), block.getBlockPoolId());
+    SlotId slotId = slot == null ? null : slot.getSlotId();
+    FileInputStream[] fis = new FileInputStream[2];
+    ShortCircuitReplica replica = null;
+    try {
+      if (!ShortCircuitFdBrokerClient.fetch(brokerPath, block, token, slotId,
+          fis)) {
+        LOG.trace("{}: the broker at {} cannot serve the replica.", this,
+            brokerPath);
+        return null;
+      }
+      // The DataNode validated the descriptors against its replica for this
+      // request, so the staleness of the replica counts from now.
+      replica = new ShortCircuitReplica(key, fis[0], fis[1],
+          clientContext.getShortCircuitCache(), Time.monotonicNow(), slot);
+      LOG.trace("{}: got file descriptors from the broker at {}.", this,
+          brokerPath);
+      return new ShortCircuitReplicaInfo(replica);
+    } catch (InvalidToken e) {
+      // The broker checks the token before it registers the slot. Let the
+      // DataNode report the error.
+      LOG.debug("{}: the broker at {} rejected the block token.", this,
+          brokerPath, e);
+      return null;
+    } catch (IOException e) {
+      LOG.warn(this + ": I/O error getting file descriptors from the " +
+          "broker.  Disabling " + brokerPath, e);
+      clientContext.getDomainSocketFactory()
+          .disableDomainSocketPath(brokerPath);
+      failed.setValue(true);
+      return null;
+    } finally {
+      if (replica == null) {
+        IOUtilsClient.cleanupWithLogger(LOG, fis[0], fis[1]);
+      }
+    }
+  }
+
   /**
    * Request file descriptors from a DomainPeer.
    *
@@ -34,6 +34,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.Async;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.BlockWrite;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_BLOCK_SIZE_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_BLOCK_SIZE_KEY;
@@ -138,10 +139,21 @@ public class DfsClientConf {
 
   private final long hedgedReadThresholdMillis;
   private final int hedgedReadThreadpoolSize;
+  private final boolean hedgedReadAdaptiveThresholdEnabled;
+  private final long hedgedReadAdaptiveThresholdMinMillis;
+  private final double hedgedReadAdaptiveThresholdPercentile;
+  private final boolean replicaLatencyRankingEnabled;
+  private final long sharedDeadNodesExpiryMs;
   private final List<Class<? extends ReplicaAccessorBuilder>>
       replicaAccessorBuilderClasses;
 
   private final int stripedReadThreadpoolSize;
+  private final int stripedReadAheadStripes;
+  private final long stripedReadSpeculativeThresholdMs;
+  private final int stripedWriteEncodeThreadpoolSize;
+  private final int vectoredReadThreadpoolSize;
+  private final int asyncMaxOutstandingCalls;
+  private final int asyncThreadpoolSize;
 
   private final boolean dataTransferTcpNoDelay;
 
@@ -261,6 +273,25 @@ public DfsClientConf(Configuration conf) {
     hedgedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_DEFAULT);
+    hedgedReadAdaptiveThresholdEnabled = conf.getBoolean(
+        HedgedRead.ADAPTIVE_THRESHOLD_ENABLED_KEY,
+        HedgedRead.ADAPTIVE_THRESHOLD_ENABLED_DEFAULT);
+    hedgedReadAdaptiveThresholdMinMillis = conf.getLong(
+        HedgedRead.ADAPTIVE_THRESHOLD_MIN_MILLIS_KEY,
+        HedgedRead.ADAPTIVE_THRESHOLD_MIN_MILLIS_DEFAULT);
+    hedgedReadAdaptiveThresholdPercentile = conf.getDouble(
+        HedgedRead.ADAPTIVE_THRESHOLD_PERCENTILE_KEY,
+        HedgedRead.ADAPTIVE_THRESHOLD_PERCENTILE_DEFAULT);
+    Preconditions.checkArgument(hedgedReadAdaptiveThresholdPercentile > 0
+        && hedgedReadAdaptiveThresholdPercentile <= 100, "The value of " +
+        HedgedRead.ADAPTIVE_THRESHOLD_PERCENTILE_KEY +
+        " must be in (0, 100].");
+    replicaLatencyRankingEnabled = conf.getBoolean(
+        Read.REPLICA_LATENCY_RANKING_ENABLED_KEY,
+        Read.REPLICA_LATENCY_RANKING_ENABLED_DEFAULT);
+    sharedDeadNodesExpiryMs = conf.getLong(
+        Read.SHARED_DEAD_NODES_EXPIRY_MS_KEY,
+        Read.SHARED_DEAD_NODES_EXPIRY_MS_DEFAULT);
 
     stripedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY,
@@ -268,6 +299,37 @@ public DfsClientConf(Configuration conf) {
     Preconditions.checkArgument(stripedReadThreadpoolSize > 0, "The value of " +
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY +
         " must be greater than 0.");
+    stripedReadAheadStripes = conf.getInt(
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY,
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_DEFAULT);
+    Preconditions.checkArgument(stripedReadAheadStripes >= 0, "The value of " +
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY +
+        " must not be negative.");
+    stripedReadSpeculativeThresholdMs = conf.getLong(
+        HdfsClientConfigKeys.StripedRead.SPECULATIVE_THRESHOLD_MS_KEY,
+        HdfsClientConfigKeys.StripedRead.SPECULATIVE_THRESHOLD_MS_DEFAULT);
+    stripedWriteEncodeThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.StripedWrite.ENCODE_THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.StripedWrite.ENCODE_THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(stripedWriteEncodeThreadpoolSize >= 0,
+        "The value of " +
+        HdfsClientConfigKeys.StripedWrite.ENCODE_THREADPOOL_SIZE_KEY +
+        " must not be negative.");
+    vectoredReadThreadpoolSize = conf.getInt(
+        Read.VECTORED_THREADPOOL_SIZE_KEY,
+        Read.VECTORED_THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(vectoredReadThreadpoolSize > 0, "The value of "
+        + Read.VECTORED_THREADPOOL_SIZE_KEY + " must be greater than 0.");
+    asyncMaxOutstandingCalls = conf.getInt(
+        Async.MAX_OUTSTANDING_CALLS_KEY,
+        Async.MAX_OUTSTANDING_CALLS_DEFAULT);
+    Preconditions.checkArgument(asyncMaxOutstandingCalls > 0, "The value of "
+        + Async.MAX_OUTSTANDING_CALLS_KEY + " must be greater than 0.");
+    asyncThreadpoolSize = conf.getInt(
+        Async.THREADPOOL_SIZE_KEY,
+        Async.THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(asyncThreadpoolSize > 0, "The value of "
+        + Async.THREADPOOL_SIZE_KEY + " must be greater than 0.");
     replicaAccessorBuilderClasses = loadReplicaAccessorBuilderClasses(conf);
   }
 
@@ -588,6 +650,41 @@ public int getHedgedReadThreadpoolSize() {
     return hedgedReadThreadpoolSize;
   }
 
+  /**
+   * @return whether the hedged read threshold follows observed latencies
+   */
+  public boolean isHedgedReadAdaptiveThresholdEnabled() {
+    return hedgedReadAdaptiveThresholdEnabled;
+  }
+
+  /**
+   * @return the hedgedReadAdaptiveThresholdMinMillis
+   */
+  public long getHedgedReadAdaptiveThresholdMinMillis() {
+    return hedgedReadAdaptiveThresholdMinMillis;
+  }
+
+  /**
+   * @return the hedgedReadAdaptiveThresholdPercentile
+   */
+  public double getHedgedReadAdaptiveThresholdPercentile() {
+    return hedgedReadAdaptiveThresholdPercentile;
+  }
+
+  /**
+   * @return whether replicas are ranked by observed DataNode latency
+   */
+  public boolean isReplicaLatencyRankingEnabled() {
+    return replicaLatencyRankingEnabled;
+  }
+
+  /**
+   * @return the sharedDeadNodesExpiryMs
+   */
+  public long getSharedDeadNodesExpiryMs() {
+    return sharedDeadNodesExpiryMs;
+  }
+
   /**
    * @return the stripedReadThreadpoolSize
    */
@@ -595,6 +692,48 @@ public int getStripedReadThreadpoolSize() {
     return stripedReadThreadpoolSize;
   }
 
+  /**
+   * @return the stripedReadAheadStripes
+   */
+  public int getStripedReadAheadStripes() {
+    return stripedReadAheadStripes;
+  }
+
+  /**
+   * @return the stripedReadSpeculativeThresholdMs
+   */
+  public long getStripedReadSpeculativeThresholdMs() {
+    return stripedReadSpeculativeThresholdMs;
+  }
+
+  /**
+   * @return the stripedWriteEncodeThreadpoolSize
+   */
+  public int getStripedWriteEncodeThreadpoolSize() {
+    return stripedWriteEncodeThreadpoolSize;
+  }
+
+  /**
+   * @return the vectoredReadThreadpoolSize
+   */
+  public int getVectoredReadThreadpoolSize() {
+    return vectoredReadThreadpoolSize;
+  }
+
+  /**
+   * @return the asyncMaxOutstandingCalls
+   */
+  public int getAsyncMaxOutstandingCalls() {
+    return asyncMaxOutstandingCalls;
+  }
+
+  /**
+   * @return the asyncThreadpoolSize
+   */
+  public int getAsyncThreadpoolSize() {
+    return asyncThreadpoolSize;
+  }
+
   /**
    * @return the replicaAccessorBuilderClasses
    */
@@ -621,6 +760,7 @@ public static class ShortCircuitConf {
 
     private final boolean useLegacyBlockReaderLocal;
     private final String domainSocketPath;
+    private final String shortCircuitBrokerPath;
     private final boolean skipShortCircuitChecksums;
 
     private final int shortCircuitBufferSize;
@@ -714,6 +854,9 @@ public ShortCircuitConf(Configuration conf) {
       shortCircuitCacheStaleThresholdMs = conf.getLong(
           ShortCircuit.REPLICA_STALE_THRESHOLD_MS_KEY,
           ShortCircuit.REPLICA_STALE_THRESHOLD_MS_DEFAULT);
+      shortCircuitBrokerPath = conf.getTrimmed(
+          Read.ShortCircuit.BROKER_PATH_KEY,
+          Read.ShortCircuit.BROKER_PATH_DEFAULT);
       shortCircuitSharedMemoryWatcherInterruptCheckMs = conf.getInt(
           DFS_SHORT_CIRCUIT_SHARED_MEMORY_WATCHER_INTERRUPT_CHECK_MS,
           DFS_SHORT_CIRCUIT_SHARED_MEMORY_WATCHER_INTERRUPT_CHECK_MS_DEFAULT);
@@ -750,6 +893,14 @@ public String getDomainSocketPath() {
       return domainSocketPath;
     }
 
+    /**
+     * @return the path of the short-circuit descriptor broker socket of the
+     *         DataNode, or an empty string if no broker is used.
+     */
+    public String getShortCircuitBrokerPath() {
+      return shortCircuitBrokerPath;
+    }
+
     public boolean isShortCircuitLocalReads() {
       return shortCircuitLocalReads;
     }
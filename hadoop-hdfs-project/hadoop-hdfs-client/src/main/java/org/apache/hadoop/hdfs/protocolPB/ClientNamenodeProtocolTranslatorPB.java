@@ -28,6 +28,7 @@
 
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -107,6 +108,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateSnapshotRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateSymlinkRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DeleteRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DeleteResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DeleteSnapshotRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DisallowSnapshotRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.FinalizeUpgradeRequestProto;
@@ -317,6 +319,13 @@ public LocatedBlocks getBlockLocations(String src, long offset, long length)
         .setLength(length)
         .build();
     try {
+      if (Client.isAsynchronousMode()) {
+        rpcProxy.getBlockLocations(null, req);
+        setAsyncReturnValue((GetBlockLocationsResponseProto resp) ->
+            resp.hasLocations() ?
+                PBHelperClient.convert(resp.getLocations()) : null);
+        return null;
+      }
       GetBlockLocationsResponseProto resp = rpcProxy.getBlockLocations(null,
           req);
       return resp.hasLocations() ?
@@ -438,14 +447,23 @@ public void setPermission(String src, FsPermission permission)
   }
 
   private void setAsyncReturnValue() {
+    setAsyncReturnValue((Message response) -> null);
+  }
+
+  /**
+   * Set the async return value of the RPC call just made, converting the
+   * response message with the given function once it arrives.
+   */
+  @SuppressWarnings("unchecked")
+  private <M extends Message, T> void setAsyncReturnValue(
+      final Function<M, T> converter) {
     final AsyncGet<Message, Exception> asyncReturnMessage
         = ProtobufRpcEngine.getAsyncReturnMessage();
-    final AsyncGet<Void, Exception> asyncGet
-        = new AsyncGet<Void, Exception>() {
+    final AsyncGet<T, Exception> asyncGet
+        = new AsyncGet<T, Exception>() {
       @Override
-      public Void get(long timeout, TimeUnit unit) throws Exception {
-        asyncReturnMessage.get(timeout, unit);
-        return null;
+      public T get(long timeout, TimeUnit unit) throws Exception {
+        return converter.apply((M) asyncReturnMessage.get(timeout, unit));
       }
 
       @Override
@@ -634,6 +652,11 @@ public boolean delete(String src, boolean recursive) throws IOException {
     DeleteRequestProto req = DeleteRequestProto.newBuilder().setSrc(src)
         .setRecursive(recursive).build();
     try {
+      if (Client.isAsynchronousMode()) {
+        rpcProxy.delete(null, req);
+        setAsyncReturnValue(DeleteResponseProto::getResult);
+        return false;
+      }
       return rpcProxy.delete(null, req).getResult();
     } catch (ServiceException e) {
       throw ProtobufHelper.getRemoteException(e);
@@ -667,6 +690,13 @@ public DirectoryListing getListing(String src, byte[] startAfter,
         .setStartAfter(ByteString.copyFrom(startAfter))
         .setNeedLocation(needLocation).build();
     try {
+      if (Client.isAsynchronousMode()) {
+        rpcProxy.getListing(null, req);
+        setAsyncReturnValue((GetListingResponseProto result) ->
+            result.hasDirList() ?
+                PBHelperClient.convert(result.getDirList()) : null);
+        return null;
+      }
       GetListingResponseProto result = rpcProxy.getListing(null, req);
 
       if (result.hasDirList()) {
@@ -900,6 +930,12 @@ public HdfsFileStatus getFileInfo(String src) throws IOException {
         .setSrc(src)
         .build();
     try {
+      if (Client.isAsynchronousMode()) {
+        rpcProxy.getFileInfo(null, req);
+        setAsyncReturnValue((GetFileInfoResponseProto res) ->
+            res.hasFs() ? PBHelperClient.convert(res.getFs()) : null);
+        return null;
+      }
       GetFileInfoResponseProto res = rpcProxy.getFileInfo(null, req);
       return res.hasFs() ? PBHelperClient.convert(res.getFs()) : null;
     } catch (ServiceException e) {
@@ -191,6 +191,13 @@ public void disableDomainSocketPath(String path) {
     pathMap.put(path, PathState.UNUSABLE);
   }
 
+  /**
+   * @return whether the path has been disabled recently.
+   */
+  public boolean isPathDisabled(String path) {
+    return pathMap.getIfPresent(path) != null;
+  }
+
   @VisibleForTesting
   public void clearPathMap() {
     pathMap.invalidateAll();
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.shortcircuit;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.SlotId;
+import org.apache.hadoop.hdfs.util.IOUtilsClient;
+import org.apache.hadoop.net.unix.DomainSocket;
+import org.apache.hadoop.security.token.SecretManager.InvalidToken;
+import org.apache.hadoop.security.token.Token;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The client side of the short-circuit descriptor broker of a DataNode.
+ *
+ * The broker keeps the file descriptors of recently read replicas open in
+ * the DataNode and passes them to the clients on the same host, so that the
+ * DataNode does not open a replica again for every client. The DataNode
+ * verifies the block access token of every request and validates the
+ * descriptors against its replica before it passes them. If the client
+ * passes the id of a slot of its shared memory segment, the DataNode
+ * registers the slot for the replica as for REQUEST_SHORT_CIRCUIT_FDS.
+ *
+ * The protocol consists of a request per connection. A request starts with
+ * {@link #OP_FETCH}, followed by the block pool id, the block id, the
+ * generation stamp, the block access token, and a boolean telling whether
+ * the high and low bits of the shared memory segment id and the slot index
+ * follow. The DataNode answers with a status byte, together with the
+ * descriptors of the block and its metadata file if the status is
+ * {@link #STATUS_SUCCESS}. If a slot was passed, the client then sends a
+ * byte to confirm the receipt of the descriptors; otherwise the DataNode
+ * unregisters the slot.
+ */
+@InterfaceAudience.Private
+public final class ShortCircuitFdBrokerClient {
+  static final Logger LOG =
+      LoggerFactory.getLogger(ShortCircuitFdBrokerClient.class);
+
+  public static final byte OP_FETCH = 1;
+
+  public static final byte STATUS_SUCCESS = 0;
+  /** The replica cannot be read via short-circuit. */
+  public static final byte STATUS_ERROR = 1;
+  /** The block access token was rejected. */
+  public static final byte STATUS_ERROR_ACCESS_TOKEN = 2;
+
+  /** Timeout of the socket operations of a request. */
+  public static final int SOCKET_TIMEOUT_MS = 5000;
+
+  private ShortCircuitFdBrokerClient() {
+  }
+
+  /**
+   * Fetch the descriptors of a replica from the broker listening on the
+   * given path.
+   *
+   * @param path    the path of the broker socket.
+   * @param block   the replica.
+   * @param token   the block access token of the replica.
+   * @param slotId  the slot to register for the replica, or null.
+   * @param fis     filled with the streams of the block and its metadata on
+   *                success.
+   * @return true if the broker passed the descriptors; false if it cannot
+   *         serve the replica.
+   * @throws InvalidToken if the broker rejected the block access token.
+   * @throws IOException if the broker could not be reached.
+   */
+  public static boolean fetch(String path, ExtendedBlock block,
+      Token<BlockTokenIdentifier> token, SlotId slotId, FileInputStream[] fis)
+      throws IOException {
+    Preconditions.checkArgument(fis.length == 2);
+    try (DomainSocket sock = DomainSocket.connect(path)) {
+      sock.setAttribute(DomainSocket.SEND_TIMEOUT, SOCKET_TIMEOUT_MS);
+      sock.setAttribute(DomainSocket.RECEIVE_TIMEOUT, SOCKET_TIMEOUT_MS);
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(sock.getOutputStream()));
+      out.writeByte(OP_FETCH);
+      out.writeUTF(block.getBlockPoolId());
+      out.writeLong(block.getBlockId());
+      out.writeLong(block.getGenerationStamp());
+      token.write(out);
+      out.writeBoolean(slotId != null);
+      if (slotId != null) {
+        out.writeLong(slotId.getShmId().getHi());
+        out.writeLong(slotId.getShmId().getLo());
+        out.writeInt(slotId.getSlotIdx());
+      }
+      out.flush();
+
+      byte[] status = new byte[1];
+      int n = sock.recvFileInputStreams(fis, status, 0, status.length);
+      if (n <= 0) {
+        throw new IOException("Unexpected end of stream from " + path);
+      }
+      boolean success = false;
+      try {
+        switch (status[0]) {
+        case STATUS_SUCCESS:
+          if (fis[0] == null || fis[1] == null) {
+            throw new IOException("Missing file descriptors from " + path);
+          }
+          if (slotId != null) {
+            LOG.trace("Sending receipt verification byte for {}", slotId);
+            sock.getOutputStream().write(0);
+          }
+          success = true;
+          return true;
+        case STATUS_ERROR_ACCESS_TOKEN:
+          throw new InvalidToken("The broker at " + path +
+              " rejected the block access token for " + block);
+        default:
+          return false;
+        }
+      } finally {
+        if (!success) {
+          IOUtilsClient.cleanupWithLogger(LOG, fis[0], fis[1]);
+          fis[0] = null;
+          fis[1] = null;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo.DatanodeInfoBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestDatanodeLatencyTracker {
+
+  private static DatanodeInfo newDatanode(int i) {
+    DatanodeID id = new DatanodeID("192.168.0." + i, "host" + i,
+        "fake_datanode_id_" + i, 100, 101, 102, 103);
+    return new DatanodeInfoBuilder().setNodeID(id).build();
+  }
+
+  @Test
+  public void testChooseFastest() {
+    DatanodeLatencyTracker tracker = new DatanodeLatencyTracker(0);
+    DatanodeInfo[] nodes = {newDatanode(1), newDatanode(2), newDatanode(3)};
+    boolean[] all = {true, true, true};
+
+    // Without samples the NameNode order is kept.
+    assertEquals(0, tracker.chooseFastest(nodes, all));
+
+    tracker.addSetupLatency(nodes[0], 50);
+    // Unprobed replicas are tried before slower known ones.
+    assertEquals(1, tracker.chooseFastest(nodes, all));
+
+    tracker.addSetupLatency(nodes[1], 80);
+    tracker.addSetupLatency(nodes[2], 20);
+    assertEquals(2, tracker.chooseFastest(nodes, all));
+    assertEquals(0,
+        tracker.chooseFastest(nodes, new boolean[] {true, true, false}));
+    assertEquals(-1,
+        tracker.chooseFastest(nodes, new boolean[] {false, false, false}));
+
+    // The average moves towards new samples.
+    for (int i = 0; i < 10; i++) {
+      tracker.addSetupLatency(nodes[2], 200);
+    }
+    assertEquals(0, tracker.chooseFastest(nodes, all));
+  }
+
+  @Test
+  public void testReadLatencyPercentile() {
+    DatanodeLatencyTracker tracker = new DatanodeLatencyTracker(0);
+    for (int i = 1; i < DatanodeLatencyTracker.MIN_WINDOW_SAMPLES; i++) {
+      tracker.addReadLatency(i);
+    }
+    assertEquals(-1, tracker.getReadLatencyPercentile(95));
+
+    for (int i = 1; i <= 100; i++) {
+      tracker.addReadLatency(i);
+    }
+    // The window now holds 1..15 followed by 1..100.
+    assertEquals(100, tracker.getReadLatencyPercentile(100));
+    assertEquals(95, tracker.getReadLatencyPercentile(95));
+
+    // Old samples fall out of the window.
+    for (int i = 0; i < DatanodeLatencyTracker.WINDOW_SIZE; i++) {
+      tracker.addReadLatency(7);
+    }
+    assertEquals(7, tracker.getReadLatencyPercentile(95));
+  }
+
+  @Test
+  public void testSharedDeadNodes() throws Exception {
+    DatanodeInfo dn = newDatanode(1);
+
+    DatanodeLatencyTracker disabled = new DatanodeLatencyTracker(0);
+    disabled.addDeadNode(dn);
+    assertFalse(disabled.isDeadNode(dn));
+
+    DatanodeLatencyTracker tracker = new DatanodeLatencyTracker(100);
+    tracker.addDeadNode(dn);
+    assertTrue(tracker.isDeadNode(dn));
+    assertFalse(tracker.isDeadNode(newDatanode(2)));
+    assertEquals(1, tracker.getDeadNodeCount());
+
+    Thread.sleep(200);
+    assertFalse(tracker.isDeadNode(dn));
+    assertEquals(0, tracker.getDeadNodeCount());
+  }
+}
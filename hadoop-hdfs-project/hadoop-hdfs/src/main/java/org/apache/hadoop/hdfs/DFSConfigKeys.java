@@ -901,6 +901,16 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_DATANODE_USER_NAME_KEY = DFS_DATANODE_KERBEROS_PRINCIPAL_KEY;
   public static final String  DFS_DATANODE_SHARED_FILE_DESCRIPTOR_PATHS = "dfs.datanode.shared.file.descriptor.paths";
   public static final String  DFS_DATANODE_SHARED_FILE_DESCRIPTOR_PATHS_DEFAULT = "/dev/shm,/tmp";
+  public static final String
+      DFS_DATANODE_SHORT_CIRCUIT_BROKER_CACHE_SIZE_KEY =
+      "dfs.datanode.shortcircuit.broker.cache.size";
+  public static final int
+      DFS_DATANODE_SHORT_CIRCUIT_BROKER_CACHE_SIZE_DEFAULT = 4096;
+  public static final String
+      DFS_DATANODE_SHORT_CIRCUIT_BROKER_HANDLER_COUNT_KEY =
+      "dfs.datanode.shortcircuit.broker.handler.count";
+  public static final int
+      DFS_DATANODE_SHORT_CIRCUIT_BROKER_HANDLER_COUNT_DEFAULT = 4;
   public static final String
       DFS_SHORT_CIRCUIT_SHARED_MEMORY_WATCHER_INTERRUPT_CHECK_MS =
       HdfsClientConfigKeys
@@ -328,6 +328,7 @@ public static InetSocketAddress createSocketAddr(String target) {
   DataXceiverServer xserver = null;
   Daemon localDataXceiverServer = null;
   ShortCircuitRegistry shortCircuitRegistry = null;
+  ShortCircuitFdBroker shortCircuitFdBroker = null;
   ThreadGroup threadGroup = null;
   private DNConf dnConf;
   private volatile boolean heartbeatsDisabledForTests = false;
@@ -1167,6 +1168,12 @@ private void initDataXceiver() throws IOException {
       }
     }
     this.shortCircuitRegistry = new ShortCircuitRegistry(getConf());
+    if (getConf().getBoolean(HdfsClientConfigKeys.Read.ShortCircuit.KEY,
+        HdfsClientConfigKeys.Read.ShortCircuit.DEFAULT)) {
+      this.shortCircuitFdBroker = ShortCircuitFdBroker.create(this,
+          getConf(), streamingAddr.getPort());
+      shortCircuitRegistry.setFdBroker(shortCircuitFdBroker);
+    }
   }
 
   private static DomainPeerServer getDomainPeerServer(Configuration conf,
@@ -2016,6 +2023,9 @@ public void shutdown() {
       ((DataXceiverServer) this.localDataXceiverServer.getRunnable()).kill();
       this.localDataXceiverServer.interrupt();
     }
+    if (shortCircuitFdBroker != null) {
+      shortCircuitFdBroker.close();
+    }
 
     // Terminate directory scanner and block scanner
     shutdownPeriodicScanners();
@@ -2639,6 +2649,9 @@ public void runDatanodeDaemon() throws IOException {
     if (localDataXceiverServer != null) {
       localDataXceiverServer.start();
     }
+    if (shortCircuitFdBroker != null) {
+      shortCircuitFdBroker.start();
+    }
     ipcServer.setTracer(tracer);
     ipcServer.start();
     startPlugins(getConf());
@@ -3344,6 +3357,11 @@ public ShortCircuitRegistry getShortCircuitRegistry() {
     return shortCircuitRegistry;
   }
 
+  @VisibleForTesting
+  ShortCircuitFdBroker getShortCircuitFdBroker() {
+    return shortCircuitFdBroker;
+  }
+
   /**
    * Check the disk error synchronously.
    */
@@ -0,0 +1,492 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.apache.hadoop.hdfs.shortcircuit.ShortCircuitFdBrokerClient.OP_FETCH;
+import static org.apache.hadoop.hdfs.shortcircuit.ShortCircuitFdBrokerClient.SOCKET_TIMEOUT_MS;
+import static org.apache.hadoop.hdfs.shortcircuit.ShortCircuitFdBrokerClient.STATUS_ERROR;
+import static org.apache.hadoop.hdfs.shortcircuit.ShortCircuitFdBrokerClient.STATUS_ERROR_ACCESS_TOKEN;
+import static org.apache.hadoop.hdfs.shortcircuit.ShortCircuitFdBrokerClient.STATUS_SUCCESS;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.ExtendedBlockId;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitFdBrokerClient;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.ShmId;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.SlotId;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.net.unix.DomainSocket;
+import org.apache.hadoop.security.token.SecretManager.InvalidToken;
+import org.apache.hadoop.security.token.Token;
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.DataChecksum;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The short-circuit descriptor broker of a DataNode.
+ *
+ * A regular short-circuit read makes the DataNode open the block and
+ * metadata files of the replica for every request. The broker keeps the
+ * descriptors open in an LRU map and passes them to all the clients reading
+ * the replica, so that the DataNode does not open the replicas again for
+ * every client. See {@link ShortCircuitFdBrokerClient} for the protocol.
+ *
+ * Every request must carry a block access token, which is verified as for
+ * REQUEST_SHORT_CIRCUIT_FDS. When the descriptors are opened, the length of
+ * the block file must match the replica, and the metadata file must start
+ * with a valid header and hold the checksums of exactly that many bytes.
+ * Before the descriptors are passed, the replica must still be finalized
+ * with the same generation stamp, length and storage, and the block file
+ * must still have that length. Entries are dropped as soon as the replica
+ * is invalidated, see {@link ShortCircuitRegistry#processBlockInvalidation}.
+ *
+ * The slot passed with a request is registered in the
+ * {@link ShortCircuitRegistry} as for REQUEST_SHORT_CIRCUIT_FDS, so the
+ * DataNode can invalidate and anchor the replica in the cache of the
+ * client. Replicas passed without a slot go stale after the stale threshold
+ * of the short-circuit cache of the client.
+ */
+@InterfaceAudience.Private
+class ShortCircuitFdBroker implements Closeable {
+  static final Logger LOG = LoggerFactory.getLogger(ShortCircuitFdBroker.class);
+
+  /**
+   * The descriptors of a replica. They are closed once the entry is removed
+   * from the broker and no request is sending them anymore.
+   */
+  @VisibleForTesting
+  static class Entry {
+    private final FileInputStream dataStream;
+    private final FileInputStream metaStream;
+    private final long genStamp;
+    private final long numBytes;
+    private final String storageUuid;
+    private int refCount = 0;
+    private boolean removed = false;
+
+    Entry(FileInputStream dataStream, FileInputStream metaStream,
+        Replica replica) {
+      this.dataStream = dataStream;
+      this.metaStream = metaStream;
+      this.genStamp = replica.getGenerationStamp();
+      this.numBytes = replica.getNumBytes();
+      this.storageUuid = replica.getStorageUuid();
+    }
+
+    FileDescriptor[] getFileDescriptors() throws IOException {
+      return new FileDescriptor[] {dataStream.getFD(), metaStream.getFD()};
+    }
+
+    /**
+     * @return whether the descriptors still belong to the given replica.
+     */
+    boolean matches(Replica replica) {
+      if (replica.getGenerationStamp() != genStamp ||
+          replica.getNumBytes() != numBytes ||
+          !Objects.equals(replica.getStorageUuid(), storageUuid)) {
+        return false;
+      }
+      try {
+        return dataStream.getChannel().size() == numBytes;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    /**
+     * Check that the descriptors hold the replica.
+     */
+    void validate(ExtendedBlock block) throws IOException {
+      long length = dataStream.getChannel().size();
+      if (length != numBytes) {
+        throw new IOException("The block file of " + block + " has " +
+            length + " bytes, but the replica has " + numBytes);
+      }
+      FileChannel metaChannel = metaStream.getChannel();
+      BlockMetadataHeader header = BlockMetadataHeader.preadHeader(
+          metaChannel);
+      if (header.getVersion() != BlockMetadataHeader.VERSION) {
+        throw new IOException("The metadata file of " + block +
+            " has version " + header.getVersion() + ", expected " +
+            BlockMetadataHeader.VERSION);
+      }
+      DataChecksum checksum = header.getChecksum();
+      int bytesPerChecksum = checksum.getBytesPerChecksum();
+      long chunks = (numBytes + bytesPerChecksum - 1) / bytesPerChecksum;
+      long expected = BlockMetadataHeader.getHeaderSize() +
+          chunks * checksum.getChecksumSize();
+      if (metaChannel.size() != expected) {
+        throw new IOException("The metadata file of " + block + " has " +
+            metaChannel.size() + " bytes, expected " + expected);
+      }
+    }
+
+    boolean isClosed() {
+      return removed && refCount == 0;
+    }
+
+    private void close() {
+      IOUtils.cleanupWithLogger(LOG, dataStream, metaStream);
+    }
+  }
+
+  private final DataNode datanode;
+  private final String path;
+  private final int maxEntries;
+  private final int handlerCount;
+
+  /** The entries in least recently used order. */
+  private final LinkedHashMap<ExtendedBlockId, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private DomainSocket listenSocket;
+  private Daemon acceptor;
+  private ExecutorService executor;
+  private volatile boolean running = false;
+
+  ShortCircuitFdBroker(DataNode datanode, String path, int maxEntries,
+      int handlerCount) {
+    Preconditions.checkArgument(maxEntries > 0,
+        "maxEntries must be positive");
+    Preconditions.checkArgument(handlerCount > 0,
+        "handlerCount must be positive");
+    this.datanode = datanode;
+    this.path = path;
+    this.maxEntries = maxEntries;
+    this.handlerCount = handlerCount;
+  }
+
+  /**
+   * Create the broker of a DataNode, listening on the path configured by
+   * {@link HdfsClientConfigKeys.Read.ShortCircuit#BROKER_PATH_KEY}.
+   *
+   * @param port    the TCP port of the DataNode, which replaces _PORT in
+   *                the path.
+   * @return the broker, or null if no path is configured.
+   */
+  static ShortCircuitFdBroker create(DataNode datanode, Configuration conf,
+      int port) {
+    String path = conf.getTrimmed(
+        HdfsClientConfigKeys.Read.ShortCircuit.BROKER_PATH_KEY,
+        HdfsClientConfigKeys.Read.ShortCircuit.BROKER_PATH_DEFAULT);
+    if (path.isEmpty()) {
+      return null;
+    }
+    return new ShortCircuitFdBroker(datanode,
+        DomainSocket.getEffectivePath(path, port),
+        conf.getInt(
+            DFSConfigKeys.DFS_DATANODE_SHORT_CIRCUIT_BROKER_CACHE_SIZE_KEY,
+            DFSConfigKeys
+                .DFS_DATANODE_SHORT_CIRCUIT_BROKER_CACHE_SIZE_DEFAULT),
+        conf.getInt(
+            DFSConfigKeys.DFS_DATANODE_SHORT_CIRCUIT_BROKER_HANDLER_COUNT_KEY,
+            DFSConfigKeys
+                .DFS_DATANODE_SHORT_CIRCUIT_BROKER_HANDLER_COUNT_DEFAULT));
+  }
+
+  /**
+   * Start listening for requests.
+   */
+  synchronized void start() throws IOException {
+    Preconditions.checkState(!running, "already started");
+    listenSocket = DomainSocket.bindAndListen(path);
+    executor = Executors.newFixedThreadPool(handlerCount,
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("ShortCircuitFdBroker-%d").build());
+    running = true;
+    acceptor = new Daemon(this::acceptLoop);
+    acceptor.setName("ShortCircuitFdBroker acceptor on " + path);
+    acceptor.start();
+    LOG.info("Started short-circuit descriptor broker on {}", path);
+  }
+
+  private void acceptLoop() {
+    while (running) {
+      final DomainSocket sock;
+      try {
+        sock = listenSocket.accept();
+      } catch (IOException e) {
+        if (running) {
+          LOG.warn("Error accepting a connection on {}", path, e);
+        }
+        continue;
+      }
+      try {
+        executor.execute(() -> serve(sock));
+      } catch (RejectedExecutionException e) {
+        // the broker is being closed
+        IOUtils.cleanupWithLogger(LOG, sock);
+      }
+    }
+  }
+
+  private void serve(DomainSocket sock) {
+    try {
+      sock.setAttribute(DomainSocket.SEND_TIMEOUT, SOCKET_TIMEOUT_MS);
+      sock.setAttribute(DomainSocket.RECEIVE_TIMEOUT, SOCKET_TIMEOUT_MS);
+      DataInputStream in = new DataInputStream(sock.getInputStream());
+      byte op = in.readByte();
+      if (op != OP_FETCH) {
+        LOG.warn("Unknown opcode {} from {}", op, sock);
+        return;
+      }
+      String bpid = in.readUTF();
+      long blockId = in.readLong();
+      long genStamp = in.readLong();
+      ExtendedBlock block = new ExtendedBlock(bpid, blockId, 0, genStamp);
+      Token<BlockTokenIdentifier> token = new Token<>();
+      token.readFields(in);
+      SlotId slotId = null;
+      if (in.readBoolean()) {
+        ShmId shmId = new ShmId(in.readLong(), in.readLong());
+        slotId = new SlotId(shmId, in.readInt());
+      }
+      serveFetch(sock, block, token, slotId);
+    } catch (IOException e) {
+      LOG.debug("Error serving a request on {}", sock, e);
+    } finally {
+      IOUtils.cleanupWithLogger(LOG, sock);
+    }
+  }
+
+  private void serveFetch(DomainSocket sock, ExtendedBlock block,
+      Token<BlockTokenIdentifier> token, SlotId slotId) throws IOException {
+    final byte[] status = new byte[1];
+    if (datanode.isBlockTokenEnabled) {
+      try {
+        datanode.blockPoolTokenSecretManager.checkAccess(token, null, block,
+            BlockTokenIdentifier.AccessMode.READ, null, null);
+      } catch (InvalidToken e) {
+        LOG.warn("Block token verification failed: op=BROKER_FETCH, " +
+            "block={}, message={}", block, e.getLocalizedMessage());
+        status[0] = STATUS_ERROR_ACCESS_TOKEN;
+        sock.getOutputStream().write(status);
+        return;
+      }
+    }
+    final Entry entry;
+    try {
+      entry = ref(block, token);
+    } catch (IOException e) {
+      LOG.debug("Cannot pass the file descriptors of {}", block, e);
+      status[0] = STATUS_ERROR;
+      sock.getOutputStream().write(status);
+      return;
+    }
+    SlotId registeredSlotId = null;
+    boolean success = false;
+    try {
+      if (slotId != null) {
+        try {
+          datanode.shortCircuitRegistry.registerSlot(
+              ExtendedBlockId.fromExtendedBlock(block), slotId,
+              datanode.data.isCached(block.getBlockPoolId(),
+                  block.getBlockId()));
+          registeredSlotId = slotId;
+        } catch (IOException | UnsupportedOperationException e) {
+          LOG.debug("Cannot register {} for {}", slotId, block, e);
+          status[0] = STATUS_ERROR;
+          sock.getOutputStream().write(status);
+          return;
+        }
+      }
+      status[0] = STATUS_SUCCESS;
+      sock.sendFileDescriptors(entry.getFileDescriptors(), status, 0,
+          status.length);
+      if (slotId != null) {
+        LOG.trace("Reading receipt verification byte for {}", slotId);
+        if (sock.getInputStream().read() < 0) {
+          throw new EOFException();
+        }
+      }
+      success = true;
+    } finally {
+      unref(entry);
+      if (!success && registeredSlotId != null) {
+        LOG.info("Unregistering {} because the broker failed to pass the " +
+            "file descriptors of {}", registeredSlotId, block);
+        datanode.shortCircuitRegistry.unregisterSlot(registeredSlotId);
+      }
+    }
+  }
+
+  /**
+   * Get the descriptors of a finalized replica, opening them if the broker
+   * does not have valid ones. The descriptors stay open until
+   * {@link #unref(Entry)} is called.
+   *
+   * @throws IOException if the replica cannot be read via short-circuit.
+   */
+  @VisibleForTesting
+  Entry ref(ExtendedBlock block, Token<BlockTokenIdentifier> token)
+      throws IOException {
+    final ExtendedBlockId key = ExtendedBlockId.fromExtendedBlock(block);
+    final Replica replica =
+        datanode.data.getReplica(block.getBlockPoolId(), block.getBlockId());
+    if (replica == null || replica.getState() != ReplicaState.FINALIZED ||
+        replica.getGenerationStamp() != block.getGenerationStamp()) {
+      throw new IOException("No finalized replica of " + block +
+          ", found " + replica);
+    }
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry != null) {
+        entry.refCount++;
+      }
+    }
+    if (entry != null) {
+      if (entry.matches(replica)) {
+        return entry;
+      }
+      LOG.debug("Dropping the outdated file descriptors of {}", block);
+      synchronized (this) {
+        if (entries.get(key) == entry) {
+          remove(key, entry);
+        }
+      }
+      unref(entry);
+    }
+    FileInputStream[] fis = datanode.requestShortCircuitFdsForRead(block,
+        token, DataNode.CURRENT_BLOCK_FORMAT_VERSION);
+    entry = new Entry(fis[0], fis[1], replica);
+    boolean success = false;
+    try {
+      entry.validate(block);
+      success = true;
+    } finally {
+      if (!success) {
+        entry.close();
+      }
+    }
+    put(key, entry);
+    return entry;
+  }
+
+  /**
+   * Add a referenced entry, evicting the least recently used entry if the
+   * broker is full.
+   */
+  private synchronized void put(ExtendedBlockId key, Entry entry) {
+    entry.refCount++;
+    Entry existing = entries.get(key);
+    if (existing != null) {
+      remove(key, existing);
+    }
+    entries.put(key, entry);
+    if (entries.size() > maxEntries) {
+      Iterator<Map.Entry<ExtendedBlockId, Entry>> iter =
+          entries.entrySet().iterator();
+      Entry eldest = iter.next().getValue();
+      iter.remove();
+      eldest.removed = true;
+      if (eldest.isClosed()) {
+        eldest.close();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void unref(Entry entry) {
+    boolean close;
+    synchronized (this) {
+      Preconditions.checkState(entry.refCount > 0);
+      entry.refCount--;
+      close = entry.isClosed();
+    }
+    if (close) {
+      entry.close();
+    }
+  }
+
+  /** Remove an entry, closing it unless it is referenced. */
+  private synchronized void remove(ExtendedBlockId key, Entry entry) {
+    entries.remove(key);
+    entry.removed = true;
+    if (entry.isClosed()) {
+      entry.close();
+    }
+  }
+
+  /**
+   * Drop the descriptors of a replica which is being invalidated.
+   */
+  synchronized void invalidate(ExtendedBlockId key) {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      LOG.debug("Dropping the file descriptors of invalidated {}", key);
+      remove(key, entry);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return entries.size();
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (!running) {
+        return;
+      }
+      running = false;
+      IOUtils.cleanupWithLogger(LOG, listenSocket);
+      executor.shutdownNow();
+      for (Entry entry : entries.values()) {
+        entry.removed = true;
+        if (entry.isClosed()) {
+          entry.close();
+        }
+      }
+      entries.clear();
+    }
+    try {
+      acceptor.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    LOG.info("Stopped short-circuit descriptor broker on {}", path);
+  }
+}
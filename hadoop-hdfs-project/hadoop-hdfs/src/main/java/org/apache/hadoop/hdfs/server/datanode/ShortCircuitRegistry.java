@@ -153,6 +153,11 @@ public synchronized void removeShm(ShortCircuitShm shm) {
   
   private final HashMultimap<ExtendedBlockId, Slot> slots =
       HashMultimap.create(0, 1);
+
+  /**
+   * The short-circuit descriptor broker of the DataNode, or null.
+   */
+  private ShortCircuitFdBroker fdBroker;
   
   public ShortCircuitRegistry(Configuration conf) throws IOException {
     boolean enabled = false;
@@ -238,6 +243,9 @@ public synchronized boolean processBlockMunlockRequest(
    * @param blockId        The block ID.
    */
   public synchronized void processBlockInvalidation(ExtendedBlockId blockId) {
+    if (fdBroker != null) {
+      fdBroker.invalidate(blockId);
+    }
     if (!enabled) return;
     final Set<Slot> affectedSlots = slots.get(blockId);
     if (!affectedSlots.isEmpty()) {
@@ -254,6 +262,14 @@ public synchronized void processBlockInvalidation(ExtendedBlockId blockId) {
     }
   }
 
+  /**
+   * Set the broker whose descriptors are dropped when a block is
+   * invalidated.
+   */
+  synchronized void setFdBroker(ShortCircuitFdBroker fdBroker) {
+    this.fdBroker = fdBroker;
+  }
+
   public synchronized String getClientNames(ExtendedBlockId blockId) {
     if (!enabled) return "";
     final HashSet<String> clientNames = new HashSet<String>();
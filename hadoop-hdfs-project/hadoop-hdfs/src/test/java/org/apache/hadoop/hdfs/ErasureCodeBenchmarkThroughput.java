@@ -55,6 +55,9 @@
  * The tool launches 1 thread for each client. Number of client is 1 by default.
  * For reading, users can also specify whether stateful or positional read
  * should be used. Stateful read is chosen by default.
+ * For writing EC files, users can also specify whether the parity cells are
+ * encoded in a pipeline with the buffering of the next stripe, or
+ * synchronously by the writing thread. Pipelined encoding is the default.
  * <p/>
  * Each client reads and writes different files.
  * For writing, client writes a temporary file at the desired amount, and the
@@ -86,7 +89,7 @@
     random.nextBytes(data);
   }
 
-  private final FileSystem fs;
+  private FileSystem fs;
 
   public static ErasureCodingPolicy getEcPolicy() {
     return ecPolicy;
@@ -113,8 +116,10 @@ private static void printUsage(String msg) {
     }
     System.err.println("Usage: ErasureCodeBenchmarkThroughput " +
         "<read|write|gen|clean> <size in MB> " +
-        "<ec|rep> [num clients] [stf|pos]\n" +
-        "Stateful and positional option is only available for read.");
+        "<ec|rep> [num clients] [stf|pos|pipe|sync]\n" +
+        "Stateful and positional option is only available for read.\n" +
+        "Pipelined and synchronous encoding option is only available for " +
+        "writing EC files.");
     System.exit(1);
   }
 
@@ -205,6 +210,7 @@ public int run(String[] args) throws Exception {
     boolean isEc = true;
     int numClients = 1;
     boolean statefulRead = true;
+    boolean pipelinedEncode = true;
     if (args.length >= 3) {
       if (args[0].equals("read")) {
         type = OpType.READ;
@@ -248,6 +254,13 @@ public int run(String[] args) throws Exception {
         printUsage("Unknown read mode: " + args[4]);
       }
     }
+    if (args.length >= 5 && isEc &&
+        (type == OpType.WRITE || type == OpType.GEN)) {
+      pipelinedEncode = args[4].equals("pipe");
+      if (!pipelinedEncode && !args[4].equals("sync")) {
+        printUsage("Unknown encode mode: " + args[4]);
+      }
+    }
 
     setUpDir();
     if (type == OpType.CLEAN) {
@@ -256,11 +269,34 @@ public int run(String[] args) throws Exception {
       if (type == OpType.READ && isEc) {
         setReadThreadPoolSize(numClients);
       }
-      benchmark(type, dataSizeMB, numClients, isEc, statefulRead);
+      if (pipelinedEncode) {
+        benchmark(type, dataSizeMB, numClients, isEc, statefulRead);
+      } else {
+        benchmarkSyncEncode(type, dataSizeMB, numClients);
+      }
     }
     return 0;
   }
 
+  /**
+   * Run a write benchmark with a client which encodes the parity cells on the
+   * writing thread.
+   */
+  private void benchmarkSyncEncode(OpType type, int dataSizeMB,
+      int numClients) throws Exception {
+    Configuration conf = new Configuration(fs.getConf());
+    conf.setInt(
+        HdfsClientConfigKeys.StripedWrite.ENCODE_THREADPOOL_SIZE_KEY, 0);
+    FileSystem pipelinedFs = fs;
+    fs = FileSystem.newInstance(pipelinedFs.getUri(), conf);
+    try {
+      benchmark(type, dataSizeMB, numClients, true, true);
+    } finally {
+      fs.close();
+      fs = pipelinedFs;
+    }
+  }
+
   private void cleanUp(int dataSizeMB, boolean isEc) throws IOException {
     final String fileName = getFilePath(dataSizeMB, isEc);
     Path path = isEc ? new Path(EC_DIR) : new Path(REP_DIR);
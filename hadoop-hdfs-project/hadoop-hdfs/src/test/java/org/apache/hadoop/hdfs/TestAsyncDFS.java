@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options.Rename;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the operations of {@link AsyncDistributedFileSystem}.
+ */
+public class TestAsyncDFS {
+  private static final int NUM_FILES = 20;
+  private static final int FILE_LEN = 4096;
+
+  private static MiniDFSCluster cluster;
+  private static DistributedFileSystem fs;
+  private static AsyncDistributedFileSystem adfs;
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    // list large directories in several batches
+    conf.setInt(DFSConfigKeys.DFS_LIST_LIMIT, 3);
+    conf.setInt(HdfsClientConfigKeys.Async.MAX_OUTSTANDING_CALLS_KEY, 4);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    adfs = fs.getAsyncDistributedFileSystem();
+  }
+
+  @AfterClass
+  public static void teardown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private static byte[] data(int seed) {
+    byte[] bytes = new byte[FILE_LEN];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (seed + i);
+    }
+    return bytes;
+  }
+
+  private static Throwable getCause(CompletableFuture<?> future)
+      throws InterruptedException {
+    try {
+      future.get();
+      fail("Expected the future to fail");
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testCreateAndRead() throws Exception {
+    final Path dir = new Path("/testCreateAndRead");
+    List<CompletableFuture<FSDataOutputStream>> creates = new ArrayList<>();
+    for (int i = 0; i < NUM_FILES; i++) {
+      creates.add(adfs.create(new Path(dir, "file" + i),
+          FsPermission.getFileDefault(), false));
+    }
+    for (int i = 0; i < NUM_FILES; i++) {
+      try (FSDataOutputStream out = creates.get(i).get()) {
+        out.write(data(i));
+      }
+    }
+
+    FileStatus[] statuses = adfs.listStatus(dir).get();
+    assertEquals(NUM_FILES, statuses.length);
+    for (FileStatus status : statuses) {
+      assertEquals(FILE_LEN, status.getLen());
+    }
+
+    for (int i = 0; i < NUM_FILES; i++) {
+      Path file = new Path(dir, "file" + i);
+      assertEquals(fs.getFileStatus(file), adfs.getFileStatus(file).get());
+      try (FSDataInputStream in = adfs.open(file).get()) {
+        ByteBuffer buf = ByteBuffer.allocate(FILE_LEN);
+        assertEquals(FILE_LEN - 100,
+            (int) adfs.read(in, 100, buf).get());
+        buf.flip();
+        byte[] expected = Arrays.copyOfRange(data(i), 100, FILE_LEN);
+        byte[] actual = new byte[buf.remaining()];
+        buf.get(actual);
+        assertArrayEquals(expected, actual);
+        assertEquals(-1,
+            (int) adfs.read(in, FILE_LEN, ByteBuffer.allocate(1)).get());
+        // positional reads do not move the stream
+        assertEquals(0, in.getPos());
+      }
+    }
+
+    Throwable t = getCause(adfs.create(new Path(dir, "file0"),
+        FsPermission.getFileDefault(), false));
+    assertTrue(t.toString(),
+        t instanceof FileAlreadyExistsException);
+  }
+
+  @Test(timeout = 60000)
+  public void testRenameAndDelete() throws Exception {
+    final Path src = new Path("/testRenameAndDelete/src");
+    final Path dst = new Path("/testRenameAndDelete/dst");
+    for (int i = 0; i < NUM_FILES; i++) {
+      DFSTestUtil.createFile(fs, new Path(src, "file" + i), 1, (short) 1, 0);
+    }
+    fs.mkdirs(dst);
+
+    List<CompletableFuture<Void>> renames = new ArrayList<>();
+    for (int i = 0; i < NUM_FILES; i++) {
+      renames.add(adfs.rename(new Path(src, "file" + i),
+          new Path(dst, "file" + i), Rename.NONE));
+    }
+    CompletableFuture.allOf(renames.toArray(new CompletableFuture[0])).get();
+    assertEquals(0, fs.listStatus(src).length);
+    assertEquals(NUM_FILES, fs.listStatus(dst).length);
+
+    // the destination exists and overwrite is not set
+    DFSTestUtil.createFile(fs, new Path(src, "file0"), 1, (short) 1, 0);
+    Throwable t = getCause(adfs.rename(new Path(src, "file0"),
+        new Path(dst, "file0")));
+    assertTrue(t.toString(),
+        t instanceof FileAlreadyExistsException);
+
+    List<CompletableFuture<Boolean>> deletes = new ArrayList<>();
+    for (int i = 0; i < NUM_FILES; i++) {
+      deletes.add(adfs.delete(new Path(dst, "file" + i), false));
+    }
+    for (CompletableFuture<Boolean> delete : deletes) {
+      assertTrue(delete.get());
+    }
+    assertEquals(0, fs.listStatus(dst).length);
+    assertFalse(adfs.delete(new Path(dst, "file0"), false).get());
+  }
+
+  @Test(timeout = 60000)
+  public void testFileNotFound() throws Exception {
+    final Path missing = new Path("/testFileNotFound/missing");
+    assertTrue(getCause(adfs.getFileStatus(missing))
+        instanceof FileNotFoundException);
+    assertTrue(getCause(adfs.listStatus(missing))
+        instanceof FileNotFoundException);
+    assertTrue(getCause(adfs.open(missing))
+        instanceof FileNotFoundException);
+    assertTrue(getCause(adfs.rename(missing, new Path("/dst")))
+        instanceof FileNotFoundException);
+  }
+}
@@ -21,6 +21,7 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
@@ -45,14 +46,20 @@
 import org.junit.rules.Timeout;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_DEFAULT;
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_KEY;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -325,6 +332,63 @@ public void testStatefulRead() throws Exception {
     testStatefulRead(true, true);
   }
 
+  @Test
+  public void testStatefulReadAheadWithSpeculation() throws Exception {
+    conf.setInt(HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY, 3);
+    // Parity cells are read as soon as the data cells take longer than 1ms.
+    // The parity blocks are not injected, so those reads fail.
+    conf.setLong(
+        HdfsClientConfigKeys.StripedRead.SPECULATIVE_THRESHOLD_MS_KEY, 1);
+    tearDown();
+    startUp();
+    testStatefulRead(false, false);
+    testStatefulRead(true, false);
+  }
+
+  @Test
+  public void testSpeculationDoesNotWaitForSlowReads() throws Exception {
+    // The parity blocks must be real to decode the slow data cells
+    conf.unset(DFSConfigKeys.DFS_DATANODE_FSDATASET_FACTORY_KEY);
+    conf.setLong(
+        HdfsClientConfigKeys.StripedRead.SPECULATIVE_THRESHOLD_MS_KEY, 1);
+    tearDown();
+    startUp();
+    final byte[] expected = StripedFileTestUtil.generateBytes(blockGroupSize);
+    DFSTestUtil.writeFile(fs, filePath, expected);
+
+    // The first read of the first data block hangs until the test is done,
+    // and the reads of the first parity block fail.
+    final CountDownLatch slowReadLatch = new CountDownLatch(1);
+    final AtomicBoolean slowReadReturned = new AtomicBoolean(false);
+    final AtomicInteger failedParityReads = new AtomicInteger(0);
+    DFSClientFaultInjector oldInjector = DFSClientFaultInjector.get();
+    DFSClientFaultInjector.set(new DFSClientFaultInjector() {
+      @Override
+      public void readStripedChunk(int chunkIndex) throws IOException {
+        if (chunkIndex == 0) {
+          try {
+            slowReadLatch.await(60, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+          }
+          slowReadReturned.set(true);
+        } else if (chunkIndex == dataBlocks) {
+          failedParityReads.incrementAndGet();
+          throw new IOException("injected failure of a parity read");
+        }
+      }
+    });
+    try {
+      assertArrayEquals(expected, DFSTestUtil.readFileAsBytes(fs, filePath));
+      assertFalse("The read waited for the slow data cell",
+          slowReadReturned.get());
+      assertTrue(failedParityReads.get() > 0);
+    } finally {
+      slowReadLatch.countDown();
+      DFSClientFaultInjector.set(oldInjector);
+    }
+  }
+
   private void testStatefulRead(boolean useByteBuffer,
       boolean cellMisalignPacket) throws Exception {
     final int numBlocks = 2;
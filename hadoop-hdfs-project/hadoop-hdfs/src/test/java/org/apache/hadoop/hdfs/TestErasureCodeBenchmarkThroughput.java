@@ -109,6 +109,17 @@ public void testECReadWrite() throws Exception {
     runBenchmark(args);
   }
 
+  @Test
+  public void testECWriteSyncEncode() throws Exception {
+    Integer dataSize = 5;
+    Integer numClient = 3;
+    String[] args = new String[]{"write", dataSize.toString(), "ec",
+        numClient.toString(), "sync"};
+    runBenchmark(args);
+    args[4] = "pipe";
+    runBenchmark(args);
+  }
+
   @Test
   public void testCleanUp() throws Exception {
     Integer dataSize = 5;
@@ -22,6 +22,7 @@
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -39,6 +40,7 @@
 import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
@@ -556,6 +558,59 @@ public Void call() throws IOException {
     }
   }
 
+  /**
+   * Tests that vectored reads merge ranges within a block and return the
+   * data of every range, including ranges which span block boundaries.
+   */
+  @Test(timeout = 60000)
+  public void testVectoredReadDFS() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, blockSize);
+    conf.setInt(HdfsClientConfigKeys.Read.VECTORED_THREADPOOL_SIZE_KEY, 2);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(3).build();
+    FileSystem fileSys = cluster.getFileSystem();
+    try {
+      Path file = new Path("/vectoredread.dat");
+      DFSTestUtil.createFile(fileSys, file, fileSize, fileSize,
+          blockSize, (short) 3, seed);
+      byte[] expected = new byte[fileSize];
+      new Random(seed).nextBytes(expected);
+
+      List<FileRange> ranges = new ArrayList<>();
+      ranges.add(FileRange.createFileRange(0, 100));
+      ranges.add(FileRange.createFileRange(200, 100));
+      ranges.add(FileRange.createFileRange(blockSize - 50, 100));
+      ranges.add(FileRange.createFileRange(3 * blockSize, 2 * blockSize));
+      ranges.add(FileRange.createFileRange(fileSize - 10, 10));
+      ranges.add(FileRange.createFileRange(fileSize - 5000, 10));
+      try (FSDataInputStream in = fileSys.open(file)) {
+        in.readVectored(ranges, ByteBuffer::allocateDirect);
+        for (FileRange range : ranges) {
+          ByteBuffer data = range.getData().get(30, TimeUnit.SECONDS);
+          byte[] actual = new byte[range.getLength()];
+          data.get(actual);
+          checkAndEraseData(actual, (int) range.getOffset(), expected,
+              "Vectored read of " + range);
+        }
+
+        List<FileRange> pastEOF = new ArrayList<>();
+        pastEOF.add(FileRange.createFileRange(fileSize - 10, 20));
+        in.readVectored(pastEOF, ByteBuffer::allocate);
+        try {
+          pastEOF.get(0).getData().get(30, TimeUnit.SECONDS);
+          Assert.fail("Vectored read past EOF should fail");
+        } catch (ExecutionException e) {
+          assertTrue("Unexpected cause " + e.getCause(),
+              e.getCause() instanceof EOFException);
+        }
+      }
+    } finally {
+      fileSys.close();
+      cluster.shutdown();
+    }
+  }
+
   @Test(timeout=30000)
   public void testHedgedReadFromAllDNFailed() throws IOException {
     Configuration conf = new Configuration();
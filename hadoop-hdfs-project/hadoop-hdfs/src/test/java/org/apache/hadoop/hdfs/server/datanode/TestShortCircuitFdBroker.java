@@ -0,0 +1,356 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_ACCESS_TOKEN_ENABLE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DOMAIN_SOCKET_PATH_KEY;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_CONTEXT;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_DOMAIN_SOCKET_DATA_TRAFFIC;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.HashMultimap;
+import org.apache.commons.collections.map.LinkedMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSInputStream;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.ExtendedBlockId;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
+import org.apache.hadoop.hdfs.server.datanode.ShortCircuitRegistry.RegisteredShm;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitCache.CacheVisitor;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitFdBrokerClient;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitReplica;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.ShmId;
+import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.Slot;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.net.unix.DomainSocket;
+import org.apache.hadoop.net.unix.TemporarySocketDirectory;
+import org.apache.hadoop.security.token.SecretManager.InvalidToken;
+import org.apache.hadoop.security.token.Token;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.DataChecksum;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestShortCircuitFdBroker {
+  private static final int TEST_FILE_LEN = 4000;
+
+  private TemporarySocketDirectory sockDir;
+  private MiniDFSCluster cluster;
+  private String brokerPath;
+
+  @After
+  public void tearDown() throws IOException {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+    if (sockDir != null) {
+      sockDir.close();
+      sockDir = null;
+    }
+  }
+
+  private DistributedFileSystem startCluster(boolean blockTokens)
+      throws IOException {
+    DomainSocket.disableBindPathValidation();
+    Assume.assumeThat(DomainSocket.getLoadingFailureReason(), equalTo(null));
+    sockDir = new TemporarySocketDirectory();
+    brokerPath = new File(sockDir.getDir(), "broker").getAbsolutePath();
+    Configuration conf = new Configuration();
+    conf.setLong(DFS_BLOCK_SIZE_KEY, 4096);
+    conf.set(DFS_DOMAIN_SOCKET_PATH_KEY,
+        new File(sockDir.getDir(), "dn").getAbsolutePath());
+    conf.set(HdfsClientConfigKeys.Read.ShortCircuit.BROKER_PATH_KEY,
+        brokerPath);
+    conf.setBoolean(HdfsClientConfigKeys.Read.ShortCircuit.KEY, true);
+    conf.setBoolean(DFS_CLIENT_DOMAIN_SOCKET_DATA_TRAFFIC, false);
+    conf.setBoolean(DFS_BLOCK_ACCESS_TOKEN_ENABLE_KEY, blockTokens);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    return cluster.getFileSystem();
+  }
+
+  private ShortCircuitFdBroker getBroker() {
+    return cluster.getDataNodes().get(0).getShortCircuitFdBroker();
+  }
+
+  private static LocatedBlock createFile(DistributedFileSystem fs,
+      Path path) throws IOException {
+    DFSTestUtil.createFile(fs, path, TEST_FILE_LEN, (short) 1, 0xFADED);
+    return DFSTestUtil.getAllBlocks(fs, path).get(0);
+  }
+
+  private boolean fetch(ExtendedBlock block,
+      Token<BlockTokenIdentifier> token) throws IOException {
+    FileInputStream[] fis = new FileInputStream[2];
+    try {
+      return ShortCircuitFdBrokerClient.fetch(brokerPath, block, token, null,
+          fis);
+    } finally {
+      IOUtils.cleanupWithLogger(null, fis[0], fis[1]);
+    }
+  }
+
+  private static Replica mockReplica(long genStamp, long numBytes) {
+    Replica replica = Mockito.mock(Replica.class);
+    Mockito.when(replica.getGenerationStamp()).thenReturn(genStamp);
+    Mockito.when(replica.getNumBytes()).thenReturn(numBytes);
+    Mockito.when(replica.getStorageUuid()).thenReturn("storage");
+    return replica;
+  }
+
+  @Test(timeout=60000)
+  public void testValidateDescriptors() throws Exception {
+    File dir = GenericTestUtils.getTestDir("TestShortCircuitFdBroker");
+    Assert.assertTrue(dir.isDirectory() || dir.mkdirs());
+    File blockFile = new File(dir, "blk");
+    File metaFile = new File(dir, "blk.meta");
+    DataChecksum checksum =
+        DataChecksum.newDataChecksum(DataChecksum.Type.CRC32C, 512);
+    try (FileOutputStream out = new FileOutputStream(blockFile)) {
+      out.write(new byte[TEST_FILE_LEN]);
+    }
+    try (DataOutputStream out =
+        new DataOutputStream(new FileOutputStream(metaFile))) {
+      BlockMetadataHeader.writeHeader(out, checksum);
+      // the checksums of 8 chunks
+      out.write(new byte[8 * checksum.getChecksumSize()]);
+    }
+    ExtendedBlock block = new ExtendedBlock("bp", 1, TEST_FILE_LEN, 1);
+    Replica replica = mockReplica(1, TEST_FILE_LEN);
+
+    ShortCircuitFdBroker.Entry entry = new ShortCircuitFdBroker.Entry(
+        new FileInputStream(blockFile), new FileInputStream(metaFile),
+        replica);
+    entry.validate(block);
+    Assert.assertTrue(entry.matches(replica));
+    // An entry does not match a replica with another generation stamp or
+    // length, nor once the block file changed.
+    Assert.assertFalse(entry.matches(mockReplica(2, TEST_FILE_LEN)));
+    Assert.assertFalse(entry.matches(mockReplica(1, TEST_FILE_LEN + 1)));
+    try (RandomAccessFile raf = new RandomAccessFile(blockFile, "rw")) {
+      raf.setLength(TEST_FILE_LEN - 1);
+    }
+    Assert.assertFalse(entry.matches(replica));
+    try {
+      entry.validate(block);
+      Assert.fail("validated a block file of the wrong length");
+    } catch (IOException e) {
+      GenericTestUtils.assertExceptionContains("block file", e);
+    }
+
+    // The metadata file must hold the checksums of exactly the replica.
+    Replica shorter = mockReplica(1, TEST_FILE_LEN - 1);
+    entry = new ShortCircuitFdBroker.Entry(new FileInputStream(blockFile),
+        new FileInputStream(metaFile), shorter);
+    entry.validate(block);
+    try (RandomAccessFile raf = new RandomAccessFile(metaFile, "rw")) {
+      raf.setLength(metaFile.length() - 1);
+    }
+    try {
+      entry.validate(block);
+      Assert.fail("validated a truncated metadata file");
+    } catch (IOException e) {
+      GenericTestUtils.assertExceptionContains("metadata file", e);
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(metaFile, "rw")) {
+      raf.writeShort(BlockMetadataHeader.VERSION + 1);
+    }
+    try {
+      entry.validate(block);
+      Assert.fail("validated a metadata file of another version");
+    } catch (IOException e) {
+      GenericTestUtils.assertExceptionContains("version", e);
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testShareDescriptorsBetweenClients() throws Exception {
+    DistributedFileSystem fs = startCluster(false);
+    final Path testFile = new Path("/test_file");
+    final ExtendedBlock block = createFile(fs, testFile).getBlock();
+    byte[] expected = DFSTestUtil.readFileAsBytes(fs, testFile);
+    boolean formerTcpReadsDisabled = DFSInputStream.tcpReadsDisabledForTesting;
+    DFSInputStream.tcpReadsDisabledForTesting = true;
+    try {
+      for (int i = 1; i <= 2; i++) {
+        Configuration clientConf = new Configuration(fs.getConf());
+        clientConf.set(DFS_CLIENT_CONTEXT, "testShareDescriptors" + i);
+        DistributedFileSystem client = (DistributedFileSystem)
+            FileSystem.newInstance(fs.getUri(), clientConf);
+        try {
+          Assert.assertArrayEquals(expected,
+              DFSTestUtil.readFileAsBytes(client, testFile));
+          checkReplicaWithSlot(client, block);
+        } finally {
+          client.close();
+        }
+        // Both clients get the descriptors which the broker opened once.
+        Assert.assertEquals(1, getBroker().size());
+      }
+    } finally {
+      DFSInputStream.tcpReadsDisabledForTesting = formerTcpReadsDisabled;
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testDataNodeInvalidatesBrokeredReplica() throws Exception {
+    DistributedFileSystem fs = startCluster(false);
+    final Path testFile = new Path("/test_file");
+    final ExtendedBlock block = createFile(fs, testFile).getBlock();
+    boolean formerTcpReadsDisabled = DFSInputStream.tcpReadsDisabledForTesting;
+    DFSInputStream.tcpReadsDisabledForTesting = true;
+    try {
+      DFSTestUtil.readFileAsBytes(fs, testFile);
+    } finally {
+      DFSInputStream.tcpReadsDisabledForTesting = formerTcpReadsDisabled;
+    }
+    Assert.assertEquals(1, getBroker().size());
+    final Slot slot = checkReplicaWithSlot(fs, block);
+    Assert.assertTrue(slot.isValid());
+
+    // The DataNode invalidates the slot which the broker registered.
+    fs.delete(testFile, false);
+    GenericTestUtils.waitFor(() -> {
+      try {
+        cluster.triggerHeartbeats();
+      } catch (IOException e) {
+        return false;
+      }
+      return !slot.isValid();
+    }, 100, 30000);
+    Assert.assertEquals(0, getBroker().size());
+  }
+
+  @Test(timeout=60000)
+  public void testFetchRequiresBlockToken() throws Exception {
+    DistributedFileSystem fs = startCluster(true);
+    LocatedBlock located = createFile(fs, new Path("/test_file"));
+    try {
+      fetch(located.getBlock(), new Token<BlockTokenIdentifier>());
+      Assert.fail("The broker passed descriptors without a block token");
+    } catch (InvalidToken e) {
+      GenericTestUtils.assertExceptionContains("block access token", e);
+    }
+    Assert.assertEquals(0, getBroker().size());
+    Assert.assertTrue(fetch(located.getBlock(), located.getBlockToken()));
+    Assert.assertEquals(1, getBroker().size());
+  }
+
+  @Test(timeout=60000)
+  public void testOutdatedReplicaNotServed() throws Exception {
+    DistributedFileSystem fs = startCluster(false);
+    final ShortCircuitFdBroker broker = getBroker();
+
+    // A request for another generation stamp does not drop the entry.
+    LocatedBlock first = createFile(fs, new Path("/first"));
+    Assert.assertTrue(fetch(first.getBlock(), first.getBlockToken()));
+    ExtendedBlock newer = new ExtendedBlock(first.getBlock());
+    newer.setGenerationStamp(newer.getGenerationStamp() + 1);
+    Assert.assertFalse(fetch(newer, first.getBlockToken()));
+    Assert.assertEquals(1, broker.size());
+
+    // Descriptors of a block file which no longer matches the replica are
+    // dropped, and new ones are not passed either.
+    try (RandomAccessFile raf = new RandomAccessFile(
+        cluster.getBlockFile(0, first.getBlock()), "rw")) {
+      raf.setLength(TEST_FILE_LEN - 1);
+    }
+    Assert.assertFalse(fetch(first.getBlock(), first.getBlockToken()));
+    Assert.assertEquals(0, broker.size());
+
+    // Nor are the descriptors of a replica with a truncated metadata file.
+    LocatedBlock second = createFile(fs, new Path("/second"));
+    File metaFile = cluster.getBlockMetadataFile(0, second.getBlock());
+    try (RandomAccessFile raf = new RandomAccessFile(metaFile, "rw")) {
+      raf.setLength(metaFile.length() - 1);
+    }
+    Assert.assertFalse(fetch(second.getBlock(), second.getBlockToken()));
+    Assert.assertEquals(0, broker.size());
+
+    // The descriptors of a deleted replica are dropped when the DataNode
+    // invalidates it.
+    final Path thirdPath = new Path("/third");
+    LocatedBlock third = createFile(fs, thirdPath);
+    Assert.assertTrue(fetch(third.getBlock(), third.getBlockToken()));
+    Assert.assertEquals(1, broker.size());
+    fs.delete(thirdPath, false);
+    GenericTestUtils.waitFor(() -> {
+      try {
+        cluster.triggerHeartbeats();
+      } catch (IOException e) {
+        return false;
+      }
+      return broker.size() == 0;
+    }, 100, 30000);
+    Assert.assertFalse(fetch(third.getBlock(), third.getBlockToken()));
+  }
+
+  /**
+   * Check that the client got the replica with a slot which the DataNode
+   * registered.
+   */
+  private Slot checkReplicaWithSlot(DistributedFileSystem fs,
+      final ExtendedBlock block) throws IOException {
+    final ExtendedBlockId key = ExtendedBlockId.fromExtendedBlock(block);
+    final ShortCircuitReplica[] replica = new ShortCircuitReplica[1];
+    fs.getClient().getClientContext().getShortCircuitCache().accept(
+        new CacheVisitor() {
+          @Override
+          public void visit(int numOutstandingMmaps,
+              Map<ExtendedBlockId, ShortCircuitReplica> replicas,
+              Map<ExtendedBlockId, InvalidToken> failedLoads,
+              LinkedMap evictable,
+              LinkedMap evictableMmapped) {
+            replica[0] = replicas.get(key);
+          }
+        });
+    Assert.assertNotNull(replica[0]);
+    Slot slot = replica[0].getSlot();
+    Assert.assertNotNull(slot);
+    Assert.assertTrue(cluster.getDataNodes().get(0).getShortCircuitRegistry()
+        .visit(new ShortCircuitRegistry.Visitor() {
+          @Override
+          public boolean accept(HashMap<ShmId, RegisteredShm> segments,
+              HashMultimap<ExtendedBlockId, Slot> slots) {
+            return slots.containsKey(key);
+          }
+        }));
+    return slot;
+  }
+}
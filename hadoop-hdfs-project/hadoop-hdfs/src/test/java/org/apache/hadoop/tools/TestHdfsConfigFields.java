@@ -42,7 +42,12 @@ public void initializeMemberVariables() {
     xmlFilename = new String("hdfs-default.xml");
     configurationClasses = new Class[] { HdfsClientConfigKeys.class,
         HdfsClientConfigKeys.Failover.class,
-        HdfsClientConfigKeys.StripedRead.class, DFSConfigKeys.class,
+        HdfsClientConfigKeys.Read.class,
+        HdfsClientConfigKeys.Read.ShortCircuit.class,
+        HdfsClientConfigKeys.HedgedRead.class,
+        HdfsClientConfigKeys.StripedRead.class,
+        HdfsClientConfigKeys.StripedWrite.class,
+        HdfsClientConfigKeys.Async.class, DFSConfigKeys.class,
         HdfsClientConfigKeys.BlockWrite.class,
         HdfsClientConfigKeys.BlockWrite.ReplaceDatanodeOnFailure.class };
 
@@ -104,6 +109,10 @@ public void initializeMemberVariables() {
     configurationPropsToSkipCompare.add(DFSConfigKeys
         .DFS_DATANODE_ENABLE_FILEIO_FAULT_INJECTION_KEY);
 
+    // Short-circuit read metrics are undocumented
+    configurationPropsToSkipCompare.add(HdfsClientConfigKeys.Read.ShortCircuit
+        .METRICS_SAMPLING_PERCENTAGE_KEY);
+
     // Allocate
     xmlPropsToSkipCompare = new HashSet<String>();
     xmlPrefixToSkipCompare = new HashSet<String>();
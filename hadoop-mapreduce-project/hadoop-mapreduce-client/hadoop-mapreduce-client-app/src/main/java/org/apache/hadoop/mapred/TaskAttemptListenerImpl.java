@@ -45,6 +45,7 @@
 import org.apache.hadoop.mapreduce.v2.app.TaskHeartbeatHandler;
 import org.apache.hadoop.mapreduce.v2.app.job.Job;
 import org.apache.hadoop.mapreduce.v2.app.job.Task;
+import org.apache.hadoop.mapreduce.v2.app.job.TaskAttempt;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptDiagnosticsUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEventType;
@@ -54,6 +55,7 @@
 import org.apache.hadoop.mapreduce.v2.app.rm.RMHeartbeatHandler;
 import org.apache.hadoop.mapreduce.v2.app.rm.preemption.AMPreemptionPolicy;
 import org.apache.hadoop.mapreduce.v2.app.security.authorize.MRAMPolicyProvider;
+import org.apache.hadoop.mapreduce.v2.util.MRApps;
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.security.authorize.PolicyProvider;
 import org.apache.hadoop.service.CompositeService;
@@ -97,6 +99,14 @@ public class TaskAttemptListenerImpl extends CompositeService
   private Set<WrappedJvmID> launchedJVMs = Collections
       .newSetFromMap(new ConcurrentHashMap<WrappedJvmID, Boolean>());
 
+  /** Whether the JVMs run further tasks after their first one. */
+  private boolean jvmReuse;
+  private ConcurrentMap<TaskAttemptId, WrappedJvmID> attemptIdToJvm =
+      new ConcurrentHashMap<>();
+  /** The JVMs waiting for their next task after their attempt succeeded. */
+  private Set<WrappedJvmID> idleJVMs = Collections
+      .newSetFromMap(new ConcurrentHashMap<WrappedJvmID, Boolean>());
+
   private JobTokenSecretManager jobTokenSecretManager = null;
   private AMPreemptionPolicy preemptionPolicy;
   private byte[] encryptedSpillKey;
@@ -126,6 +136,7 @@ protected void serviceInit(Configuration conf) throws Exception {
    registerHeartbeatHandler(conf);
    commitWindowMs = conf.getLong(MRJobConfig.MR_AM_COMMIT_WINDOW_MS,
        MRJobConfig.DEFAULT_MR_AM_COMMIT_WINDOW_MS);
+   jvmReuse = MRApps.getNumTasksPerJvm(conf) != 1;
    super.serviceInit(conf);
   }
 
@@ -277,6 +288,15 @@ public void done(TaskAttemptID taskAttemptID) throws IOException {
 
     taskHeartbeatHandler.progressing(attemptID);
 
+    if (jvmReuse) {
+      // the JVM asks for its next task as soon as this call returns, keep it
+      // waiting until the allocator decided whether to reuse its container.
+      WrappedJvmID jvmID = attemptIdToJvm.get(attemptID);
+      if (jvmID != null) {
+        idleJVMs.add(jvmID);
+      }
+    }
+
     context.getEventHandler().handle(
         new TaskAttemptEvent(attemptID, TaskAttemptEventType.TA_DONE));
   }
@@ -502,8 +522,14 @@ public JvmTask getTask(JvmContext context) throws IOException {
     // Try to look up the task. We remove it directly as we don't give
     // multiple tasks to a JVM
     if (!jvmIDToActiveAttemptMap.containsKey(wJvmID)) {
-      LOG.info("JVM with ID: " + jvmId + " is invalid and will be killed.");
-      jvmTask = TASK_FOR_INVALID_JVM;
+      if (idleJVMs.contains(wJvmID)) {
+        jvmTask = null;
+        LOG.info("JVM with ID: " + jvmId
+            + " waits for its container to be reused. Given null task");
+      } else {
+        LOG.info("JVM with ID: " + jvmId + " is invalid and will be killed.");
+        jvmTask = TASK_FOR_INVALID_JVM;
+      }
     } else {
       if (!launchedJVMs.contains(wJvmID)) {
         jvmTask = null;
@@ -516,14 +542,29 @@ public JvmTask getTask(JvmContext context) throws IOException {
         org.apache.hadoop.mapred.Task task =
             jvmIDToActiveAttemptMap.remove(wJvmID);
         launchedJVMs.remove(wJvmID);
+        idleJVMs.remove(wJvmID);
         LOG.info("JVM with ID: " + jvmId + " given task: " + task.getTaskID());
         task.setEncryptedSpillKey(encryptedSpillKey);
+        task.setShufflePort(getShufflePort(task.getTaskID()));
         jvmTask = new JvmTask(task, false);
       }
     }
     return jvmTask;
   }
 
+  /**
+   * @return the port of the shuffle handler on the node of an attempt, which
+   *         the NodeManager returned when the container of the attempt was
+   *         launched, or -1 if it is not known.
+   */
+  private int getShufflePort(TaskAttemptID taskAttemptID) {
+    TaskAttemptId attemptID = TypeConverter.toYarn(taskAttemptID);
+    Job job = context.getJob(attemptID.getTaskId().getJobId());
+    Task task = job == null ? null : job.getTask(attemptID.getTaskId());
+    TaskAttempt attempt = task == null ? null : task.getAttempt(attemptID);
+    return attempt == null ? -1 : attempt.getShufflePort();
+  }
+
   @Override
   public void registerPendingTask(
       org.apache.hadoop.mapred.Task task, WrappedJvmID jvmID) {
@@ -541,6 +582,9 @@ public void registerLaunchedTask(
     // The AM considers the task to be launched (Has asked the NM to launch it)
     // The JVM will only be given a task after this registartion.
     launchedJVMs.add(jvmId);
+    if (jvmReuse) {
+      attemptIdToJvm.put(attemptID, jvmId);
+    }
 
     taskHeartbeatHandler.register(attemptID);
 
@@ -563,6 +607,7 @@ public void unregister(
     // remove the mappings if not already removed
     launchedJVMs.remove(jvmID);
     jvmIDToActiveAttemptMap.remove(jvmID);
+    attemptIdToJvm.remove(attemptID);
 
     //unregister this attempt
     taskHeartbeatHandler.unregister(attemptID);
@@ -570,6 +615,11 @@ public void unregister(
     attemptIdToStatus.remove(attemptID);
   }
 
+  @Override
+  public void releaseJvm(WrappedJvmID jvmID) {
+    idleJVMs.remove(jvmID);
+  }
+
   @Override
   public ProtocolSignature getProtocolSignature(String protocol,
       long clientVersion, int clientMethodsHash) throws IOException {
@@ -26,6 +26,7 @@
 import java.security.PrivilegedExceptionAction;
 import java.util.concurrent.ScheduledExecutorService;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.fs.FSError;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalDirAllocator;
@@ -75,6 +76,10 @@ public static void main(String[] args) throws Throwable {
     LOG.debug("Child starting");
 
     final JobConf job = new JobConf(MRJobConfig.JOB_CONF_FILE);
+    // configureTask localizes the configuration for the task, the tasks run
+    // after the first start from the configuration of the job.
+    final JobConf defaultJob = new JobConf(job);
+    boolean jvmReuse = MRApps.getNumTasksPerJvm(job) != 1;
     // Initing with our JobConf allows us to avoid loading confs twice
     Limits.init(job);
     UserGroupInformation.setConfiguration(job);
@@ -125,56 +130,72 @@ public TaskUmbilicalProtocol run() throws Exception {
     ScheduledExecutorService logSyncer = null;
 
     try {
-      int idleLoopCount = 0;
-      JvmTask myTask = null;
-      // poll for new task
-      for (int idle = 0; null == myTask; ++idle) {
-        long sleepTimeMilliSecs = Math.min(idle * 500, 1500);
-        LOG.info("Sleeping for " + sleepTimeMilliSecs
-            + "ms before retrying again. Got null now.");
-        MILLISECONDS.sleep(sleepTimeMilliSecs);
-        myTask = umbilical.getTask(context);
-      }
-      if (myTask.shouldDie()) {
-        return;
-      }
+      JobConf taskJob = job;
+      // with JVM reuse, run tasks until the AM gives no further task
+      for (int tasksRun = 0; tasksRun == 0 || jvmReuse; tasksRun++) {
+        JvmTask myTask = null;
+        // poll for new task
+        for (int idle = 0; null == myTask; ++idle) {
+          long sleepTimeMilliSecs = Math.min(idle * 500, 1500);
+          LOG.info("Sleeping for " + sleepTimeMilliSecs
+              + "ms before retrying again. Got null now.");
+          MILLISECONDS.sleep(sleepTimeMilliSecs);
+          myTask = umbilical.getTask(context);
+        }
+        if (myTask.shouldDie()) {
+          return;
+        }
 
-      task = myTask.getTask();
-      YarnChild.taskid = task.getTaskID();
+        task = myTask.getTask();
+        YarnChild.taskid = task.getTaskID();
+        if (tasksRun > 0) {
+          taskJob = new JobConf(defaultJob);
+          CallerContext.setCurrent(
+              new CallerContext.Builder("mr_" + taskid.toString()).build());
+        }
 
-      // Create the job-conf and set credentials
-      configureTask(job, task, credentials, jt);
+        // Create the job-conf and set credentials
+        configureTask(taskJob, task, credentials, jt);
 
-      // log the system properties
-      String systemPropsToLog = MRApps.getSystemPropertiesToLog(job);
-      if (systemPropsToLog != null) {
-        LOG.info(systemPropsToLog);
-      }
+        if (tasksRun == 0) {
+          // log the system properties
+          String systemPropsToLog = MRApps.getSystemPropertiesToLog(job);
+          if (systemPropsToLog != null) {
+            LOG.info(systemPropsToLog);
+          }
+
+          // Initiate Java VM metrics
+          JvmMetrics.initSingleton(jvmId.toString(), job.getSessionId());
+          childUGI = UserGroupInformation.createRemoteUser(System
+              .getenv(ApplicationConstants.Environment.USER.toString()));
+          // Add tokens to new user so that it may execute its task correctly.
+          childUGI.addCredentials(credentials);
+
+          // set job classloader if configured before invoking the task
+          MRApps.setJobClassLoader(job);
 
-      // Initiate Java VM metrics
-      JvmMetrics.initSingleton(jvmId.toString(), job.getSessionId());
-      childUGI = UserGroupInformation.createRemoteUser(System
-          .getenv(ApplicationConstants.Environment.USER.toString()));
-      // Add tokens to new user so that it may execute its task correctly.
-      childUGI.addCredentials(credentials);
-
-      // set job classloader if configured before invoking the task
-      MRApps.setJobClassLoader(job);
-
-      logSyncer = TaskLog.createLogSyncer();
-
-      // Create a final reference to the task for the doAs block
-      final Task taskFinal = task;
-      childUGI.doAs(new PrivilegedExceptionAction<Object>() {
-        @Override
-        public Object run() throws Exception {
-          // use job-specified working directory
-          setEncryptedSpillKeyIfRequired(taskFinal);
-          FileSystem.get(job).setWorkingDirectory(job.getWorkingDirectory());
-          taskFinal.run(job, umbilical); // run the task
-          return null;
+          logSyncer = TaskLog.createLogSyncer();
         }
-      });
+
+        // Create a final reference to the task for the doAs block
+        final Task taskFinal = task;
+        final JobConf jobFinal = taskJob;
+        childUGI.doAs(new PrivilegedExceptionAction<Object>() {
+          @Override
+          public Object run() throws Exception {
+            // use job-specified working directory
+            setEncryptedSpillKeyIfRequired(taskFinal);
+            FileSystem.get(jobFinal).setWorkingDirectory(
+                jobFinal.getWorkingDirectory());
+            taskFinal.run(jobFinal, umbilical); // run the task
+            return null;
+          }
+        });
+        // the task is done, failures while waiting for the next one are not
+        // its failures
+        task = null;
+        taskid = null;
+      }
     } catch (FSError e) {
       LOG.error("FSError from child", e);
       if (!ShutdownHookManager.get().isShutdownInProgress()) {
@@ -330,9 +351,24 @@ private static void configureTask(JobConf job, Task task,
     Path localTaskFile = new Path(MRJobConfig.JOB_CONF_FILE);
     writeLocalJobFile(localTaskFile, job);
     task.setJobFile(localTaskFile.toString());
+    freezeConf(job);
     task.setConf(job);
   }
 
+  /**
+   * Freeze the localized configuration of a task, unless disabled by
+   * {@link MRJobConfig#TASK_CONF_FREEZE}. The task, its input and output
+   * formats and the user code read it from many threads for the rest of
+   * the task, and would otherwise contend on the lock of the configuration.
+   */
+  @VisibleForTesting
+  static void freezeConf(JobConf job) {
+    if (job.getBoolean(MRJobConfig.TASK_CONF_FREEZE,
+        MRJobConfig.DEFAULT_TASK_CONF_FREEZE)) {
+      job.freeze();
+    }
+  }
+
   private static final FsPermission urw_gr =
     FsPermission.createImmutable((short) 0640);
 
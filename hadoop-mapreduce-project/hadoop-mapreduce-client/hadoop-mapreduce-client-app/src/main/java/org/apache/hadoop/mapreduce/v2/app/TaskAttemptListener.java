@@ -57,4 +57,11 @@ public interface TaskAttemptListener {
    */
   void unregister(TaskAttemptId attemptID, WrappedJvmID jvmID);
 
+  /**
+   * Tell a JVM which waits for another task after its attempt succeeded to
+   * exit, as no attempt was assigned to its container.
+   * @param jvmID the ID of the JVM.
+   */
+  void releaseJvm(WrappedJvmID jvmID);
+
 }
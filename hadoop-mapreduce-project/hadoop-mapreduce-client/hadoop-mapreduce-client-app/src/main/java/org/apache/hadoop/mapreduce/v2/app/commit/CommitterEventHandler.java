@@ -29,6 +29,9 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.JobCounter;
 import org.apache.hadoop.mapreduce.JobID;
 import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.OutputCommitter;
@@ -38,6 +41,7 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobAbortCompletedEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobCommitCompletedEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobCommitFailedEvent;
+import org.apache.hadoop.mapreduce.v2.app.job.event.JobCounterUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobSetupCompletedEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobSetupFailedEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEvent;
@@ -270,6 +274,26 @@ private void touchz(Path p, boolean overwrite) throws IOException {
     }
 
     @SuppressWarnings("unchecked")
+    private void updateJobCommitCounters(CommitterJobCommitEvent event) {
+      Counters counters;
+      try {
+        counters = committer.getJobCommitCounters(event.getJobContext());
+      } catch (IOException e) {
+        LOG.warn("Exception in committer.getJobCommitCounters():", e);
+        return;
+      }
+      if (counters == null) {
+        return;
+      }
+      JobCounterUpdateEvent update =
+          new JobCounterUpdateEvent(event.getJobID());
+      for (Counter counter : counters.getGroup(JobCounter.class.getName())) {
+        update.addCounterUpdate(JobCounter.valueOf(counter.getName()),
+            counter.getValue());
+      }
+      context.getEventHandler().handle(update);
+    }
+
     protected void handleJobCommit(CommitterJobCommitEvent event) {
       boolean commitJobIsRepeatable = false;
       try {
@@ -284,6 +308,7 @@ protected void handleJobCommit(CommitterJobCommitEvent event) {
         jobCommitStarted();
         waitForValidCommitWindow();
         committer.commitJob(event.getJobContext());
+        updateJobCommitCounters(event);
         touchz(endCommitSuccessFile, commitJobIsRepeatable);
         context.getEventHandler().handle(
             new JobCommitCompletedEvent(event.getJobID()));
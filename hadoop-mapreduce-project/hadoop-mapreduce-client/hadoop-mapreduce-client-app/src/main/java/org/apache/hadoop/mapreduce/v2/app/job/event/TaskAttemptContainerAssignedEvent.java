@@ -28,12 +28,29 @@ public class TaskAttemptContainerAssignedEvent extends TaskAttemptEvent {
 
   private final Container container;
   private final Map<ApplicationAccessType, String> applicationACLs;
+  private final int shufflePort;
 
   public TaskAttemptContainerAssignedEvent(TaskAttemptId id,
       Container container, Map<ApplicationAccessType, String> applicationACLs) {
+    this(id, container, applicationACLs, -1);
+  }
+
+  /**
+   * Assign the running container of a succeeded attempt, whose JVM waits for
+   * another task.
+   * @param id the attempt
+   * @param container the container
+   * @param applicationACLs the acls of the application
+   * @param shufflePort the shuffle port of the container, -1 for a container
+   *        which still has to be launched.
+   */
+  public TaskAttemptContainerAssignedEvent(TaskAttemptId id,
+      Container container, Map<ApplicationAccessType, String> applicationACLs,
+      int shufflePort) {
     super(id, TaskAttemptEventType.TA_ASSIGNED);
     this.container = container;
     this.applicationACLs = applicationACLs;
+    this.shufflePort = shufflePort;
   }
 
   public Container getContainer() {
@@ -43,4 +60,12 @@ public Container getContainer() {
   public Map<ApplicationAccessType, String> getApplicationACLs() {
     return this.applicationACLs;
   }
+
+  public boolean isContainerReused() {
+    return shufflePort >= 0;
+  }
+
+  public int getShufflePort() {
+    return shufflePort;
+  }
 }
@@ -0,0 +1,46 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.hadoop.mapreduce.v2.app.job.event;
+
+import org.apache.hadoop.mapreduce.v2.api.records.TaskAttemptId;
+
+/**
+ * The answer of the ContainerAllocator to a succeeded attempt which offered
+ * its container to another attempt. If the allocator reserved a scheduled
+ * attempt for the container, the succeeded attempt accepts the offer while
+ * it still owns the container, and declines it otherwise; only an accepted
+ * offer hands the container over.
+ */
+public class TaskAttemptContainerReuseOfferEvent extends TaskAttemptEvent {
+
+  private final boolean reserved;
+
+  public TaskAttemptContainerReuseOfferEvent(TaskAttemptId id,
+      boolean reserved) {
+    super(id, TaskAttemptEventType.TA_CONTAINER_REUSE_OFFER);
+    this.reserved = reserved;
+  }
+
+  /**
+   * @return true if another attempt is reserved for the container, false if
+   *         its JVM should exit.
+   */
+  public boolean isReserved() {
+    return reserved;
+  }
+}
@@ -34,6 +34,7 @@ public enum TaskAttemptEventType {
   //Producer:ContainerAllocator
   TA_ASSIGNED,
   TA_CONTAINER_COMPLETED,
+  TA_CONTAINER_REUSE_OFFER,
 
   //Producer:ContainerLauncher
   TA_CONTAINER_LAUNCHED,
@@ -91,6 +91,7 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobTaskAttemptFetchFailureEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerAssignedEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerLaunchedEvent;
+import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerReuseOfferEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptDiagnosticsUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEventType;
@@ -110,6 +111,7 @@
 import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocator;
 import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocatorEvent;
 import org.apache.hadoop.mapreduce.v2.app.rm.ContainerRequestEvent;
+import org.apache.hadoop.mapreduce.v2.app.rm.ContainerReuseEvent;
 import org.apache.hadoop.mapreduce.v2.app.speculate.SpeculatorEvent;
 import org.apache.hadoop.mapreduce.v2.util.MRApps;
 import org.apache.hadoop.net.NetUtils;
@@ -212,6 +214,8 @@ public abstract class TaskAttemptImpl implements
 
   private static final FinalizeFailedTransition FINALIZE_FAILED_TRANSITION =
       new FinalizeFailedTransition();
+  private static final DeclineReuseTransition DECLINE_REUSE_TRANSITION =
+      new DeclineReuseTransition();
 
   private static final DiagnosticInformationUpdater 
     DIAGNOSTIC_INFORMATION_UPDATE_TRANSITION 
@@ -382,6 +386,14 @@ TaskAttemptEventType.TA_PREEMPTED, new PreemptedTransition())
          TaskAttemptStateInternal.SUCCESS_FINISHING_CONTAINER,
          TaskAttemptEventType.TA_DIAGNOSTICS_UPDATE,
          DIAGNOSTIC_INFORMATION_UPDATE_TRANSITION)
+     // The container is handed over to the attempt reserved by the
+     // allocator, which runs its task in the same JVM, or the JVM is told to
+     // exit. Only this state accepts an offer, any later state declines it.
+     .addTransition(TaskAttemptStateInternal.SUCCESS_FINISHING_CONTAINER,
+         EnumSet.of(TaskAttemptStateInternal.SUCCEEDED,
+             TaskAttemptStateInternal.SUCCESS_FINISHING_CONTAINER),
+         TaskAttemptEventType.TA_CONTAINER_REUSE_OFFER,
+         new AcceptReuseTransition())
      // ignore-able events
      .addTransition(TaskAttemptStateInternal.SUCCESS_FINISHING_CONTAINER,
          TaskAttemptStateInternal.SUCCESS_FINISHING_CONTAINER,
@@ -481,6 +493,9 @@ TaskAttemptEventType.TA_CONTAINER_CLEANED, new KilledTransition())
           TaskAttemptStateInternal.SUCCESS_CONTAINER_CLEANUP,
           TaskAttemptEventType.TA_DIAGNOSTICS_UPDATE,
           DIAGNOSTIC_INFORMATION_UPDATE_TRANSITION)
+     .addTransition(TaskAttemptStateInternal.SUCCESS_CONTAINER_CLEANUP,
+         TaskAttemptStateInternal.SUCCESS_CONTAINER_CLEANUP,
+         TaskAttemptEventType.TA_CONTAINER_REUSE_OFFER, DECLINE_REUSE_TRANSITION)
       // Ignore-able events
      .addTransition(TaskAttemptStateInternal.SUCCESS_CONTAINER_CLEANUP,
          TaskAttemptStateInternal.SUCCESS_CONTAINER_CLEANUP,
@@ -521,6 +536,9 @@ TaskAttemptEventType.TA_CONTAINER_CLEANED, new TaskCleanupTransition())
          TaskAttemptStateInternal.KILL_CONTAINER_CLEANUP,
          TaskAttemptEventType.TA_DIAGNOSTICS_UPDATE,
          DIAGNOSTIC_INFORMATION_UPDATE_TRANSITION)
+     .addTransition(TaskAttemptStateInternal.KILL_CONTAINER_CLEANUP,
+         TaskAttemptStateInternal.KILL_CONTAINER_CLEANUP,
+         TaskAttemptEventType.TA_CONTAINER_REUSE_OFFER, DECLINE_REUSE_TRANSITION)
      // Ignore-able events
      .addTransition(
          TaskAttemptStateInternal.KILL_CONTAINER_CLEANUP,
@@ -568,6 +586,9 @@ TaskAttemptEventType.TA_CONTAINER_CLEANED, new TaskCleanupTransition())
          TaskAttemptStateInternal.KILL_TASK_CLEANUP,
          TaskAttemptEventType.TA_DIAGNOSTICS_UPDATE,
          DIAGNOSTIC_INFORMATION_UPDATE_TRANSITION)
+     .addTransition(TaskAttemptStateInternal.KILL_TASK_CLEANUP,
+         TaskAttemptStateInternal.KILL_TASK_CLEANUP,
+         TaskAttemptEventType.TA_CONTAINER_REUSE_OFFER, DECLINE_REUSE_TRANSITION)
      // Ignore-able events
      .addTransition(TaskAttemptStateInternal.KILL_TASK_CLEANUP,
          TaskAttemptStateInternal.KILL_TASK_CLEANUP,
@@ -597,6 +618,9 @@ TaskAttemptEventType.TA_CONTAINER_CLEANED, new TaskCleanupTransition())
          TaskAttemptStateInternal.SUCCEEDED, TaskAttemptStateInternal.SUCCEEDED,
          TaskAttemptEventType.TA_DIAGNOSTICS_UPDATE,
          DIAGNOSTIC_INFORMATION_UPDATE_TRANSITION)
+     .addTransition(
+         TaskAttemptStateInternal.SUCCEEDED, TaskAttemptStateInternal.SUCCEEDED,
+         TaskAttemptEventType.TA_CONTAINER_REUSE_OFFER, DECLINE_REUSE_TRANSITION)
      // Ignore-able events for SUCCEEDED state
      .addTransition(TaskAttemptStateInternal.SUCCEEDED,
          TaskAttemptStateInternal.SUCCEEDED,
@@ -612,6 +636,9 @@ TaskAttemptEventType.TA_CONTAINER_CLEANED, new TaskCleanupTransition())
      .addTransition(TaskAttemptStateInternal.FAILED, TaskAttemptStateInternal.FAILED,
        TaskAttemptEventType.TA_DIAGNOSTICS_UPDATE,
        DIAGNOSTIC_INFORMATION_UPDATE_TRANSITION)
+     .addTransition(TaskAttemptStateInternal.FAILED,
+         TaskAttemptStateInternal.FAILED,
+         TaskAttemptEventType.TA_CONTAINER_REUSE_OFFER, DECLINE_REUSE_TRANSITION)
      // Ignore-able events for FAILED state
      .addTransition(TaskAttemptStateInternal.FAILED, TaskAttemptStateInternal.FAILED,
        FAILED_KILLED_STATE_IGNORED_EVENTS)
@@ -620,6 +647,9 @@ TaskAttemptEventType.TA_CONTAINER_CLEANED, new TaskCleanupTransition())
      .addTransition(TaskAttemptStateInternal.KILLED, TaskAttemptStateInternal.KILLED,
          TaskAttemptEventType.TA_DIAGNOSTICS_UPDATE,
          DIAGNOSTIC_INFORMATION_UPDATE_TRANSITION)
+     .addTransition(TaskAttemptStateInternal.KILLED,
+         TaskAttemptStateInternal.KILLED,
+         TaskAttemptEventType.TA_CONTAINER_REUSE_OFFER, DECLINE_REUSE_TRANSITION)
      // Ignore-able events for KILLED state
      .addTransition(TaskAttemptStateInternal.KILLED, TaskAttemptStateInternal.KILLED,
        FAILED_KILLED_STATE_IGNORED_EVENTS)
@@ -1878,15 +1908,23 @@ public void transition(final TaskAttemptImpl taskAttempt,
 
       taskAttempt.computeRackAndLocality();
       
-      //launch the container
-      //create the container object to be launched for a given Task attempt
-      ContainerLaunchContext launchContext = createContainerLaunchContext(
-          cEvent.getApplicationACLs(), taskAttempt.conf, taskAttempt.jobToken,
-          taskAttempt.remoteTask, taskAttempt.oldJobId, taskAttempt.jvmID,
-          taskAttempt.taskAttemptListener, taskAttempt.credentials);
-      taskAttempt.eventHandler
-        .handle(new ContainerRemoteLaunchEvent(taskAttempt.attemptId,
-          launchContext, container, taskAttempt.remoteTask));
+      if (cEvent.isContainerReused()) {
+        // the JVM of the container waits for its next task
+        taskAttempt.eventHandler.handle(new ContainerRemoteLaunchEvent(
+            taskAttempt.attemptId, container, taskAttempt.remoteTask,
+            cEvent.getShufflePort()));
+      } else {
+        //launch the container
+        //create the container object to be launched for a given Task attempt
+        ContainerLaunchContext launchContext = createContainerLaunchContext(
+            cEvent.getApplicationACLs(), taskAttempt.conf,
+            taskAttempt.jobToken, taskAttempt.remoteTask,
+            taskAttempt.oldJobId, taskAttempt.jvmID,
+            taskAttempt.taskAttemptListener, taskAttempt.credentials);
+        taskAttempt.eventHandler
+          .handle(new ContainerRemoteLaunchEvent(taskAttempt.attemptId,
+            launchContext, container, taskAttempt.remoteTask));
+      }
 
       // send event to speculator that our container needs are satisfied
       taskAttempt.eventHandler.handle
@@ -2403,6 +2441,62 @@ public void transition(TaskAttemptImpl taskAttempt,
           (new SpeculatorEvent
               (taskAttempt.reportedStatus, taskAttempt.clock.getTime()));
 
+      // offer the container to another attempt, its JVM waits for the
+      // answer of the allocator before exiting.
+      if (MRApps.getNumTasksPerJvm(taskAttempt.conf) != 1) {
+        taskAttempt.eventHandler.handle(new ContainerReuseEvent(
+            taskAttempt.attemptId, taskAttempt.container,
+            taskAttempt.shufflePort));
+      }
+    }
+  }
+
+  /**
+   * Transition from SUCCESS_FINISHING_CONTAINER upon receiving
+   * TA_CONTAINER_REUSE_OFFER event. The attempt still owns its container, so
+   * it hands it over to the reserved attempt and neither waits for it to
+   * exit nor cleans it up. The allocator assigns the container only once it
+   * was accepted here, so a timeout or kill of this attempt which arrived
+   * first is never applied to the container of the other attempt.
+   */
+  private static class AcceptReuseTransition implements
+      MultipleArcTransition<TaskAttemptImpl, TaskAttemptEvent,
+          TaskAttemptStateInternal> {
+    @SuppressWarnings("unchecked")
+    @Override
+    public TaskAttemptStateInternal transition(TaskAttemptImpl taskAttempt,
+        TaskAttemptEvent event) {
+      if (!((TaskAttemptContainerReuseOfferEvent) event).isReserved()) {
+        taskAttempt.taskAttemptListener.releaseJvm(taskAttempt.jvmID);
+        return TaskAttemptStateInternal.SUCCESS_FINISHING_CONTAINER;
+      }
+      taskAttempt.appContext.getTaskAttemptFinishingMonitor().unregister(
+          taskAttempt.attemptId);
+      taskAttempt.eventHandler.handle(new ContainerAllocatorEvent(
+          taskAttempt.attemptId,
+          ContainerAllocator.EventType.CONTAINER_REUSE_ACCEPTED));
+      return TaskAttemptStateInternal.SUCCEEDED;
+    }
+  }
+
+  /**
+   * The allocator answered after the attempt left the finishing state, so
+   * the container may be cleaned up already and is not handed over. A
+   * reserved attempt is returned to the scheduled ones, and a JVM still
+   * waiting for a task is told to exit.
+   */
+  private static class DeclineReuseTransition implements
+      SingleArcTransition<TaskAttemptImpl, TaskAttemptEvent> {
+    @SuppressWarnings("unchecked")
+    @Override
+    public void transition(TaskAttemptImpl taskAttempt,
+        TaskAttemptEvent event) {
+      if (((TaskAttemptContainerReuseOfferEvent) event).isReserved()) {
+        taskAttempt.eventHandler.handle(new ContainerAllocatorEvent(
+            taskAttempt.attemptId,
+            ContainerAllocator.EventType.CONTAINER_REUSE_DECLINED));
+      }
+      taskAttempt.taskAttemptListener.releaseJvm(taskAttempt.jvmID);
     }
   }
 
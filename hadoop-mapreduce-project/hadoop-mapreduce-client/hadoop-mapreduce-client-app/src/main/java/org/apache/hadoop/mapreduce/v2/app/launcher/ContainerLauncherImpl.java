@@ -126,12 +126,32 @@ public synchronized boolean isCompletelyDone() {
       return state == ContainerState.DONE || state == ContainerState.FAILED;
     }
 
-    public synchronized void done() {
+    public synchronized void done(TaskAttemptId requester) {
+      if (!isOwner(requester)) {
+        return;
+      }
       state = ContainerState.DONE;
     }
 
+    /**
+     * @return whether the attempt owns the container, which it does not
+     *         anymore once the container was reused for another attempt.
+     */
+    private boolean isOwner(TaskAttemptId requester) {
+      if (requester.equals(taskAttemptID)) {
+        return true;
+      }
+      LOG.info("Ignoring the request of " + requester + " for container "
+          + containerID + ", which now runs " + taskAttemptID);
+      return false;
+    }
+
     @SuppressWarnings("unchecked")
     public synchronized void launch(ContainerRemoteLaunchEvent event) {
+      if (event.isContainerReused()) {
+        relaunch(event);
+        return;
+      }
       LOG.info("Launching " + taskAttemptID);
       if(this.state == ContainerState.KILLED_BEFORE_LAUNCH) {
         state = ContainerState.DONE;
@@ -195,12 +215,41 @@ public synchronized void launch(ContainerRemoteLaunchEvent event) {
       }
     }
 
+    /**
+     * Hand the container over to the attempt which runs its next task. The
+     * JVM of the container is already waiting for the task, so there is
+     * nothing to start.
+     */
+    @SuppressWarnings("unchecked")
+    private void relaunch(ContainerRemoteLaunchEvent event) {
+      TaskAttemptId previous = taskAttemptID;
+      taskAttemptID = event.getTaskAttemptID();
+      if (state != ContainerState.RUNNING) {
+        state = ContainerState.DONE;
+        sendContainerLaunchFailedMsg(taskAttemptID, "Container "
+            + containerID + " exited before it could be reused");
+        return;
+      }
+      LOG.info("Reusing container " + containerID + " of " + previous
+          + " for " + taskAttemptID);
+      context.getEventHandler().handle(new TaskAttemptContainerLaunchedEvent(
+          taskAttemptID, event.getShufflePort()));
+    }
+
     public void kill() {
-      kill(false);
+      kill(taskAttemptID, false);
     }
 
     @SuppressWarnings("unchecked")
-    public synchronized void kill(boolean dumpThreads) {
+    public synchronized void kill(TaskAttemptId requester,
+        boolean dumpThreads) {
+      if (!isOwner(requester)) {
+        // the container belongs to another attempt, the requester has
+        // nothing left to clean up.
+        context.getEventHandler().handle(new TaskAttemptEvent(requester,
+            TaskAttemptEventType.TA_CONTAINER_CLEANED));
+        return;
+      }
 
       if(this.state == ContainerState.PREP) {
         this.state = ContainerState.KILLED_BEFORE_LAUNCH;
@@ -395,11 +444,11 @@ public void run() {
         break;
 
       case CONTAINER_REMOTE_CLEANUP:
-        c.kill(event.getDumpContainerThreads());
+        c.kill(event.getTaskAttemptID(), event.getDumpContainerThreads());
         break;
 
       case CONTAINER_COMPLETED:
-        c.done();
+        c.done(event.getTaskAttemptID());
         break;
 
       }
@@ -29,10 +29,31 @@ public class ContainerRemoteLaunchEvent extends ContainerLauncherEvent {
   private final Container allocatedContainer;
   private final ContainerLaunchContext containerLaunchContext;
   private final Task task;
+  private final int shufflePort;
 
   public ContainerRemoteLaunchEvent(TaskAttemptId taskAttemptID,
       ContainerLaunchContext containerLaunchContext,
       Container allocatedContainer, Task remoteTask) {
+    this(taskAttemptID, containerLaunchContext, allocatedContainer,
+        remoteTask, -1);
+  }
+
+  /**
+   * Launch a task in the already running JVM of a reused container.
+   * @param taskAttemptID the attempt
+   * @param allocatedContainer the running container
+   * @param remoteTask the task
+   * @param shufflePort the shuffle port returned when the container was
+   *        started
+   */
+  public ContainerRemoteLaunchEvent(TaskAttemptId taskAttemptID,
+      Container allocatedContainer, Task remoteTask, int shufflePort) {
+    this(taskAttemptID, null, allocatedContainer, remoteTask, shufflePort);
+  }
+
+  private ContainerRemoteLaunchEvent(TaskAttemptId taskAttemptID,
+      ContainerLaunchContext containerLaunchContext,
+      Container allocatedContainer, Task remoteTask, int shufflePort) {
     super(taskAttemptID, allocatedContainer.getId(), StringInterner
       .weakIntern(allocatedContainer.getNodeId().toString()),
       allocatedContainer.getContainerToken(),
@@ -40,6 +61,7 @@ public ContainerRemoteLaunchEvent(TaskAttemptId taskAttemptID,
     this.allocatedContainer = allocatedContainer;
     this.containerLaunchContext = containerLaunchContext;
     this.task = remoteTask;
+    this.shufflePort = shufflePort;
   }
 
   public ContainerLaunchContext getContainerLaunchContext() {
@@ -53,6 +75,18 @@ public Container getAllocatedContainer() {
   public Task getRemoteTask() {
     return this.task;
   }
+
+  /**
+   * @return true if the task runs in the JVM of a container which is already
+   *         running.
+   */
+  public boolean isContainerReused() {
+    return shufflePort >= 0;
+  }
+
+  public int getShufflePort() {
+    return shufflePort;
+  }
   
   @Override
   public int hashCode() {
@@ -32,6 +32,7 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobEventType;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerAssignedEvent;
+import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerReuseOfferEvent;
 import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocator;
 import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocatorEvent;
 import org.apache.hadoop.mapreduce.v2.app.rm.RMCommunicator;
@@ -194,6 +195,11 @@ public void handle(ContainerAllocatorEvent event) {
       }
       eventHandler.handle(new TaskAttemptContainerAssignedEvent(
           event.getAttemptID(), container, applicationACLs));
+    } else if (
+        event.getType() == ContainerAllocator.EventType.CONTAINER_REUSE) {
+      // the tasks of an uber job all run in the AM already
+      eventHandler.handle(new TaskAttemptContainerReuseOfferEvent(
+          event.getAttemptID(), false));
     }
   }
 
@@ -26,7 +26,15 @@ enum EventType {
 
     CONTAINER_REQ,
     CONTAINER_DEALLOCATE,
-    CONTAINER_FAILED
+    CONTAINER_FAILED,
+    // The JVM of a succeeded attempt waits for another task. The allocator
+    // answers with TA_CONTAINER_REUSE_OFFER, whether it reserved another
+    // attempt for the container or not.
+    CONTAINER_REUSE,
+    // The succeeded attempt hands its container over to the reserved
+    // attempt, or keeps it because it left the finishing state meanwhile.
+    CONTAINER_REUSE_ACCEPTED,
+    CONTAINER_REUSE_DECLINED
   }
 
 }
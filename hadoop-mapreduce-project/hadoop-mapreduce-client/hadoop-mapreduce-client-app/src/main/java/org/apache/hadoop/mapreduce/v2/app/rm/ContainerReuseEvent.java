@@ -0,0 +1,46 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.hadoop.mapreduce.v2.app.rm;
+
+import org.apache.hadoop.mapreduce.v2.api.records.TaskAttemptId;
+import org.apache.hadoop.yarn.api.records.Container;
+
+/**
+ * Offers the container of a succeeded attempt, whose JVM waits for another
+ * task, to the scheduled attempts of the same type.
+ */
+public class ContainerReuseEvent extends ContainerAllocatorEvent {
+
+  private final Container container;
+  private final int shufflePort;
+
+  public ContainerReuseEvent(TaskAttemptId attemptID, Container container,
+      int shufflePort) {
+    super(attemptID, ContainerAllocator.EventType.CONTAINER_REUSE);
+    this.container = container;
+    this.shufflePort = shufflePort;
+  }
+
+  public Container getContainer() {
+    return container;
+  }
+
+  public int getShufflePort() {
+    return shufflePort;
+  }
+}
@@ -54,11 +54,13 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobEventType;
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobUpdatedNodesEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerAssignedEvent;
+import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerReuseOfferEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptDiagnosticsUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEventType;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptKillEvent;
 import org.apache.hadoop.mapreduce.v2.app.rm.preemption.AMPreemptionPolicy;
+import org.apache.hadoop.mapreduce.v2.util.MRApps;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.StringInterner;
 import org.apache.hadoop.util.StringUtils;
@@ -178,6 +180,13 @@ added to the pending and are ramped up (added to scheduled) based
   private float reduceSlowStart = 0;
   private int maxRunningMaps = 0;
   private int maxRunningReduces = 0;
+  private int maxTasksPerJvm = 1;
+  // the number of tasks run in the reused containers
+  private final Map<ContainerId, Integer> containerTaskCounts =
+      new HashMap<ContainerId, Integer>();
+  // the containers offered by succeeded attempts, by the offering attempt
+  private final Map<TaskAttemptId, ReuseOffer> reuseOffers =
+      new HashMap<TaskAttemptId, ReuseOffer>();
   private long retryInterval;
   private long retrystartTime;
   private Clock clock;
@@ -229,6 +238,14 @@ protected void serviceInit(Configuration conf) throws Exception {
         MRJobConfig.DEFAULT_JOB_RUNNING_MAP_LIMIT);
     maxRunningReduces = conf.getInt(MRJobConfig.JOB_RUNNING_REDUCE_LIMIT,
         MRJobConfig.DEFAULT_JOB_RUNNING_REDUCE_LIMIT);
+    maxTasksPerJvm = MRApps.getNumTasksPerJvm(conf);
+    if (maxTasksPerJvm == 1 && conf.getInt(MRJobConfig.JVM_NUMTASKS_TORUN,
+        MRJobConfig.DEFAULT_JVM_NUMTASKS_TORUN) != 1) {
+      LOG.warn(MRJobConfig.JVM_NUMTASKS_TORUN + " (formerly "
+          + "mapred.job.reuse.jvm.num.tasks) is ignored since "
+          + MRJobConfig.JVM_REUSE_ENABLED + " is false, each task JVM runs "
+          + "one task");
+    }
     RackResolver.init(conf);
     retryInterval = getConfig().getLong(MRJobConfig.MR_AM_TO_RM_WAIT_INTERVAL_MS,
                                 MRJobConfig.DEFAULT_MR_AM_TO_RM_WAIT_INTERVAL_MS);
@@ -391,12 +408,14 @@ protected synchronized void handleEvent(ContainerAllocatorEvent event) {
 
       TaskAttemptId aId = event.getAttemptID();
       
-      boolean removed = scheduledRequests.remove(aId);
+      boolean removed = scheduledRequests.remove(aId)
+          || withdrawReservation(aId);
       if (!removed) {
         ContainerId containerId = assignedRequests.get(aId);
         if (containerId != null) {
           removed = true;
           assignedRequests.remove(aId);
+          containerTaskCounts.remove(containerId);
           containersReleased++;
           pendingRelease.add(containerId);
           release(containerId);
@@ -415,9 +434,109 @@ protected synchronized void handleEvent(ContainerAllocatorEvent event) {
       // propagate failures to preemption policy to discard checkpoints for
       // failed tasks
       preemptionPolicy.handleFailedContainer(event.getAttemptID());
+    } else if (
+        event.getType() == ContainerAllocator.EventType.CONTAINER_REUSE) {
+      handleContainerReuse((ContainerReuseEvent) event);
+    } else if (event.getType()
+        == ContainerAllocator.EventType.CONTAINER_REUSE_ACCEPTED) {
+      handleReuseAccepted(event.getAttemptID());
+    } else if (event.getType()
+        == ContainerAllocator.EventType.CONTAINER_REUSE_DECLINED) {
+      ReuseOffer offer = reuseOffers.remove(event.getAttemptID());
+      if (offer != null && offer.request != null) {
+        scheduledRequests.unreserve(offer.request);
+      }
     }
   }
 
+  /**
+   * Reserve a scheduled attempt of the same type for the container of a
+   * succeeded attempt, and offer it to the succeeded attempt. The container
+   * is assigned only once the succeeded attempt accepted the offer, which it
+   * does only while it still owns the container; until then the reserved
+   * attempt is taken out of the scheduled ones but its request stays with
+   * the RM. The containers are thus reused while tasks are left and
+   * released once the scheduled requests drain.
+   */
+  @SuppressWarnings("unchecked")
+  private void handleContainerReuse(ContainerReuseEvent event) {
+    TaskAttemptId aId = event.getAttemptID();
+    Container container = event.getContainer();
+    ContainerId containerId = container.getId();
+    Integer count = containerTaskCounts.get(containerId);
+    int tasksRun = count == null ? 1 : count;
+    ReuseOffer offer = new ReuseOffer(container, event.getShufflePort());
+    if ((maxTasksPerJvm < 0 || tasksRun < maxTasksPerJvm)
+        && containerId.equals(assignedRequests.get(aId))
+        && !isNodeBlacklisted(container.getNodeId().getHost())
+        && !reuseOffers.containsKey(aId)) {
+      scheduledRequests.reserveForReuse(offer,
+          aId.getTaskId().getTaskType());
+    }
+    if (offer.request == null) {
+      eventHandler.handle(new TaskAttemptContainerReuseOfferEvent(aId,
+          false));
+      return;
+    }
+    LOG.info("Offering container " + containerId + " of " + aId + " to "
+        + offer.request.attemptID);
+    reuseOffers.put(aId, offer);
+    eventHandler.handle(new TaskAttemptContainerReuseOfferEvent(aId, true));
+  }
+
+  /**
+   * Assign the container of a succeeded attempt, which accepted the offer,
+   * to the reserved attempt, which then runs in the JVM of the container
+   * instead of waiting for a new container to be allocated and its JVM to
+   * start.
+   */
+  @SuppressWarnings("unchecked")
+  private void handleReuseAccepted(TaskAttemptId aId) {
+    ReuseOffer offer = reuseOffers.remove(aId);
+    if (offer == null) {
+      LOG.error("No container was offered to " + aId);
+      return;
+    }
+    if (offer.request == null) {
+      // the reserved attempt was withdrawn meanwhile, the JVM exits and the
+      // container completes as if it had not been offered.
+      eventHandler.handle(new TaskAttemptContainerReuseOfferEvent(aId,
+          false));
+      return;
+    }
+    ContainerId containerId = offer.container.getId();
+    Integer count = containerTaskCounts.get(containerId);
+    LOG.info("Reusing container " + containerId + " of " + aId + " for "
+        + offer.request.attemptID);
+    assignedRequests.remove(aId);
+    preemptionPolicy.handleCompletedContainer(aId);
+    containerTaskCounts.put(containerId, (count == null ? 1 : count) + 1);
+    if (offer.locality != null) {
+      JobCounterUpdateEvent jce = new JobCounterUpdateEvent(
+          offer.request.attemptID.getTaskId().getJobId());
+      jce.addCounterUpdate(offer.locality, 1);
+      eventHandler.handle(jce);
+    }
+    scheduledRequests.containerAssigned(offer.container, offer.request,
+        offer.shufflePort);
+  }
+
+  /**
+   * Withdraw the request of an attempt which is reserved for a container
+   * offered for reuse.
+   * @return true if the attempt was reserved.
+   */
+  private boolean withdrawReservation(TaskAttemptId aId) {
+    for (ReuseOffer offer : reuseOffers.values()) {
+      if (offer.request != null && offer.request.attemptID.equals(aId)) {
+        decContainerReq(offer.request);
+        offer.request = null;
+        return true;
+      }
+    }
+    return false;
+  }
+
   @SuppressWarnings({ "unchecked" })
   private void handleReduceContainerRequest(ContainerRequestEvent reqEvent) {
     assert(reqEvent.getAttemptID().getTaskId().getTaskType().equals(
@@ -902,6 +1021,7 @@ void processFinishedContainer(ContainerStatus container) {
     } else {
       pendingRelease.remove(container.getContainerId());
       assignedRequests.remove(attemptID);
+      containerTaskCounts.remove(container.getContainerId());
 
       // Send the diagnostics
       String diagnostic = StringInterner.weakIntern(container.getDiagnostics());
@@ -1266,15 +1386,20 @@ reduceResourceRequest, getSchedulerResourceTypes()) <= 0
       }
     }
     
-    @SuppressWarnings("unchecked")
     private void containerAssigned(Container allocated, 
                                     ContainerRequest assigned) {
+      containerAssigned(allocated, assigned, -1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void containerAssigned(Container allocated,
+        ContainerRequest assigned, int shufflePort) {
       // Update resource requests
       decContainerReq(assigned);
 
       // send the container-assigned event to task attempt
       eventHandler.handle(new TaskAttemptContainerAssignedEvent(
-          assigned.attemptID, allocated, applicationACLs));
+          assigned.attemptID, allocated, applicationACLs, shufflePort));
 
       assignedRequests.add(allocated, assigned.attemptID);
 
@@ -1381,6 +1506,80 @@ && canAssignMaps()) {
       return assigned;
     }
     
+    /**
+     * Reserve the scheduled attempt to run in a reused container: earlier
+     * failed maps first, then maps local to the node or the rack of the
+     * container. The running task limits are not checked, as the attempt
+     * takes the place of the one which succeeded in the container.
+     */
+    private void reserveForReuse(ReuseOffer offer, TaskType type) {
+      if (type == TaskType.REDUCE) {
+        Iterator<TaskAttemptId> it = reduces.keySet().iterator();
+        offer.request = it.hasNext() ? reduces.remove(it.next()) : null;
+        return;
+      }
+      ContainerRequest assigned = null;
+      JobCounter locality = JobCounter.OTHER_LOCAL_MAPS;
+      while (assigned == null && !earlierFailedMaps.isEmpty()) {
+        assigned = maps.remove(earlierFailedMaps.removeFirst());
+      }
+      String host = offer.container.getNodeId().getHost();
+      LinkedList<TaskAttemptId> list = mapsHostMapping.get(host);
+      while (assigned == null && list != null && !list.isEmpty()) {
+        assigned = maps.remove(list.removeFirst());
+        locality = JobCounter.DATA_LOCAL_MAPS;
+      }
+      if (assigned == null) {
+        String rack = RackResolver.resolve(host).getNetworkLocation();
+        list = mapsRackMapping.get(rack);
+        while (assigned == null && list != null && !list.isEmpty()) {
+          assigned = maps.remove(list.removeFirst());
+          locality = JobCounter.RACK_LOCAL_MAPS;
+        }
+      }
+      if (assigned == null && !maps.isEmpty()) {
+        assigned = maps.remove(maps.keySet().iterator().next());
+        locality = JobCounter.OTHER_LOCAL_MAPS;
+      }
+      offer.request = assigned;
+      offer.locality = locality;
+    }
+
+    /**
+     * Return an attempt reserved by {@link #reserveForReuse} to the
+     * scheduled ones, after the offer of the container was declined. Its
+     * request never left the RM.
+     */
+    void unreserve(ContainerRequest request) {
+      TaskAttemptId aId = request.attemptID;
+      if (aId.getTaskId().getTaskType() == TaskType.REDUCE) {
+        reduces.put(aId, request);
+        return;
+      }
+      if (PRIORITY_FAST_FAIL_MAP.equals(request.priority)) {
+        earlierFailedMaps.addFirst(aId);
+      } else if (PRIORITY_MAP.equals(request.priority)) {
+        // stale entries of the lists are skipped, so duplicates are fine.
+        for (String host : request.hosts) {
+          addToMapping(mapsHostMapping, host, aId);
+        }
+        for (String rack : request.racks) {
+          addToMapping(mapsRackMapping, rack, aId);
+        }
+      }
+      maps.put(aId, request);
+    }
+
+    private void addToMapping(Map<String, LinkedList<TaskAttemptId>> mapping,
+        String location, TaskAttemptId aId) {
+      LinkedList<TaskAttemptId> list = mapping.get(location);
+      if (list == null) {
+        list = new LinkedList<TaskAttemptId>();
+        mapping.put(location, list);
+      }
+      list.add(aId);
+    }
+
     private ContainerRequest assignToReduce(Container allocated) {
       ContainerRequest assigned = null;
       //try to assign to reduces if present
@@ -1486,6 +1685,24 @@ private void assignMapsWithLocality(List<Container> allocatedContainers) {
     }
   }
 
+  /**
+   * The container of a succeeded attempt and the scheduled attempt reserved
+   * to run in it, until the succeeded attempt accepts or declines the offer.
+   */
+  private static class ReuseOffer {
+    private final Container container;
+    private final int shufflePort;
+    // null if no attempt is reserved, or the reserved one was withdrawn
+    private ContainerRequest request;
+    // the locality of a reserved map, counted once the offer is accepted
+    private JobCounter locality;
+
+    ReuseOffer(Container container, int shufflePort) {
+      this.container = container;
+      this.shufflePort = shufflePort;
+    }
+  }
+
   @Private
   @VisibleForTesting
   class AssignedRequests {
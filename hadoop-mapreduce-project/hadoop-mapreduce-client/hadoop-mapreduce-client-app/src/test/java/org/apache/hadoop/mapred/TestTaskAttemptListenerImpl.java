@@ -46,6 +46,7 @@
 import org.apache.hadoop.mapreduce.v2.app.AppContext;
 import org.apache.hadoop.mapreduce.v2.app.TaskHeartbeatHandler;
 import org.apache.hadoop.mapreduce.v2.app.job.Job;
+import org.apache.hadoop.mapreduce.v2.app.job.TaskAttempt;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptStatusUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptStatusUpdateEvent.TaskAttemptStatus;
 import org.apache.hadoop.mapreduce.v2.app.rm.preemption.AMPreemptionPolicy;
@@ -192,12 +193,22 @@ public void testGetTask() throws IOException {
 
     // Verify ask after registration and launch
     //Now put a task with the ID
+    TaskAttempt mockAttempt = mock(TaskAttempt.class);
+    when(mockAttempt.getShufflePort()).thenReturn(13562);
+    org.apache.hadoop.mapreduce.v2.app.job.Task mockTask =
+        mock(org.apache.hadoop.mapreduce.v2.app.job.Task.class);
+    when(mockTask.getAttempt(attemptId)).thenReturn(mockAttempt);
+    Job mockJob = mock(Job.class);
+    when(mockJob.getTask(attemptId.getTaskId())).thenReturn(mockTask);
+    when(appCtx.getJob(attemptId.getTaskId().getJobId())).thenReturn(mockJob);
     listener.registerPendingTask(task, wid);
     listener.registerLaunchedTask(attemptId, wid);
     verify(hbHandler).register(attemptId);
     result = listener.getTask(context);
     assertNotNull(result);
     assertFalse(result.shouldDie);
+    // The task is told the port of the shuffle handler of its node.
+    verify(task).setShufflePort(13562);
     // Don't unregister yet for more testing.
 
     //Verify that if we call it again a second time we are told to die.
@@ -225,6 +236,44 @@ public void testGetTask() throws IOException {
 
   }
 
+  @Test (timeout=5000)
+  public void testGetTaskWithJvmReuse() throws IOException {
+    configureMocks();
+    Configuration conf = new Configuration();
+    conf.setBoolean(MRJobConfig.JVM_REUSE_ENABLED, true);
+    conf.setInt(MRJobConfig.JVM_NUMTASKS_TORUN, -1);
+    listener.init(conf);
+    listener.start();
+    JvmContext context = new JvmContext();
+    context.jvmId = id;
+
+    listener.registerPendingTask(task, wid);
+    listener.registerLaunchedTask(attemptId, wid);
+    JvmTask result = listener.getTask(context);
+    assertFalse(result.shouldDie);
+
+    // the JVM waits for the next task after its attempt is done
+    listener.done(attemptID);
+    listener.unregister(attemptId, wid);
+    assertNull(listener.getTask(context));
+
+    // the container is reused for another attempt
+    TaskAttemptID nextID = new TaskAttemptID("1", 1, TaskType.MAP, 2, 1);
+    TaskAttemptId nextId = TypeConverter.toYarn(nextID);
+    listener.registerPendingTask(task, wid);
+    assertNull(listener.getTask(context));
+    listener.registerLaunchedTask(nextId, wid);
+    result = listener.getTask(context);
+    assertFalse(result.shouldDie);
+
+    // no further attempt for the container
+    listener.done(nextID);
+    listener.unregister(nextId, wid);
+    assertNull(listener.getTask(context));
+    listener.releaseJvm(wid);
+    assertTrue(listener.getTask(context).shouldDie);
+  }
+
   @Test (timeout=5000)
   public void testJVMId() {
 
@@ -569,6 +618,7 @@ private void configureMocks() {
     wid = new WrappedJvmID(id.getJobId(), id.isMap, id.getId());
     attemptID = new TaskAttemptID("1", 1, TaskType.MAP, 1, 1);
     attemptId = TypeConverter.toYarn(attemptID);
+    when(task.getTaskID()).thenReturn(attemptID);
   }
 
   private void startListener(boolean registerTask) {
@@ -0,0 +1,71 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.hadoop.mapred;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestYarnChild {
+
+  private static final String KEY = "test.yarnchild.key";
+  private static final String PROPERTY = "test.yarnchild.property";
+
+  @After
+  public void clearProperty() {
+    System.clearProperty(PROPERTY);
+  }
+
+  @Test
+  public void testTaskConfIsFrozen() {
+    JobConf job = new JobConf(false);
+    job.set(KEY, "${" + PROPERTY + "}");
+    System.setProperty(PROPERTY, "1");
+    YarnChild.freezeConf(job);
+    assertTrue(job.isFrozen());
+
+    assertEquals("1", job.get(KEY));
+    // system properties are expanded once per snapshot, so a frozen
+    // configuration serves the value resolved by the first lookup.
+    System.setProperty(PROPERTY, "2");
+    assertEquals("1", job.get(KEY));
+
+    // modifications through the configuration publish a new snapshot.
+    job.setNumReduceTasks(5);
+    assertEquals(5, job.getNumReduceTasks());
+    assertEquals("2", job.get(KEY));
+  }
+
+  @Test
+  public void testTaskConfFreezeDisabled() {
+    JobConf job = new JobConf(false);
+    job.setBoolean(MRJobConfig.TASK_CONF_FREEZE, false);
+    job.set(KEY, "${" + PROPERTY + "}");
+    System.setProperty(PROPERTY, "1");
+    YarnChild.freezeConf(job);
+    assertFalse(job.isFrozen());
+
+    assertEquals("1", job.get(KEY));
+    System.setProperty(PROPERTY, "2");
+    assertEquals("2", job.get(KEY));
+  }
+}
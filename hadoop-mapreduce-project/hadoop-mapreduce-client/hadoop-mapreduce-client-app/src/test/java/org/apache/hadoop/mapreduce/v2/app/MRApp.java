@@ -516,6 +516,9 @@ public void registerLaunchedTask(TaskAttemptId attemptID,
       public void unregister(TaskAttemptId attemptID, WrappedJvmID jvmID) {
       }
       @Override
+      public void releaseJvm(WrappedJvmID jvmID) {
+      }
+      @Override
       public void registerPendingTask(org.apache.hadoop.mapred.Task task,
           WrappedJvmID jvmID) {
       }
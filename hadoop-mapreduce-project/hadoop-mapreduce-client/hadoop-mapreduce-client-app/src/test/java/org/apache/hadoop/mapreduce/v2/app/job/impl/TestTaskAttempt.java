@@ -79,6 +79,7 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobEventType;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerAssignedEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerLaunchedEvent;
+import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerReuseOfferEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptDiagnosticsUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptKillEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptTooManyFetchFailureEvent;
@@ -87,6 +88,10 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskEventType;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskTAttemptKilledEvent;
+import org.apache.hadoop.mapreduce.v2.app.launcher.ContainerLauncher;
+import org.apache.hadoop.mapreduce.v2.app.launcher.ContainerLauncherEvent;
+import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocator;
+import org.apache.hadoop.mapreduce.v2.app.rm.ContainerAllocatorEvent;
 import org.apache.hadoop.mapreduce.v2.app.rm.ContainerRequestEvent;
 import org.apache.hadoop.mapreduce.v2.util.MRBuilderUtils;
 import org.apache.hadoop.security.Credentials;
@@ -1505,6 +1510,75 @@ public void testTimeoutWhileSuccessFinishing() throws Exception {
     assertFalse("InternalError occurred", eventHandler.internalError);
   }
 
+  @Test
+  public void testTimeoutBeforeReuseOffer() throws Exception {
+    MockEventHandler eventHandler = new MockEventHandler();
+    JobConf jobConf = new JobConf();
+    jobConf.setBoolean(MRJobConfig.JVM_REUSE_ENABLED, true);
+    jobConf.setNumTasksToExecutePerJvm(-1);
+    TaskAttemptImpl taImpl = createTaskAttemptImpl(eventHandler, jobConf);
+
+    taImpl.handle(new TaskAttemptEvent(taImpl.getID(),
+        TaskAttemptEventType.TA_DONE));
+    assertEquals(TaskAttemptStateInternal.SUCCESS_FINISHING_CONTAINER,
+        taImpl.getInternalState());
+    assertTrue("Container was not offered for reuse",
+        eventHandler.allocatorEvents.contains(
+            ContainerAllocator.EventType.CONTAINER_REUSE));
+
+    // the attempt times out before the allocator answers, and cleans up the
+    // container which it still owns.
+    taImpl.handle(new TaskAttemptEvent(taImpl.getID(),
+        TaskAttemptEventType.TA_TIMED_OUT));
+    assertEquals(TaskAttemptStateInternal.SUCCESS_CONTAINER_CLEANUP,
+        taImpl.getInternalState());
+    assertTrue("Container was not cleaned up",
+        eventHandler.launcherEvents.contains(
+            ContainerLauncher.EventType.CONTAINER_REMOTE_CLEANUP));
+
+    // the late offer is declined, so the container is never handed over.
+    taImpl.handle(new TaskAttemptContainerReuseOfferEvent(taImpl.getID(),
+        true));
+    assertEquals(TaskAttemptStateInternal.SUCCESS_CONTAINER_CLEANUP,
+        taImpl.getInternalState());
+    assertTrue("Reuse offer was not declined",
+        eventHandler.allocatorEvents.contains(
+            ContainerAllocator.EventType.CONTAINER_REUSE_DECLINED));
+    assertFalse("Reuse offer was accepted",
+        eventHandler.allocatorEvents.contains(
+            ContainerAllocator.EventType.CONTAINER_REUSE_ACCEPTED));
+    assertFalse("InternalError occurred", eventHandler.internalError);
+  }
+
+  @Test
+  public void testTimeoutAfterReuseAccepted() throws Exception {
+    MockEventHandler eventHandler = new MockEventHandler();
+    JobConf jobConf = new JobConf();
+    jobConf.setBoolean(MRJobConfig.JVM_REUSE_ENABLED, true);
+    jobConf.setNumTasksToExecutePerJvm(-1);
+    TaskAttemptImpl taImpl = createTaskAttemptImpl(eventHandler, jobConf);
+
+    taImpl.handle(new TaskAttemptEvent(taImpl.getID(),
+        TaskAttemptEventType.TA_DONE));
+    taImpl.handle(new TaskAttemptContainerReuseOfferEvent(taImpl.getID(),
+        true));
+    assertEquals(TaskAttemptStateInternal.SUCCEEDED,
+        taImpl.getInternalState());
+    assertTrue("Reuse offer was not accepted",
+        eventHandler.allocatorEvents.contains(
+            ContainerAllocator.EventType.CONTAINER_REUSE_ACCEPTED));
+
+    // the container belongs to the next attempt now, a late timeout or kill
+    // must not clean it up.
+    taImpl.handle(new TaskAttemptEvent(taImpl.getID(),
+        TaskAttemptEventType.TA_TIMED_OUT));
+    taImpl.handle(new TaskAttemptKillEvent(taImpl.getID(), "", true));
+    assertFalse("Reused container was cleaned up",
+        eventHandler.launcherEvents.contains(
+            ContainerLauncher.EventType.CONTAINER_REMOTE_CLEANUP));
+    assertFalse("InternalError occurred", eventHandler.internalError);
+  }
+
   @Test
   public void testTimeoutWhileFailFinishing() throws Exception {
     MockEventHandler eventHandler = new MockEventHandler();
@@ -1793,6 +1867,11 @@ private void setupTaskAttemptFinishingMonitor(
 
   private TaskAttemptImpl createTaskAttemptImpl(
       MockEventHandler eventHandler) {
+    return createTaskAttemptImpl(eventHandler, new JobConf());
+  }
+
+  private TaskAttemptImpl createTaskAttemptImpl(
+      MockEventHandler eventHandler, JobConf jobConf) {
     ApplicationId appId = ApplicationId.newInstance(1, 2);
     ApplicationAttemptId appAttemptId =
         ApplicationAttemptId.newInstance(appId, 0);
@@ -1804,7 +1883,6 @@ private TaskAttemptImpl createTaskAttemptImpl(
     TaskAttemptListener taListener = mock(TaskAttemptListener.class);
     when(taListener.getAddress()).thenReturn(new InetSocketAddress("localhost", 0));
 
-    JobConf jobConf = new JobConf();
     jobConf.setClass("fs.file.impl", StubbedFS.class, FileSystem.class);
     jobConf.setBoolean("fs.file.impl.disable.cache", true);
     jobConf.set(JobConf.MAPRED_MAP_TASK_ENV, "");
@@ -1842,12 +1920,22 @@ private TaskAttemptImpl createTaskAttemptImpl(
   public static class MockEventHandler implements EventHandler {
     public boolean internalError;
     public TaskEvent lastTaskEvent;
+    public final List<ContainerAllocator.EventType> allocatorEvents =
+        new ArrayList<>();
+    public final List<ContainerLauncher.EventType> launcherEvents =
+        new ArrayList<>();
 
     @Override
     public void handle(Event event) {
       if (event instanceof TaskEvent) {
         lastTaskEvent = (TaskEvent)event;
       }
+      if (event instanceof ContainerAllocatorEvent) {
+        allocatorEvents.add(((ContainerAllocatorEvent) event).getType());
+      }
+      if (event instanceof ContainerLauncherEvent) {
+        launcherEvents.add(((ContainerLauncherEvent) event).getType());
+      }
       if (event instanceof JobEvent) {
         JobEvent je = ((JobEvent) event);
         if (JobEventType.INTERNAL_ERROR == je.getType()) {
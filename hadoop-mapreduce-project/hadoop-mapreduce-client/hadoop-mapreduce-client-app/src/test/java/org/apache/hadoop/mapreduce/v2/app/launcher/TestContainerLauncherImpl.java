@@ -17,6 +17,8 @@
 */
 package org.apache.hadoop.mapreduce.v2.app.launcher;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
@@ -40,6 +42,7 @@
 import org.apache.hadoop.mapreduce.v2.api.records.TaskType;
 import org.apache.hadoop.mapreduce.v2.app.AppContext;
 import org.apache.hadoop.mapreduce.v2.app.MRApp;
+import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEventType;
 import org.apache.hadoop.mapreduce.v2.app.launcher.ContainerLauncher.EventType;
 import org.apache.hadoop.mapreduce.v2.util.MRBuilderUtils;
@@ -227,6 +230,96 @@ public void testHandle() throws Exception {
     }
   }
   
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test(timeout = 5000)
+  public void testCleanupAfterReuse() throws Exception {
+    LOG.info("STARTING testCleanupAfterReuse");
+    AppContext mockContext = mock(AppContext.class);
+    EventHandler mockEventHandler = mock(EventHandler.class);
+    when(mockContext.getEventHandler()).thenReturn(mockEventHandler);
+    String cmAddress = "127.0.0.1:8000";
+    ContainerManagementProtocolClient mockCM =
+        mock(ContainerManagementProtocolClient.class);
+    ContainerLauncherImplUnderTest ut =
+        new ContainerLauncherImplUnderTest(mockContext, mockCM);
+
+    Configuration conf = new Configuration();
+    ut.init(conf);
+    ut.start();
+    try {
+      ContainerId contId = makeContainerId(0l, 0, 0, 1);
+      TaskAttemptId firstId = makeTaskAttemptId(0l, 0, 0, TaskType.MAP, 0);
+      TaskAttemptId secondId = makeTaskAttemptId(0l, 0, 1, TaskType.MAP, 0);
+      StartContainersResponse startResp =
+        recordFactory.newRecordInstance(StartContainersResponse.class);
+      startResp.setAllServicesMetaData(serviceResponse);
+      when(mockCM.startContainers(any(StartContainersRequest.class)))
+          .thenReturn(startResp);
+
+      LOG.info("inserting launch event");
+      ContainerRemoteLaunchEvent mockLaunchEvent =
+        mock(ContainerRemoteLaunchEvent.class);
+      when(mockLaunchEvent.getType())
+        .thenReturn(EventType.CONTAINER_REMOTE_LAUNCH);
+      when(mockLaunchEvent.getContainerID()).thenReturn(contId);
+      when(mockLaunchEvent.getTaskAttemptID()).thenReturn(firstId);
+      when(mockLaunchEvent.getContainerMgrAddress()).thenReturn(cmAddress);
+      when(mockLaunchEvent.getContainerToken()).thenReturn(
+          createNewContainerToken(contId, cmAddress));
+      ut.handle(mockLaunchEvent);
+      ut.waitForPoolToIdle();
+      verify(mockCM).startContainers(any(StartContainersRequest.class));
+
+      LOG.info("inserting relaunch event");
+      ContainerRemoteLaunchEvent mockRelaunchEvent =
+        mock(ContainerRemoteLaunchEvent.class);
+      when(mockRelaunchEvent.getType())
+        .thenReturn(EventType.CONTAINER_REMOTE_LAUNCH);
+      when(mockRelaunchEvent.getContainerID()).thenReturn(contId);
+      when(mockRelaunchEvent.getTaskAttemptID()).thenReturn(secondId);
+      when(mockRelaunchEvent.getContainerMgrAddress()).thenReturn(cmAddress);
+      when(mockRelaunchEvent.isContainerReused()).thenReturn(true);
+      when(mockRelaunchEvent.getShufflePort()).thenReturn(8000);
+      ut.handle(mockRelaunchEvent);
+      ut.waitForPoolToIdle();
+
+      // a late cleanup of the first attempt must not stop the container,
+      // which now runs the second attempt.
+      LOG.info("inserting cleanup event of the previous attempt");
+      ContainerLauncherEvent mockCleanupEvent =
+        mock(ContainerLauncherEvent.class);
+      when(mockCleanupEvent.getType())
+        .thenReturn(EventType.CONTAINER_REMOTE_CLEANUP);
+      when(mockCleanupEvent.getContainerID()).thenReturn(contId);
+      when(mockCleanupEvent.getTaskAttemptID()).thenReturn(firstId);
+      when(mockCleanupEvent.getContainerMgrAddress()).thenReturn(cmAddress);
+      ut.handle(mockCleanupEvent);
+      ut.waitForPoolToIdle();
+
+      verify(mockCM, never()).stopContainers(any(StopContainersRequest.class));
+      ArgumentCaptor<Event> arg = ArgumentCaptor.forClass(Event.class);
+      verify(mockEventHandler, atLeast(3)).handle(arg.capture());
+      boolean containerCleaned = false;
+      for (Event event : arg.getAllValues()) {
+        LOG.info(event.toString());
+        if (event.getType() == TaskAttemptEventType.TA_CONTAINER_CLEANED) {
+          assertEquals(firstId,
+              ((TaskAttemptEvent) event).getTaskAttemptID());
+          containerCleaned = true;
+        }
+      }
+      assertTrue(containerCleaned);
+
+      LOG.info("inserting cleanup event of the current attempt");
+      when(mockCleanupEvent.getTaskAttemptID()).thenReturn(secondId);
+      ut.handle(mockCleanupEvent);
+      ut.waitForPoolToIdle();
+      verify(mockCM).stopContainers(any(StopContainersRequest.class));
+    } finally {
+      ut.stop();
+    }
+  }
+
   @Test(timeout = 5000)
   public void testOutOfOrder() throws Exception {
     LOG.info("STARTING testOutOfOrder");
@@ -72,6 +72,7 @@
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobEventType;
 import org.apache.hadoop.mapreduce.v2.app.job.event.JobUpdatedNodesEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerAssignedEvent;
+import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptContainerReuseOfferEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptDiagnosticsUpdateEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEvent;
 import org.apache.hadoop.mapreduce.v2.app.job.event.TaskAttemptEventType;
@@ -261,6 +262,147 @@ public void testSimple() throws Exception {
     Assert.assertEquals(5, rm.getMyFifoScheduler().lastAsk.size());
   }
 
+  private MyContainerAllocator createReuseAllocator(MyResourceManager rm,
+      Configuration conf, JobId[] jobIdHolder) throws Exception {
+    // Submit the application
+    RMApp app = rm.submitApp(1024);
+    rm.drainEvents();
+
+    MockNM amNodeManager = rm.registerNode("amNM:1234", 2048);
+    amNodeManager.nodeHeartbeat(true);
+    rm.drainEvents();
+
+    ApplicationAttemptId appAttemptId = app.getCurrentAppAttempt()
+        .getAppAttemptId();
+    rm.sendAMLaunched(appAttemptId);
+    rm.drainEvents();
+
+    JobId jobId = MRBuilderUtils.newJobId(appAttemptId.getApplicationId(), 0);
+    jobIdHolder[0] = jobId;
+    Job mockJob = mock(Job.class);
+    when(mockJob.getReport()).thenReturn(
+        MRBuilderUtils.newJobReport(jobId, "job", "user", JobState.RUNNING, 0,
+            0, 0, 0, 0, 0, 0, "jobfile", null, false, ""));
+    MyContainerAllocator.reuseOfferEvents.clear();
+    return new MyContainerAllocator(rm, conf, appAttemptId, mockJob);
+  }
+
+  /**
+   * Allocate the single container of a node to the first of three maps.
+   */
+  private TaskAttemptContainerAssignedEvent assignFirstOfThreeMaps(
+      MyResourceManager rm, MyContainerAllocator allocator, JobId jobId)
+      throws Exception {
+    // a node with room for a single container
+    MockNM nodeManager = rm.registerNode("h1:1234", 1024);
+    rm.drainEvents();
+
+    allocator.sendRequests(Arrays.asList(
+        createRequest(jobId, 1, Resource.newInstance(1024, 1),
+            new String[] {"h1"}),
+        createRequest(jobId, 2, Resource.newInstance(1024, 1),
+            new String[] {"h1"}),
+        createRequest(jobId, 3, Resource.newInstance(1024, 1),
+            new String[] {"h1"})));
+    allocator.schedule();
+    rm.drainEvents();
+    nodeManager.nodeHeartbeat(true);
+    rm.drainEvents();
+
+    List<TaskAttemptContainerAssignedEvent> assigned = allocator.schedule();
+    rm.drainEvents();
+    Assert.assertEquals(1, assigned.size());
+    Assert.assertFalse(assigned.get(0).isContainerReused());
+    return assigned.get(0);
+  }
+
+  @Test
+  public void testContainerReuse() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(MRJobConfig.JVM_REUSE_ENABLED, true);
+    conf.setInt(MRJobConfig.JVM_NUMTASKS_TORUN, 2);
+    MyResourceManager rm = new MyResourceManager(conf);
+    rm.start();
+    JobId[] jobId = new JobId[1];
+    MyContainerAllocator allocator = createReuseAllocator(rm, conf, jobId);
+    TaskAttemptContainerAssignedEvent first =
+        assignFirstOfThreeMaps(rm, allocator, jobId[0]);
+
+    // the succeeded attempt offers its container, which is only assigned
+    // once the attempt accepts the offer.
+    allocator.sendReuse(new ContainerReuseEvent(first.getTaskAttemptID(),
+        first.getContainer(), 13562));
+    Assert.assertTrue(MyContainerAllocator.lastReuseOfferReserved());
+    Assert.assertEquals(0, allocator.schedule().size());
+    allocator.sendReuse(new ContainerAllocatorEvent(first.getTaskAttemptID(),
+        ContainerAllocator.EventType.CONTAINER_REUSE_ACCEPTED));
+    List<TaskAttemptContainerAssignedEvent> assigned = allocator.schedule();
+    rm.drainEvents();
+    Assert.assertEquals(1, assigned.size());
+    TaskAttemptContainerAssignedEvent second = assigned.get(0);
+    Assert.assertTrue(second.isContainerReused());
+    Assert.assertEquals(13562, second.getShufflePort());
+    Assert.assertEquals(first.getContainer().getId(),
+        second.getContainer().getId());
+    Assert.assertFalse(
+        first.getTaskAttemptID().equals(second.getTaskAttemptID()));
+
+    // the container ran as many tasks as its JVM may run
+    allocator.sendReuse(new ContainerReuseEvent(second.getTaskAttemptID(),
+        second.getContainer(), 13562));
+    Assert.assertFalse(MyContainerAllocator.lastReuseOfferReserved());
+    assigned = allocator.schedule();
+    rm.drainEvents();
+    Assert.assertEquals(0, assigned.size());
+  }
+
+  @Test
+  public void testContainerReuseDeclined() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(MRJobConfig.JVM_REUSE_ENABLED, true);
+    conf.setInt(MRJobConfig.JVM_NUMTASKS_TORUN, -1);
+    MyResourceManager rm = new MyResourceManager(conf);
+    rm.start();
+    JobId[] jobId = new JobId[1];
+    MyContainerAllocator allocator = createReuseAllocator(rm, conf, jobId);
+    TaskAttemptContainerAssignedEvent first =
+        assignFirstOfThreeMaps(rm, allocator, jobId[0]);
+    TaskAttemptId firstId = first.getTaskAttemptID();
+
+    // the attempt timed out before the offer arrived and declines it, so
+    // the reserved attempt is scheduled again and can be offered again.
+    allocator.sendReuse(new ContainerReuseEvent(firstId,
+        first.getContainer(), 13562));
+    Assert.assertTrue(MyContainerAllocator.lastReuseOfferReserved());
+    allocator.sendReuse(new ContainerAllocatorEvent(firstId,
+        ContainerAllocator.EventType.CONTAINER_REUSE_DECLINED));
+    Assert.assertEquals(0, allocator.schedule().size());
+    Assert.assertEquals(2, allocator.getScheduledRequests().maps.size());
+
+    // the reserved attempt is killed before the offer is accepted, the JVM
+    // is told to exit rather than run it.
+    allocator.sendReuse(new ContainerReuseEvent(firstId,
+        first.getContainer(), 13562));
+    Assert.assertTrue(MyContainerAllocator.lastReuseOfferReserved());
+    Assert.assertEquals(1, allocator.getScheduledRequests().maps.size());
+    TaskId taskId = firstId.getTaskId();
+    TaskAttemptId reserved = null;
+    for (int i = 1; i <= 3; i++) {
+      TaskAttemptId id = MRBuilderUtils.newTaskAttemptId(taskId, i);
+      if (!id.equals(firstId)
+          && !allocator.getScheduledRequests().maps.containsKey(id)) {
+        reserved = id;
+      }
+    }
+    Assert.assertNotNull(reserved);
+    allocator.sendDeallocate(new ContainerAllocatorEvent(reserved,
+        ContainerAllocator.EventType.CONTAINER_DEALLOCATE));
+    allocator.sendReuse(new ContainerAllocatorEvent(firstId,
+        ContainerAllocator.EventType.CONTAINER_REUSE_ACCEPTED));
+    Assert.assertFalse(MyContainerAllocator.lastReuseOfferReserved());
+    Assert.assertEquals(0, allocator.schedule().size());
+  }
+
   @Test
   public void testMapNodeLocality() throws Exception {
     // test checks that ordering of allocated containers list from the RM does
@@ -1975,6 +2117,8 @@ static class MyContainerAllocator extends RMContainerAllocator {
     static final List<JobUpdatedNodesEvent> jobUpdatedNodeEvents =
         new ArrayList<>();
     static final List<JobEvent> jobEvents = new ArrayList<>();
+    static final List<TaskAttemptContainerReuseOfferEvent> reuseOfferEvents =
+        new ArrayList<>();
     private MyResourceManager rm;
     private boolean isUnregistered = false;
     private AllocateResponse allocateResponse;
@@ -2000,6 +2144,8 @@ public void handle(Event event) {
             jobUpdatedNodeEvents.add((JobUpdatedNodesEvent)event);
           } else if (event instanceof JobEvent) {
             jobEvents.add((JobEvent)event);
+          } else if (event instanceof TaskAttemptContainerReuseOfferEvent) {
+            reuseOfferEvents.add((TaskAttemptContainerReuseOfferEvent) event);
           }
         }
       });
@@ -2096,6 +2242,17 @@ public void sendDeallocate(ContainerAllocatorEvent f) {
       super.handleEvent(f);
     }
 
+    public void sendReuse(ContainerAllocatorEvent f) {
+      super.handleEvent(f);
+    }
+
+    /**
+     * @return whether the last reuse offer reserved an attempt.
+     */
+    static boolean lastReuseOfferReserved() {
+      return reuseOfferEvents.get(reuseOfferEvents.size() - 1).isReserved();
+    }
+
     // API to be used by tests
     public List<TaskAttemptContainerAssignedEvent> schedule()
         throws Exception {
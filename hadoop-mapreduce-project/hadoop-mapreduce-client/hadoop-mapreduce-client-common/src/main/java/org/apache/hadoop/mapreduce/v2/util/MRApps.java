@@ -571,6 +571,22 @@ private static long[] getFileSizes(Configuration conf, String key) {
     return result;
   }
 
+  /**
+   * Get the number of tasks that a task JVM runs.
+   *
+   * @param conf configuration of the MR job
+   * @return the number of tasks, -1 if there is no limit; 1 unless
+   *         {@link MRJobConfig#JVM_REUSE_ENABLED} is set
+   */
+  public static int getNumTasksPerJvm(Configuration conf) {
+    if (!conf.getBoolean(MRJobConfig.JVM_REUSE_ENABLED,
+        MRJobConfig.DEFAULT_JVM_REUSE_ENABLED)) {
+      return 1;
+    }
+    return conf.getInt(MRJobConfig.JVM_NUMTASKS_TORUN,
+        MRJobConfig.DEFAULT_JVM_NUMTASKS_TORUN);
+  }
+
   public static String getChildLogLevel(Configuration conf, boolean isMap) {
     if (isMap) {
       return conf.get(
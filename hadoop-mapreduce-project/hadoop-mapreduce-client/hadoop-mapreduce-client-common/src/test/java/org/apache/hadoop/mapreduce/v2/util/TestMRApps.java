@@ -41,6 +41,7 @@
 import org.apache.hadoop.fs.FilterFileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapred.InvalidJobConfException;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobID;
 import org.apache.hadoop.mapreduce.MRConfig;
@@ -545,6 +546,17 @@ public void testSystemClasses() {
         ApplicationClassLoader.isSystemClass("/fake/Klass", systemClasses));
   }
 
+  @Test
+  public void testGetNumTasksPerJvm() {
+    JobConf conf = new JobConf(false);
+    assertEquals(1, MRApps.getNumTasksPerJvm(conf));
+    // MRv1 jobs set the number of tasks without reusing the JVMs in MRv2
+    conf.set("mapred.job.reuse.jvm.num.tasks", "-1");
+    assertEquals(1, MRApps.getNumTasksPerJvm(conf));
+    conf.setBoolean(MRJobConfig.JVM_REUSE_ENABLED, true);
+    assertEquals(-1, MRApps.getNumTasksPerJvm(conf));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testInvalidWebappAddress() throws Exception {
     Configuration conf = new Configuration();
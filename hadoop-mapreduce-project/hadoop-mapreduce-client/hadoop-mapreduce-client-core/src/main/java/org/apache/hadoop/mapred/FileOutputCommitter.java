@@ -194,6 +194,12 @@ public boolean isCommitJobRepeatable(JobContext context) throws IOException {
     return getWrapped(context).isCommitJobRepeatable(context);
   }
 
+  @Override
+  public org.apache.hadoop.mapreduce.Counters getJobCommitCounters(
+      JobContext context) throws IOException {
+    return getWrapped(context).getJobCommitCounters(context);
+  }
+
   @Override
   public boolean isRecoverySupported(JobContext context) throws IOException {
     return getWrapped(context).isRecoverySupported(context);
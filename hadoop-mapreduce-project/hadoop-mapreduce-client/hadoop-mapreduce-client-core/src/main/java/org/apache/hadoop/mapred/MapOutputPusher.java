@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+import javax.net.ssl.HttpsURLConnection;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapreduce.MRConfig;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.security.SecureShuffleUtils;
+import org.apache.hadoop.mapreduce.task.reduce.ShuffleHeader;
+import org.apache.hadoop.security.ssl.SSLFactory;
+import org.apache.hadoop.util.Progressable;
+import org.apache.hadoop.yarn.api.ApplicationConstants;
+
+/**
+ * Pushes the output of a map to the shuffle handler of its node, which
+ * appends the partitions to the merged outputs of the reduces.
+ *
+ * All partitions are sent in the body of a single POST, each preceded by its
+ * {@link ShuffleHeader}, in the same format as a shuffle response. The map
+ * output is left in place, so that the reduces can still fetch it from the
+ * map if the push fails.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+class MapOutputPusher {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int DEFAULT_CONNECT_TIMEOUT = 3 * 60 * 1000;
+  private static final int DEFAULT_READ_TIMEOUT = 3 * 60 * 1000;
+
+  private final JobConf job;
+  private final TaskAttemptID mapId;
+  private final SecretKey shuffleSecret;
+  private final int shufflePort;
+
+  /**
+   * @param shufflePort the port of the shuffle handler of this node, see
+   *                    {@link Task#getShufflePort()}.
+   */
+  MapOutputPusher(JobConf job, TaskAttemptID mapId, SecretKey shuffleSecret,
+      int shufflePort) {
+    this.job = job;
+    this.mapId = mapId;
+    this.shuffleSecret = shuffleSecret;
+    this.shufflePort = shufflePort;
+  }
+
+  /**
+   * @return the url the map output is pushed to.
+   */
+  URL getPushURL() throws IOException {
+    String host =
+        System.getenv(ApplicationConstants.Environment.NM_HOST.name());
+    if (host == null) {
+      host = "localhost";
+    }
+    boolean ssl = job.getBoolean(MRConfig.SHUFFLE_SSL_ENABLED_KEY,
+        MRConfig.SHUFFLE_SSL_ENABLED_DEFAULT);
+    return new URL(ssl ? "https" : "http", host, shufflePort,
+        "/mapOutput?job=" + mapId.getJobID() + "&map=" + mapId);
+  }
+
+  /**
+   * Push a map output.
+   *
+   * @param output the map output file
+   * @param index the index of the map output
+   * @param progressable reported to after every partition
+   * @throws IOException if the push failed.
+   */
+  void push(Path output, SpillRecord index, Progressable progressable)
+      throws IOException {
+    byte[][] headers = new byte[index.size()][];
+    long length = 0;
+    DataOutputBuffer dob = new DataOutputBuffer();
+    for (int i = 0; i < index.size(); i++) {
+      IndexRecord record = index.getIndex(i);
+      dob.reset();
+      new ShuffleHeader(mapId.toString(), record.partLength,
+          record.rawLength, i).write(dob);
+      headers[i] = Arrays.copyOf(dob.getData(), dob.getLength());
+      length += headers[i].length + record.partLength;
+    }
+
+    URL url = getPushURL();
+    SSLFactory sslFactory = null;
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    try {
+      if (conn instanceof HttpsURLConnection) {
+        sslFactory = new SSLFactory(SSLFactory.Mode.CLIENT, job);
+        sslFactory.init();
+        HttpsURLConnection httpsConn = (HttpsURLConnection) conn;
+        httpsConn.setSSLSocketFactory(sslFactory.createSSLSocketFactory());
+        httpsConn.setHostnameVerifier(sslFactory.getHostnameVerifier());
+      }
+      conn.setRequestMethod("POST");
+      conn.setDoOutput(true);
+      conn.setFixedLengthStreamingMode(length);
+      conn.setConnectTimeout(job.getInt(MRJobConfig.SHUFFLE_CONNECT_TIMEOUT,
+          DEFAULT_CONNECT_TIMEOUT));
+      conn.setReadTimeout(job.getInt(MRJobConfig.SHUFFLE_READ_TIMEOUT,
+          DEFAULT_READ_TIMEOUT));
+      conn.addRequestProperty(SecureShuffleUtils.HTTP_HEADER_URL_HASH,
+          SecureShuffleUtils.hashFromString(
+              SecureShuffleUtils.buildMsgFrom(url), shuffleSecret));
+      conn.addRequestProperty(ShuffleHeader.HTTP_HEADER_NAME,
+          ShuffleHeader.DEFAULT_HTTP_HEADER_NAME);
+      conn.addRequestProperty(ShuffleHeader.HTTP_HEADER_VERSION,
+          ShuffleHeader.DEFAULT_HTTP_HEADER_VERSION);
+
+      FileSystem rfs = FileSystem.getLocal(job).getRaw();
+      try (FSDataInputStream in = rfs.open(output, BUFFER_SIZE);
+           OutputStream out = conn.getOutputStream()) {
+        byte[] buf = new byte[BUFFER_SIZE];
+        for (int i = 0; i < headers.length; i++) {
+          IndexRecord record = index.getIndex(i);
+          out.write(headers[i]);
+          in.seek(record.startOffset);
+          for (long left = record.partLength; left > 0;) {
+            int n = (int) Math.min(left, buf.length);
+            in.readFully(buf, 0, n);
+            out.write(buf, 0, n);
+            left -= n;
+          }
+          progressable.progress();
+        }
+      }
+      int code = conn.getResponseCode();
+      if (code != HttpURLConnection.HTTP_OK) {
+        throw new IOException("Push of " + mapId + " to " + url +
+            " failed: " + code + " " + conn.getResponseMessage());
+      }
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e);
+    } finally {
+      conn.disconnect();
+      if (sslFactory != null) {
+        sslFactory.destroy();
+      }
+    }
+  }
+}
@@ -20,15 +20,23 @@
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -43,6 +51,7 @@
 import org.apache.hadoop.fs.RawLocalFileSystem;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.NormalizedKeyComparator;
 import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.SequenceFile.CompressionType;
@@ -56,6 +65,7 @@
 import org.apache.hadoop.mapred.Merger.Segment;
 import org.apache.hadoop.mapred.SortedRanges.SkipRangeIterator;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.MRConfig;
 import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.TaskCounter;
@@ -73,9 +83,13 @@
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.StringInterner;
 import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /** A Map task. */
 @InterfaceAudience.LimitedPrivate({"MapReduce"})
 @InterfaceStability.Unstable
@@ -348,9 +362,42 @@ public void run(final JobConf job, final TaskUmbilicalProtocol umbilical)
     } else {
       runOldMapper(job, splitMetaInfo, umbilical, reporter);
     }
+    pushMapOutput(job, reporter);
     done(umbilical, reporter);
   }
 
+  /**
+   * Push the map output to the shuffle handler of this node, if enabled.
+   * A failed push is not an error, the reduces fetch the output from the
+   * map instead.
+   */
+  private void pushMapOutput(JobConf job, TaskReporter reporter) {
+    if (conf.getNumReduceTasks() == 0 || isUberized() ||
+        !job.getBoolean(MRJobConfig.SHUFFLE_PUSH_ENABLED,
+            MRJobConfig.DEFAULT_SHUFFLE_PUSH_ENABLED) ||
+        MRConfig.LOCAL_FRAMEWORK_NAME.equals(job.get(MRConfig.FRAMEWORK_NAME,
+            MRConfig.LOCAL_FRAMEWORK_NAME))) {
+      return;
+    }
+    if (getShufflePort() <= 0) {
+      LOG.warn("The port of the shuffle handler of this node is unknown, " +
+          "not pushing the map output");
+      return;
+    }
+    MapOutputPusher pusher = new MapOutputPusher(job, getTaskID(),
+        getShuffleSecret(), getShufflePort());
+    try {
+      long start = Time.monotonicNow();
+      pusher.push(mapOutputFile.getOutputFile(),
+          new SpillRecord(mapOutputFile.getOutputIndexFile(), job), reporter);
+      LOG.info("Pushed map output to " + pusher.getPushURL() + " in " +
+          (Time.monotonicNow() - start) + " ms");
+    } catch (IOException e) {
+      LOG.warn("Could not push map output, it will be fetched from this map",
+          e);
+    }
+  }
+
   public Progress getSortPhase() {
     return sortPhase;
   }
@@ -883,6 +930,55 @@ private long getOutputBytes(List<Statistics> stats) {
     }
   }
 
+  /** Thrown once a {@link RegionOutputStream} is full. */
+  private static class RegionOverflowException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    RegionOverflowException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Writes to a region of a file through positional writes, so that several
+   * regions of the file can be written at the same time. Once a write does
+   * not fit, it throws a {@link RegionOverflowException} and discards all
+   * further output.
+   */
+  private static class RegionOutputStream extends OutputStream {
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+    private boolean overflowed = false;
+
+    RegionOutputStream(FileChannel channel, long start, long length) {
+      this.channel = channel;
+      this.position = start;
+      this.end = start + length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (overflowed) {
+        return;
+      }
+      if (len > end - position) {
+        overflowed = true;
+        throw new RegionOverflowException("Region ending at " + end +
+            " is full");
+      }
+      ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+      while (buf.hasRemaining()) {
+        position += channel.write(buf, position);
+      }
+    }
+  }
+
   @InterfaceAudience.LimitedPrivate({"MapReduce"})
   @InterfaceStability.Unstable
   public static class MapOutputBuffer<K extends Object, V extends Object>
@@ -893,6 +989,8 @@ private long getOutputBytes(List<Statistics> stats) {
     private Class<K> keyClass;
     private Class<V> valClass;
     private RawComparator<K> comparator;
+    // set if the key prefixes are stored with the metadata
+    private NormalizedKeyComparator prefixComparator;
     private SerializationFactory serializationFactory;
     private Serializer<K> keySerializer;
     private Serializer<V> valSerializer;
@@ -923,8 +1021,12 @@ private long getOutputBytes(List<Statistics> stats) {
     private static final int KEYSTART = 1;         // key offset in acct
     private static final int PARTITION = 2;        // partition offset in acct
     private static final int VALLEN = 3;           // length of value
+    private static final int PREFIXHI = 4;         // high int of key prefix
+    private static final int PREFIXLO = 5;         // low int of key prefix
     private static final int NMETA = 4;            // num meta ints
-    private static final int METASIZE = NMETA * 4; // size in bytes
+    private static final int NMETA_PREFIX = 6;     // num meta ints w/ prefix
+    private int nmeta = NMETA;                     // num meta ints in use
+    private int metasize = nmeta * 4;              // size in bytes
 
     // spill accounting
     private int maxRec;
@@ -935,6 +1037,12 @@ private long getOutputBytes(List<Statistics> stats) {
 
     int numSpills = 0;
     private int minSpillsForCombine;
+    private int mergeThreads;
+    // the length of the final output if its partitions are not contiguous
+    private long finalOutputLength = -1;
+    // added to the spilled length of a partition for its merged region
+    @VisibleForTesting
+    static long mergeRegionSlack = APPROX_HEADER_LENGTH;
     private IndexedSorter sorter;
     final ReentrantLock spillLock = new ReentrantLock();
     final Condition spillDone = spillLock.newCondition();
@@ -994,9 +1102,22 @@ public void init(MapOutputCollector.Context context
       sorter = ReflectionUtils.newInstance(job.getClass(
                    MRJobConfig.MAP_SORT_CLASS, QuickSort.class,
                    IndexedSorter.class), job);
+      comparator = job.getOutputKeyComparator();
+      if (job.getBoolean(MRJobConfig.MAP_SORT_NORMALIZED_KEY_PREFIX,
+          MRJobConfig.DEFAULT_MAP_SORT_NORMALIZED_KEY_PREFIX)) {
+        prefixComparator = NormalizedKeyComparator.get(comparator);
+        if (prefixComparator != null) {
+          nmeta = NMETA_PREFIX;
+          metasize = nmeta * 4;
+        } else {
+          LOG.info("Comparator " + comparator.getClass().getName() +
+              " has no normalized key prefix, sorting by full keys");
+        }
+      }
+      metaBufferTmp = new byte[metasize];
       // buffers and accounting
       int maxMemUsage = sortmb << 20;
-      maxMemUsage -= maxMemUsage % METASIZE;
+      maxMemUsage -= maxMemUsage % metasize;
       kvbuffer = new byte[maxMemUsage];
       bufvoid = kvbuffer.length;
       kvmeta = ByteBuffer.wrap(kvbuffer)
@@ -1006,7 +1127,7 @@ public void init(MapOutputCollector.Context context
       bufstart = bufend = bufindex = equator;
       kvstart = kvend = kvindex;
 
-      maxRec = kvmeta.capacity() / NMETA;
+      maxRec = kvmeta.capacity() / nmeta;
       softLimit = (int)(kvbuffer.length * spillper);
       bufferRemaining = softLimit;
       LOG.info(JobContext.IO_SORT_MB + ": " + sortmb);
@@ -1015,7 +1136,6 @@ public void init(MapOutputCollector.Context context
       LOG.info("kvstart = " + kvstart + "; length = " + maxRec);
 
       // k/v serialization
-      comparator = job.getOutputKeyComparator();
       keyClass = (Class<K>)job.getMapOutputKeyClass();
       valClass = (Class<V>)job.getMapOutputValueClass();
       serializationFactory = new SerializationFactory(job);
@@ -1055,6 +1175,8 @@ public void init(MapOutputCollector.Context context
       }
       spillInProgress = false;
       minSpillsForCombine = job.getInt(JobContext.MAP_COMBINE_MIN_SPILLS, 3);
+      mergeThreads = job.getInt(MRJobConfig.MAP_SORT_MERGE_THREADS,
+          MRJobConfig.DEFAULT_MAP_SORT_MERGE_THREADS);
       spillThread.setDaemon(true);
       spillThread.setName("SpillThread");
       spillLock.lock();
@@ -1097,7 +1219,7 @@ public synchronized void collect(K key, V value, final int partition
             partition + ")");
       }
       checkSpillException();
-      bufferRemaining -= METASIZE;
+      bufferRemaining -= metasize;
       if (bufferRemaining <= 0) {
         // start spill if the thread is not running and the soft limit has been
         // reached
@@ -1112,13 +1234,13 @@ public synchronized void collect(K key, V value, final int partition
               // created by a reset must be included in "used" bytes
               final int bUsed = distanceTo(kvbidx, bufindex);
               final boolean bufsoftlimit = bUsed >= softLimit;
-              if ((kvbend + METASIZE) % kvbuffer.length !=
-                  equator - (equator % METASIZE)) {
+              if ((kvbend + metasize) % kvbuffer.length !=
+                  equator - (equator % metasize)) {
                 // spill finished, reclaim space
                 resetSpill();
                 bufferRemaining = Math.min(
-                    distanceTo(bufindex, kvbidx) - 2 * METASIZE,
-                    softLimit - bUsed) - METASIZE;
+                    distanceTo(bufindex, kvbidx) - 2 * metasize,
+                    softLimit - bUsed) - metasize;
                 continue;
               } else if (bufsoftlimit && kvindex != kvend) {
                 // spill records, if any collected; check latter, as it may
@@ -1131,9 +1253,9 @@ public synchronized void collect(K key, V value, final int partition
                 // ensure that kvindex >= bufindex
                 final int distkvi = distanceTo(bufindex, kvbidx);
                 final int newPos = (bufindex +
-                  Math.max(2 * METASIZE - 1,
+                  Math.max(2 * metasize - 1,
                           Math.min(distkvi / 2,
-                                   distkvi / (METASIZE + avgRec) * METASIZE)))
+                                   distkvi / (metasize + avgRec) * metasize)))
                   % kvbuffer.length;
                 setEquator(newPos);
                 bufmark = bufindex = newPos;
@@ -1148,7 +1270,7 @@ public synchronized void collect(K key, V value, final int partition
                       // serialization max
                       distanceTo(newPos, serBound),
                       // soft limit
-                      softLimit)) - 2 * METASIZE;
+                      softLimit)) - 2 * metasize;
               }
             }
           } while (false);
@@ -1190,8 +1312,14 @@ public synchronized void collect(K key, V value, final int partition
         kvmeta.put(kvindex + KEYSTART, keystart);
         kvmeta.put(kvindex + VALSTART, valstart);
         kvmeta.put(kvindex + VALLEN, distanceTo(valstart, valend));
+        if (prefixComparator != null) {
+          final long prefix = prefixComparator.normalizedKeyPrefix(
+              kvbuffer, keystart, valstart - keystart);
+          kvmeta.put(kvindex + PREFIXHI, (int) (prefix >>> 32));
+          kvmeta.put(kvindex + PREFIXLO, (int) prefix);
+        }
         // advance kvindex
-        kvindex = (kvindex - NMETA + kvmeta.capacity()) % kvmeta.capacity();
+        kvindex = (kvindex - nmeta + kvmeta.capacity()) % kvmeta.capacity();
       } catch (MapBufferTooSmallException e) {
         LOG.info("Record too large for in-memory buffer: " + e.getMessage());
         spillSingleRecord(key, value, partition);
@@ -1212,10 +1340,10 @@ private TaskAttemptID getTaskID() {
     private void setEquator(int pos) {
       equator = pos;
       // set index prior to first entry, aligned at meta boundary
-      final int aligned = pos - (pos % METASIZE);
+      final int aligned = pos - (pos % metasize);
       // Cast one of the operands to long to avoid integer overflow
       kvindex = (int)
-        (((long)aligned - METASIZE + kvbuffer.length) % kvbuffer.length) / 4;
+        (((long)aligned - metasize + kvbuffer.length) % kvbuffer.length) / 4;
       LOG.info("(EQUATOR) " + pos + " kvi " + kvindex +
           "(" + (kvindex * 4) + ")");
     }
@@ -1228,11 +1356,11 @@ private void setEquator(int pos) {
     private void resetSpill() {
       final int e = equator;
       bufstart = bufend = e;
-      final int aligned = e - (e % METASIZE);
+      final int aligned = e - (e % metasize);
       // set start/end to point to first meta record
       // Cast one of the operands to long to avoid integer overflow
       kvstart = kvend = (int)
-        (((long)aligned - METASIZE + kvbuffer.length) % kvbuffer.length) / 4;
+        (((long)aligned - metasize + kvbuffer.length) % kvbuffer.length) / 4;
       LOG.info("(RESET) equator " + e + " kv " + kvstart + "(" +
         (kvstart * 4) + ")" + " kvi " + kvindex + "(" + (kvindex * 4) + ")");
     }
@@ -1261,12 +1389,13 @@ int distanceTo(final int i, final int j, final int mod) {
      * kvmeta buffer.
      */
     int offsetFor(int metapos) {
-      return metapos * NMETA;
+      return metapos * nmeta;
     }
 
     /**
      * Compare logical range, st i, j MOD offset capacity.
-     * Compare by partition, then by key.
+     * Compare by partition, then by key. If the key prefixes are stored with
+     * the metadata, the keys are only compared when the prefixes are equal.
      * @see IndexedSortable#compare
      */
     @Override
@@ -1279,6 +1408,18 @@ public int compare(final int mi, final int mj) {
       if (kvip != kvjp) {
         return kvip - kvjp;
       }
+      // sort by key prefix
+      if (prefixComparator != null) {
+        int cmp = Integer.compareUnsigned(kvmeta.get(kvi + PREFIXHI),
+            kvmeta.get(kvj + PREFIXHI));
+        if (cmp == 0) {
+          cmp = Integer.compareUnsigned(kvmeta.get(kvi + PREFIXLO),
+              kvmeta.get(kvj + PREFIXLO));
+        }
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
       // sort by key
       return comparator.compare(kvbuffer,
           kvmeta.get(kvi + KEYSTART),
@@ -1288,18 +1429,18 @@ public int compare(final int mi, final int mj) {
           kvmeta.get(kvj + VALSTART) - kvmeta.get(kvj + KEYSTART));
     }
 
-    final byte META_BUFFER_TMP[] = new byte[METASIZE];
+    private byte[] metaBufferTmp;
     /**
      * Swap metadata for items i, j
      * @see IndexedSortable#swap
      */
     @Override
     public void swap(final int mi, final int mj) {
-      int iOff = (mi % maxRec) * METASIZE;
-      int jOff = (mj % maxRec) * METASIZE;
-      System.arraycopy(kvbuffer, iOff, META_BUFFER_TMP, 0, METASIZE);
-      System.arraycopy(kvbuffer, jOff, kvbuffer, iOff, METASIZE);
-      System.arraycopy(META_BUFFER_TMP, 0, kvbuffer, jOff, METASIZE);
+      int iOff = (mi % maxRec) * metasize;
+      int jOff = (mj % maxRec) * metasize;
+      System.arraycopy(kvbuffer, iOff, metaBufferTmp, 0, metasize);
+      System.arraycopy(kvbuffer, jOff, kvbuffer, iOff, metasize);
+      System.arraycopy(metaBufferTmp, 0, kvbuffer, jOff, metasize);
     }
 
     /**
@@ -1375,7 +1516,7 @@ public void write(int v)
       @Override
       public void write(byte b[], int off, int len)
           throws IOException {
-        // must always verify the invariant that at least METASIZE bytes are
+        // must always verify the invariant that at least metasize bytes are
         // available beyond kvindex, even when len == 0
         bufferRemaining -= len;
         if (bufferRemaining <= 0) {
@@ -1403,19 +1544,19 @@ public void write(byte b[], int off, int len)
               // either the metadata or the current write. Note that collect
               // ensures its metadata requirement with a zero-length write
               blockwrite = distkvi <= distkve
-                ? distkvi <= len + 2 * METASIZE
-                : distkve <= len || distanceTo(bufend, kvbidx) < 2 * METASIZE;
+                ? distkvi <= len + 2 * metasize
+                : distkve <= len || distanceTo(bufend, kvbidx) < 2 * metasize;
 
               if (!spillInProgress) {
                 if (blockwrite) {
-                  if ((kvbend + METASIZE) % kvbuffer.length !=
-                      equator - (equator % METASIZE)) {
+                  if ((kvbend + metasize) % kvbuffer.length !=
+                      equator - (equator % metasize)) {
                     // spill finished, reclaim space
                     // need to use meta exclusively; zero-len rec & 100% spill
                     // pcnt would fail
                     resetSpill(); // resetSpill doesn't move bufindex, kvindex
                     bufferRemaining = Math.min(
-                        distkvi - 2 * METASIZE,
+                        distkvi - 2 * metasize,
                         softLimit - distanceTo(kvbidx, bufindex)) - len;
                     continue;
                   }
@@ -1487,13 +1628,13 @@ public void flush() throws IOException, ClassNotFoundException,
         checkSpillException();
 
         final int kvbend = 4 * kvend;
-        if ((kvbend + METASIZE) % kvbuffer.length !=
-            equator - (equator % METASIZE)) {
+        if ((kvbend + metasize) % kvbuffer.length !=
+            equator - (equator % metasize)) {
           // spill finished
           resetSpill();
         }
         if (kvindex != kvend) {
-          kvend = (kvindex + NMETA) % kvmeta.capacity();
+          kvend = (kvindex + nmeta) % kvmeta.capacity();
           bufend = bufmark;
           LOG.info("Spilling map output");
           LOG.info("bufstart = " + bufstart + "; bufend = " + bufmark +
@@ -1526,7 +1667,8 @@ public void flush() throws IOException, ClassNotFoundException,
       kvbuffer = null;
       mergeParts();
       Path outputPath = mapOutputFile.getOutputFile();
-      fileOutputByteCounter.increment(rfs.getFileStatus(outputPath).getLen());
+      fileOutputByteCounter.increment(finalOutputLength >= 0
+          ? finalOutputLength : rfs.getFileStatus(outputPath).getLen());
       // If necessary, make outputs permissive enough for shuffling.
       if (!SHUFFLE_OUTPUT_PERM.equals(
           SHUFFLE_OUTPUT_PERM.applyUMask(FsPermission.getUMask(job)))) {
@@ -1589,7 +1731,7 @@ private void checkSpillException() throws IOException {
 
     private void startSpill() {
       assert !spillInProgress;
-      kvend = (kvindex + NMETA) % kvmeta.capacity();
+      kvend = (kvindex + nmeta) % kvmeta.capacity();
       bufend = bufmark;
       spillInProgress = true;
       LOG.info("Spilling map output");
@@ -1617,11 +1759,11 @@ private void sortAndSpill() throws IOException, ClassNotFoundException,
             mapOutputFile.getSpillFileForWrite(numSpills, size);
         out = rfs.create(filename);
 
-        final int mstart = kvend / NMETA;
+        final int mstart = kvend / nmeta;
         final int mend = 1 + // kvend is a valid record
           (kvstart >= kvend
           ? kvstart
-          : kvmeta.capacity() + kvstart) / NMETA;
+          : kvmeta.capacity() + kvstart) / nmeta;
         sorter.sort(MapOutputBuffer.this, mstart, mend, reporter);
         int spindex = mstart;
         final IndexRecord rec = new IndexRecord();
@@ -1917,6 +2059,12 @@ private void mergeParts() throws IOException, InterruptedException,
         sortPhase.complete();
         return;
       }
+      if (mergeThreads > 1 && partitions > 1 &&
+          (combinerRunner == null || numSpills < minSpillsForCombine)) {
+        finalOut.close();
+        mergePartsInParallel(filename, finalOutputFile, finalIndexFile);
+        return;
+      }
       {
         sortPhase.addPhases(partitions); // Divide sort phase into sub-phases
         
@@ -1994,6 +2142,152 @@ private void mergeParts() throws IOException, InterruptedException,
       }
     }
     
+    /**
+     * Merge the partitions of the spills concurrently. Each partition is
+     * written to its own region of the final output, which is as long as the
+     * spilled parts of the partition plus the header length estimate. A
+     * merged partition without a combiner is never longer than its parts
+     * unless it is compressed; a partition which does not fit is merged again
+     * at the end of the output once the others are done.
+     */
+    private void mergePartsInParallel(final Path[] filename,
+        Path finalOutputFile, Path finalIndexFile)
+        throws IOException, InterruptedException {
+      final long[] regionStart = new long[partitions];
+      final long[] regionLength = new long[partitions];
+      long end = 0;
+      for (int parts = 0; parts < partitions; parts++) {
+        long length = mergeRegionSlack;
+        for (int i = 0; i < numSpills; i++) {
+          length += indexCacheList.get(i).getIndex(parts).partLength;
+        }
+        regionStart[parts] = end;
+        regionLength[parts] = length;
+        end += length;
+      }
+
+      final SpillRecord spillRec = new SpillRecord(partitions);
+      final AtomicInteger merged = new AtomicInteger();
+      List<Integer> overflowed = new ArrayList<Integer>();
+      ExecutorService pool = Executors.newFixedThreadPool(
+          Math.min(mergeThreads, partitions), new ThreadFactoryBuilder()
+              .setNameFormat("MergeParts #%d").setDaemon(true).build());
+      File file = ((RawLocalFileSystem) rfs).pathToFile(finalOutputFile);
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        final FileChannel channel = raf.getChannel();
+        List<Future<IndexRecord>> futures =
+            new ArrayList<Future<IndexRecord>>(partitions);
+        for (int p = 0; p < partitions; p++) {
+          final int parts = p;
+          futures.add(pool.submit(() -> {
+            IndexRecord rec = mergePartition(channel, filename, parts,
+                regionStart[parts], regionLength[parts]);
+            sortPhase.set((float) merged.incrementAndGet() / partitions);
+            return rec;
+          }));
+        }
+        for (int parts = 0; parts < partitions; parts++) {
+          IndexRecord rec;
+          try {
+            rec = futures.get(parts).get();
+          } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+              throw (IOException) cause;
+            }
+            throw new IOException("Merge of partition " + parts + " failed",
+                cause);
+          }
+          if (rec == null) {
+            overflowed.add(parts);
+          } else {
+            spillRec.putIndex(rec, parts);
+          }
+        }
+        for (int parts : overflowed) {
+          LOG.info("Partition " + parts + " did not fit in its region of " +
+              regionLength[parts] + " bytes, merging it again at " + end);
+          IndexRecord rec = mergePartition(channel, filename, parts, end,
+              Long.MAX_VALUE - end);
+          spillRec.putIndex(rec, parts);
+          end += rec.partLength;
+        }
+      } finally {
+        pool.shutdownNow();
+      }
+      long length = 0;
+      for (int parts = 0; parts < partitions; parts++) {
+        length += spillRec.getIndex(parts).partLength;
+      }
+      finalOutputLength = length;
+      sortPhase.complete();
+      spillRec.writeToFile(finalIndexFile, job);
+      for (int i = 0; i < numSpills; i++) {
+        rfs.delete(filename[i], true);
+      }
+    }
+
+    /**
+     * Merge a partition of the spills into a region of the final output.
+     *
+     * @return the index of the merged partition, or null if it did not fit.
+     */
+    private IndexRecord mergePartition(FileChannel channel, Path[] filename,
+        int parts, long start, long length) throws IOException {
+      final TaskAttemptID mapId = getTaskID();
+      List<Segment<K, V>> segmentList =
+          new ArrayList<Segment<K, V>>(numSpills);
+      for (int i = 0; i < numSpills; i++) {
+        IndexRecord indexRecord = indexCacheList.get(i).getIndex(parts);
+        segmentList.add(new Segment<K, V>(job, rfs, filename[i],
+            indexRecord.startOffset, indexRecord.partLength, codec, true));
+      }
+      int mergeFactor = job.getInt(MRJobConfig.IO_SORT_FACTOR,
+          MRJobConfig.DEFAULT_IO_SORT_FACTOR);
+      boolean sortSegments = segmentList.size() > mergeFactor;
+      // counted once the partition is known to fit
+      Counters.Counter spilled = new Counters.Counter();
+      // intermediate merges of different partitions need their own files
+      @SuppressWarnings("unchecked")
+      RawKeyValueIterator kvIter = Merger.merge(job, rfs,
+          keyClass, valClass, codec, segmentList, mergeFactor,
+          new Path(mapId.toString(), "partition_" + parts),
+          job.getOutputKeyComparator(), reporter, sortSegments,
+          null, spilled, null, TaskType.MAP);
+
+      RegionOutputStream region =
+          new RegionOutputStream(channel, start, length);
+      FSDataOutputStream out = new FSDataOutputStream(
+          new BufferedOutputStream(region, 64 * 1024), null, start);
+      Writer<K, V> writer = null;
+      boolean closed = false;
+      try {
+        FSDataOutputStream partitionOut =
+            CryptoUtils.wrapIfNecessary(job, out, false);
+        writer = new Writer<K, V>(job, partitionOut, keyClass, valClass,
+            codec, spilled);
+        Merger.writeFile(kvIter, writer, reporter, job);
+        writer.close();
+        closed = true;
+        if (partitionOut != out) {
+          partitionOut.close();
+        }
+        out.close();
+      } catch (RegionOverflowException e) {
+        return null;
+      } finally {
+        if (writer != null && !closed) {
+          // returns the compressor, the region discards what is left
+          writer.close();
+        }
+        kvIter.close();
+      }
+      spilledRecordsCounter.increment(spilled.getValue());
+      return new IndexRecord(start,
+          writer.getRawLength() + CryptoUtils.cryptoPadding(job),
+          writer.getCompressedLength() + CryptoUtils.cryptoPadding(job));
+    }
+
     /**
      * Rename srcPath to dstPath on the same volume. This is the same
      * as RawLocalFileSystem's rename method, except that it will not
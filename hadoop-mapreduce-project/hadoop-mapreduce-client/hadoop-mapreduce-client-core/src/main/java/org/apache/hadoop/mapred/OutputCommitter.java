@@ -236,6 +236,29 @@ public boolean isCommitJobRepeatable(org.apache.hadoop.mapreduce.JobContext
     return isCommitJobRepeatable((JobContext) jobContext);
   }
 
+  /**
+   * Get the counters of the last job commit, such as the time spent in its
+   * phases. The framework adds them to the
+   * {@link org.apache.hadoop.mapreduce.JobCounter}s of the job.
+   *
+   * By default, there are none.
+   *
+   * @param jobContext
+   *          Context of the job whose output is being written.
+   * @return the counters of the job commit, or null if there are none.
+   * @throws IOException
+   */
+  public org.apache.hadoop.mapreduce.Counters getJobCommitCounters(
+      JobContext jobContext) throws IOException {
+    return null;
+  }
+
+  @Override
+  public org.apache.hadoop.mapreduce.Counters getJobCommitCounters(
+      org.apache.hadoop.mapreduce.JobContext jobContext) throws IOException {
+    return getJobCommitCounters((JobContext) jobContext);
+  }
+
   /**
    * Recover the task output. 
    * 
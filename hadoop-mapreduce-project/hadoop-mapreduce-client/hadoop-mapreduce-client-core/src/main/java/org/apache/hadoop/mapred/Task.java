@@ -160,6 +160,7 @@ static synchronized String getOutputName(int partition) {
   private int partition;                          // id within job
   private byte[] encryptedSpillKey = new byte[] {0};  // Key Used to encrypt
   // intermediate spills
+  private int shufflePort = -1;                   // port of the shuffle handler
   TaskStatus taskStatus;                          // current status of the task
   protected JobStatus.State jobRunStateForCleanup;
   protected boolean jobCleanup = false;
@@ -292,6 +293,23 @@ public void setEncryptedSpillKey(byte[] encryptedSpillKey) {
     }
   }
 
+  /**
+   * Get the port of the shuffle handler on the node of the task, as reported
+   * by the NodeManager when the container was launched.
+   * @return the port, or -1 if it is not known
+   */
+  public int getShufflePort() {
+    return shufflePort;
+  }
+
+  /**
+   * Set the port of the shuffle handler on the node of the task
+   * @param shufflePort the port
+   */
+  public void setShufflePort(int shufflePort) {
+    this.shufflePort = shufflePort;
+  }
+
   /**
    * Get the job token secret
    * @return the token secret
@@ -525,6 +543,7 @@ public void write(DataOutput out) throws IOException {
     out.writeInt(encryptedSpillKey.length);
     extraData.write(out);
     out.write(encryptedSpillKey);
+    out.writeInt(shufflePort);
   }
   
   public void readFields(DataInput in) throws IOException {
@@ -553,6 +572,7 @@ public void readFields(DataInput in) throws IOException {
     encryptedSpillKey = new byte[len];
     extraData.readFields(in);
     in.readFully(encryptedSpillKey);
+    shufflePort = in.readInt();
   }
 
   @Override
@@ -593,6 +613,7 @@ public void initialize(JobConf job, JobID id,
                          boolean useNewApi) throws IOException, 
                                                    ClassNotFoundException,
                                                    InterruptedException {
+    initFileSystemStatistics();
     jobContext = new JobContextImpl(job, id, reporter);
     taskContext = new TaskAttemptContextImpl(job, taskId, reporter);
     if (getState() == TaskStatus.State.UNASSIGNED) {
@@ -1129,11 +1150,36 @@ class FileSystemStatisticUpdater {
         readOpsCounter, largeReadOpsCounter, writeOpsCounter,
         readBytesEcCounter;
     private String scheme;
+    // the values of the statistics when the task started, the statistics
+    // are shared by all the tasks that run in the JVM
+    private long initReadBytes, initWriteBytes, initReadOps,
+        initLargeReadOps, initWriteOps, initReadBytesEC;
     FileSystemStatisticUpdater(List<FileSystem.Statistics> stats, String scheme) {
       this.stats = stats;
       this.scheme = scheme;
     }
 
+    /**
+     * Record the current values of the statistics, the counters only
+     * report the use of the file system after this call.
+     */
+    void initStatistics() {
+      initReadBytes = 0;
+      initWriteBytes = 0;
+      initReadOps = 0;
+      initLargeReadOps = 0;
+      initWriteOps = 0;
+      initReadBytesEC = 0;
+      for (FileSystem.Statistics stat: stats) {
+        initReadBytes += stat.getBytesRead();
+        initWriteBytes += stat.getBytesWritten();
+        initReadOps += stat.getReadOps();
+        initLargeReadOps += stat.getLargeReadOps();
+        initWriteOps += stat.getWriteOps();
+        initReadBytesEC += stat.getBytesReadErasureCoded();
+      }
+    }
+
     void updateCounters() {
       if (readBytesCounter == null) {
         readBytesCounter = counters.findCounter(scheme,
@@ -1174,13 +1220,13 @@ void updateCounters() {
         writeOps = writeOps + stat.getWriteOps();
         readBytesEC = readBytesEC + stat.getBytesReadErasureCoded();
       }
-      readBytesCounter.setValue(readBytes);
-      writeBytesCounter.setValue(writeBytes);
-      readOpsCounter.setValue(readOps);
-      largeReadOpsCounter.setValue(largeReadOps);
-      writeOpsCounter.setValue(writeOps);
+      readBytesCounter.setValue(readBytes - initReadBytes);
+      writeBytesCounter.setValue(writeBytes - initWriteBytes);
+      readOpsCounter.setValue(readOps - initReadOps);
+      largeReadOpsCounter.setValue(largeReadOps - initLargeReadOps);
+      writeOpsCounter.setValue(writeOps - initWriteOps);
       if (readBytesEcCounter != null) {
-        readBytesEcCounter.setValue(readBytesEC);
+        readBytesEcCounter.setValue(readBytesEC - initReadBytesEC);
       }
     }
   }
@@ -1191,7 +1237,8 @@ void updateCounters() {
   private Map<String, FileSystemStatisticUpdater> statisticUpdaters =
      new HashMap<String, FileSystemStatisticUpdater>();
   
-  private synchronized void updateCounters() {
+  private static Map<String, List<FileSystem.Statistics>>
+      getStatisticsByScheme() {
     Map<String, List<FileSystem.Statistics>> map = new 
         HashMap<String, List<FileSystem.Statistics>>();
     for(Statistics stat: FileSystem.getAllStatistics()) {
@@ -1205,6 +1252,27 @@ private synchronized void updateCounters() {
         map.put(uriScheme, list);
       }
     }
+    return map;
+  }
+
+  /**
+   * Start the file system counters of the task from the current statistics
+   * of the file systems. A reused JVM has statistics from its earlier tasks.
+   */
+  private synchronized void initFileSystemStatistics() {
+    statisticUpdaters.clear();
+    for (Map.Entry<String, List<FileSystem.Statistics>> entry:
+        getStatisticsByScheme().entrySet()) {
+      FileSystemStatisticUpdater updater =
+          new FileSystemStatisticUpdater(entry.getValue(), entry.getKey());
+      updater.initStatistics();
+      statisticUpdaters.put(entry.getKey(), updater);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized void updateCounters() {
+    Map<String, List<FileSystem.Statistics>> map = getStatisticsByScheme();
     for (Map.Entry<String, List<FileSystem.Statistics>> entry: map.entrySet()) {
       FileSystemStatisticUpdater updater = statisticUpdaters.get(entry.getKey());
       if(updater==null) {//new FileSystem has been found in the cache
@@ -1542,6 +1610,13 @@ public Configuration getConf() {
     return this.conf;
   }
 
+  /**
+   * @return whether the task runs in the application master of an uber job.
+   */
+  boolean isUberized() {
+    return uberized;
+  }
+
   public MapOutputFile getMapOutputFile() {
     return mapOutputFile;
   }
@@ -55,5 +55,9 @@ public enum JobCounter {
   VCORES_MILLIS_MAPS,
   VCORES_MILLIS_REDUCES,
   MB_MILLIS_MAPS,
-  MB_MILLIS_REDUCES
+  MB_MILLIS_REDUCES,
+  JOB_COMMIT_FILES,
+  JOB_COMMIT_LIST_MILLIS,
+  JOB_COMMIT_RENAME_MILLIS,
+  JOB_COMMIT_CLEANUP_MILLIS
 }
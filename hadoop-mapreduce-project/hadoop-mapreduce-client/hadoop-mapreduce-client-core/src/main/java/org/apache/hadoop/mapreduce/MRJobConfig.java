@@ -117,6 +117,18 @@ public interface MRJobConfig {
 
   public static final String JVM_NUMTASKS_TORUN = "mapreduce.job.jvm.numtasks";
 
+  public static final int DEFAULT_JVM_NUMTASKS_TORUN = 1;
+
+  /**
+   * Whether the task JVMs run up to {@link #JVM_NUMTASKS_TORUN} tasks. The
+   * number of tasks has no effect without this, it is also set by jobs that
+   * still use the MRv1 name of the property.
+   */
+  public static final String JVM_REUSE_ENABLED =
+      "mapreduce.job.jvm.reuse.enabled";
+
+  public static final boolean DEFAULT_JVM_REUSE_ENABLED = false;
+
   public static final String SPLIT_FILE = "mapreduce.job.splitfile";
 
   public static final String SPLIT_METAINFO_MAXSIZE = "mapreduce.job.split.metainfo.maxsize";
@@ -363,6 +375,14 @@ public interface MRJobConfig {
 
   public static final int TASK_EXIT_TIMEOUT_CHECK_INTERVAL_MS_DEFAULT = 20 * 1000;
 
+  /**
+   * Whether a task freezes its configuration once it is localized, so that
+   * the task reads it without locking, see Configuration#freeze().
+   */
+  public static final String TASK_CONF_FREEZE = "mapreduce.task.conf.freeze";
+
+  public static final boolean DEFAULT_TASK_CONF_FREEZE = true;
+
   public static final String TASK_ID = "mapreduce.task.id";
 
   public static final String TASK_OUTPUT_DIR = "mapreduce.task.output.dir";
@@ -371,6 +391,26 @@ public interface MRJobConfig {
 
   public static final String MAP_SORT_SPILL_PERCENT = "mapreduce.map.sort.spill.percent";
 
+  /**
+   * Whether the map output buffer stores a normalized prefix of every key
+   * with its metadata, so that sorting a spill only compares the keys with
+   * equal prefixes. Only used if the output key comparator is a
+   * {@link org.apache.hadoop.io.NormalizedKeyComparator}.
+   */
+  public static final String MAP_SORT_NORMALIZED_KEY_PREFIX =
+      "mapreduce.map.sort.normalized-key-prefix";
+
+  public static final boolean DEFAULT_MAP_SORT_NORMALIZED_KEY_PREFIX = false;
+
+  /**
+   * The number of threads merging the partitions of the spills of a map
+   * into its final output.
+   */
+  public static final String MAP_SORT_MERGE_THREADS =
+      "mapreduce.map.sort.merge.threads";
+
+  public static final int DEFAULT_MAP_SORT_MERGE_THREADS = 1;
+
   public static final String MAP_INPUT_FILE = "mapreduce.map.input.file";
 
   public static final String MAP_INPUT_PATH = "mapreduce.map.input.length";
@@ -499,6 +539,20 @@ public interface MRJobConfig {
   public static final String SHUFFLE_MEMORY_LIMIT_PERCENT
     = "mapreduce.reduce.shuffle.memory.limit.percent";
 
+  /**
+   * Whether the reduce shuffles map outputs into direct memory instead of the
+   * heap. The in-memory limit is then {@link #SHUFFLE_OFFHEAP_MEMORY_MB}
+   * instead of {@link #SHUFFLE_INPUT_BUFFER_PERCENT} of the heap.
+   */
+  public static final String SHUFFLE_OFFHEAP_ENABLED =
+      "mapreduce.reduce.shuffle.offheap.enabled";
+  public static final boolean DEFAULT_SHUFFLE_OFFHEAP_ENABLED = false;
+
+  /** The direct memory used for map outputs by an off-heap shuffle. */
+  public static final String SHUFFLE_OFFHEAP_MEMORY_MB =
+      "mapreduce.reduce.shuffle.offheap.memory.mb";
+  public static final int DEFAULT_SHUFFLE_OFFHEAP_MEMORY_MB = 1024;
+
   public static final String SHUFFLE_MERGE_PERCENT = "mapreduce.reduce.shuffle.merge.percent";
   public static final float DEFAULT_SHUFFLE_MERGE_PERCENT = 0.66f;
 
@@ -545,6 +599,16 @@ public interface MRJobConfig {
   public static final String MAX_SHUFFLE_FETCH_HOST_FAILURES = "mapreduce.reduce.shuffle.max-host-failures";
   public static final int DEFAULT_MAX_SHUFFLE_FETCH_HOST_FAILURES = 5;
 
+  /**
+   * Whether maps push their output to the shuffle handler of their node,
+   * which merges the outputs of all maps of the node per reduce. Reduces then
+   * fetch the merged outputs and fall back to the outputs of the maps for
+   * the maps whose push failed.
+   */
+  public static final String SHUFFLE_PUSH_ENABLED =
+      "mapreduce.shuffle.push.enabled";
+  public static final boolean DEFAULT_SHUFFLE_PUSH_ENABLED = false;
+
   public static final String REDUCE_SKIP_INCR_PROC_COUNT = "mapreduce.reduce.skip.proc-count.auto-incr";
 
   public static final String REDUCE_SKIP_MAXGROUPS = "mapreduce.reduce.skip.maxgroups";
@@ -553,6 +617,16 @@ public interface MRJobConfig {
 
   public static final String REDUCE_MEMTOMEM_ENABLED = "mapreduce.reduce.merge.memtomem.enabled";
 
+  /**
+   * Whether the reduce combines map outputs while they are shuffled: the
+   * combiner of the job then also runs in merges of on-disk map outputs, and
+   * merges start as soon as enough map outputs have arrived.
+   */
+  public static final String REDUCE_MERGE_COMBINE_ENABLED =
+      "mapreduce.reduce.merge.combine.enabled";
+
+  public static final boolean DEFAULT_REDUCE_MERGE_COMBINE_ENABLED = false;
+
   public static final String COMBINE_RECORDS_BEFORE_PROGRESS = "mapreduce.task.combine.progress.records";
 
   public static final String JOB_NAMENODES = "mapreduce.job.hdfs-servers";
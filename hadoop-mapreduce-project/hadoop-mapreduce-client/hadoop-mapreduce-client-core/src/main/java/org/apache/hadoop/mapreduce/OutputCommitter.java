@@ -215,6 +215,23 @@ public boolean isCommitJobRepeatable(JobContext jobContext)
     return false;
   }
 
+  /**
+   * Get the counters of the last job commit, such as the time spent in its
+   * phases. The framework adds them to the {@link JobCounter}s of the job.
+   *
+   * By default, there are none.
+   *
+   * @param jobContext
+   *          Context of the job whose output is being written.
+   * @return the {@link JobCounter}s of the job commit, or null if there are
+   *         none.
+   * @throws IOException
+   */
+  public Counters getJobCommitCounters(JobContext jobContext)
+      throws IOException {
+    return null;
+  }
+
   /**
    * Is task output recovery supported for restarting jobs?
    * 
@@ -19,8 +19,11 @@
 package org.apache.hadoop.mapreduce.lib.input;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -39,7 +42,11 @@
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.apache.hadoop.mapreduce.security.TokenCache;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.StopWatch;
 import org.apache.hadoop.util.StringUtils;
@@ -81,6 +88,12 @@
   public static final String LIST_STATUS_NUM_THREADS =
       "mapreduce.input.fileinputformat.list-status.num-threads";
   public static final int DEFAULT_LIST_STATUS_NUM_THREADS = 1;
+  public static final String SPLIT_ADAPTIVE =
+      "mapreduce.input.fileinputformat.split.adaptive";
+  public static final boolean DEFAULT_SPLIT_ADAPTIVE = false;
+  public static final String SPLIT_ADAPTIVE_SAMPLE_SIZE =
+      "mapreduce.input.fileinputformat.split.adaptive.sample-size";
+  public static final long DEFAULT_SPLIT_ADAPTIVE_SAMPLE_SIZE = 64 * 1024;
 
   private static final Logger LOG =
       LoggerFactory.getLogger(FileInputFormat.class);
@@ -401,6 +414,11 @@ public List<InputSplit> getSplits(JobContext job) throws IOException {
 
     boolean ignoreDirs = !getInputDirRecursive(job)
       && job.getConfiguration().getBoolean(INPUT_DIR_NONRECURSIVE_IGNORE_SUBDIRS, false);
+    Map<Path, Double> splitScales = null;
+    if (job.getConfiguration().getBoolean(SPLIT_ADAPTIVE,
+        DEFAULT_SPLIT_ADAPTIVE)) {
+      splitScales = getSplitScales(job, files, ignoreDirs, minSize, maxSize);
+    }
     for (FileStatus file: files) {
       if (ignoreDirs && file.isDirectory()) {
         continue;
@@ -418,6 +436,11 @@ public List<InputSplit> getSplits(JobContext job) throws IOException {
         if (isSplitable(job, path)) {
           long blockSize = file.getBlockSize();
           long splitSize = computeSplitSize(blockSize, minSize, maxSize);
+          Double scale = splitScales == null ? null : splitScales.get(path);
+          if (scale != null) {
+            splitSize = Math.max((long) (splitSize * scale),
+                Math.max(minSize, getSplitSampleSize(job)));
+          }
 
           long bytesRemaining = length;
           while (((double) bytesRemaining)/splitSize > SPLIT_SLOP) {
@@ -460,6 +483,99 @@ public List<InputSplit> getSplits(JobContext job) throws IOException {
     return splits;
   }
 
+  private static long getSplitSampleSize(JobContext job) {
+    return job.getConfiguration().getLong(SPLIT_ADAPTIVE_SAMPLE_SIZE,
+        DEFAULT_SPLIT_ADAPTIVE_SAMPLE_SIZE);
+  }
+
+  /**
+   * Compute by how much the splits of each file are shrunk so that their
+   * number of records matches that of an average split. The record density
+   * of every splittable file large enough to be split further is sampled
+   * from its first bytes, and the splits of a file denser than the average
+   * of the sampled files are shrunk in proportion. Sparser files keep their
+   * split size, so that no split grows beyond its blocks.
+   *
+   * @return the scale of the split size by file, files without a scale keep
+   *         their split size.
+   */
+  private Map<Path, Double> getSplitScales(JobContext job,
+      List<FileStatus> files, boolean ignoreDirs, long minSize, long maxSize)
+      throws IOException {
+    long sampleSize = getSplitSampleSize(job);
+    Map<Path, Double> densities = new HashMap<Path, Double>();
+    long totalRecords = 0;
+    long totalBytes = 0;
+    for (FileStatus file : files) {
+      if (ignoreDirs && file.isDirectory()) {
+        continue;
+      }
+      Path path = file.getPath();
+      long length = file.getLen();
+      long splitSize = computeSplitSize(file.getBlockSize(), minSize,
+          maxSize);
+      if (length <= Math.max(minSize, sampleSize) ||
+          splitSize <= Math.max(minSize, sampleSize) ||
+          !isSplitable(job, path)) {
+        continue;
+      }
+      long sampled = Math.min(length, sampleSize);
+      long records = sampleRecords(job, file, sampled);
+      if (records <= 0) {
+        continue;
+      }
+      densities.put(path, (double) records / sampled);
+      totalRecords += records;
+      totalBytes += sampled;
+    }
+    Map<Path, Double> scales = new HashMap<Path, Double>();
+    if (totalBytes == 0) {
+      return scales;
+    }
+    double averageDensity = (double) totalRecords / totalBytes;
+    for (Map.Entry<Path, Double> density : densities.entrySet()) {
+      double scale = averageDensity / density.getValue();
+      if (scale < 1.0) {
+        LOG.debug("Shrinking the splits of {} to {} of their size",
+            density.getKey(), scale);
+        scales.put(density.getKey(), scale);
+      }
+    }
+    return scales;
+  }
+
+  /**
+   * Count the records starting in the first bytes of a file, with the record
+   * reader of this input format. Used to size the splits of the file when
+   * {@link #SPLIT_ADAPTIVE} is set; subclasses with a cheaper way to count
+   * records can override it.
+   *
+   * @param job the job context
+   * @param file the file to sample
+   * @param length the number of bytes to sample
+   * @return the number of records, or -1 if they could not be counted.
+   * @throws IOException if the file could not be read
+   */
+  protected long sampleRecords(JobContext job, FileStatus file, long length)
+      throws IOException {
+    TaskAttemptContext context = new TaskAttemptContextImpl(
+        job.getConfiguration(), new TaskAttemptID());
+    FileSplit split = new FileSplit(file.getPath(), 0, length, null);
+    long records = 0;
+    try (RecordReader<K, V> reader = createRecordReader(split, context)) {
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        records++;
+      }
+    } catch (InterruptedException e) {
+      throw (IOException) new InterruptedIOException(
+          "Interrupted while sampling " + file.getPath()).initCause(e);
+    } catch (UnsupportedOperationException e) {
+      return -1;
+    }
+    return records;
+  }
+
   protected long computeSplitSize(long blockSize, long minSize,
                                   long maxSize) {
     return Math.max(minSize, Math.min(maxSize, blockSize));
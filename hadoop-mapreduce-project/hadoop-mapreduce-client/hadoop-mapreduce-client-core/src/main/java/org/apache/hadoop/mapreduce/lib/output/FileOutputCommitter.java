@@ -18,8 +18,25 @@
 
 package org.apache.hadoop.mapreduce.lib.output;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceAudience.Private;
@@ -29,15 +46,21 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobCounter;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.concurrent.HadoopExecutors;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -98,11 +121,27 @@ public class FileOutputCommitter extends PathOutputCommitter {
   public static final boolean
       FILEOUTPUTCOMMITTER_TASK_CLEANUP_ENABLED_DEFAULT = false;
 
+  // Number of threads commitJob moves the task outputs and deletes the job
+  // temporary directory with. With more than one thread, commitJob writes a
+  // manifest of the task outputs before moving them, so that a commit
+  // interrupted by an AM failure can be repeated by the next AM attempt.
+  // Note: the task outputs are only moved by commitJob if
+  // mapreduce.fileoutputcommitter.algorithm.version=1
+  public static final String FILEOUTPUTCOMMITTER_COMMIT_THREADS =
+      "mapreduce.fileoutputcommitter.commit.threads";
+  public static final int FILEOUTPUTCOMMITTER_COMMIT_THREADS_DEFAULT = 1;
+
+  /** Name of the manifest of a job commit, in the pending directory. */
+  @VisibleForTesting
+  static final String COMMIT_MANIFEST_NAME = "_manifest";
+
   private Path outputPath = null;
   private Path workPath = null;
   private final int algorithmVersion;
   private final boolean skipCleanup;
   private final boolean ignoreCleanupFailures;
+  private final int commitThreads;
+  private Counters commitCounters = null;
 
   /**
    * Create a file output committer
@@ -156,6 +195,10 @@ public FileOutputCommitter(Path outputPath,
         "output directory:" + skipCleanup + ", ignore cleanup failures: " +
         ignoreCleanupFailures);
 
+    commitThreads = Math.max(1, conf.getInt(
+        FILEOUTPUTCOMMITTER_COMMIT_THREADS,
+        FILEOUTPUTCOMMITTER_COMMIT_THREADS_DEFAULT));
+
     if (outputPath != null) {
       FileSystem fs = outputPath.getFileSystem(context.getConfiguration());
       this.outputPath = fs.makeQualified(outputPath);
@@ -397,10 +440,18 @@ protected void commitJobInternal(JobContext context) throws IOException {
     if (hasOutputPath()) {
       Path finalOutput = getOutputPath();
       FileSystem fs = finalOutput.getFileSystem(context.getConfiguration());
+      commitCounters = new Counters();
 
       if (algorithmVersion == 1) {
-        for (FileStatus stat: getAllCommittedTaskPaths(context)) {
-          mergePaths(fs, stat, finalOutput);
+        if (commitThreads > 1) {
+          commitTaskOutputs(context, fs, finalOutput);
+        } else {
+          long start = Time.monotonicNow();
+          for (FileStatus stat: getAllCommittedTaskPaths(context)) {
+            mergePaths(fs, stat, finalOutput);
+          }
+          incrCommitCounter(JobCounter.JOB_COMMIT_RENAME_MILLIS,
+              Time.monotonicNow() - start);
         }
       }
 
@@ -410,8 +461,11 @@ protected void commitJobInternal(JobContext context) throws IOException {
       } else {
         // delete the _temporary folder and create a _done file in the o/p
         // folder
+        long start = Time.monotonicNow();
         try {
           cleanupJob(context);
+          incrCommitCounter(JobCounter.JOB_COMMIT_CLEANUP_MILLIS,
+              Time.monotonicNow() - start);
         } catch (IOException e) {
           if (ignoreCleanupFailures) {
             // swallow exceptions in cleanup as user configure to make sure
@@ -507,6 +561,303 @@ private void renameOrMerge(FileSystem fs, FileStatus from, Path to)
     }
   }
 
+  /**
+   * A file or directory of the output of a committed task.
+   */
+  private static final class CommitEntry {
+    /** The path relative to the job attempt path, starting with the task. */
+    private final String path;
+    private final boolean isDirectory;
+
+    CommitEntry(String path, boolean isDirectory) {
+      this.path = path;
+      this.isDirectory = isDirectory;
+    }
+
+    /** @return the path relative to the final output directory. */
+    String getDestination() {
+      return path.substring(path.indexOf(Path.SEPARATOR_CHAR) + 1);
+    }
+  }
+
+  /** An operation on one of a list of items, run by the commit threads. */
+  private interface CommitOperation<T> {
+    void apply(T item) throws IOException;
+  }
+
+  /**
+   * Move the outputs of the committed tasks to the final output directory
+   * on {@link #commitThreads} threads. The result is the same as merging
+   * the task outputs one by one with {@link #mergePaths}, except that the
+   * order between files of the same name in several task outputs is not
+   * defined.
+   *
+   * The files and directories of the task outputs are listed and written
+   * to a manifest before anything is moved. If the manifest exists already,
+   * an earlier commit of the job was interrupted. The task outputs are
+   * listed again nevertheless, since tasks which were not recovered by the
+   * AM ran again and wrote outputs the manifest does not know, and the
+   * files the earlier commit has moved are no longer listed. The entries of
+   * both are written to the manifest.
+   * @param context the job's context
+   * @param fs the File System to use
+   * @param finalOutput the final output directory
+   * @throws IOException on any error
+   */
+  private void commitTaskOutputs(JobContext context, final FileSystem fs,
+      final Path finalOutput) throws IOException {
+    final Path jobAttemptPath = getJobAttemptPath(context);
+    Path manifest = new Path(getPendingJobAttemptsPath(),
+        COMMIT_MANIFEST_NAME);
+    ExecutorService pool = createCommitPool();
+    try {
+      long start = Time.monotonicNow();
+      List<CommitEntry> entries = listTaskOutputs(pool, fs, jobAttemptPath);
+      // the paths of the current task outputs, the other entries of the
+      // manifest are from the interrupted commit.
+      final Set<String> taskOutputs = new HashSet<>();
+      for (CommitEntry entry : entries) {
+        taskOutputs.add(entry.path);
+      }
+      if (fs.exists(manifest)) {
+        LOG.info("Resuming the interrupted commit of " + manifest);
+        for (CommitEntry entry : readManifest(fs, manifest)) {
+          if (!taskOutputs.contains(entry.path)) {
+            entries.add(entry);
+          }
+        }
+      }
+      writeManifest(fs, manifest, entries);
+      long listed = Time.monotonicNow();
+      incrCommitCounter(JobCounter.JOB_COMMIT_LIST_MILLIS, listed - start);
+
+      // the destination directories by depth, so that the directories of a
+      // depth are created after their parents.
+      TreeMap<Integer, Set<String>> dirs = new TreeMap<>();
+      List<CommitEntry> files = new ArrayList<>();
+      for (CommitEntry entry : entries) {
+        if (entry.isDirectory) {
+          String dest = entry.getDestination();
+          dirs.computeIfAbsent(getDepth(dest), k -> new LinkedHashSet<>())
+              .add(dest);
+        } else {
+          files.add(entry);
+        }
+      }
+
+      // the existing children of the destination directories, true for a
+      // directory, so that a conflicting path is only deleted if it exists.
+      final Map<String, Map<String, Boolean>> existing =
+          new ConcurrentHashMap<>();
+      existing.put("", listChildren(fs, finalOutput));
+      for (Set<String> depth : dirs.values()) {
+        forEach(pool, depth, dest -> {
+          Path to = new Path(finalOutput, dest);
+          Boolean isDirectory =
+              existing.get(getParent(dest)).get(getName(dest));
+          if (isDirectory == null || !isDirectory) {
+            if (isDirectory != null && !fs.delete(to, false)) {
+              throw new IOException("Failed to delete " + to);
+            }
+            if (!fs.mkdirs(to)) {
+              throw new IOException("Failed to create " + to);
+            }
+            existing.put(dest, Collections.emptyMap());
+          } else {
+            existing.put(dest, listChildren(fs, to));
+          }
+        });
+      }
+
+      final AtomicLong moved = new AtomicLong();
+      forEach(pool, files, entry -> {
+        String dest = entry.getDestination();
+        Path from = new Path(jobAttemptPath, entry.path);
+        Path to = new Path(finalOutput, dest);
+        if (!taskOutputs.contains(entry.path)) {
+          // moved by the interrupted commit, or a file of a task output
+          // which was not recovered
+          if (!fs.exists(to)) {
+            LOG.warn("Skipping " + entry.path + " of the interrupted " +
+                "commit, it is neither in the task outputs nor in " + to);
+          }
+          return;
+        }
+        if (existing.get(getParent(dest)).containsKey(getName(dest)) &&
+            !fs.delete(to, true)) {
+          throw new IOException("Failed to delete " + to);
+        }
+        if (!fs.rename(from, to)) {
+          // a file of the same name of another task may have been moved
+          // meanwhile
+          if (!fs.exists(to) || !fs.delete(to, true) ||
+              !fs.rename(from, to)) {
+            throw new IOException("Failed to rename " + from + " to " + to);
+          }
+        }
+        moved.incrementAndGet();
+      });
+      incrCommitCounter(JobCounter.JOB_COMMIT_RENAME_MILLIS,
+          Time.monotonicNow() - listed);
+      incrCommitCounter(JobCounter.JOB_COMMIT_FILES, moved.get());
+      LOG.info("Moved " + moved + " files of " + entries.size() +
+          " task output entries to " + finalOutput + " in " +
+          (Time.monotonicNow() - start) + " ms");
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * List the files and directories of the outputs of all committed tasks.
+   * The directories come before their contents.
+   */
+  private List<CommitEntry> listTaskOutputs(ExecutorService pool,
+      final FileSystem fs, Path jobAttemptPath) throws IOException {
+    List<Future<List<CommitEntry>>> futures = new ArrayList<>();
+    for (final FileStatus task :
+        fs.listStatus(jobAttemptPath, new CommittedTaskFilter())) {
+      if (task.isDirectory()) {
+        futures.add(pool.submit(() -> {
+          List<CommitEntry> entries = new ArrayList<>();
+          listTaskOutput(fs, task.getPath(), task.getPath().getName(),
+              entries);
+          return entries;
+        }));
+      }
+    }
+    List<CommitEntry> entries = new ArrayList<>();
+    for (Future<List<CommitEntry>> future : futures) {
+      entries.addAll(await(future));
+    }
+    return entries;
+  }
+
+  private static void listTaskOutput(FileSystem fs, Path dir, String path,
+      List<CommitEntry> entries) throws IOException {
+    for (FileStatus stat : fs.listStatus(dir)) {
+      String child = path + Path.SEPARATOR + stat.getPath().getName();
+      if (stat.isDirectory()) {
+        entries.add(new CommitEntry(child, true));
+        listTaskOutput(fs, stat.getPath(), child, entries);
+      } else if (stat.isFile()) {
+        entries.add(new CommitEntry(child, false));
+      }
+    }
+  }
+
+  /**
+   * Write the manifest of a job commit. It is written to a temporary file
+   * first, so that the manifest is complete if it exists.
+   */
+  private static void writeManifest(FileSystem fs, Path manifest,
+      List<CommitEntry> entries) throws IOException {
+    Path tmp = manifest.suffix(".tmp");
+    try (DataOutputStream out = fs.create(tmp, true)) {
+      out.writeInt(entries.size());
+      for (CommitEntry entry : entries) {
+        out.writeBoolean(entry.isDirectory);
+        Text.writeString(out, entry.path);
+      }
+    }
+    if (!fs.rename(tmp, manifest)) {
+      throw new IOException("Failed to rename " + tmp + " to " + manifest);
+    }
+  }
+
+  private static List<CommitEntry> readManifest(FileSystem fs, Path manifest)
+      throws IOException {
+    try (DataInputStream in = fs.open(manifest)) {
+      int size = in.readInt();
+      List<CommitEntry> entries = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        boolean isDirectory = in.readBoolean();
+        entries.add(new CommitEntry(Text.readString(in), isDirectory));
+      }
+      return entries;
+    }
+  }
+
+  /**
+   * @return the names of the children of a directory, mapped to true for
+   * directories, or an empty map if it does not exist.
+   */
+  private static Map<String, Boolean> listChildren(FileSystem fs, Path dir)
+      throws IOException {
+    Map<String, Boolean> children = new HashMap<>();
+    try {
+      for (FileStatus stat : fs.listStatus(dir)) {
+        children.put(stat.getPath().getName(), stat.isDirectory());
+      }
+    } catch (FileNotFoundException e) {
+      // nothing to overwrite
+    }
+    return children;
+  }
+
+  private static int getDepth(String path) {
+    int depth = 0;
+    for (int i = path.indexOf(Path.SEPARATOR_CHAR); i >= 0;
+         i = path.indexOf(Path.SEPARATOR_CHAR, i + 1)) {
+      depth++;
+    }
+    return depth;
+  }
+
+  private static String getParent(String path) {
+    int i = path.lastIndexOf(Path.SEPARATOR_CHAR);
+    return i < 0 ? "" : path.substring(0, i);
+  }
+
+  private static String getName(String path) {
+    return path.substring(path.lastIndexOf(Path.SEPARATOR_CHAR) + 1);
+  }
+
+  private ExecutorService createCommitPool() {
+    return HadoopExecutors.newFixedThreadPool(commitThreads,
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("FileOutputCommitter #%d").build());
+  }
+
+  /**
+   * Apply an operation to all items on the threads of a pool, and wait
+   * until it is done.
+   * @throws IOException the first failure of the operation.
+   */
+  private static <T> void forEach(ExecutorService pool,
+      Iterable<T> items, CommitOperation<T> operation) throws IOException {
+    List<Future<Void>> futures = new ArrayList<>();
+    for (final T item : items) {
+      futures.add(pool.submit(() -> {
+        operation.apply(item);
+        return null;
+      }));
+    }
+    for (Future<Void> future : futures) {
+      await(future);
+    }
+  }
+
+  private static <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw (IOException) new InterruptedIOException(
+          "Interrupted in job commit").initCause(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Job commit failed", cause);
+    }
+  }
+
+  private void incrCommitCounter(JobCounter counter, long value) {
+    commitCounters.findCounter(counter).increment(value);
+  }
+
   @Override
   @Deprecated
   public void cleanupJob(JobContext context) throws IOException {
@@ -518,6 +869,9 @@ public void cleanupJob(JobContext context) throws IOException {
       // deleted by previous AM, we should tolerate FileNotFoundException in
       // this case.
       try {
+        if (commitThreads > 1) {
+          deleteTaskPaths(fs, pendingJobAttemptsPath);
+        }
         fs.delete(pendingJobAttemptsPath, true);
       } catch (FileNotFoundException e) {
         if (!isCommitJobRepeatable(context)) {
@@ -529,6 +883,34 @@ public void cleanupJob(JobContext context) throws IOException {
     }
   }
 
+  /**
+   * Delete the task directories of all job attempts in parallel, for
+   * filesystems without O(1) recursive delete. The manifest of the job
+   * commit is deleted with the pending directory afterwards.
+   */
+  private void deleteTaskPaths(final FileSystem fs,
+      Path pendingJobAttemptsPath) throws IOException {
+    List<Path> taskPaths = new ArrayList<>();
+    try {
+      for (FileStatus jobAttempt : fs.listStatus(pendingJobAttemptsPath)) {
+        if (jobAttempt.isDirectory()) {
+          for (FileStatus task : fs.listStatus(jobAttempt.getPath())) {
+            taskPaths.add(task.getPath());
+          }
+        }
+      }
+    } catch (FileNotFoundException e) {
+      // already deleted
+      return;
+    }
+    ExecutorService pool = createCommitPool();
+    try {
+      forEach(pool, taskPaths, path -> fs.delete(path, true));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
   /**
    * Delete the temporary directory, including all of the work directories.
    * @param context the job's context
@@ -673,7 +1055,12 @@ public boolean isRecoverySupported() {
 
   @Override
   public boolean isCommitJobRepeatable(JobContext context) throws IOException {
-    return algorithmVersion == 2;
+    return algorithmVersion == 2 || commitThreads > 1;
+  }
+
+  @Override
+  public Counters getJobCommitCounters(JobContext context) throws IOException {
+    return commitCounters;
   }
 
   @Override
@@ -738,6 +1125,7 @@ public String toString() {
     sb.append(", algorithmVersion=").append(algorithmVersion);
     sb.append(", skipCleanup=").append(skipCleanup);
     sb.append(", ignoreCleanupFailures=").append(ignoreCleanupFailures);
+    sb.append(", commitThreads=").append(commitThreads);
     sb.append('}');
     return sb.toString();
   }
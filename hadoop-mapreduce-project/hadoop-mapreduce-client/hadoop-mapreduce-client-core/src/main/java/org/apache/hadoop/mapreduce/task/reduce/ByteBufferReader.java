@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapreduce.task.reduce;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.mapred.IFile.Reader;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+
+/**
+ * Reads a map-output held in a {@link ByteBuffer}, usually a direct one of an
+ * off-heap shuffle. Like {@link InMemoryReader} the data is not compressed
+ * and has no checksum.
+ *
+ * Keys and values are copied to the heap, so they stay valid until the next
+ * record is read, as with an on-disk {@link Reader}, even once the buffer
+ * has been released.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public class ByteBufferReader<K, V> extends Reader<K, V> {
+  private final TaskAttemptID taskAttemptId;
+  private final MergeManagerImpl<K, V> merger;
+  private ByteBuffer memory;
+  private final ByteBuffer data;
+  private byte[] keyData = new byte[0];
+
+  /** Reads the remaining bytes of a buffer. */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  /**
+   * @param merger the merge manager the buffer is released to on close, or
+   *               null if it is not to be released
+   * @param taskAttemptId the map of the map-output
+   * @param memory the buffer holding the map-output from position 0
+   * @param length the length of the map-output
+   * @param conf the configuration
+   */
+  public ByteBufferReader(MergeManagerImpl<K, V> merger,
+      TaskAttemptID taskAttemptId, ByteBuffer memory, int length,
+      Configuration conf) throws IOException {
+    super(conf, null, length, null, null);
+    this.merger = merger;
+    this.taskAttemptId = taskAttemptId;
+    this.memory = memory;
+    data = memory.duplicate();
+    data.clear();
+    data.limit(length);
+    dataIn = new DataInputStream(new ByteBufferInputStream(data));
+  }
+
+  @Override
+  public void reset(int offset) {
+    data.position(offset);
+    bytesRead = offset;
+    eof = false;
+  }
+
+  @Override
+  public long getPosition() throws IOException {
+    // The data is not compressed, so the number of bytes read is the
+    // position in the buffer.
+    return bytesRead;
+  }
+
+  @Override
+  public long getLength() {
+    return fileLength;
+  }
+
+  @Override
+  public boolean nextRawKey(DataInputBuffer key) throws IOException {
+    if (!positionToNextRecord(dataIn)) {
+      return false;
+    }
+    if (keyData.length < currentKeyLength) {
+      keyData = new byte[currentKeyLength << 1];
+    }
+    readFully(keyData, currentKeyLength, "key");
+    key.reset(keyData, currentKeyLength);
+    bytesRead += currentKeyLength;
+    return true;
+  }
+
+  @Override
+  public void nextRawValue(DataInputBuffer value) throws IOException {
+    final byte[] valBytes = (value.getData().length < currentValueLength)
+        ? new byte[currentValueLength << 1]
+        : value.getData();
+    readFully(valBytes, currentValueLength, "value");
+    value.reset(valBytes, currentValueLength);
+    bytesRead += currentValueLength;
+    ++recNo;
+  }
+
+  private void readFully(byte[] b, int length, String what)
+      throws IOException {
+    if (data.remaining() < length) {
+      throw new IOException("Rec# " + recNo + ": Failed to read " + what +
+          " of length " + length + " from the map-output of " +
+          taskAttemptId + ", " + data.remaining() + " bytes left");
+    }
+    data.get(b, 0, length);
+  }
+
+  @Override
+  public void close() {
+    dataIn = null;
+    if (memory == null) {
+      return;
+    }
+    // Inform the MergeManager
+    if (merger != null) {
+      merger.release(memory);
+    }
+    memory = null;
+  }
+}
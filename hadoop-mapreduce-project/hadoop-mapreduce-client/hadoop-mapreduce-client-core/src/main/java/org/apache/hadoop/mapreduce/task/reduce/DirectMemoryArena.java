@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapreduce.task.reduce;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.util.CleanerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The direct memory of an off-heap shuffle. The {@link MergeManagerImpl}
+ * decides how much of it may be reserved; the arena allocates the buffers of
+ * the map outputs and frees them as soon as they have been merged, instead of
+ * leaving that to the garbage collector, which rarely runs with the small
+ * heaps an off-heap shuffle is meant for.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+class DirectMemoryArena {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(DirectMemoryArena.class);
+
+  private final AtomicLong allocated = new AtomicLong();
+
+  /**
+   * Allocate a buffer.
+   * @param size the capacity of the buffer
+   * @return a direct buffer of the given capacity.
+   */
+  ByteBuffer allocate(int size) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+    allocated.addAndGet(size);
+    return buffer;
+  }
+
+  /**
+   * Free a buffer allocated by this arena. The buffer must not be used
+   * afterwards.
+   * @param buffer the buffer
+   */
+  void release(ByteBuffer buffer) {
+    allocated.addAndGet(-buffer.capacity());
+    if (CleanerUtil.UNMAP_SUPPORTED) {
+      try {
+        CleanerUtil.getCleaner().freeBuffer(buffer);
+      } catch (IOException e) {
+        LOG.warn("Failed to free a direct buffer of " + buffer.capacity() +
+            " bytes", e);
+      }
+    }
+  }
+
+  /**
+   * @return the number of bytes currently allocated.
+   */
+  long getAllocated() {
+    return allocated.get();
+  }
+}
@@ -511,6 +511,14 @@ private TaskAttemptID[] copyMapOutput(MapHost host,
         return remaining.toArray(new TaskAttemptID[remaining.size()]);
       }
 
+      if (compressedLength == ShuffleHeader.MISSING_OUTPUT_LENGTH
+          && remaining.contains(mapId)) {
+        // the map did not push its output, no data follows
+        remaining.remove(mapId);
+        scheduler.fallBackToPull(mapId);
+        return null;
+      }
+
       InputStream is = input;
       is = CryptoUtils.wrapIfNecessary(jobConf, is, compressedLength);
       compressedLength -= CryptoUtils.cryptoPadding(jobConf);
@@ -17,8 +17,11 @@
  */
 package org.apache.hadoop.mapreduce.task.reduce;
 
+import java.io.EOFException;
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -45,8 +48,11 @@
 class InMemoryMapOutput<K, V> extends IFileWrappedMapOutput<K, V> {
   private static final Logger LOG =
       LoggerFactory.getLogger(InMemoryMapOutput.class);
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
   private final byte[] memory;
   private BoundedByteArrayOutputStream byteStream;
+  // The direct memory of an off-heap map-output, instead of memory
+  private final ByteBuffer buffer;
   // Decompression of map-outputs
   private final CompressionCodec codec;
   private final Decompressor decompressor;
@@ -59,6 +65,7 @@ public InMemoryMapOutput(Configuration conf, TaskAttemptID mapId,
     this.codec = codec;
     byteStream = new BoundedByteArrayOutputStream(size);
     memory = byteStream.getBuffer();
+    buffer = null;
     if (codec != null) {
       decompressor = CodecPool.getDecompressor(codec);
     } else {
@@ -66,14 +73,73 @@ public InMemoryMapOutput(Configuration conf, TaskAttemptID mapId,
     }
   }
 
+  /**
+   * Create an off-heap map-output.
+   * @param buffer the direct memory of the map-output, its capacity is the
+   *               size of the map-output
+   */
+  public InMemoryMapOutput(Configuration conf, TaskAttemptID mapId,
+                           MergeManagerImpl<K, V> merger,
+                           ByteBuffer buffer, CompressionCodec codec,
+                           boolean primaryMapOutput) {
+    super(conf, merger, mapId, (long)buffer.capacity(), primaryMapOutput);
+    this.codec = codec;
+    this.buffer = buffer;
+    memory = null;
+    byteStream = null;
+    if (codec != null) {
+      decompressor = CodecPool.getDecompressor(codec);
+    } else {
+      decompressor = null;
+    }
+  }
+
+  /**
+   * @return the memory of the map-output, or null if it is off-heap.
+   */
   public byte[] getMemory() {
     return memory;
   }
 
+  /**
+   * @return the direct memory of an off-heap map-output, or null.
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
   public BoundedByteArrayOutputStream getArrayStream() {
     return byteStream;
   }
 
+  /**
+   * @return a stream writing to the memory of the map-output.
+   */
+  public OutputStream getOutputStream() {
+    if (buffer == null) {
+      return byteStream;
+    }
+    final ByteBuffer out = buffer.duplicate();
+    out.clear();
+    return new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        if (!out.hasRemaining()) {
+          throw new EOFException("Reaching the limit of the buffer.");
+        }
+        out.put((byte) b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        if (len > out.remaining()) {
+          throw new EOFException("Reaching the limit of the buffer.");
+        }
+        out.put(b, off, len);
+      }
+    };
+  }
+
   @Override
   protected void doShuffle(MapHost host, IFileInputStream iFin,
                       long compressedLength, long decompressedLength,
@@ -88,10 +154,15 @@ protected void doShuffle(MapHost host, IFileInputStream iFin,
     }
   
     try {
-      IOUtils.readFully(input, memory, 0, memory.length);
-      metrics.inputBytes(memory.length);
+      int size = (int) getSize();
+      if (buffer == null) {
+        IOUtils.readFully(input, memory, 0, size);
+      } else {
+        readFully(input, size);
+      }
+      metrics.inputBytes(size);
       reporter.progress();
-      LOG.info("Read " + memory.length + " bytes from map-output for " +
+      LOG.info("Read " + size + " bytes from map-output for " +
                 getMapId());
 
       /**
@@ -110,6 +181,19 @@ protected void doShuffle(MapHost host, IFileInputStream iFin,
     }
   }
 
+  /** Read the map-output into the direct memory. */
+  private void readFully(InputStream input, int size) throws IOException {
+    ByteBuffer out = buffer.duplicate();
+    out.clear();
+    byte[] chunk = new byte[Math.min(size, COPY_BUFFER_SIZE)];
+    for (int left = size; left > 0;) {
+      int n = Math.min(left, chunk.length);
+      IOUtils.readFully(input, chunk, 0, n);
+      out.put(chunk, 0, n);
+      left -= n;
+    }
+  }
+
   @Override
   public void commit() throws IOException {
     getMerger().closeInMemoryFile(this);
@@ -117,7 +201,11 @@ public void commit() throws IOException {
   
   @Override
   public void abort() {
-    getMerger().unreserve(memory.length);
+    if (buffer != null) {
+      getMerger().release(buffer);
+    } else {
+      getMerger().unreserve(memory.length);
+    }
   }
 
   @Override
@@ -19,10 +19,10 @@
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
-import org.apache.hadoop.io.BoundedByteArrayOutputStream;
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapred.IFile;
@@ -34,10 +34,10 @@
 public class InMemoryWriter<K, V> extends Writer<K, V> {
   private DataOutputStream out;
   
-  public InMemoryWriter(BoundedByteArrayOutputStream arrayStream) {
+  public InMemoryWriter(OutputStream memoryStream) {
     super(null);
     this.out = 
-      new DataOutputStream(new IFileOutputStream(arrayStream));
+      new DataOutputStream(new IFileOutputStream(memoryStream));
   }
   
   public void append(K key, V value) throws IOException {
@@ -18,6 +18,7 @@
 package org.apache.hadoop.mapreduce.task.reduce;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -52,6 +53,7 @@
 import org.apache.hadoop.mapred.Task.CombineValuesIterator;
 import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskCounter;
 import org.apache.hadoop.mapreduce.TaskID;
 import org.apache.hadoop.mapreduce.CryptoUtils;
 import org.apache.hadoop.mapreduce.task.reduce.MapOutput.MapOutputComparator;
@@ -101,6 +103,10 @@
   private long usedMemory;
   private long commitMemory;
 
+  /** The direct memory of an off-heap shuffle, null if on the heap. */
+  @VisibleForTesting
+  final DirectMemoryArena arena;
+
   @VisibleForTesting
   final long maxSingleShuffleLimit;
   
@@ -122,6 +128,18 @@
    */
   private final CombineOutputCollector<K,V> combineCollector;
 
+  /**
+   * Whether the combiner runs in merges during the shuffle, see
+   * {@link MRJobConfig#REDUCE_MERGE_COMBINE_ENABLED}.
+   */
+  private final boolean mergeCombine;
+
+  /**
+   * Collector used for combine by the on-disk merger, which can run at the
+   * same time as the in-memory merger.
+   */
+  private final CombineOutputCollector<K,V> onDiskCombineCollector;
+
   private final Counters.Counter spilledRecordsCounter;
 
   private final Counters.Counter reduceCombineInputCounter;
@@ -156,6 +174,19 @@ public MergeManagerImpl(TaskAttemptID reduceId, JobConf jobConf,
     this.reduceCombineInputCounter = reduceCombineInputCounter;
     this.spilledRecordsCounter = spilledRecordsCounter;
     this.mergedMapOutputsCounter = mergedMapOutputsCounter;
+    this.mergeCombine = combinerClass != null &&
+        jobConf.getBoolean(MRJobConfig.REDUCE_MERGE_COMBINE_ENABLED,
+            MRJobConfig.DEFAULT_REDUCE_MERGE_COMBINE_ENABLED);
+    if (mergeCombine) {
+      Counters.Counter combineOutputCounter = reporter == null ? null
+          : reporter.getCounter(TaskCounter.COMBINE_OUTPUT_RECORDS);
+      this.onDiskCombineCollector = new CombineOutputCollector<K,V>(
+          combineOutputCounter != null ? combineOutputCounter
+              : new Counters.Counter(),
+          reporter != null ? reporter : Reporter.NULL, jobConf);
+    } else {
+      this.onDiskCombineCollector = null;
+    }
     this.mapOutputFile = mapOutputFile;
     this.mapOutputFile.setConf(jobConf);
     
@@ -171,10 +202,24 @@ public MergeManagerImpl(TaskAttemptID reduceId, JobConf jobConf,
           maxInMemCopyUse);
     }
 
-    // Allow unit tests to fix Runtime memory
-    this.memoryLimit = (long)(jobConf.getLong(
-        MRJobConfig.REDUCE_MEMORY_TOTAL_BYTES,
-        Runtime.getRuntime().maxMemory()) * maxInMemCopyUse);
+    if (jobConf.getBoolean(MRJobConfig.SHUFFLE_OFFHEAP_ENABLED,
+        MRJobConfig.DEFAULT_SHUFFLE_OFFHEAP_ENABLED)) {
+      final int offHeapMB =
+          jobConf.getInt(MRJobConfig.SHUFFLE_OFFHEAP_MEMORY_MB,
+              MRJobConfig.DEFAULT_SHUFFLE_OFFHEAP_MEMORY_MB);
+      if (offHeapMB <= 0) {
+        throw new IllegalArgumentException("Invalid value for " +
+            MRJobConfig.SHUFFLE_OFFHEAP_MEMORY_MB + ": " + offHeapMB);
+      }
+      this.arena = new DirectMemoryArena();
+      this.memoryLimit = offHeapMB * 1024L * 1024L;
+    } else {
+      this.arena = null;
+      // Allow unit tests to fix Runtime memory
+      this.memoryLimit = (long)(jobConf.getLong(
+          MRJobConfig.REDUCE_MEMORY_TOTAL_BYTES,
+          Runtime.getRuntime().maxMemory()) * maxInMemCopyUse);
+    }
 
     this.ioSortFactor = jobConf.getInt(MRJobConfig.IO_SORT_FACTOR,
         MRJobConfig.DEFAULT_IO_SORT_FACTOR);
@@ -205,7 +250,8 @@ public MergeManagerImpl(TaskAttemptID reduceId, JobConf jobConf,
                           jobConf.getFloat(
                             MRJobConfig.SHUFFLE_MERGE_PERCENT,
                             MRJobConfig.DEFAULT_SHUFFLE_MERGE_PERCENT));
-    LOG.info("MergerManager: memoryLimit=" + memoryLimit + ", " +
+    LOG.info("MergerManager: memoryLimit=" + memoryLimit +
+             (arena != null ? " (off-heap), " : ", ") +
              "maxSingleShuffleLimit=" + maxSingleShuffleLimit + ", " +
              "mergeThreshold=" + mergeThreshold + ", " + 
              "ioSortFactor=" + ioSortFactor + ", " +
@@ -310,6 +356,10 @@ public synchronized MapOutput<K,V> reserve(TaskAttemptID mapId,
   private synchronized InMemoryMapOutput<K, V> unconditionalReserve(
       TaskAttemptID mapId, long requestedSize, boolean primaryMapOutput) {
     usedMemory += requestedSize;
+    if (arena != null) {
+      return new InMemoryMapOutput<K,V>(jobConf, mapId, this,
+          arena.allocate((int)requestedSize), codec, primaryMapOutput);
+    }
     return new InMemoryMapOutput<K,V>(jobConf, mapId, this, (int)requestedSize,
                                       codec, primaryMapOutput);
   }
@@ -318,6 +368,15 @@ synchronized void unreserve(long size) {
     usedMemory -= size;
   }
 
+  /**
+   * Free the direct memory of an off-heap map-output and unreserve it.
+   * @param buffer the memory of the map-output
+   */
+  void release(ByteBuffer buffer) {
+    unreserve(buffer.capacity());
+    arena.release(buffer);
+  }
+
   public synchronized void closeInMemoryFile(InMemoryMapOutput<K,V> mapOutput) { 
     inMemoryMapOutputs.add(mapOutput);
     LOG.info("closeInMemoryFile -> map-output of size: " + mapOutput.getSize()
@@ -331,6 +390,13 @@ public synchronized void closeInMemoryFile(InMemoryMapOutput<K,V> mapOutput) {
       LOG.info("Starting inMemoryMerger's merge since commitMemory=" +
           commitMemory + " > mergeThreshold=" + mergeThreshold + 
           ". Current usedMemory=" + usedMemory);
+    } else if (mergeCombine && inMemoryMapOutputs.size() >= ioSortFactor) {
+      LOG.info("Starting inMemoryMerger's merge to combine " +
+          inMemoryMapOutputs.size() + " map-outputs. Current usedMemory=" +
+          usedMemory);
+    }
+    if (commitMemory >= mergeThreshold ||
+        (mergeCombine && inMemoryMapOutputs.size() >= ioSortFactor)) {
       inMemoryMapOutputs.addAll(inMemoryMergedMapOutputs);
       inMemoryMergedMapOutputs.clear();
       inMemoryMerger.startMerge(inMemoryMapOutputs);
@@ -355,7 +421,9 @@ public synchronized void closeInMemoryMergedFile(InMemoryMapOutput<K,V> mapOutpu
   public synchronized void closeOnDiskFile(CompressAwarePath file) {
     onDiskMapOutputs.add(file);
     
-    if (onDiskMapOutputs.size() >= (2 * ioSortFactor - 1)) {
+    // combining merges shrink the outputs, so they start as early as possible
+    int threshold = mergeCombine ? ioSortFactor : 2 * ioSortFactor - 1;
+    if (onDiskMapOutputs.size() >= threshold) {
       onDiskMerger.startMerge(onDiskMapOutputs);
     }
   }
@@ -406,7 +474,7 @@ public void merge(List<InMemoryMapOutput<K, V>> inputs) throws IOException {
         unconditionalReserve(dummyMapId, mergeOutputSize, false);
       
       Writer<K, V> writer = 
-        new InMemoryWriter<K, V>(mergedMapOutputs.getArrayStream());
+        new InMemoryWriter<K, V>(mergedMapOutputs.getOutputStream());
       
       LOG.info("Initiating Memory-to-Memory merge with " + noInMemorySegments +
                " segments of total-size: " + mergeOutputSize);
@@ -491,7 +559,7 @@ public void merge(List<InMemoryMapOutput<K,V>> inputs) throws IOException {
           Merger.writeFile(rIter, writer, reporter, jobConf);
         } else {
           combineCollector.setWriter(writer);
-          combineAndSpill(rIter, reduceCombineInputCounter);
+          combineAndSpill(rIter, combineCollector, reduceCombineInputCounter);
         }
         writer.close();
         compressAwarePath = new CompressAwarePath(outputPath,
@@ -570,7 +638,13 @@ public void merge(List<CompressAwarePath> inputs) throws IOException {
                             reporter, spilledRecordsCounter, null, 
                             mergedMapOutputsCounter, null);
 
-        Merger.writeFile(iter, writer, reporter, jobConf);
+        if (mergeCombine) {
+          onDiskCombineCollector.setWriter(writer);
+          combineAndSpill(iter, onDiskCombineCollector,
+              reduceCombineInputCounter);
+        } else {
+          Merger.writeFile(iter, writer, reporter, jobConf);
+        }
         writer.close();
         compressAwarePath = new CompressAwarePath(outputPath,
             writer.getRawLength(), writer.getCompressedLength());
@@ -592,6 +666,7 @@ public void merge(List<CompressAwarePath> inputs) throws IOException {
   
   private void combineAndSpill(
       RawKeyValueIterator kvIter,
+      CombineOutputCollector<K,V> collector,
       Counters.Counter inCounter) throws IOException {
     JobConf job = jobConf;
     Reducer combiner = ReflectionUtils.newInstance(combinerClass, job);
@@ -604,7 +679,7 @@ private void combineAndSpill(
           kvIter, comparator, keyClass, valClass, job, Reporter.NULL,
           inCounter);
       while (values.more()) {
-        combiner.reduce(values.getKey(), values, combineCollector,
+        combiner.reduce(values.getKey(), values, collector,
                         Reporter.NULL);
         values.nextKey();
       }
@@ -622,17 +697,22 @@ private long createInMemorySegments(List<InMemoryMapOutput<K,V>> inMemoryMapOutp
     // closed but not yet present in inMemoryMapOutputs
     long fullSize = 0L;
     for (InMemoryMapOutput<K,V> mo : inMemoryMapOutputs) {
-      fullSize += mo.getMemory().length;
+      fullSize += mo.getSize();
     }
     while(fullSize > leaveBytes) {
       InMemoryMapOutput<K,V> mo = inMemoryMapOutputs.remove(0);
-      byte[] data = mo.getMemory();
-      long size = data.length;
+      long size = mo.getSize();
       totalSize += size;
       fullSize -= size;
-      Reader<K,V> reader = new InMemoryReader<K,V>(MergeManagerImpl.this, 
-                                                   mo.getMapId(),
-                                                   data, 0, (int)size, jobConf);
+      Reader<K,V> reader;
+      if (mo.getBuffer() != null) {
+        reader = new ByteBufferReader<K,V>(MergeManagerImpl.this,
+            mo.getMapId(), mo.getBuffer(), (int)size, jobConf);
+      } else {
+        reader = new InMemoryReader<K,V>(MergeManagerImpl.this,
+                                         mo.getMapId(),
+                                         mo.getMemory(), 0, (int)size, jobConf);
+      }
       inMemorySegments.add(new Segment<K,V>(reader, true, 
                                             (mo.isPrimaryMapOutput() ? 
                                             mergedMapOutputsCounter : null)));
@@ -42,6 +42,18 @@ public class ShuffleHeader implements Writable {
   public static final String HTTP_HEADER_VERSION = "version";
   public static final String DEFAULT_HTTP_HEADER_VERSION = "1.0.0";
 
+  /**
+   * Query parameter asking for the map outputs the maps pushed to the
+   * shuffle handler of their node, which are merged per reduce.
+   */
+  public static final String HTTP_PARAM_MERGED = "merged";
+  /**
+   * The length sent in the header of a merged map output the shuffle handler
+   * does not have. No data follows such a header, the output has to be
+   * fetched from the map instead.
+   */
+  public static final long MISSING_OUTPUT_LENGTH = -1;
+
   /**
    * The longest possible length of task attempt id that we will accept.
    */
@@ -62,6 +74,22 @@ public ShuffleHeader(String mapId, long compressedLength,
     this.forReduce = forReduce;
   }
   
+  public String getMapId() {
+    return mapId;
+  }
+
+  public long getCompressedLength() {
+    return compressedLength;
+  }
+
+  public long getUncompressedLength() {
+    return uncompressedLength;
+  }
+
+  public int getForReduce() {
+    return forReduce;
+  }
+
   public void readFields(DataInput in) throws IOException {
     mapId = WritableUtils.readStringSafely(in, MAX_ID_LENGTH);
     compressedLength = WritableUtils.readVLong(in);
@@ -68,6 +68,8 @@ protected Long initialValue() {
   private static final long INITIAL_PENALTY = 10000;
   private static final float PENALTY_GROWTH_RATE = 1.3f;
   private final static int REPORT_FAILURE_LIMIT = 10;
+  /** Appended to the host name of the merged outputs of a node. */
+  private static final String MERGED_HOST_SUFFIX = "/merged";
   private static final float BYTES_PER_MILLIS_TO_MBS = 1000f / 1024 / 1024;
   
   private final boolean[] finishedMaps;
@@ -110,6 +112,14 @@ protected Long initialValue() {
   private long maxPenalty = MRJobConfig.DEFAULT_MAX_SHUFFLE_FETCH_RETRY_DELAY;
   private int maxHostFailures;
 
+  private final boolean pushEnabled;
+  /**
+   * The host name and url of the maps which are fetched from the merged
+   * outputs of their node, for the case that they are not found there.
+   */
+  private final Map<TaskAttemptID, String[]> pushedMaps =
+      new HashMap<TaskAttemptID, String[]>();
+
   public ShuffleSchedulerImpl(JobConf job, TaskStatus status,
                           TaskAttemptID reduceId,
                           ExceptionReporter reporter,
@@ -143,6 +153,8 @@ public ShuffleSchedulerImpl(JobConf job, TaskStatus status,
     this.maxHostFailures = job.getInt(
         MRJobConfig.MAX_SHUFFLE_FETCH_HOST_FAILURES,
         MRJobConfig.DEFAULT_MAX_SHUFFLE_FETCH_HOST_FAILURES);
+    this.pushEnabled = job.getBoolean(MRJobConfig.SHUFFLE_PUSH_ENABLED,
+        MRJobConfig.DEFAULT_SHUFFLE_PUSH_ENABLED);
   }
 
   @Override
@@ -150,9 +162,15 @@ public void resolve(TaskCompletionEvent event) {
     switch (event.getTaskStatus()) {
     case SUCCEEDED:
       URI u = getBaseURI(reduceId, event.getTaskTrackerHttp());
-      addKnownMapOutput(u.getHost() + ":" + u.getPort(),
-          u.toString(),
-          event.getTaskAttemptId());
+      if (pushEnabled) {
+        URI merged = getBaseURI(reduceId, event.getTaskTrackerHttp(), true);
+        addPushedMapOutput(u.getHost() + ":" + u.getPort(), u.toString(),
+            merged.toString(), event.getTaskAttemptId());
+      } else {
+        addKnownMapOutput(u.getHost() + ":" + u.getPort(),
+            u.toString(),
+            event.getTaskAttemptId());
+      }
       maxMapRuntime = Math.max(maxMapRuntime, event.getTaskRunTime());
       break;
     case FAILED:
@@ -171,6 +189,10 @@ public void resolve(TaskCompletionEvent event) {
   }
 
   static URI getBaseURI(TaskAttemptID reduceId, String url) {
+    return getBaseURI(reduceId, url, false);
+  }
+
+  static URI getBaseURI(TaskAttemptID reduceId, String url, boolean merged) {
     StringBuffer baseUrl = new StringBuffer(url);
     if (!url.endsWith("/")) {
       baseUrl.append("/");
@@ -179,6 +201,11 @@ static URI getBaseURI(TaskAttemptID reduceId, String url) {
     baseUrl.append(reduceId.getJobID());
     baseUrl.append("&reduce=");
     baseUrl.append(reduceId.getTaskID().getId());
+    if (merged) {
+      baseUrl.append("&");
+      baseUrl.append(ShuffleHeader.HTTP_PARAM_MERGED);
+      baseUrl.append("=true");
+    }
     baseUrl.append("&map=");
     URI u = URI.create(baseUrl.toString());
     return u;
@@ -193,6 +220,7 @@ public synchronized void copySucceeded(TaskAttemptID mapId,
                                          ) throws IOException {
     failureCounts.remove(mapId);
     hostFailures.remove(host.getHostName());
+    pushedMaps.remove(mapId);
     int mapIndex = mapId.getTaskID().getId();
 
     if (!finishedMaps[mapIndex]) {
@@ -277,6 +305,10 @@ synchronized int fetchFailureCount(TaskAttemptID mapId) {
 
   public synchronized void copyFailed(TaskAttemptID mapId, MapHost host,
       boolean readError, boolean connectExcpt) {
+    if (fallBackToPull(mapId)) {
+      // not a failure of the map, its output is still on the map host
+      return;
+    }
     int failures = 1;
     if (failureCounts.containsKey(mapId)) {
       IntWritable x = failureCounts.get(mapId);
@@ -426,6 +458,34 @@ public synchronized void addKnownMapOutput(String hostName,
   }
 
 
+  /**
+   * Add a map whose output is fetched from the merged outputs of its node
+   * first, and from the map itself if it is not found there.
+   */
+  private synchronized void addPushedMapOutput(String hostName,
+      String hostUrl, String mergedUrl, TaskAttemptID mapId) {
+    pushedMaps.put(mapId, new String[] {hostName, hostUrl});
+    addKnownMapOutput(hostName + MERGED_HOST_SUFFIX, mergedUrl, mapId);
+  }
+
+  /**
+   * Fetch the output of a map from the map itself, as it could not be
+   * fetched from the merged outputs of its node.
+   *
+   * @param mapId the map
+   * @return false if the map output was not fetched from the merged outputs.
+   */
+  public synchronized boolean fallBackToPull(TaskAttemptID mapId) {
+    String[] origin = pushedMaps.remove(mapId);
+    if (origin == null) {
+      return false;
+    }
+    LOG.info("Output of " + mapId + " was not merged, fetching it from "
+        + origin[0]);
+    addKnownMapOutput(origin[0], origin[1], mapId);
+    return true;
+  }
+
   public synchronized void obsoleteMapOutput(TaskAttemptID mapId) {
     obsoleteMaps.add(mapId);
   }
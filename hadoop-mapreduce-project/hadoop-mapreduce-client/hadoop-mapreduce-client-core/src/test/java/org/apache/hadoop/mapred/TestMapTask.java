@@ -19,22 +19,31 @@
 package org.apache.hadoop.mapred;
 
 import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
 import org.apache.hadoop.mapred.Counters.Counter;
 import org.apache.hadoop.mapred.MapTask.MapOutputBuffer;
 import org.apache.hadoop.mapred.Task.TaskReporter;
 import org.apache.hadoop.mapreduce.MRConfig;
+import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.TaskCounter;
 import org.apache.hadoop.mapreduce.TaskType;
 import org.apache.hadoop.util.Progress;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.Random;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
@@ -51,6 +60,150 @@ public void cleanup() throws Exception {
     FileUtil.fullyDelete(TEST_ROOT_DIR);
   }
 
+  private static MapOutputFile createMapOutputFile(JobConf conf,
+      String name) {
+    // the local dirs are cached by name, so every test needs its own
+    conf.set(MRConfig.LOCAL_DIR,
+        new File(TEST_ROOT_DIR, name).getAbsolutePath());
+    MapOutputFile mof = new MROutputFiles();
+    mof.setConf(conf);
+    return mof;
+  }
+
+  private static MapOutputCollector.Context createContext(JobConf conf,
+      MapOutputFile mof) {
+    TaskAttemptID attemptId = new TaskAttemptID("12345", 1, TaskType.MAP, 1, 1);
+    MapTask mockTask = mock(MapTask.class);
+    doReturn(mof).when(mockTask).getMapOutputFile();
+    doReturn(attemptId).when(mockTask).getTaskID();
+    doReturn(new Progress()).when(mockTask).getSortPhase();
+    TaskReporter mockReporter = mock(TaskReporter.class);
+    doReturn(new Counter()).when(mockReporter).getCounter(
+        any(TaskCounter.class));
+    return new MapOutputCollector.Context(mockTask, conf, mockReporter);
+  }
+
+  /** Sorts keys in decreasing order, without a normalized key prefix. */
+  public static class DecreasingTextComparator extends Text.Comparator {
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      return -super.compare(b1, s1, l1, b2, s2, l2);
+    }
+  }
+
+  /**
+   * Collect keys with long common prefixes over several spills, and verify
+   * that every partition of the map output is sorted.
+   */
+  private void verifySortedOutput(JobConf conf, String name, int direction)
+      throws Exception {
+    final int partitions = 3;
+    final int records = 100000;
+    conf.setInt(MRJobConfig.IO_SORT_MB, 1);
+    conf.setNumReduceTasks(partitions);
+    conf.setMapOutputKeyClass(Text.class);
+    conf.setMapOutputValueClass(NullWritable.class);
+    MapOutputFile mof = createMapOutputFile(conf, name);
+    MapOutputBuffer<Text, NullWritable> mob = new MapOutputBuffer<>();
+    mob.init(createContext(conf, mof));
+    Random random = new Random(0);
+    Text key = new Text();
+    for (int i = 0; i < records; i++) {
+      // ties in the first 8 bytes are resolved by the comparator
+      key.set("common-" + random.nextInt(20) + "-" + random.nextInt(1000));
+      mob.collect(key, NullWritable.get(), random.nextInt(partitions));
+    }
+    mob.flush();
+    mob.close();
+
+    FileSystem lfs = FileSystem.getLocal(conf);
+    SpillRecord index = new SpillRecord(mof.getOutputIndexFile(), conf);
+    CompressionCodec codec = conf.getCompressMapOutput()
+        ? ReflectionUtils.newInstance(
+            conf.getMapOutputCompressorClass(DefaultCodec.class), conf)
+        : null;
+    int count = 0;
+    for (int p = 0; p < partitions; p++) {
+      IndexRecord rec = index.getIndex(p);
+      FSDataInputStream in = lfs.open(mof.getOutputFile());
+      in.seek(rec.startOffset);
+      // closing the reader closes the stream
+      IFile.Reader<Text, NullWritable> reader =
+          new IFile.Reader<>(conf, in, rec.partLength, codec, null);
+      try {
+        DataInputBuffer keyIn = new DataInputBuffer();
+        Text previous = null;
+        while (reader.nextRawKey(keyIn)) {
+          Text current = new Text();
+          current.readFields(keyIn);
+          if (previous != null) {
+            Assert.assertTrue("Out of order: " + previous + ", " + current,
+                direction * previous.compareTo(current) <= 0);
+          }
+          previous = current;
+          count++;
+          reader.nextRawValue(keyIn);
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    Assert.assertEquals(records, count);
+  }
+
+  @Test
+  public void testSortWithNormalizedKeyPrefix() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setBoolean(MRJobConfig.MAP_SORT_NORMALIZED_KEY_PREFIX, true);
+    verifySortedOutput(conf, "prefix", 1);
+  }
+
+  @Test
+  public void testSortWithoutNormalizedKeyPrefix() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setBoolean(MRJobConfig.MAP_SORT_NORMALIZED_KEY_PREFIX, false);
+    verifySortedOutput(conf, "noprefix", 1);
+  }
+
+  // A comparator which overrides the order of a normalized key comparator
+  // must not be sorted by the inherited prefix.
+  @Test
+  public void testSortWithOverriddenComparator() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setBoolean(MRJobConfig.MAP_SORT_NORMALIZED_KEY_PREFIX, true);
+    conf.setOutputKeyComparatorClass(DecreasingTextComparator.class);
+    verifySortedOutput(conf, "decreasing", -1);
+  }
+
+  @Test
+  public void testParallelMerge() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setInt(MRJobConfig.MAP_SORT_MERGE_THREADS, 4);
+    verifySortedOutput(conf, "parallel", 1);
+  }
+
+  @Test
+  public void testParallelMergeCompressed() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setInt(MRJobConfig.MAP_SORT_MERGE_THREADS, 4);
+    conf.setCompressMapOutput(true);
+    verifySortedOutput(conf, "parallelcompressed", 1);
+  }
+
+  // partitions which do not fit in their regions are merged again at the end
+  @Test
+  public void testParallelMergeOverflow() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setInt(MRJobConfig.MAP_SORT_MERGE_THREADS, 4);
+    long slack = MapOutputBuffer.mergeRegionSlack;
+    MapOutputBuffer.mergeRegionSlack = -1000;
+    try {
+      verifySortedOutput(conf, "paralleloverflow", 1);
+    } finally {
+      MapOutputBuffer.mergeRegionSlack = slack;
+    }
+  }
+
   // Verify output files for shuffle have group read permission even when
   // the configured umask normally would prevent it.
   @Test
@@ -18,12 +18,19 @@
 
 package org.apache.hadoop.mapred;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.FileSystemCounter;
+import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.util.ExitUtil;
 import org.apache.hadoop.util.ExitUtil.ExitException;
 import org.junit.Before;
@@ -62,6 +69,27 @@ public void testStatusUpdateExitsInNonUberMode() throws Exception {
     task.statusUpdate(umbilical);
   }
 
+  @Test
+  public void testFileSystemCountersOfTasksInOneJvm() throws Exception {
+    JobConf conf = new JobConf();
+    FileSystem fs = FileSystem.getLocal(conf).getRawFileSystem();
+    File dir = GenericTestUtils.getTestDir("testFileSystemCounters");
+    Path file = new Path(dir.getAbsolutePath(), "file");
+
+    // the tasks share the statistics of the file systems of the JVM
+    for (int i = 0; i < 2; i++) {
+      Task jvmTask = new StubTask();
+      jvmTask.setConf(conf);
+      jvmTask.initialize(conf, new JobID("test", 1), Reporter.NULL, false);
+      try (FSDataOutputStream out = fs.create(file, true)) {
+        out.write(new byte[1000]);
+      }
+      jvmTask.updateCounters();
+      assertEquals(1000, jvmTask.getCounters().findCounter("file",
+          FileSystemCounter.BYTES_WRITTEN).getValue());
+    }
+  }
+
   private void setupTest(boolean uberized)
       throws IOException, InterruptedException {
     Configuration conf = new Configuration(false);
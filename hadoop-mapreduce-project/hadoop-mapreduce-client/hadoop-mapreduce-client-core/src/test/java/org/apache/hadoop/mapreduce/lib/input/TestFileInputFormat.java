@@ -30,6 +30,7 @@
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocatedFileStatus;
@@ -238,6 +239,57 @@ public void testListStatusErrorOnNonExistantDir() throws IOException {
     }
   }
 
+  @Test
+  public void testAdaptiveSplits() throws IOException {
+    Path dense = new Path(TEST_ROOT_DIR, "input/dense");
+    Path sparse = new Path(TEST_ROOT_DIR, "input/sparse");
+    writeLines(dense, 1, 1024 * 1024);
+    writeLines(sparse, 199, 1024 * 1024);
+
+    Configuration conf = new Configuration();
+    conf.setInt(FileInputFormat.LIST_STATUS_NUM_THREADS, numThreads);
+    conf.set(FileInputFormat.INPUT_DIR,
+        localFs.makeQualified(new Path(TEST_ROOT_DIR, "input")).toString());
+    conf.setLong(FileInputFormat.SPLIT_MAXSIZE, 256 * 1024);
+    conf.setLong(FileInputFormat.SPLIT_ADAPTIVE_SAMPLE_SIZE, 16 * 1024);
+    Job job = Job.getInstance(conf);
+    FileInputFormat<?, ?> fif = new TextInputFormat();
+    Assert.assertEquals(8, fif.getSplits(job).size());
+
+    conf.setBoolean(FileInputFormat.SPLIT_ADAPTIVE, true);
+    job = Job.getInstance(conf);
+    int denseSplits = 0;
+    int sparseSplits = 0;
+    for (InputSplit split : fif.getSplits(job)) {
+      FileSplit fileSplit = (FileSplit) split;
+      if (fileSplit.getPath().getName().equals(dense.getName())) {
+        Assert.assertTrue("Split of the dense file not shrunk: " + fileSplit,
+            fileSplit.getLength() < 256 * 1024);
+        denseSplits++;
+      } else {
+        Assert.assertTrue("Split of the sparse file not kept: " + fileSplit,
+            fileSplit.getLength() == 256 * 1024);
+        sparseSplits++;
+      }
+    }
+    // the dense file has about twice the average density
+    Assert.assertTrue("Too few splits of the dense file: " + denseSplits,
+        denseSplits >= 7);
+    Assert.assertEquals(4, sparseSplits);
+  }
+
+  private static void writeLines(Path file, int lineLength, int length)
+      throws IOException {
+    byte[] line = new byte[lineLength + 1];
+    Arrays.fill(line, (byte) 'x');
+    line[lineLength] = '\n';
+    try (FSDataOutputStream out = localFs.create(file)) {
+      for (int written = 0; written < length; written += line.length) {
+        out.write(line, 0, Math.min(line.length, length - written));
+      }
+    }
+  }
+
   public static List<Path> configureTestSimple(Configuration conf, FileSystem localFs)
       throws IOException {
     Path base1 = new Path(TEST_ROOT_DIR, "input1");
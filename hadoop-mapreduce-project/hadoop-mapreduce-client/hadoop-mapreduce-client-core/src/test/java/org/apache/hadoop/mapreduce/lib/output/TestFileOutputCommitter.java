@@ -47,6 +47,7 @@
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobCounter;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.OutputCommitter;
@@ -794,6 +795,79 @@ public void testConcurrentCommitTaskWithSubDirV2() throws Exception {
     testConcurrentCommitTaskWithSubDir(2);
   }
 
+  @Test
+  public void testParallelCommitV1() throws Exception {
+    Job job = Job.getInstance();
+    FileOutputFormat.setOutputPath(job, outDir);
+    Configuration conf = job.getConfiguration();
+    conf.set(MRJobConfig.TASK_ATTEMPT_ID, attempt);
+    conf.setInt(FileOutputCommitter.FILEOUTPUTCOMMITTER_ALGORITHM_VERSION, 1);
+    conf.setInt(FileOutputCommitter.FILEOUTPUTCOMMITTER_COMMIT_THREADS, 4);
+    // keep the manifest of the first commit
+    conf.setBoolean(FileOutputCommitter.FILEOUTPUTCOMMITTER_CLEANUP_SKIPPED,
+        true);
+    JobContext jContext = new JobContextImpl(conf, taskID.getJobID());
+    FileOutputCommitter amCommitter =
+        new FileOutputCommitter(outDir, jContext);
+    assertTrue(amCommitter.isCommitJobRepeatable(jContext));
+    amCommitter.setupJob(jContext);
+    FileSystem fs = outDir.getFileSystem(conf);
+    // a file in place of a directory of the task outputs is replaced
+    fs.create(OUT_SUB_DIR).close();
+
+    TaskAttemptContext[] taCtx = {
+        new TaskAttemptContextImpl(conf, taskID),
+        new TaskAttemptContextImpl(conf, taskID1)};
+    for (TaskAttemptContext tContext : taCtx) {
+      TextOutputFormat theOutputFormat = new TextOutputFormat() {
+        @Override
+        public Path getDefaultWorkFile(TaskAttemptContext context,
+            String extension) throws IOException {
+          FileOutputCommitter foc =
+              (FileOutputCommitter) getOutputCommitter(context);
+          return new Path(new Path(foc.getWorkPath(), SUB_DIR),
+              getUniqueFile(context, getOutputName(context), extension));
+        }
+      };
+      OutputCommitter committer = theOutputFormat.getOutputCommitter(tContext);
+      committer.setupTask(tContext);
+      writeOutput(theOutputFormat.getRecordWriter(tContext), tContext);
+      committer.commitTask(tContext);
+    }
+
+    amCommitter.commitJob(jContext);
+    validateContent(OUT_SUB_DIR);
+    Path partFile1 = new Path(OUT_SUB_DIR, "part-m-00001");
+    assertTrue(fs.exists(partFile1));
+    assertEquals(2, amCommitter.getJobCommitCounters(jContext)
+        .findCounter(JobCounter.JOB_COMMIT_FILES).getValue());
+    Path manifest = new Path(new Path(outDir,
+        FileOutputCommitter.PENDING_DIR_NAME),
+        FileOutputCommitter.COMMIT_MANIFEST_NAME);
+    assertTrue("manifest does not exist", fs.exists(manifest));
+
+    // a commit interrupted before the second file was moved is resumed
+    Path taskSubDir = new Path(
+        amCommitter.getCommittedTaskPath(taCtx[1]), SUB_DIR);
+    assertTrue(fs.rename(partFile1, new Path(taskSubDir, partFile1.getName())));
+    // and a task which ran again wrote a file the manifest does not list
+    Path rerunFile = new Path(new Path(
+        amCommitter.getCommittedTaskPath(taCtx[0]), SUB_DIR), "rerun");
+    fs.create(rerunFile).close();
+    conf.setBoolean(FileOutputCommitter.FILEOUTPUTCOMMITTER_CLEANUP_SKIPPED,
+        false);
+    amCommitter = new FileOutputCommitter(outDir, jContext);
+    amCommitter.commitJob(jContext);
+    validateContent(OUT_SUB_DIR);
+    assertTrue(fs.exists(partFile1));
+    assertTrue(fs.exists(new Path(OUT_SUB_DIR, rerunFile.getName())));
+    assertEquals(2, amCommitter.getJobCommitCounters(jContext)
+        .findCounter(JobCounter.JOB_COMMIT_FILES).getValue());
+    assertFalse("job temp dir still exists", fs.exists(
+        new Path(outDir, FileOutputCommitter.PENDING_DIR_NAME)));
+    FileUtil.fullyDelete(new File(outDir.toString()));
+  }
+
   public static String slurp(File f) throws IOException {
     int len = (int) f.length();
     byte[] buf = new byte[len];
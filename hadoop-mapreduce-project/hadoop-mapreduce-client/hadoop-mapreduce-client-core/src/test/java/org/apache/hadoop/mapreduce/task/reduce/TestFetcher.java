@@ -325,6 +325,41 @@ public void testCopyFromHostWait() throws Exception {
     verify(ss).putBackKnownMapOutput(any(MapHost.class), eq(map2ID));
   }
   
+  @Test
+  public void testCopyFromHostMissingMergedOutput() throws Exception {
+    Fetcher<Text,Text> underTest = new FakeFetcher<Text,Text>(job, id, ss, mm,
+        r, metrics, except, key, connection);
+
+    String replyHash = SecureShuffleUtils.generateHash(encHash.getBytes(), key);
+
+    when(connection.getResponseCode()).thenReturn(200);
+    when(connection.getHeaderField(SecureShuffleUtils.HTTP_HEADER_REPLY_URL_HASH))
+        .thenReturn(replyHash);
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(bout);
+    for (TaskAttemptID mapId : new TaskAttemptID[] {map1ID, map2ID}) {
+      new ShuffleHeader(mapId.toString(), ShuffleHeader.MISSING_OUTPUT_LENGTH,
+          ShuffleHeader.MISSING_OUTPUT_LENGTH, 1).write(dos);
+    }
+    ByteArrayInputStream in = new ByteArrayInputStream(bout.toByteArray());
+    when(connection.getInputStream()).thenReturn(in);
+    when(connection.getHeaderField(ShuffleHeader.HTTP_HEADER_NAME))
+        .thenReturn(ShuffleHeader.DEFAULT_HTTP_HEADER_NAME);
+    when(connection.getHeaderField(ShuffleHeader.HTTP_HEADER_VERSION))
+        .thenReturn(ShuffleHeader.DEFAULT_HTTP_HEADER_VERSION);
+
+    underTest.copyFromHost(host);
+
+    verify(ss).fallBackToPull(map1ID);
+    verify(ss).fallBackToPull(map2ID);
+    verify(ss, never()).copyFailed(any(TaskAttemptID.class),
+        any(MapHost.class), anyBoolean(), anyBoolean());
+    verify(ss, never()).putBackKnownMapOutput(any(MapHost.class),
+        any(TaskAttemptID.class));
+    verify(mm, never()).reserve(any(TaskAttemptID.class), anyLong(),
+        anyInt());
+  }
+
   @SuppressWarnings("unchecked")
   @Test(timeout=10000) 
   public void testCopyFromHostCompressFailure() throws Exception {
@@ -22,6 +22,7 @@
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -38,6 +39,7 @@
 import org.apache.hadoop.fs.LocalDirAllocator;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.Counters.Counter;
@@ -49,6 +51,8 @@
 import org.apache.hadoop.mapred.Merger.Segment;
 import org.apache.hadoop.mapred.RawKeyValueIterator;
 import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.Task.CombineOutputCollector;
+import org.apache.hadoop.mapred.lib.LongSumReducer;
 import org.apache.hadoop.mapreduce.CryptoUtils;
 import org.apache.hadoop.mapreduce.JobID;
 import org.apache.hadoop.mapreduce.MRConfig;
@@ -206,6 +210,130 @@ public void testInMemoryAndOnDiskMerger() throws Throwable {
     Assert.assertEquals(0, mergeManager.onDiskMapOutputs.size());
   }
 
+  @Test
+  public void testOffHeapMerge() throws Throwable {
+    jobConf.setBoolean(MRJobConfig.SHUFFLE_OFFHEAP_ENABLED, true);
+    jobConf.setInt(MRJobConfig.SHUFFLE_OFFHEAP_MEMORY_MB, 1);
+    // keep the map outputs in memory for the reduce
+    jobConf.setFloat(MRJobConfig.REDUCE_INPUT_BUFFER_PERCENT, 1.0f);
+    JobID jobId = new JobID("a", 0);
+    TaskAttemptID reduceId = new TaskAttemptID(
+        new TaskID(jobId, TaskType.REDUCE, 0), 0);
+    LocalDirAllocator lda = new LocalDirAllocator(MRConfig.LOCAL_DIR);
+    MergeManagerImpl<Text, Text> mergeManager =
+        new MergeManagerImpl<Text, Text>(reduceId, jobConf, fs, lda,
+            Reporter.NULL, null, null, null, null, null, null, null,
+            new Progress(), new MROutputFiles());
+    Assert.assertEquals(1024 * 1024, mergeManager.memoryLimit);
+
+    Map<String, String> map1 = new TreeMap<String, String>();
+    map1.put("apple", "disgusting");
+    map1.put("carrot", "delicious");
+    Map<String, String> map2 = new TreeMap<String, String>();
+    map2.put("banana", "pretty good");
+    map2.put("durian", "smelly");
+    for (Map<String, String> map : Arrays.asList(map1, map2)) {
+      TaskAttemptID mapId = new TaskAttemptID(
+          new TaskID(jobId, TaskType.MAP, map.size()), 0);
+      // the map output has a checksum, which is not shuffled
+      byte[] bytes = writeMapOutput(conf, map);
+      long rawLength = bytes.length - 4;
+      MapOutput<Text, Text> mapOutput =
+          mergeManager.reserve(mapId, rawLength, 0);
+      Assert.assertTrue(mapOutput instanceof InMemoryMapOutput);
+      Assert.assertTrue(
+          ((InMemoryMapOutput<Text, Text>) mapOutput).getBuffer().isDirect());
+      mapOutput.shuffle(null, new ByteArrayInputStream(bytes), bytes.length,
+          rawLength, mock(ShuffleClientMetrics.class), Reporter.NULL);
+      mapOutput.commit();
+    }
+    Assert.assertTrue(mergeManager.arena.getAllocated() > 0);
+
+    RawKeyValueIterator iter = mergeManager.close();
+    List<String> keys = new ArrayList<String>();
+    List<String> values = new ArrayList<String>();
+    Text text = new Text();
+    while (iter.next()) {
+      text.readFields(iter.getKey());
+      keys.add(text.toString());
+      text.readFields(iter.getValue());
+      values.add(text.toString());
+    }
+    iter.close();
+    Assert.assertEquals(Arrays.asList("apple", "banana", "carrot", "durian"),
+        keys);
+    Assert.assertEquals(Arrays.asList("disgusting", "pretty good",
+        "delicious", "smelly"), values);
+    // the merged map outputs have been released
+    Assert.assertEquals(0, mergeManager.arena.getAllocated());
+  }
+
+  @Test
+  public void testOnDiskMergerCombines() throws Throwable {
+    jobConf.setBoolean(MRJobConfig.REDUCE_MERGE_COMBINE_ENABLED, true);
+    jobConf.setMapOutputKeyClass(Text.class);
+    jobConf.setMapOutputValueClass(LongWritable.class);
+    JobID jobId = new JobID("a", 0);
+    TaskAttemptID reduceId = new TaskAttemptID(
+        new TaskID(jobId, TaskType.REDUCE, 0), 0);
+    LocalDirAllocator lda = new LocalDirAllocator(MRConfig.LOCAL_DIR);
+    Counter combineInputCounter = new Counter();
+    MergeManagerImpl<Text, LongWritable> mergeManager =
+        new MergeManagerImpl<Text, LongWritable>(reduceId, jobConf, fs, lda,
+            Reporter.NULL, null, LongSumReducer.class,
+            new CombineOutputCollector<Text, LongWritable>(
+                new Counter(), Reporter.NULL, jobConf),
+            new Counter(), combineInputCounter, new Counter(), null,
+            new Progress(), new MROutputFiles());
+
+    List<CompressAwarePath> paths = new ArrayList<CompressAwarePath>();
+    String[][] keys = {{"apple", "banana"}, {"apple", "carrot"}};
+    long[][] values = {{1, 2}, {3, 4}};
+    for (int i = 0; i < keys.length; i++) {
+      Path path = lda.getLocalPathForWrite(
+          reduceId + "/combine_" + i + ".out", jobConf);
+      FSDataOutputStream out = fs.create(path);
+      IFile.Writer<Text, LongWritable> writer =
+          new IFile.Writer<Text, LongWritable>(conf, out,
+              Text.class, LongWritable.class, null, null);
+      for (int j = 0; j < keys[i].length; j++) {
+        writer.append(new Text(keys[i][j]), new LongWritable(values[i][j]));
+      }
+      writer.close();
+      out.close();
+      paths.add(new CompressAwarePath(path, writer.getRawLength(),
+          writer.getCompressedLength()));
+    }
+
+    MergeThread<CompressAwarePath, Text, LongWritable> onDiskMerger =
+        mergeManager.createOnDiskMerger();
+    onDiskMerger.merge(paths);
+    Assert.assertEquals(1, mergeManager.onDiskMapOutputs.size());
+    Assert.assertEquals(4, combineInputCounter.getValue());
+
+    Path merged = mergeManager.onDiskMapOutputs.iterator().next();
+    IFile.Reader<Text, LongWritable> reader =
+        new IFile.Reader<Text, LongWritable>(conf, fs, merged, null, null);
+    Map<String, Long> combined = new TreeMap<String, Long>();
+    DataInputBuffer keyBuff = new DataInputBuffer();
+    DataInputBuffer valueBuff = new DataInputBuffer();
+    Text key = new Text();
+    LongWritable value = new LongWritable();
+    while (reader.nextRawKey(keyBuff)) {
+      key.readFields(keyBuff);
+      reader.nextRawValue(valueBuff);
+      value.readFields(valueBuff);
+      combined.put(key.toString(), value.get());
+    }
+    reader.close();
+    Map<String, Long> expected = new TreeMap<String, Long>();
+    expected.put("apple", 4L);
+    expected.put("banana", 2L);
+    expected.put("carrot", 4L);
+    Assert.assertEquals(expected, combined);
+    mergeManager.close();
+  }
+
   private byte[] writeMapOutput(Configuration conf, Map<String, String> keysToValues)
       throws IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -17,9 +17,13 @@
  */
 package org.apache.hadoop.mapreduce.task.reduce;
 
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.util.Arrays;
+
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocalDirAllocator;
 import org.apache.hadoop.io.compress.CompressionCodec;
@@ -29,11 +33,13 @@
 import org.apache.hadoop.mapred.ShuffleConsumerPlugin;
 import org.apache.hadoop.mapred.Task;
 import org.apache.hadoop.mapred.TaskAttemptID;
+import org.apache.hadoop.mapred.TaskCompletionEvent;
 import org.apache.hadoop.mapred.TaskStatus;
 import org.apache.hadoop.mapred.TaskUmbilicalProtocol;
 import org.apache.hadoop.mapred.Counters.Counter;
 import org.apache.hadoop.mapred.Task.CombineOutputCollector;
 import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.TaskID;
 import org.apache.hadoop.mapreduce.TaskType;
 import org.apache.hadoop.util.Progress;
@@ -81,6 +87,49 @@ public void addFetchFailedMap(TaskAttemptID mapTaskId) {
   }
 
   @SuppressWarnings("rawtypes")
+  @Test
+  public <K, V> void testPushedMapFallsBackToPull() throws Exception {
+    JobConf job = new JobConf();
+    job.setNumMapTasks(1);
+    job.setBoolean(MRJobConfig.SHUFFLE_PUSH_ENABLED, true);
+    TaskStatus status = new TaskStatus() {
+      @Override
+      public boolean getIsMap() {
+        return false;
+      }
+      @Override
+      public void addFetchFailedMap(TaskAttemptID mapTaskId) {
+      }
+    };
+    Counter failedShuffleCounter = mock(Counter.class);
+    TaskAttemptID reduceId = new TaskAttemptID("314159", 0, TaskType.REDUCE,
+        0, 0);
+    ShuffleSchedulerImpl<K, V> scheduler = new ShuffleSchedulerImpl<K, V>(
+        job, status, reduceId, null, new Progress(), null, null,
+        failedShuffleCounter);
+    TaskAttemptID mapId = new TaskAttemptID("314159", 0, TaskType.MAP, 0, 0);
+    scheduler.resolve(new TaskCompletionEvent(0, mapId, 0, true,
+        TaskCompletionEvent.Status.SUCCEEDED, "http://host1:13562"));
+
+    // the output is fetched from the merged outputs of the node first
+    MapHost host = scheduler.getHost();
+    Assert.assertEquals("host1:13562/merged", host.getHostName());
+    Assert.assertTrue(host.getBaseUrl().contains("&merged=true&"));
+    Assert.assertEquals(Arrays.asList(mapId),
+        scheduler.getMapsForHost(host));
+    scheduler.copyFailed(mapId, host, true, false);
+    scheduler.freeHost(host);
+
+    // and then from the map, without counting a failure
+    host = scheduler.getHost();
+    Assert.assertEquals("host1:13562", host.getHostName());
+    Assert.assertFalse(host.getBaseUrl().contains("merged"));
+    Assert.assertEquals(Arrays.asList(mapId),
+        scheduler.getMapsForHost(host));
+    verify(failedShuffleCounter, never()).increment(anyLong());
+    Assert.assertFalse(scheduler.fallBackToPull(mapId));
+  }
+
   @Test
   public <K, V> void TestAggregatedTransferRate() throws Exception {
     JobConf job = new JobConf();
@@ -33,10 +33,18 @@
 
 import static org.apache.hadoop.io.nativeio.NativeIO.POSIX.POSIX_FADV_DONTNEED;
 
-import org.jboss.netty.channel.DefaultFileRegion;
+import io.netty.channel.DefaultFileRegion;
 
 import com.google.common.annotations.VisibleForTesting;
 
+/**
+ * A {@link DefaultFileRegion} which reads ahead of the transfer and drops the
+ * region from the OS cache once it has been sent.
+ *
+ * The native epoll transport sends a {@link DefaultFileRegion} with sendfile
+ * without calling {@link #transferTo(WritableByteChannel, long)}, so it is
+ * only used with that transport if transferTo is allowed.
+ */
 public class FadvisedFileRegion extends DefaultFileRegion {
 
   private static final Logger LOG =
@@ -54,6 +62,8 @@ public class FadvisedFileRegion extends DefaultFileRegion {
   private final FileChannel fileChannel;
   
   private ReadaheadRequest readaheadRequest;
+  /** The bytes sent by {@link #customShuffleTransfer}. */
+  private long customTransferred;
 
   public FadvisedFileRegion(RandomAccessFile file, long position, long count,
       boolean manageOsCache, int readaheadLength, ReadaheadPool readaheadPool,
@@ -77,17 +87,24 @@ public long transferTo(WritableByteChannel target, long position)
       throws IOException {
     if (readaheadPool != null && readaheadLength > 0) {
       readaheadRequest = readaheadPool.readaheadStream(identifier, fd,
-          getPosition() + position, readaheadLength,
-          getPosition() + getCount(), readaheadRequest);
+          this.position + position, readaheadLength,
+          this.position + this.count, readaheadRequest);
     }
     
     if(this.shuffleTransferToAllowed) {
       return super.transferTo(target, position);
     } else {
-      return customShuffleTransfer(target, position);
+      long written = customShuffleTransfer(target, position);
+      customTransferred += written;
+      return written;
     } 
   }
 
+  @Override
+  public long transfered() {
+    return shuffleTransferToAllowed ? super.transfered() : customTransferred;
+  }
+
   /**
    * This method transfers data using local buffer. It transfers data from 
    * a disk to a local buffer in memory, and then it transfers data from the 
@@ -146,23 +163,31 @@ long customShuffleTransfer(WritableByteChannel target, long position)
   }
 
   
+  /**
+   * Called when the region is released by the channel, or by the last
+   * {@link #release()}. The file is still open at this point, so a completed
+   * transfer can drop the region from the OS cache before it is closed.
+   */
   @Override
-  public void releaseExternalResources() {
+  protected void deallocate() {
     if (readaheadRequest != null) {
       readaheadRequest.cancel();
     }
-    super.releaseExternalResources();
+    if (this.count > 0 && transfered() >= this.count) {
+      transferSuccessful();
+    }
+    super.deallocate();
   }
-  
+
   /**
    * Call when the transfer completes successfully so we can advise the OS that
    * we don't need the region to be cached anymore.
    */
   public void transferSuccessful() {
-    if (manageOsCache && getCount() > 0) {
+    if (manageOsCache && this.count > 0) {
       try {
         NativeIO.POSIX.getCacheManipulator().posixFadviseIfPossible(identifier,
-            fd, getPosition(), getCount(), POSIX_FADV_DONTNEED);
+            fd, this.position, this.count, POSIX_FADV_DONTNEED);
       } catch (Throwable t) {
         LOG.warn("Failed to manage OS cache for " + identifier, t);
       }
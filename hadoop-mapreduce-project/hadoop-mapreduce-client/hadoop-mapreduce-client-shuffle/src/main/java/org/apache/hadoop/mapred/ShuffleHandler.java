@@ -20,18 +20,21 @@
 
 import static org.fusesource.leveldbjni.JniDBFactory.asString;
 import static org.fusesource.leveldbjni.JniDBFactory.bytes;
-import static org.jboss.netty.buffer.ChannelBuffers.wrappedBuffer;
-import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
-import static org.jboss.netty.handler.codec.http.HttpMethod.GET;
-import static org.jboss.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
-import static org.jboss.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
-import static org.jboss.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
-import static org.jboss.netty.handler.codec.http.HttpResponseStatus.METHOD_NOT_ALLOWED;
-import static org.jboss.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
-import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
-import static org.jboss.netty.handler.codec.http.HttpResponseStatus.UNAUTHORIZED;
-import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
-
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+import static io.netty.buffer.Unpooled.wrappedBuffer;
+import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpMethod.GET;
+import static io.netty.handler.codec.http.HttpMethod.POST;
+import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
+import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.netty.handler.codec.http.HttpResponseStatus.METHOD_NOT_ALLOWED;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpResponseStatus.UNAUTHORIZED;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -40,16 +43,22 @@
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import javax.crypto.SecretKey;
@@ -58,6 +67,7 @@
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DataInputByteBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.ReadaheadPool;
 import org.apache.hadoop.io.SecureIOUtils;
 import org.apache.hadoop.io.Text;
@@ -67,19 +77,23 @@
 import org.apache.hadoop.mapreduce.security.token.JobTokenIdentifier;
 import org.apache.hadoop.mapreduce.security.token.JobTokenSecretManager;
 import org.apache.hadoop.mapreduce.task.reduce.ShuffleHeader;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsSource;
 import org.apache.hadoop.metrics2.MetricsSystem;
 import org.apache.hadoop.metrics2.annotation.Metric;
 import org.apache.hadoop.metrics2.annotation.Metrics;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterInt;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.proto.SecurityProtos.TokenProto;
 import org.apache.hadoop.security.ssl.SSLFactory;
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.util.DiskChecker;
 import org.apache.hadoop.util.Shell;
-import org.apache.hadoop.util.concurrent.HadoopExecutors;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.proto.YarnServerCommonProtos.VersionProto;
 import org.apache.hadoop.yarn.server.api.ApplicationInitializationContext;
@@ -94,42 +108,6 @@
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.Options;
-import org.jboss.netty.bootstrap.ServerBootstrap;
-import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFactory;
-import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelFutureListener;
-import org.jboss.netty.channel.ChannelHandler;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.ChannelPipeline;
-import org.jboss.netty.channel.ChannelPipelineFactory;
-import org.jboss.netty.channel.ChannelStateEvent;
-import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.ExceptionEvent;
-import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.channel.group.ChannelGroup;
-import org.jboss.netty.channel.group.DefaultChannelGroup;
-import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
-import org.jboss.netty.handler.codec.frame.TooLongFrameException;
-import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
-import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
-import org.jboss.netty.handler.codec.http.HttpRequest;
-import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
-import org.jboss.netty.handler.codec.http.HttpResponse;
-import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
-import org.jboss.netty.handler.codec.http.HttpResponseStatus;
-import org.jboss.netty.handler.codec.http.QueryStringDecoder;
-import org.jboss.netty.handler.ssl.SslHandler;
-import org.jboss.netty.handler.stream.ChunkedWriteHandler;
-import org.jboss.netty.handler.timeout.IdleState;
-import org.jboss.netty.handler.timeout.IdleStateAwareChannelHandler;
-import org.jboss.netty.handler.timeout.IdleStateEvent;
-import org.jboss.netty.handler.timeout.IdleStateHandler;
-import org.jboss.netty.util.CharsetUtil;
-import org.jboss.netty.util.HashedWheelTimer;
-import org.jboss.netty.util.Timer;
 import org.eclipse.jetty.http.HttpHeader;
 import org.slf4j.LoggerFactory;
 
@@ -144,6 +122,56 @@
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
 public class ShuffleHandler extends AuxiliaryService {
 
   private static final org.slf4j.Logger LOG =
@@ -177,8 +205,11 @@ public class ShuffleHandler extends AuxiliaryService {
   public static final String RETRY_AFTER_HEADER = "Retry-After";
 
   private int port;
-  private ChannelFactory selector;
-  private final ChannelGroup accepted = new DefaultChannelGroup();
+  private EventLoopGroup bossGroup;
+  private EventLoopGroup workerGroup;
+  private Class<? extends ServerChannel> serverChannelClass;
+  private final ChannelGroup accepted =
+      new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
   protected HttpPipelineFactory pipelineFact;
   private int sslFileBufferSize;
   
@@ -235,6 +266,14 @@ public class ShuffleHandler extends AuxiliaryService {
   public static final String MAX_SHUFFLE_THREADS = "mapreduce.shuffle.max.threads";
   // 0 implies Netty default of 2 * number of available processors
   public static final int DEFAULT_MAX_SHUFFLE_THREADS = 0;
+
+  public static final String SHUFFLE_NATIVE_TRANSPORT_ENABLED =
+      "mapreduce.shuffle.native-transport.enable";
+  public static final boolean DEFAULT_SHUFFLE_NATIVE_TRANSPORT_ENABLED = true;
+
+  public static final String SHUFFLE_PUSH_MERGE_ENABLED =
+      "mapreduce.shuffle.push.merge.enabled";
+  public static final boolean DEFAULT_SHUFFLE_PUSH_MERGE_ENABLED = true;
   
   public static final String SHUFFLE_BUFFER_SIZE = 
       "mapreduce.shuffle.transfer.buffer.size";
@@ -246,6 +285,20 @@ public class ShuffleHandler extends AuxiliaryService {
   public static final boolean WINDOWS_DEFAULT_SHUFFLE_TRANSFERTO_ALLOWED = 
       false;
   private static final String TIMEOUT_HANDLER = "timeout";
+  /** The largest chunk of a pushed map output passed to the push handler. */
+  private static final int PUSH_CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * Requests received on a keep-alive connection while an earlier request is
+   * still being served. The responses are sent in the order of the requests.
+   */
+  private static final AttributeKey<Queue<FullHttpRequest>> PENDING_REQUESTS =
+      AttributeKey.valueOf("ShuffleHandler.pendingRequests");
+  /** Pending requests per connection after which reading is suspended. */
+  private static final int MAX_PENDING_REQUESTS = 16;
+  /** Set on connections accepted beyond the maximum number of connections. */
+  private static final AttributeKey<Boolean> REJECTED =
+      AttributeKey.valueOf("ShuffleHandler.rejected");
 
   /* the maximum number of files a single GET request can
    open simultaneously during shuffle
@@ -257,10 +310,32 @@ public class ShuffleHandler extends AuxiliaryService {
   boolean connectionKeepAliveEnabled = false;
   private int connectionKeepAliveTimeOut;
   private int mapOutputMetaInfoCacheSize;
-  private Timer timer;
+  /** The merged outputs of pushed maps, null if pushes are not accepted. */
+  private ShuffleMerger merger;
+  /** The user the merged outputs are owned by. */
+  private String mergedOutputOwner;
 
+  /**
+   * The shuffle metrics. Besides the totals, a record tagged with the job id
+   * is added for every job with map outputs on this node, so that the
+   * shuffle bandwidth of each job can be derived from its counters.
+   */
   @Metrics(about="Shuffle output metrics", context="mapred")
-  static class ShuffleMetrics implements ChannelFutureListener {
+  static class ShuffleMetrics implements ChannelFutureListener, MetricsSource {
+    private static final MetricsInfo JOB_RECORD =
+        info("ShuffleJobMetrics", "Shuffle output metrics of a job");
+    private static final MetricsInfo JOB_ID = info("JobId", "Job id");
+    private static final MetricsInfo JOB_OUTPUT_BYTES =
+        info("ShuffleJobOutputBytes", "Shuffle output of the job in bytes");
+    private static final MetricsInfo JOB_OUTPUTS_OK =
+        info("ShuffleJobOutputsOK", "# of succeeded outputs of the job");
+
+    private final MetricsRegistry registry =
+        new MetricsRegistry("ShuffleMetrics").setContext("mapred");
+    /** Bytes and outputs sent per job. */
+    private final Map<String, AtomicLong[]> jobOutputs =
+        new ConcurrentHashMap<>();
+
     @Metric("Shuffle output in bytes")
         MutableCounterLong shuffleOutputBytes;
     @Metric("# of failed shuffle outputs")
@@ -269,6 +344,8 @@ static class ShuffleMetrics implements ChannelFutureListener {
         MutableCounterInt shuffleOutputsOK;
     @Metric("# of current shuffle connections")
         MutableGaugeInt shuffleConnections;
+    @Metric("Map outputs pushed to the merged outputs in bytes")
+        MutableCounterLong shufflePushedBytes;
 
     @Override
     public void operationComplete(ChannelFuture future) throws Exception {
@@ -279,6 +356,28 @@ public void operationComplete(ChannelFuture future) throws Exception {
       }
       shuffleConnections.decr();
     }
+
+    void jobOutputSent(String jobId, long bytes) {
+      AtomicLong[] outputs = jobOutputs.computeIfAbsent(jobId,
+          k -> new AtomicLong[] {new AtomicLong(), new AtomicLong()});
+      outputs[0].addAndGet(bytes);
+      outputs[1].incrementAndGet();
+    }
+
+    void removeJob(String jobId) {
+      jobOutputs.remove(jobId);
+    }
+
+    @Override
+    public void getMetrics(MetricsCollector collector, boolean all) {
+      registry.snapshot(collector.addRecord(registry.info()), all);
+      for (Map.Entry<String, AtomicLong[]> job : jobOutputs.entrySet()) {
+        collector.addRecord(JOB_RECORD).setContext("mapred")
+            .tag(JOB_ID, job.getKey())
+            .addCounter(JOB_OUTPUT_BYTES, job.getValue()[0].get())
+            .addCounter(JOB_OUTPUTS_OK, job.getValue()[1].get());
+      }
+    }
   }
 
   final ShuffleMetrics metrics;
@@ -294,20 +393,18 @@ public ReduceMapFileCount(ReduceContext rc) {
     @Override
     public void operationComplete(ChannelFuture future) throws Exception {
       if (!future.isSuccess()) {
-        future.getChannel().close();
+        future.channel().close();
         return;
       }
       int waitCount = this.reduceContext.getMapsToWait().decrementAndGet();
       if (waitCount == 0) {
         metrics.operationComplete(future);
-        // Let the idle timer handler close keep-alive connections
+        // Serve the next pipelined request, or let the idle timer handler
+        // close keep-alive connections
         if (reduceContext.getKeepAlive()) {
-          ChannelPipeline pipeline = future.getChannel().getPipeline();
-          TimeoutHandler timeoutHandler =
-              (TimeoutHandler)pipeline.get(TIMEOUT_HANDLER);
-          timeoutHandler.setEnabledTimeout(true);
+          pipelineFact.getSHUFFLE().requestDone(reduceContext.getCtx());
         } else {
-          future.getChannel().close();
+          future.channel().close();
         }
       } else {
         pipelineFact.getSHUFFLE().sendMap(reduceContext);
@@ -316,7 +413,7 @@ public void operationComplete(ChannelFuture future) throws Exception {
   }
 
   /**
-   * Maintain parameters per messageReceived() Netty context.
+   * Maintain parameters per channelRead0() Netty context.
    * Allows sendMapOutput calls from operationComplete()
    */
   private static class ReduceContext {
@@ -330,11 +427,12 @@ private static class ReduceContext {
     private Map<String, Shuffle.MapOutputInfo> infoMap;
     private String jobId;
     private final boolean keepAlive;
+    private final boolean merged;
 
     public ReduceContext(List<String> mapIds, int rId,
                          ChannelHandlerContext context, String usr,
                          Map<String, Shuffle.MapOutputInfo> mapOutputInfoMap,
-                         String jobId, boolean keepAlive) {
+                         String jobId, boolean keepAlive, boolean merged) {
 
       this.mapIds = mapIds;
       this.reduceId = rId;
@@ -356,6 +454,7 @@ public ReduceContext(List<String> mapIds, int rId,
       this.infoMap = mapOutputInfoMap;
       this.jobId = jobId;
       this.keepAlive = keepAlive;
+      this.merged = merged;
     }
 
     public int getReduceId() {
@@ -393,6 +492,10 @@ public AtomicInteger getMapsToWait() {
     public boolean getKeepAlive() {
       return keepAlive;
     }
+
+    public boolean isMerged() {
+      return merged;
+    }
   }
 
   ShuffleHandler(MetricsSystem ms) {
@@ -513,11 +616,21 @@ protected void serviceInit(Configuration conf) throws Exception {
     ThreadFactory workerFactory = new ThreadFactoryBuilder()
       .setNameFormat("ShuffleHandler Netty Worker #%d")
       .build();
-    
-    selector = new NioServerSocketChannelFactory(
-        HadoopExecutors.newCachedThreadPool(bossFactory),
-        HadoopExecutors.newCachedThreadPool(workerFactory),
-        maxShuffleThreads);
+
+    // The native transport sends file regions with sendfile, bypassing the
+    // custom transfer used when transferTo is not allowed.
+    if (conf.getBoolean(SHUFFLE_NATIVE_TRANSPORT_ENABLED,
+        DEFAULT_SHUFFLE_NATIVE_TRANSPORT_ENABLED) && shuffleTransferToAllowed
+        && Epoll.isAvailable()) {
+      LOG.info("Using the native epoll transport");
+      bossGroup = new EpollEventLoopGroup(1, bossFactory);
+      workerGroup = new EpollEventLoopGroup(maxShuffleThreads, workerFactory);
+      serverChannelClass = EpollServerSocketChannel.class;
+    } else {
+      bossGroup = new NioEventLoopGroup(1, bossFactory);
+      workerGroup = new NioEventLoopGroup(maxShuffleThreads, workerFactory);
+      serverChannelClass = NioServerSocketChannel.class;
+    }
     super.serviceInit(new Configuration(conf));
   }
 
@@ -528,27 +641,7 @@ protected void serviceStart() throws Exception {
     userRsrc = new ConcurrentHashMap<String,String>();
     secretManager = new JobTokenSecretManager();
     recoverState(conf);
-    ServerBootstrap bootstrap = new ServerBootstrap(selector);
-    // Timer is shared across entire factory and must be released separately
-    timer = new HashedWheelTimer();
-    try {
-      pipelineFact = new HttpPipelineFactory(conf, timer);
-    } catch (Exception ex) {
-      throw new RuntimeException(ex);
-    }
-    bootstrap.setOption("backlog", conf.getInt(SHUFFLE_LISTEN_QUEUE_SIZE,
-        DEFAULT_SHUFFLE_LISTEN_QUEUE_SIZE));
-    bootstrap.setOption("child.keepAlive", true);
-    bootstrap.setPipelineFactory(pipelineFact);
-    port = conf.getInt(SHUFFLE_PORT_CONFIG_KEY, DEFAULT_SHUFFLE_PORT);
-    Channel ch = bootstrap.bind(new InetSocketAddress(port));
-    accepted.add(ch);
-    port = ((InetSocketAddress)ch.getLocalAddress()).getPort();
-    conf.set(SHUFFLE_PORT_CONFIG_KEY, Integer.toString(port));
-    pipelineFact.SHUFFLE.setPort(port);
-    LOG.info(getName() + " listening on port " + port);
-    super.serviceStart();
-
+    // set before binding, the pipelines of new connections use them
     sslFileBufferSize = conf.getInt(SUFFLE_SSL_FILE_BUFFER_SIZE_KEY,
                                     DEFAULT_SUFFLE_SSL_FILE_BUFFER_SIZE);
     connectionKeepAliveEnabled =
@@ -560,22 +653,51 @@ protected void serviceStart() throws Exception {
     mapOutputMetaInfoCacheSize =
         Math.max(1, conf.getInt(SHUFFLE_MAPOUTPUT_META_INFO_CACHE_SIZE,
           DEFAULT_SHUFFLE_MAPOUTPUT_META_INFO_CACHE_SIZE));
+    if (conf.getBoolean(SHUFFLE_PUSH_MERGE_ENABLED,
+        DEFAULT_SHUFFLE_PUSH_MERGE_ENABLED)) {
+      merger = new ShuffleMerger(getAuxiliaryLocalPathHandler());
+      mergedOutputOwner =
+          UserGroupInformation.getCurrentUser().getShortUserName();
+    }
+    try {
+      pipelineFact = new HttpPipelineFactory(conf);
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+    ServerBootstrap bootstrap = new ServerBootstrap()
+        .group(bossGroup, workerGroup)
+        .channel(serverChannelClass)
+        .option(ChannelOption.SO_BACKLOG,
+            conf.getInt(SHUFFLE_LISTEN_QUEUE_SIZE,
+                DEFAULT_SHUFFLE_LISTEN_QUEUE_SIZE))
+        .handler(new AcceptHandler())
+        .childOption(ChannelOption.SO_KEEPALIVE, true)
+        .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+        .childHandler(pipelineFact);
+    port = conf.getInt(SHUFFLE_PORT_CONFIG_KEY, DEFAULT_SHUFFLE_PORT);
+    Channel ch = bootstrap.bind(new InetSocketAddress(port))
+        .syncUninterruptibly().channel();
+    accepted.add(ch);
+    port = ((InetSocketAddress)ch.localAddress()).getPort();
+    conf.set(SHUFFLE_PORT_CONFIG_KEY, Integer.toString(port));
+    pipelineFact.SHUFFLE.setPort(port);
+    LOG.info(getName() + " listening on port " + port);
+    super.serviceStart();
   }
 
   @Override
   protected void serviceStop() throws Exception {
     accepted.close().awaitUninterruptibly(10, TimeUnit.SECONDS);
-    if (selector != null) {
-      ServerBootstrap bootstrap = new ServerBootstrap(selector);
-      bootstrap.releaseExternalResources();
+    if (bossGroup != null) {
+      bossGroup.shutdownGracefully(0, 10, TimeUnit.SECONDS);
+      workerGroup.shutdownGracefully(0, 10, TimeUnit.SECONDS);
+      bossGroup.terminationFuture().awaitUninterruptibly(10, TimeUnit.SECONDS);
+      workerGroup.terminationFuture().awaitUninterruptibly(10,
+          TimeUnit.SECONDS);
     }
     if (pipelineFact != null) {
       pipelineFact.destroy();
     }
-    if (timer != null) {
-      // Release this shared timer resource
-      timer.stop();
-    }
     if (stateDb != null) {
       stateDb.close();
     }
@@ -762,6 +884,10 @@ private void removeJobShuffleInfo(JobID jobId) throws IOException {
     String jobIdStr = jobId.toString();
     secretManager.removeTokenForJob(jobIdStr);
     userRsrc.remove(jobIdStr);
+    metrics.removeJob(jobIdStr);
+    if (merger != null) {
+      merger.removeJob(jobIdStr);
+    }
     if (stateDb != null) {
       try {
         stateDb.delete(bytes(jobIdStr));
@@ -772,7 +898,223 @@ private void removeJobShuffleInfo(JobID jobId) throws IOException {
     }
   }
 
-  static class TimeoutHandler extends IdleStateAwareChannelHandler {
+  /**
+   * Counts the accepted connections against the maximum number of shuffle
+   * connections. It runs on the boss thread, so connections are admitted in
+   * the order in which they were accepted.
+   */
+  class AcceptHandler extends ChannelInboundHandlerAdapter {
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg)
+        throws Exception {
+      Channel child = (Channel) msg;
+      if ((maxShuffleConnections > 0) &&
+          (accepted.size() >= maxShuffleConnections)) {
+        child.attr(REJECTED).set(Boolean.TRUE);
+      } else {
+        accepted.add(child);
+      }
+      super.channelRead(ctx, msg);
+    }
+  }
+
+  /**
+   * Receives the map outputs pushed by the maps of this node and appends
+   * them to the merged outputs of their reduces, see {@link ShuffleMerger}.
+   * The body of a push is written as it arrives instead of being aggregated.
+   * Other requests are passed on to the shuffle.
+   */
+  class PushHandler extends ChannelInboundHandlerAdapter {
+    /** Whether the contents of the current request are pushed outputs. */
+    private boolean pushing = false;
+    /** Set when a push failed, its remaining contents are dropped. */
+    private boolean failed = false;
+    private String jobId;
+    private String mapId;
+    private FullHttpResponse response;
+    /** Received bytes of a header which is not complete yet. */
+    private ByteBuf pending;
+    /** The map output being received, and where it is written to. */
+    private ShuffleMerger.Segment segment;
+    private FileChannel file;
+    private long written;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg)
+        throws Exception {
+      if (Boolean.TRUE.equals(ctx.channel().attr(REJECTED).get())) {
+        ReferenceCountUtil.release(msg);
+        return;
+      }
+      if (msg instanceof HttpRequest) {
+        HttpRequest request = (HttpRequest) msg;
+        pushing = request.getMethod() == POST;
+        if (pushing) {
+          startPush(ctx, request);
+        }
+      }
+      if (!pushing) {
+        ctx.fireChannelRead(msg);
+        return;
+      }
+      try {
+        if (msg instanceof HttpContent && !failed) {
+          receive(ctx, ((HttpContent) msg).content());
+        }
+        if (msg instanceof LastHttpContent) {
+          pushing = false;
+          if (!failed) {
+            finishPush(ctx);
+          }
+        }
+      } catch (IOException e) {
+        LOG.error("Error merging the output of " + mapId, e);
+        fail(ctx, e.getMessage(), INTERNAL_SERVER_ERROR);
+      } finally {
+        ReferenceCountUtil.release(msg);
+      }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      closeFile();
+      if (pending != null) {
+        pending.release();
+        pending = null;
+      }
+      super.channelInactive(ctx);
+    }
+
+    private void startPush(ChannelHandlerContext ctx, HttpRequest request) {
+      failed = false;
+      if (!request.getDecoderResult().isSuccess()) {
+        fail(ctx, "", BAD_REQUEST);
+        return;
+      }
+      if (!ShuffleHeader.DEFAULT_HTTP_HEADER_NAME.equals(
+              request.headers().get(ShuffleHeader.HTTP_HEADER_NAME))
+          || !ShuffleHeader.DEFAULT_HTTP_HEADER_VERSION.equals(
+              request.headers().get(ShuffleHeader.HTTP_HEADER_VERSION))) {
+        fail(ctx, "Incompatible shuffle request version", BAD_REQUEST);
+        return;
+      }
+      QueryStringDecoder decoder = new QueryStringDecoder(request.getUri());
+      List<String> jobQ = decoder.parameters().get("job");
+      List<String> mapQ = decoder.parameters().get("map");
+      if (!"/mapOutput".equals(decoder.path()) || jobQ == null ||
+          mapQ == null || jobQ.size() != 1 || mapQ.size() != 1) {
+        fail(ctx, "Required param job and map", BAD_REQUEST);
+        return;
+      }
+      jobId = jobQ.get(0);
+      mapId = mapQ.get(0);
+      response = new DefaultFullHttpResponse(HTTP_1_1, OK);
+      try {
+        pipelineFact.getSHUFFLE().verifyRequest(jobId, ctx, request,
+            response, new URL("http", "", port, request.getUri()));
+      } catch (IOException e) {
+        LOG.warn("Push failure ", e);
+        fail(ctx, e.getMessage(), UNAUTHORIZED);
+      }
+    }
+
+    /**
+     * Write the received bytes to the merged outputs. A map output is
+     * preceded by its {@link ShuffleHeader}, which may be split over several
+     * contents.
+     */
+    private void receive(ChannelHandlerContext ctx, ByteBuf content)
+        throws IOException {
+      ByteBuf in = content;
+      if (pending != null && pending.isReadable()) {
+        pending.writeBytes(content);
+        in = pending;
+      }
+      while (in.isReadable()) {
+        if (segment == null && !startSegment(in)) {
+          break;
+        }
+        int n = (int) Math.min(in.readableBytes(),
+            segment.record.partLength - written);
+        ByteBuffer buf = in.nioBuffer(in.readerIndex(), n);
+        while (buf.hasRemaining()) {
+          written += file.write(buf, segment.record.startOffset + written);
+        }
+        in.skipBytes(n);
+        if (written == segment.record.partLength) {
+          closeFile();
+          merger.commit(segment);
+          metrics.shufflePushedBytes.incr(written);
+          segment = null;
+        }
+      }
+      if (in != pending && in.isReadable()) {
+        if (pending == null) {
+          pending = ctx.alloc().buffer();
+        }
+        pending.writeBytes(in);
+      }
+      if (pending != null) {
+        pending.discardReadBytes();
+      }
+    }
+
+    /**
+     * Read the header of the next map output and reserve its space.
+     * @return false if the header is not complete yet.
+     */
+    private boolean startSegment(ByteBuf in) throws IOException {
+      int start = in.readerIndex();
+      ShuffleHeader header = new ShuffleHeader();
+      try {
+        header.readFields(new ByteBufInputStream(in));
+      } catch (EOFException e) {
+        in.readerIndex(start);
+        return false;
+      }
+      if (!mapId.equals(header.getMapId()) ||
+          header.getCompressedLength() < 0 ||
+          header.getUncompressedLength() < 0 || header.getForReduce() < 0) {
+        throw new IOException("Bad header of a pushed output of " + mapId);
+      }
+      segment = merger.reserve(jobId, header.getForReduce(), mapId,
+          header.getUncompressedLength(), header.getCompressedLength());
+      file = FileChannel.open(Paths.get(segment.file.toUri().getPath()),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      written = 0;
+      return true;
+    }
+
+    private void finishPush(ChannelHandlerContext ctx) {
+      if (segment != null || (pending != null && pending.isReadable())) {
+        fail(ctx, "Incomplete map output", BAD_REQUEST);
+        return;
+      }
+      response.headers().set(HttpHeader.CONTENT_LENGTH.asString(), 0);
+      response.headers().set(HttpHeader.CONNECTION.asString(),
+          CONNECTION_CLOSE);
+      ctx.channel().writeAndFlush(response)
+          .addListener(ChannelFutureListener.CLOSE);
+    }
+
+    private void fail(ChannelHandlerContext ctx, String message,
+        HttpResponseStatus status) {
+      failed = true;
+      closeFile();
+      segment = null;
+      pipelineFact.getSHUFFLE().sendError(ctx, String.valueOf(message),
+          status);
+    }
+
+    private void closeFile() {
+      if (file != null) {
+        IOUtils.cleanupWithLogger(LOG, file);
+        file = null;
+      }
+    }
+  }
+
+  static class TimeoutHandler extends ChannelDuplexHandler {
 
     private boolean enabledTimeout;
 
@@ -781,20 +1123,25 @@ void setEnabledTimeout(boolean enabledTimeout) {
     }
 
     @Override
-    public void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e) {
-      if (e.getState() == IdleState.WRITER_IDLE && enabledTimeout) {
-        e.getChannel().close();
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+        throws Exception {
+      if (evt instanceof IdleStateEvent) {
+        if (((IdleStateEvent) evt).state() == IdleState.WRITER_IDLE &&
+            enabledTimeout) {
+          ctx.channel().close();
+        }
+      } else {
+        super.userEventTriggered(ctx, evt);
       }
     }
   }
 
-  class HttpPipelineFactory implements ChannelPipelineFactory {
+  class HttpPipelineFactory extends ChannelInitializer<SocketChannel> {
 
     final Shuffle SHUFFLE;
     private SSLFactory sslFactory;
-    private final ChannelHandler idleStateHandler;
 
-    public HttpPipelineFactory(Configuration conf, Timer timer) throws Exception {
+    public HttpPipelineFactory(Configuration conf) throws Exception {
       SHUFFLE = getShuffle(conf);
       if (conf.getBoolean(MRConfig.SHUFFLE_SSL_ENABLED_KEY,
                           MRConfig.SHUFFLE_SSL_ENABLED_DEFAULT)) {
@@ -802,7 +1149,6 @@ public HttpPipelineFactory(Configuration conf, Timer timer) throws Exception {
         sslFactory = new SSLFactory(SSLFactory.Mode.SERVER, conf);
         sslFactory.init();
       }
-      this.idleStateHandler = new IdleStateHandler(timer, 0, connectionKeepAliveTimeOut, 0);
     }
 
     public Shuffle getSHUFFLE() {
@@ -816,19 +1162,23 @@ public void destroy() {
     }
 
     @Override
-    public ChannelPipeline getPipeline() throws Exception {
-      ChannelPipeline pipeline = Channels.pipeline();
+    protected void initChannel(SocketChannel ch) throws Exception {
+      ChannelPipeline pipeline = ch.pipeline();
       if (sslFactory != null) {
         pipeline.addLast("ssl", new SslHandler(sslFactory.createSSLEngine()));
       }
-      pipeline.addLast("decoder", new HttpRequestDecoder());
-      pipeline.addLast("aggregator", new HttpChunkAggregator(1 << 16));
+      pipeline.addLast("decoder",
+          new HttpRequestDecoder(4096, 8192, PUSH_CHUNK_SIZE));
+      if (merger != null) {
+        pipeline.addLast("push", new PushHandler());
+      }
+      pipeline.addLast("aggregator", new HttpObjectAggregator(1 << 16));
       pipeline.addLast("encoder", new HttpResponseEncoder());
       pipeline.addLast("chunking", new ChunkedWriteHandler());
-      pipeline.addLast("shuffle", SHUFFLE);
-      pipeline.addLast("idle", idleStateHandler);
+      pipeline.addLast("idle",
+          new IdleStateHandler(0, connectionKeepAliveTimeOut, 0));
       pipeline.addLast(TIMEOUT_HANDLER, new TimeoutHandler());
-      return pipeline;
+      pipeline.addLast("shuffle", SHUFFLE);
       // TODO factor security manager into pipeline
       // TODO factor out encode/decode to permit binary shuffle
       // TODO factor out decode of index to permit alt. models
@@ -836,7 +1186,8 @@ public ChannelPipeline getPipeline() throws Exception {
 
   }
 
-  class Shuffle extends SimpleChannelUpstreamHandler {
+  @ChannelHandler.Sharable
+  class Shuffle extends SimpleChannelInboundHandler<FullHttpRequest> {
     private static final int MAX_WEIGHT = 10 * 1024 * 1024;
     private static final int EXPIRE_AFTER_ACCESS_MINUTES = 5;
     private static final int ALLOWED_CONCURRENCY = 16;
@@ -908,9 +1259,9 @@ private List<String> splitMaps(List<String> mapq) {
     }
 
     @Override
-    public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent evt) 
+    public void channelActive(ChannelHandlerContext ctx)
         throws Exception {
-      if ((maxShuffleConnections > 0) && (accepted.size() >= maxShuffleConnections)) {
+      if (Boolean.TRUE.equals(ctx.channel().attr(REJECTED).get())) {
         LOG.info(String.format("Current number of shuffle connections (%d) is " + 
             "greater than or equal to the max allowed shuffle connections (%d)", 
             accepted.size(), maxShuffleConnections));
@@ -924,15 +1275,76 @@ public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent evt)
         sendError(ctx, "", TOO_MANY_REQ_STATUS, headers);
         return;
       }
-      accepted.add(evt.getChannel());
-      super.channelOpen(ctx, evt);
-     
+      super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      Queue<FullHttpRequest> pending =
+          ctx.channel().attr(PENDING_REQUESTS).getAndSet(null);
+      if (pending != null) {
+        for (FullHttpRequest request : pending) {
+          request.release();
+        }
+      }
+      super.channelInactive(ctx);
     }
 
+    /**
+     * Serve a request, or queue it if an earlier request of the same
+     * connection is still being served. Requests are served one at a time, so
+     * that the map outputs of pipelined requests are not interleaved.
+     */
     @Override
-    public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
+    public void channelRead0(ChannelHandlerContext ctx,
+        FullHttpRequest request) throws Exception {
+      Channel ch = ctx.channel();
+      Queue<FullHttpRequest> pending = ch.attr(PENDING_REQUESTS).get();
+      if (pending != null) {
+        pending.add(request.retain());
+        if (pending.size() >= MAX_PENDING_REQUESTS) {
+          ch.config().setAutoRead(false);
+        }
+        return;
+      }
+      ch.attr(PENDING_REQUESTS).set(new ArrayDeque<FullHttpRequest>());
+      serveRequest(ctx, request);
+    }
+
+    /**
+     * Called when all map outputs of a keep-alive request have been sent.
+     * Serves the next pipelined request, if any, or lets the idle timer close
+     * the connection.
+     */
+    void requestDone(ChannelHandlerContext ctx) throws Exception {
+      Channel ch = ctx.channel();
+      // end the response, so that the encoder accepts the next one
+      ch.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+      Queue<FullHttpRequest> pending = ch.attr(PENDING_REQUESTS).get();
+      FullHttpRequest next = pending == null ? null : pending.poll();
+      if (next == null) {
+        ch.attr(PENDING_REQUESTS).set(null);
+        TimeoutHandler timeoutHandler =
+            (TimeoutHandler)ch.pipeline().get(TIMEOUT_HANDLER);
+        timeoutHandler.setEnabledTimeout(true);
+        return;
+      }
+      if (!ch.config().isAutoRead()) {
+        ch.config().setAutoRead(true);
+      }
+      try {
+        serveRequest(ctx, next);
+      } finally {
+        next.release();
+      }
+    }
+
+    private void serveRequest(ChannelHandlerContext ctx, HttpRequest request)
         throws Exception {
-      HttpRequest request = (HttpRequest) evt.getMessage();
+      if (!request.getDecoderResult().isSuccess()) {
+        sendError(ctx, BAD_REQUEST);
+        return;
+      }
       if (request.getMethod() != GET) {
           sendError(ctx, METHOD_NOT_ALLOWED);
           return;
@@ -946,9 +1358,10 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
                   request.headers()
                       .get(ShuffleHeader.HTTP_HEADER_VERSION) : null)) {
         sendError(ctx, "Incompatible shuffle request version", BAD_REQUEST);
+        return;
       }
       final Map<String,List<String>> q =
-        new QueryStringDecoder(request.getUri()).getParameters();
+        new QueryStringDecoder(request.getUri()).parameters();
       final List<String> keepAliveList = q.get("keepAlive");
       boolean keepAliveParam = false;
       if (keepAliveList != null && keepAliveList.size() == 1) {
@@ -961,6 +1374,9 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
       final List<String> mapIds = splitMaps(q.get("map"));
       final List<String> reduceQ = q.get("reduce");
       final List<String> jobQ = q.get("job");
+      final List<String> mergedQ = q.get(ShuffleHeader.HTTP_PARAM_MERGED);
+      final boolean merged = mergedQ != null && mergedQ.size() == 1 &&
+          Boolean.parseBoolean(mergedQ.get(0));
       if (LOG.isDebugEnabled()) {
         LOG.debug("RECV: " + request.getUri() +
             "\n  mapId: " + mapIds +
@@ -1008,16 +1424,21 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
 
       Map<String, MapOutputInfo> mapOutputInfoMap =
           new HashMap<String, MapOutputInfo>();
-      Channel ch = evt.getChannel();
-      ChannelPipeline pipeline = ch.getPipeline();
+      Channel ch = ctx.channel();
+      ChannelPipeline pipeline = ch.pipeline();
       TimeoutHandler timeoutHandler =
           (TimeoutHandler)pipeline.get(TIMEOUT_HANDLER);
       timeoutHandler.setEnabledTimeout(false);
       String user = userRsrc.get(jobId);
 
       try {
-        populateHeaders(mapIds, jobId, user, reduceId, request,
-          response, keepAliveParam, mapOutputInfoMap);
+        if (merged) {
+          populateMergedHeaders(mapIds, jobId, reduceId, response,
+              keepAliveParam, mapOutputInfoMap);
+        } else {
+          populateHeaders(mapIds, jobId, user, reduceId, request,
+            response, keepAliveParam, mapOutputInfoMap);
+        }
       } catch(IOException e) {
         ch.write(response);
         LOG.error("Shuffle error in populating headers :", e);
@@ -1026,10 +1447,19 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
         return;
       }
       ch.write(response);
-      //Initialize one ReduceContext object per messageReceived call
+      //Initialize one ReduceContext object per request
       boolean keepAlive = keepAliveParam || connectionKeepAliveEnabled;
+      if (mapIds.isEmpty()) {
+        if (keepAlive) {
+          requestDone(ctx);
+        } else {
+          ch.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT)
+              .addListener(ChannelFutureListener.CLOSE);
+        }
+        return;
+      }
       ReduceContext reduceContext = new ReduceContext(mapIds, reduceId, ctx,
-          user, mapOutputInfoMap, jobId, keepAlive);
+          user, mapOutputInfoMap, jobId, keepAlive, merged);
       for (int i = 0; i < Math.min(maxSessionOpenFiles, mapIds.size()); i++) {
         ChannelFuture nextMap = sendMap(reduceContext);
         if(nextMap == null) {
@@ -1040,7 +1470,7 @@ public void messageReceived(ChannelHandlerContext ctx, MessageEvent evt)
 
     /**
      * Calls sendMapOutput for the mapId pointed by ReduceContext.mapsToSend
-     * and increments it. This method is first called by messageReceived()
+     * and increments it. This method is first called by channelRead0()
      * maxSessionOpenFiles times and then on the completion of every
      * sendMapOutput operation. This limits the number of open files on a node,
      * which can get really large(exhausting file descriptors on the NM) if all
@@ -1063,15 +1493,33 @@ public ChannelFuture sendMap(ReduceContext reduceContext)
             info = getMapOutputInfo(mapId, reduceContext.getReduceId(),
                 reduceContext.getJobId(), reduceContext.getUser());
           }
+          if (info != null && info.mapOutputFileName == null) {
+            // not in the merged outputs, the reduce fetches it from the map
+            nextMap = sendMissingOutput(reduceContext.getCtx().channel(),
+                mapId, reduceContext.getReduceId());
+            nextMap.addListener(new ReduceMapFileCount(reduceContext));
+            return nextMap;
+          }
           nextMap = sendMapOutput(
               reduceContext.getCtx(),
-              reduceContext.getCtx().getChannel(),
-              reduceContext.getUser(), mapId,
+              reduceContext.getCtx().channel(),
+              reduceContext.isMerged() ? mergedOutputOwner
+                  : reduceContext.getUser(), mapId,
               reduceContext.getReduceId(), info);
           if (null == nextMap) {
             sendError(reduceContext.getCtx(), NOT_FOUND);
             return null;
           }
+          final String jobId = reduceContext.getJobId();
+          final long length = info == null ? 0 : info.indexRecord.partLength;
+          nextMap.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+              if (future.isSuccess()) {
+                metrics.jobOutputSent(jobId, length);
+              }
+            }
+          });
           nextMap.addListener(new ReduceMapFileCount(reduceContext));
         } catch (IOException e) {
           if (e instanceof DiskChecker.DiskErrorException) {
@@ -1179,6 +1627,58 @@ protected void populateHeaders(List<String> mapIds, String jobId,
       }
     }
 
+    /**
+     * Set the headers of a response with the merged outputs of the given
+     * maps. The outputs are looked up once, so that the response matches its
+     * content length even if the outputs of more maps are merged meanwhile.
+     */
+    private void populateMergedHeaders(List<String> mapIds, String jobId,
+        int reduce, HttpResponse response, boolean keepAliveParam,
+        Map<String, MapOutputInfo> mapOutputInfoMap) throws IOException {
+      long contentLength = 0;
+      int missing = 0;
+      DataOutputBuffer dob = new DataOutputBuffer();
+      for (String mapId : mapIds) {
+        ShuffleMerger.Segment segment = merger == null ? null
+            : merger.getSegment(jobId, reduce, mapId);
+        ShuffleHeader header;
+        if (segment == null) {
+          // all outputs are kept, the missing ones are only known here
+          mapOutputInfoMap.put(mapId,
+              new MapOutputInfo(null, new IndexRecord(0, 0, 0)));
+          header = new ShuffleHeader(mapId, ShuffleHeader.MISSING_OUTPUT_LENGTH,
+              ShuffleHeader.MISSING_OUTPUT_LENGTH, reduce);
+          missing++;
+        } else {
+          mapOutputInfoMap.put(mapId,
+              new MapOutputInfo(segment.file, segment.record));
+          header = new ShuffleHeader(mapId, segment.record.partLength,
+              segment.record.rawLength, reduce);
+          contentLength += segment.record.partLength;
+        }
+        dob.reset();
+        header.write(dob);
+        contentLength += dob.getLength();
+      }
+      setResponseHeaders(response, keepAliveParam, contentLength);
+      if (AUDITLOG.isDebugEnabled()) {
+        AUDITLOG.debug("merged shuffle for " + jobId + " reducer " + reduce +
+            " length " + contentLength + " mappers: " + mapIds +
+            " missing: " + missing);
+      }
+    }
+
+    private ChannelFuture sendMissingOutput(Channel ch, String mapId,
+        int reduce) throws IOException {
+      final ShuffleHeader header = new ShuffleHeader(mapId,
+          ShuffleHeader.MISSING_OUTPUT_LENGTH,
+          ShuffleHeader.MISSING_OUTPUT_LENGTH, reduce);
+      final DataOutputBuffer dob = new DataOutputBuffer();
+      header.write(dob);
+      return ch.writeAndFlush(
+          wrappedBuffer(dob.getData(), 0, dob.getLength()));
+    }
+
     protected void setResponseHeaders(HttpResponse response,
         boolean keepAliveParam, long contentLength) {
       if (!connectionKeepAliveEnabled && !keepAliveParam) {
@@ -1269,30 +1769,21 @@ protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx, Channel ch,
         return null;
       }
       ChannelFuture writeFuture;
-      if (ch.getPipeline().get(SslHandler.class) == null) {
+      if (ch.pipeline().get(SslHandler.class) == null) {
+        // The channel releases the region once it has been sent, which drops
+        // it from the OS cache.
         final FadvisedFileRegion partition = new FadvisedFileRegion(spill,
             info.startOffset, info.partLength, manageOsCache, readaheadLength,
             readaheadPool, spillfile.getAbsolutePath(), 
             shuffleBufferSize, shuffleTransferToAllowed);
-        writeFuture = ch.write(partition);
-        writeFuture.addListener(new ChannelFutureListener() {
-            // TODO error handling; distinguish IO/connection failures,
-            //      attribute to appropriate spill output
-          @Override
-          public void operationComplete(ChannelFuture future) {
-            if (future.isSuccess()) {
-              partition.transferSuccessful();
-            }
-            partition.releaseExternalResources();
-          }
-        });
+        writeFuture = ch.writeAndFlush(partition);
       } else {
         // HTTPS cannot be done with zero copy.
         final FadvisedChunkedFile chunk = new FadvisedChunkedFile(spill,
             info.startOffset, info.partLength, sslFileBufferSize,
             manageOsCache, readaheadLength, readaheadPool,
             spillfile.getAbsolutePath());
-        writeFuture = ch.write(chunk);
+        writeFuture = ch.writeAndFlush(chunk);
       }
       metrics.shuffleConnections.incr();
       metrics.shuffleOutputBytes.incr(info.partLength); // optimistic
@@ -1311,7 +1802,8 @@ protected void sendError(ChannelHandlerContext ctx, String message,
 
     protected void sendError(ChannelHandlerContext ctx, String msg,
         HttpResponseStatus status, Map<String, String> headers) {
-      HttpResponse response = new DefaultHttpResponse(HTTP_1_1, status);
+      FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status,
+          Unpooled.copiedBuffer(msg, CharsetUtil.UTF_8));
       response.headers().set(CONTENT_TYPE, "text/plain; charset=UTF-8");
       // Put shuffle version into http header
       response.headers().set(ShuffleHeader.HTTP_HEADER_NAME,
@@ -1321,18 +1813,16 @@ protected void sendError(ChannelHandlerContext ctx, String msg,
       for (Map.Entry<String, String> header : headers.entrySet()) {
         response.headers().set(header.getKey(), header.getValue());
       }
-      response.setContent(
-          ChannelBuffers.copiedBuffer(msg, CharsetUtil.UTF_8));
 
       // Close the connection as soon as the error message is sent.
-      ctx.getChannel().write(response).addListener(ChannelFutureListener.CLOSE);
+      ctx.channel().writeAndFlush(response)
+          .addListener(ChannelFutureListener.CLOSE);
     }
 
     @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e)
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
         throws Exception {
-      Channel ch = e.getChannel();
-      Throwable cause = e.getCause();
+      Channel ch = ctx.channel();
       if (cause instanceof TooLongFrameException) {
         sendError(ctx, BAD_REQUEST);
         return;
@@ -1349,8 +1839,8 @@ public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e)
       }
 
       LOG.error("Shuffle error: ", cause);
-      if (ch.isConnected()) {
-        LOG.error("Shuffle error " + e);
+      if (ch.isActive()) {
+        LOG.error("Shuffle error " + cause);
         sendError(ctx, INTERNAL_SERVER_ERROR);
       }
     }
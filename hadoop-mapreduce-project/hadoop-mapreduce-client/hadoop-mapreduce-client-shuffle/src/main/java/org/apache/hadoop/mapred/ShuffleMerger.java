@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.yarn.server.api.AuxiliaryLocalPathHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The merged map outputs of the jobs on this node. Map tasks push the
+ * partitions of their output to the {@link ShuffleHandler} of their node,
+ * which appends them to one file per reduce. A reduce then reads the outputs
+ * of all maps of the node from a single file, instead of one random read per
+ * map output.
+ *
+ * The space of a segment is reserved before it is written, so that pushes
+ * of different maps can be written at the same time. A segment is only
+ * served once it has been committed; the space of a failed push is left
+ * unused.
+ */
+class ShuffleMerger {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(ShuffleMerger.class);
+
+  /** The directory of the merged outputs, relative to the local dirs. */
+  static final String MERGED_DIR = "mapreduce_shuffle_merged";
+
+  private final AuxiliaryLocalPathHandler pathHandler;
+  /** The merged outputs by job and reduce. */
+  private final ConcurrentMap<String, Map<Integer, MergedOutput>> jobs =
+      new ConcurrentHashMap<>();
+
+  ShuffleMerger(AuxiliaryLocalPathHandler pathHandler) {
+    this.pathHandler = pathHandler;
+  }
+
+  /** A map output in the merged output of a reduce. */
+  static final class Segment {
+    final String jobId;
+    final int reduce;
+    final String mapId;
+    final Path file;
+    /** The position and lengths of the map output in the file. */
+    final IndexRecord record;
+
+    Segment(String jobId, int reduce, String mapId, Path file,
+        IndexRecord record) {
+      this.jobId = jobId;
+      this.reduce = reduce;
+      this.mapId = mapId;
+      this.file = file;
+      this.record = record;
+    }
+  }
+
+  /** The merged output of one reduce. */
+  private static final class MergedOutput {
+    private final Path file;
+    private long length = 0;
+    private final Map<String, IndexRecord> segments = new HashMap<>();
+
+    MergedOutput(Path file) {
+      this.file = file;
+    }
+  }
+
+  /**
+   * Reserve the space for a map output in the merged output of a reduce.
+   *
+   * @param jobId the job of the map
+   * @param reduce the reduce the map output is for
+   * @param mapId the map attempt
+   * @param rawLength the uncompressed length of the map output
+   * @param partLength the length of the map output
+   * @return the segment to write the map output to.
+   * @throws IOException if the merged output can not be created.
+   */
+  Segment reserve(String jobId, int reduce, String mapId, long rawLength,
+      long partLength) throws IOException {
+    Map<Integer, MergedOutput> outputs =
+        jobs.computeIfAbsent(jobId, k -> new HashMap<>());
+    MergedOutput output;
+    synchronized (outputs) {
+      output = outputs.get(reduce);
+      if (output == null) {
+        output = new MergedOutput(createFile(jobId, reduce));
+        outputs.put(reduce, output);
+      }
+    }
+    synchronized (output) {
+      IndexRecord record =
+          new IndexRecord(output.length, rawLength, partLength);
+      output.length += partLength;
+      return new Segment(jobId, reduce, mapId, output.file, record);
+    }
+  }
+
+  private Path createFile(String jobId, int reduce) throws IOException {
+    if (pathHandler == null) {
+      throw new IOException("No local dirs to merge map outputs in");
+    }
+    Path file = pathHandler.getLocalPathForWrite(
+        MERGED_DIR + "/" + jobId + "/reduce_" + reduce + ".out");
+    File dir = new File(file.getParent().toUri().getPath());
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create " + dir);
+    }
+    return file;
+  }
+
+  /**
+   * Make a completely written segment available to the reduce.
+   * @param segment the segment
+   */
+  void commit(Segment segment) {
+    Map<Integer, MergedOutput> outputs = jobs.get(segment.jobId);
+    if (outputs == null) {
+      // the job was removed meanwhile
+      return;
+    }
+    MergedOutput output;
+    synchronized (outputs) {
+      output = outputs.get(segment.reduce);
+    }
+    synchronized (output) {
+      output.segments.put(segment.mapId, segment.record);
+    }
+  }
+
+  /**
+   * Get a committed map output.
+   *
+   * @param jobId the job of the map
+   * @param reduce the reduce the map output is for
+   * @param mapId the map attempt
+   * @return the segment, or null if the map output was not pushed.
+   */
+  Segment getSegment(String jobId, int reduce, String mapId) {
+    Map<Integer, MergedOutput> outputs = jobs.get(jobId);
+    if (outputs == null) {
+      return null;
+    }
+    MergedOutput output;
+    synchronized (outputs) {
+      output = outputs.get(reduce);
+    }
+    if (output == null) {
+      return null;
+    }
+    IndexRecord record;
+    synchronized (output) {
+      record = output.segments.get(mapId);
+    }
+    return record == null ? null
+        : new Segment(jobId, reduce, mapId, output.file, record);
+  }
+
+  /**
+   * Delete the merged outputs of a job.
+   * @param jobId the job
+   */
+  void removeJob(String jobId) {
+    Map<Integer, MergedOutput> outputs = jobs.remove(jobId);
+    if (outputs == null) {
+      return;
+    }
+    synchronized (outputs) {
+      for (MergedOutput output : outputs.values()) {
+        File file = new File(output.file.toUri().getPath());
+        if (!file.delete() && file.exists()) {
+          LOG.warn("Could not delete " + file);
+        }
+        // the outputs of a job can be spread over several local dirs, the
+        // job directory is removed from each once it is empty.
+        file.getParentFile().delete();
+      }
+    }
+  }
+}
@@ -22,9 +22,9 @@
 import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
 import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertTrue;
-import static org.jboss.netty.buffer.ChannelBuffers.wrappedBuffer;
-import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
-import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static io.netty.buffer.Unpooled.wrappedBuffer;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assume.assumeTrue;
 import static org.mockito.Matchers.anyString;
@@ -38,13 +38,17 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.Socket;
 import java.net.URL;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.zip.CheckedOutputStream;
 import java.util.zip.Checksum;
 
@@ -62,9 +66,13 @@
 import org.apache.hadoop.mapreduce.security.token.JobTokenIdentifier;
 import org.apache.hadoop.mapreduce.security.token.JobTokenSecretManager;
 import org.apache.hadoop.mapreduce.task.reduce.ShuffleHeader;
+import org.apache.hadoop.metrics2.AbstractMetric;
+import org.apache.hadoop.metrics2.MetricsRecord;
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.metrics2.MetricsSource;
 import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.MetricsTag;
+import org.apache.hadoop.metrics2.impl.MetricsCollectorImpl;
 import org.apache.hadoop.metrics2.impl.MetricsSystemImpl;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.token.Token;
@@ -79,18 +87,20 @@
 import org.apache.hadoop.yarn.server.api.AuxiliaryLocalPathHandler;
 import org.apache.hadoop.yarn.server.nodemanager.containermanager.localizer.ContainerLocalizer;
 import org.apache.hadoop.yarn.server.records.Version;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.ChannelPipeline;
-import org.jboss.netty.channel.socket.SocketChannel;
-import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.AbstractChannel;
-import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
-import org.jboss.netty.handler.codec.http.HttpRequest;
-import org.jboss.netty.handler.codec.http.HttpResponse;
-import org.jboss.netty.handler.codec.http.HttpResponseStatus;
-import org.jboss.netty.handler.codec.http.HttpMethod;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.DecoderResult;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.util.AttributeKey;
+import io.netty.util.DefaultAttributeMap;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
@@ -145,7 +155,7 @@ protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx,
           for (int i = 0; i < 100; ++i) {
             header.write(dob);
           }
-          return ch.write(wrappedBuffer(dob.getData(), 0, dob.getLength()));
+          return ch.writeAndFlush(wrappedBuffer(dob.getData(), 0, dob.getLength()));
         }
       };
     }
@@ -165,13 +175,13 @@ public Path getLocalPathForRead(String path) throws IOException {
 
     @Override
     public Path getLocalPathForWrite(String path) throws IOException {
-      return new Path(ABS_LOG_DIR.getAbsolutePath());
+      return new Path(ABS_LOG_DIR.getAbsolutePath(), path);
     }
 
     @Override
     public Path getLocalPathForWrite(String path, long size)
         throws IOException {
-      return new Path(ABS_LOG_DIR.getAbsolutePath());
+      return new Path(ABS_LOG_DIR.getAbsolutePath(), path);
     }
   }
 
@@ -185,8 +195,8 @@ protected Shuffle getShuffle(final Configuration conf) {
         protected void verifyRequest(String appid, ChannelHandlerContext ctx,
             HttpRequest request, HttpResponse response, URL requestUri)
             throws IOException {
-          SocketChannel channel = (SocketChannel)(ctx.getChannel());
-          socketKeepAlive = channel.getConfig().isKeepAlive();
+          SocketChannel channel = (SocketChannel)(ctx.channel());
+          socketKeepAlive = channel.config().isKeepAlive();
         }
       };
     }
@@ -247,6 +257,58 @@ static void checkShuffleMetrics(MetricsSystem ms, long bytes, int failed,
     assertGauge("ShuffleConnections", connections, rb);
   }
 
+  /**
+   * Validate the per-job shuffle metrics.
+   *
+   * @throws Exception exception
+   */
+  @Test (timeout = 10000)
+  public void testJobShuffleMetrics() throws Exception {
+    MetricsSystem ms = new MetricsSystemImpl();
+    ShuffleHandler sh = new ShuffleHandler(ms);
+    sh.metrics.jobOutputSent("job_12345_0001", 1*MiB);
+    sh.metrics.jobOutputSent("job_12345_0001", 2*MiB);
+    sh.metrics.jobOutputSent("job_12345_0002", 5*MiB);
+
+    MetricsSource source = ms.getSource("ShuffleMetrics");
+    MetricsCollectorImpl collector = new MetricsCollectorImpl();
+    source.getMetrics(collector, true);
+    Map<String, MetricsRecord> jobRecords = new HashMap<>();
+    for (MetricsRecord record : collector.getRecords()) {
+      if (record.name().equals("ShuffleJobMetrics")) {
+        for (MetricsTag tag : record.tags()) {
+          if (tag.name().equals("JobId")) {
+            jobRecords.put(tag.value(), record);
+          }
+        }
+      }
+    }
+    assertEquals(2, jobRecords.size());
+    checkJobShuffleMetrics(jobRecords.get("job_12345_0001"), 3*MiB, 2);
+    checkJobShuffleMetrics(jobRecords.get("job_12345_0002"), 5*MiB, 1);
+
+    sh.metrics.removeJob("job_12345_0001");
+    collector = new MetricsCollectorImpl();
+    source.getMetrics(collector, true);
+    int records = 0;
+    for (MetricsRecord record : collector.getRecords()) {
+      if (record.name().equals("ShuffleJobMetrics")) {
+        records++;
+      }
+    }
+    assertEquals(1, records);
+  }
+
+  private static void checkJobShuffleMetrics(MetricsRecord record,
+      long bytes, long outputs) {
+    Map<String, Number> values = new HashMap<>();
+    for (AbstractMetric metric : record.metrics()) {
+      values.put(metric.name(), metric.value());
+    }
+    assertEquals(bytes, values.get("ShuffleJobOutputBytes").longValue());
+    assertEquals(outputs, values.get("ShuffleJobOutputsOK").longValue());
+  }
+
   /**
    * Verify client prematurely closing a connection.
    *
@@ -297,14 +359,14 @@ protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx,
             for (int i = 0; i < 100000; ++i) {
               header.write(dob);
             }
-            return ch.write(wrappedBuffer(dob.getData(), 0, dob.getLength()));
+            return ch.writeAndFlush(wrappedBuffer(dob.getData(), 0, dob.getLength()));
           }
           @Override
           protected void sendError(ChannelHandlerContext ctx,
               HttpResponseStatus status) {
             if (failures.size() == 0) {
               failures.add(new Error());
-              ctx.getChannel().close();
+              ctx.channel().close();
             }
           }
           @Override
@@ -312,7 +374,7 @@ protected void sendError(ChannelHandlerContext ctx, String message,
               HttpResponseStatus status) {
             if (failures.size() == 0) {
               failures.add(new Error());
-              ctx.getChannel().close();
+              ctx.channel().close();
             }
           }
         };
@@ -409,7 +471,7 @@ protected void populateHeaders(List<String> mapIds, String jobId,
           protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx,
               Channel ch, String user, String mapId, int reduce,
               MapOutputInfo info) throws IOException {
-            lastSocketAddress.setAddress(ch.getRemoteAddress());
+            lastSocketAddress.setAddress(ch.remoteAddress());
             HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
 
             // send a shuffle header and a lot of data down the channel
@@ -423,7 +485,7 @@ protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx,
             for (int i = 0; i < 100000; ++i) {
               header.write(dob);
             }
-            return ch.write(wrappedBuffer(dob.getData(), 0, dob.getLength()));
+            return ch.writeAndFlush(wrappedBuffer(dob.getData(), 0, dob.getLength()));
           }
 
           @Override
@@ -431,7 +493,7 @@ protected void sendError(ChannelHandlerContext ctx,
               HttpResponseStatus status) {
             if (failures.size() == 0) {
               failures.add(new Error());
-              ctx.getChannel().close();
+              ctx.channel().close();
             }
           }
 
@@ -440,7 +502,7 @@ protected void sendError(ChannelHandlerContext ctx, String message,
               HttpResponseStatus status) {
             if (failures.size() == 0) {
               failures.add(new Error());
-              ctx.getChannel().close();
+              ctx.channel().close();
             }
           }
         };
@@ -503,6 +565,129 @@ protected void sendError(ChannelHandlerContext ctx, String message,
 
   }
 
+  /**
+   * Verify that requests pipelined on a keep-alive connection are answered
+   * in order, each with all of its map outputs.
+   *
+   * @throws Exception exception
+   */
+  @Test(timeout = 10000)
+  public void testPipelinedRequests() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(ShuffleHandler.SHUFFLE_PORT_CONFIG_KEY, 0);
+    conf.setBoolean(ShuffleHandler.SHUFFLE_CONNECTION_KEEP_ALIVE_ENABLED, true);
+    ShuffleHandler shuffleHandler = new ShuffleHandler() {
+      @Override
+      protected Shuffle getShuffle(final Configuration conf) {
+        // replace the shuffle handler with one stubbed for testing
+        return new Shuffle(conf) {
+          @Override
+          protected MapOutputInfo getMapOutputInfo(String mapId, int reduce,
+              String jobId, String user) throws IOException {
+            return null;
+          }
+
+          @Override
+          protected void verifyRequest(String appid, ChannelHandlerContext ctx,
+              HttpRequest request, HttpResponse response, URL requestUri)
+              throws IOException {
+          }
+
+          @Override
+          protected void populateHeaders(List<String> mapIds, String jobId,
+              String user, int reduce, HttpRequest request,
+              HttpResponse response, boolean keepAliveParam,
+              Map<String, MapOutputInfo> infoMap) throws IOException {
+            long contentLength = 0;
+            for (String mapId : mapIds) {
+              contentLength += shuffleHeader(mapId).getLength();
+            }
+            super.setResponseHeaders(response, keepAliveParam, contentLength);
+          }
+
+          @Override
+          protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx,
+              Channel ch, String user, String mapId, int reduce,
+              MapOutputInfo info) throws IOException {
+            DataOutputBuffer dob = shuffleHeader(mapId);
+            return ch.writeAndFlush(
+                wrappedBuffer(dob.getData(), 0, dob.getLength()));
+          }
+        };
+      }
+    };
+    shuffleHandler.init(conf);
+    shuffleHandler.start();
+
+    String[][] requests = {
+        {"attempt_12345_1_m_1_0", "attempt_12345_1_m_2_0"},
+        {"attempt_12345_1_m_3_0"},
+        {"attempt_12345_1_m_4_0", "attempt_12345_1_m_5_0"}};
+    StringBuilder request = new StringBuilder();
+    for (String[] mapIds : requests) {
+      request.append("GET /mapOutput?job=job_12345_1&reduce=1&map=")
+          .append(StringUtils.join(",", mapIds)).append(" HTTP/1.1\r\n")
+          .append("Host: 127.0.0.1\r\n")
+          .append(ShuffleHeader.HTTP_HEADER_NAME).append(": ")
+          .append(ShuffleHeader.DEFAULT_HTTP_HEADER_NAME).append("\r\n")
+          .append(ShuffleHeader.HTTP_HEADER_VERSION).append(": ")
+          .append(ShuffleHeader.DEFAULT_HTTP_HEADER_VERSION).append("\r\n")
+          .append("\r\n");
+    }
+    int port = Integer.parseInt(shuffleHandler.getConfig().get(
+        ShuffleHandler.SHUFFLE_PORT_CONFIG_KEY));
+    try (Socket socket = new Socket("127.0.0.1", port)) {
+      // send all requests before reading any response
+      socket.getOutputStream().write(
+          request.toString().getBytes(StandardCharsets.US_ASCII));
+      socket.getOutputStream().flush();
+      DataInputStream input = new DataInputStream(socket.getInputStream());
+      for (String[] mapIds : requests) {
+        Assert.assertTrue(readLine(input).endsWith(" 200 OK"));
+        long contentLength = -1;
+        String line;
+        while (!(line = readLine(input)).isEmpty()) {
+          if (line.toLowerCase().startsWith("content-length:")) {
+            contentLength = Long.parseLong(line.substring(15).trim());
+          }
+        }
+        long read = 0;
+        for (String mapId : mapIds) {
+          DataOutputBuffer expected = shuffleHeader(mapId);
+          byte[] actual = new byte[expected.getLength()];
+          input.readFully(actual);
+          Assert.assertArrayEquals(Arrays.copyOf(expected.getData(),
+              expected.getLength()), actual);
+          read += actual.length;
+        }
+        assertEquals(contentLength, read);
+      }
+    } finally {
+      shuffleHandler.stop();
+    }
+  }
+
+  private static DataOutputBuffer shuffleHeader(String mapId)
+      throws IOException {
+    DataOutputBuffer dob = new DataOutputBuffer();
+    new ShuffleHeader(mapId, 5678, 5678, 1).write(dob);
+    return dob;
+  }
+
+  private static String readLine(DataInputStream input) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = input.read()) != '\n') {
+      if (c == -1) {
+        throw new EOFException("Connection closed");
+      }
+      if (c != '\r') {
+        line.append((char) c);
+      }
+    }
+    return line.toString();
+  }
+
   @Test(timeout = 10000)
   public void testSocketKeepAlive() throws Exception {
     Configuration conf = new Configuration();
@@ -630,7 +815,7 @@ protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx,
             for (int i=0; i<100000; ++i) {
               header.write(dob);
             }
-            return ch.write(wrappedBuffer(dob.getData(), 0, dob.getLength()));
+            return ch.writeAndFlush(wrappedBuffer(dob.getData(), 0, dob.getLength()));
           }
         };
       }
@@ -673,7 +858,7 @@ protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx,
     try {
       rc = conns[2].getResponseCode();
       Assert.assertEquals("Expected a too-many-requests response code",
-          ShuffleHandler.TOO_MANY_REQ_STATUS.getCode(), rc);
+          ShuffleHandler.TOO_MANY_REQ_STATUS.code(), rc);
       long backoff = Long.valueOf(
           conns[2].getHeaderField(ShuffleHandler.RETRY_AFTER_HEADER));
       Assert.assertTrue("The backoff value cannot be negative.", backoff > 0);
@@ -997,6 +1182,99 @@ public void testRecoveryFromOtherVersions() throws IOException {
     }
   }
 
+  /**
+   * Push the output of a map and fetch it from the merged outputs, along
+   * with the output of a map which was not pushed.
+   */
+  @Test(timeout = 100000)
+  public void testPushAndFetchMerged() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(ShuffleHandler.SHUFFLE_PORT_CONFIG_KEY, 0);
+    ShuffleHandler shuffle = new ShuffleHandler();
+    shuffle.setAuxiliaryLocalPathHandler(new TestAuxiliaryLocalPathHandler());
+    shuffle.init(conf);
+    String user = "randomUser";
+    ApplicationId appId = ApplicationId.newInstance(12345, 1);
+    String pushed = "attempt_12345_1_m_1_0";
+    String notPushed = "attempt_12345_1_m_2_0";
+    Token<JobTokenIdentifier> jt = new Token<JobTokenIdentifier>(
+        "identifier".getBytes(), "password".getBytes(), new Text(user),
+        new Text("shuffleService"));
+    byte[][] outputs = new byte[2][];
+    Random random = new Random(0);
+    outputs[0] = new byte[100000];
+    random.nextBytes(outputs[0]);
+    outputs[1] = new byte[] {1, 2, 3};
+    try {
+      shuffle.start();
+      DataOutputBuffer outputBuffer = new DataOutputBuffer();
+      jt.write(outputBuffer);
+      shuffle.initializeApplication(new ApplicationInitializationContext(user,
+          appId, ByteBuffer.wrap(outputBuffer.getData(), 0,
+              outputBuffer.getLength())));
+      String base = "http://127.0.0.1:"
+          + shuffle.getConfig().get(ShuffleHandler.SHUFFLE_PORT_CONFIG_KEY)
+          + "/mapOutput?job=job_12345_0001";
+
+      DataOutputBuffer body = new DataOutputBuffer();
+      for (int reduce = 0; reduce < outputs.length; reduce++) {
+        new ShuffleHeader(pushed, outputs[reduce].length,
+            outputs[reduce].length, reduce).write(body);
+        body.write(outputs[reduce]);
+      }
+      HttpURLConnection conn =
+          openShuffleConnection(new URL(base + "&map=" + pushed), jt);
+      conn.setRequestMethod("POST");
+      conn.setDoOutput(true);
+      conn.getOutputStream().write(body.getData(), 0, body.getLength());
+      assertEquals(HttpURLConnection.HTTP_OK, conn.getResponseCode());
+      conn.disconnect();
+
+      for (int reduce = 0; reduce < outputs.length; reduce++) {
+        conn = openShuffleConnection(new URL(base + "&reduce=" + reduce
+            + "&merged=true&map=" + pushed + "," + notPushed), jt);
+        assertEquals(HttpURLConnection.HTTP_OK, conn.getResponseCode());
+        DataInputStream input = new DataInputStream(conn.getInputStream());
+        ShuffleHeader header = new ShuffleHeader();
+        header.readFields(input);
+        assertEquals(pushed, header.getMapId());
+        assertEquals(reduce, header.getForReduce());
+        assertEquals(outputs[reduce].length, header.getCompressedLength());
+        byte[] data = new byte[outputs[reduce].length];
+        input.readFully(data);
+        Assert.assertArrayEquals(outputs[reduce], data);
+        header.readFields(input);
+        assertEquals(notPushed, header.getMapId());
+        assertEquals(ShuffleHeader.MISSING_OUTPUT_LENGTH,
+            header.getCompressedLength());
+        assertEquals(-1, input.read());
+        conn.disconnect();
+      }
+
+      File merged = new File(ABS_LOG_DIR, ShuffleMerger.MERGED_DIR +
+          "/job_12345_0001");
+      assertTrue(merged.isDirectory());
+      shuffle.stopApplication(new ApplicationTerminationContext(appId));
+      Assert.assertFalse(merged.exists());
+    } finally {
+      shuffle.stop();
+      FileUtil.fullyDelete(ABS_LOG_DIR);
+    }
+  }
+
+  private static HttpURLConnection openShuffleConnection(URL url,
+      Token<JobTokenIdentifier> jt) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.addRequestProperty(SecureShuffleUtils.HTTP_HEADER_URL_HASH,
+        SecureShuffleUtils.hashFromString(SecureShuffleUtils.buildMsgFrom(url),
+            JobTokenSecretManager.createSecretKey(jt.getPassword())));
+    conn.setRequestProperty(ShuffleHeader.HTTP_HEADER_NAME,
+        ShuffleHeader.DEFAULT_HTTP_HEADER_NAME);
+    conn.setRequestProperty(ShuffleHeader.HTTP_HEADER_VERSION,
+        ShuffleHeader.DEFAULT_HTTP_HEADER_VERSION);
+    return conn;
+  }
+
   private static int getShuffleResponseCode(ShuffleHandler shuffle,
       Token<JobTokenIdentifier> jt) throws IOException {
     URL url = new URL("http://127.0.0.1:"
@@ -1062,7 +1340,7 @@ protected void sendError(ChannelHandlerContext ctx, String message,
               HttpResponseStatus status) {
             if (failures.size() == 0) {
               failures.add(new Error(message));
-              ctx.getChannel().close();
+              ctx.channel().close();
             }
           }
           @Override
@@ -1074,7 +1352,7 @@ protected ChannelFuture sendMapOutput(ChannelHandlerContext ctx,
                 new ShuffleHeader("attempt_12345_1_m_1_0", 5678, 5678, 1);
             DataOutputBuffer dob = new DataOutputBuffer();
             header.write(dob);
-            return ch.write(wrappedBuffer(dob.getData(), 0, dob.getLength()));
+            return ch.writeAndFlush(wrappedBuffer(dob.getData(), 0, dob.getLength()));
           }
         };
       }
@@ -1129,30 +1407,32 @@ public void testSendMapCount() throws Exception {
 
     final ChannelHandlerContext mockCtx =
         mock(ChannelHandlerContext.class);
-    final MessageEvent mockEvt = mock(MessageEvent.class);
-    final Channel mockCh = mock(AbstractChannel.class);
+    final Channel mockCh = mock(Channel.class);
     final ChannelPipeline mockPipeline = mock(ChannelPipeline.class);
 
     // Mock HttpRequest and ChannelFuture
-    final HttpRequest mockHttpRequest = createMockHttpRequest();
+    final FullHttpRequest mockHttpRequest = createMockHttpRequest();
     final ChannelFuture mockFuture = createMockChannelFuture(mockCh,
         listenerList);
     final ShuffleHandler.TimeoutHandler timerHandler =
         new ShuffleHandler.TimeoutHandler();
 
     // Mock Netty Channel Context and Channel behavior
-    Mockito.doReturn(mockCh).when(mockCtx).getChannel();
-    when(mockCh.getPipeline()).thenReturn(mockPipeline);
+    final DefaultAttributeMap attributes = new DefaultAttributeMap();
+    when(mockCtx.channel()).thenReturn(mockCh);
+    when(mockCh.pipeline()).thenReturn(mockPipeline);
     when(mockPipeline.get(
         Mockito.any(String.class))).thenReturn(timerHandler);
-    when(mockCtx.getChannel()).thenReturn(mockCh);
     Mockito.doReturn(mockFuture).when(mockCh).write(Mockito.any(Object.class));
-    when(mockCh.write(Object.class)).thenReturn(mockFuture);
-
-    //Mock MessageEvent behavior
-    Mockito.doReturn(mockCh).when(mockEvt).getChannel();
-    when(mockEvt.getChannel()).thenReturn(mockCh);
-    Mockito.doReturn(mockHttpRequest).when(mockEvt).getMessage();
+    Mockito.doReturn(mockFuture).when(mockCh)
+        .writeAndFlush(Mockito.any(Object.class));
+    Mockito.doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        return attributes.attr(
+            (AttributeKey<?>) invocation.getArguments()[0]);
+      }
+    }).when(mockCh).attr(Mockito.any(AttributeKey.class));
 
     final ShuffleHandler sh = new MockShuffleHandler();
     Configuration conf = new Configuration();
@@ -1160,7 +1440,7 @@ public void testSendMapCount() throws Exception {
     sh.start();
     int maxOpenFiles =conf.getInt(ShuffleHandler.SHUFFLE_MAX_SESSION_OPEN_FILES,
         ShuffleHandler.DEFAULT_SHUFFLE_MAX_SESSION_OPEN_FILES);
-    sh.getShuffle(conf).messageReceived(mockCtx, mockEvt);
+    sh.getShuffle(conf).channelRead(mockCtx, mockHttpRequest);
     assertTrue("Number of Open files should not exceed the configured " +
             "value!-Not Expected",
         listenerList.size() <= maxOpenFiles);
@@ -1176,7 +1456,7 @@ public void testSendMapCount() throws Exception {
   public ChannelFuture createMockChannelFuture(Channel mockCh,
       final List<ShuffleHandler.ReduceMapFileCount> listenerList) {
     final ChannelFuture mockFuture = mock(ChannelFuture.class);
-    when(mockFuture.getChannel()).thenReturn(mockCh);
+    when(mockFuture.channel()).thenReturn(mockCh);
     Mockito.doReturn(true).when(mockFuture).isSuccess();
     Mockito.doAnswer(new Answer() {
       @Override
@@ -1193,8 +1473,10 @@ public Object answer(InvocationOnMock invocation) throws Throwable {
     return mockFuture;
   }
 
-  public HttpRequest createMockHttpRequest() {
-    HttpRequest mockHttpRequest = mock(HttpRequest.class);
+  public FullHttpRequest createMockHttpRequest() {
+    FullHttpRequest mockHttpRequest = mock(FullHttpRequest.class);
+    Mockito.doReturn(DecoderResult.SUCCESS).when(mockHttpRequest)
+        .getDecoderResult();
     Mockito.doReturn(HttpMethod.GET).when(mockHttpRequest).getMethod();
     Mockito.doAnswer(new Answer() {
       @Override
@@ -341,6 +341,23 @@ private Constants() {
   public static final String READAHEAD_RANGE = "fs.s3a.readahead.range";
   public static final long DEFAULT_READAHEAD_RANGE = 64 * 1024;
 
+  /**
+   * Ranges of a vectored read which are closer than this are fetched with
+   * a single GET request: {@value}.
+   */
+  public static final String VECTORED_READ_MIN_SEEK_SIZE =
+      "fs.s3a.vectored.read.min.seek.size";
+  public static final int DEFAULT_VECTORED_READ_MIN_SEEK_SIZE = 128 * 1024;
+
+  /**
+   * The maximum size of a GET request which fetches several ranges of a
+   * vectored read: {@value}.
+   */
+  public static final String VECTORED_READ_MAX_MERGED_SIZE =
+      "fs.s3a.vectored.read.max.merged.size";
+  public static final int DEFAULT_VECTORED_READ_MAX_MERGED_SIZE =
+      1024 * 1024;
+
   /**
    * Which input strategy to use for buffering, seeking and similar when
    * reading data.
@@ -28,15 +28,24 @@
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.fs.CanSetReadahead;
+import org.apache.hadoop.fs.CombinedFileRange;
 import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileRange;
+import org.apache.hadoop.fs.VectoredReadUtils;
+import org.apache.hadoop.io.IOUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
 
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
@@ -709,6 +718,94 @@ public void readFully(long position, byte[] buffer, int offset, int length)
     }
   }
 
+  @Override
+  public int minSeekForVectorReads() {
+    return context.vectoredReadMinSeek;
+  }
+
+  @Override
+  public int maxReadSizeForVectorReads() {
+    return context.vectoredReadMaxMerged;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Ranges closer than {@link #minSeekForVectorReads()} are coalesced into
+   * a single ranged GET request. Each request uses its own HTTP connection
+   * and runs on the bounded thread pool of the filesystem, so neither the
+   * position nor the open stream of this input stream are affected.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    checkNotClosed();
+    List<? extends FileRange> sorted =
+        VectoredReadUtils.validateAndSortRanges(ranges);
+    for (CombinedFileRange combined : VectoredReadUtils.mergeSortedRanges(
+        sorted, Long.MAX_VALUE, minSeekForVectorReads(),
+        maxReadSizeForVectorReads())) {
+      CompletableFuture<ByteBuffer> data;
+      if (context.vectoredIOExecutor != null) {
+        data = CompletableFuture.supplyAsync(() -> {
+          try {
+            return readCombinedRange(combined);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, context.vectoredIOExecutor);
+      } else {
+        data = new CompletableFuture<>();
+        try {
+          data.complete(readCombinedRange(combined));
+        } catch (IOException e) {
+          data.completeExceptionally(e);
+        }
+      }
+      VectoredReadUtils.completeUnderlying(combined, data, allocate);
+    }
+  }
+
+  /**
+   * Fetch a combined range of a vectored read with a ranged GET request.
+   * @param range the range to read
+   * @return a buffer with the data of the range
+   * @throws IOException on a failure to read, including an EOFException
+   * if the range extends past the end of the object.
+   */
+  @Retries.RetryTranslated
+  private ByteBuffer readCombinedRange(CombinedFileRange range)
+      throws IOException {
+    VectoredReadUtils.checkRangeInFile(range, contentLength);
+    byte[] buffer = new byte[range.getLength()];
+    if (range.getLength() == 0) {
+      return ByteBuffer.wrap(buffer);
+    }
+    GetObjectRequest request = new GetObjectRequest(bucket, key)
+        .withRange(range.getOffset(),
+            range.getOffset() + range.getLength() - 1);
+    if (S3AEncryptionMethods.SSE_C.equals(serverSideEncryptionAlgorithm) &&
+        StringUtils.isNotBlank(serverSideEncryptionKey)) {
+      request.setSSECustomerKey(new SSECustomerKey(serverSideEncryptionKey));
+    }
+    LOG.debug("Vectored read of {} {}", uri, range);
+    context.getReadInvoker().retry("vectored read", pathStr, true,
+        () -> {
+          checkNotClosed();
+          S3Object object = client.getObject(request);
+          try (S3ObjectInputStream in = object.getObjectContent()) {
+            IOUtils.readFully(in, buffer, 0, buffer.length);
+          }
+          return null;
+        });
+    synchronized (this) {
+      streamStatistics.streamOpened();
+      incrementBytesRead(buffer.length);
+      streamStatistics.streamClose(false, 0);
+    }
+    return ByteBuffer.wrap(buffer);
+  }
+
   /**
    * Access the input stream statistics.
    * This is for internal testing and may be removed without warning.
@@ -22,22 +22,59 @@
 import org.apache.hadoop.fs.FileSystem;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+
+import static org.apache.hadoop.fs.s3a.Constants.DEFAULT_VECTORED_READ_MAX_MERGED_SIZE;
+import static org.apache.hadoop.fs.s3a.Constants.DEFAULT_VECTORED_READ_MIN_SEEK_SIZE;
 
 /**
  * Read-specific operation context struct.
  */
 public class S3AReadOpContext extends S3AOpContext {
+
+  /** Executor for the GET requests of vectored reads; may be null. */
+  @Nullable final ExecutorService vectoredIOExecutor;
+  final int vectoredReadMinSeek;
+  final int vectoredReadMaxMerged;
+
   public S3AReadOpContext(boolean isS3GuardEnabled, Invoker invoker,
       Invoker s3guardInvoker, @Nullable FileSystem.Statistics stats,
       S3AInstrumentation instrumentation, FileStatus dstFileStatus) {
+    this(isS3GuardEnabled, invoker, s3guardInvoker, stats, instrumentation,
+        dstFileStatus, null, DEFAULT_VECTORED_READ_MIN_SEEK_SIZE,
+        DEFAULT_VECTORED_READ_MAX_MERGED_SIZE);
+  }
+
+  /**
+   * Constructor which also sets up vectored reads.
+   * @param isS3GuardEnabled true if s3Guard is active
+   * @param invoker invoker, which contains retry policy
+   * @param s3guardInvoker s3guard-specific retry policy invoker
+   * @param stats optional stats object
+   * @param instrumentation instrumentation to use
+   * @param dstFileStatus file status from existence check
+   * @param vectoredIOExecutor executor for the GET requests of vectored
+   *        reads; if null they are issued in the calling thread
+   * @param vectoredReadMinSeek gap below which ranges are merged
+   * @param vectoredReadMaxMerged maximum size of a merged range
+   */
+  public S3AReadOpContext(boolean isS3GuardEnabled, Invoker invoker,
+      Invoker s3guardInvoker, @Nullable FileSystem.Statistics stats,
+      S3AInstrumentation instrumentation, FileStatus dstFileStatus,
+      @Nullable ExecutorService vectoredIOExecutor, int vectoredReadMinSeek,
+      int vectoredReadMaxMerged) {
     super(isS3GuardEnabled, invoker, s3guardInvoker, stats, instrumentation,
         dstFileStatus);
+    this.vectoredIOExecutor = vectoredIOExecutor;
+    this.vectoredReadMinSeek = vectoredReadMinSeek;
+    this.vectoredReadMaxMerged = vectoredReadMaxMerged;
   }
 
   public S3AReadOpContext(boolean isS3GuardEnabled, Invoker invoker,
       @Nullable FileSystem.Statistics stats, S3AInstrumentation instrumentation,
       FileStatus dstFileStatus) {
-    super(isS3GuardEnabled, invoker, stats, instrumentation, dstFileStatus);
+    this(isS3GuardEnabled, invoker, null, stats, instrumentation,
+        dstFileStatus);
   }
 
   /**